@@ -22,5 +22,6 @@ export * from './config';
 export * from './custom-rules';
 export * from './issues';
 export * from './quickfixes';
+export * from './timing';
 export * from './visitors';
 export * from './wrapper';
@@ -24,6 +24,7 @@ import { Issue } from './issue';
 import { convertMessage } from './message';
 import { extractCognitiveComplexity, extractHighlightedSymbols } from './extract';
 import { SymbolHighlight } from '../visitors';
+import { RuleTimes } from '../timing';
 
 /**
  * The result of linting a source code
@@ -38,12 +39,14 @@ import { SymbolHighlight } from '../visitors';
  * @param ucfgPaths list of paths of ucfg files written to disk
  * @param highlightedSymbols the symbol highlighting of the code
  * @param cognitiveComplexity the cognitive complexity of the code
+ * @param ruleTimes the execution times of the rules, when they are timed
  */
 export type LintingResult = {
   issues: Issue[];
   ucfgPaths: string[];
   highlightedSymbols: SymbolHighlight[];
   cognitiveComplexity?: number;
+  ruleTimes?: RuleTimes;
 };
 
 /**
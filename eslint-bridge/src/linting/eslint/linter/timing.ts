@@ -0,0 +1,108 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+import { Rule } from 'eslint';
+import { hrtime } from 'process';
+
+/**
+ * The execution times of the rules for a file, in microseconds, by rule key
+ */
+export type RuleTimes = { [ruleId: string]: number };
+
+/**
+ * The times of the file being linted, in nanoseconds, undefined when rules are not timed
+ */
+let ruleTimes: { [ruleId: string]: number } | undefined;
+
+/**
+ * Whether the execution times of the rules are measured for each file
+ *
+ * The plugin sets the environment variable when monitoring is enabled. It
+ * replaces ESLint's `TIMING` variable, which only reports the times of the
+ * whole run.
+ */
+export function isRuleTimingEnabled() {
+  return process.env.SONARJS_RULE_TIMING === 'true';
+}
+
+/**
+ * Decorates a rule so that the time spent creating it and running its
+ * listeners is added to the times of the file being linted
+ *
+ * @param ruleId the key of the rule
+ * @param rule the rule to time
+ * @returns the timed rule
+ */
+export function timeRule(ruleId: string, rule: Rule.RuleModule | Rule.RuleModule['create']) {
+  const module = typeof rule === 'function' ? { create: rule } : rule;
+  return {
+    ...module,
+    create(context: Rule.RuleContext) {
+      const listeners = measure(ruleId, () => module.create(context));
+      const timedListeners: Rule.RuleListener = {};
+      for (const [selector, listener] of Object.entries(listeners)) {
+        timedListeners[selector] = (...args: any[]) =>
+          measure(ruleId, () => (listener as Function)(...args));
+      }
+      return timedListeners;
+    },
+  } as Rule.RuleModule;
+}
+
+/**
+ * Starts measuring the times of a file, when rules are timed
+ */
+export function startRuleTiming() {
+  ruleTimes = isRuleTimingEnabled() ? {} : undefined;
+}
+
+/**
+ * Stops measuring the times of a file
+ *
+ * @returns the times of the rules which ran on the file, undefined when rules are not timed
+ */
+export function stopRuleTiming(): RuleTimes | undefined {
+  const times = ruleTimes;
+  ruleTimes = undefined;
+  if (times === undefined) {
+    return undefined;
+  }
+  const micros: RuleTimes = {};
+  for (const [ruleId, nanos] of Object.entries(times)) {
+    micros[ruleId] = Math.round(nanos / 1_000);
+  }
+  return micros;
+}
+
+function measure<T>(ruleId: string, f: () => T): T {
+  if (ruleTimes === undefined) {
+    return f();
+  }
+  const start = hrtime.bigint();
+  try {
+    return f();
+  } finally {
+    const duration = Number(hrtime.bigint() - start);
+    // the times may have been stopped meanwhile
+    if (ruleTimes !== undefined) {
+      ruleTimes[ruleId] = (ruleTimes[ruleId] ?? 0) + duration;
+    }
+  }
+}
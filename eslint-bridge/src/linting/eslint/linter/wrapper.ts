@@ -24,6 +24,7 @@ import { createLinterConfig, RuleConfig } from './config';
 import { FileType } from 'helpers';
 import { transformMessages, LintingResult } from './issues';
 import { CustomRule } from './custom-rules';
+import { isRuleTimingEnabled, startRuleTiming, stopRuleTiming, timeRule } from './timing';
 
 /**
  * Wrapper's constructor initializer. All the parameters are optional,
@@ -105,6 +106,9 @@ export class LinterWrapper {
     loadBundles(this.linter, options.ruleBundles ?? defaultRuleBundles);
     loadCustomRules(this.linter, options.customRules);
     this.config = this.createConfig(options);
+    if (isRuleTimingEnabled()) {
+      this.timeRules();
+    }
   }
 
   /**
@@ -123,8 +127,28 @@ export class LinterWrapper {
     const fileTypeConfig = this.config[fileType];
     const config = { ...fileTypeConfig, settings: { ...fileTypeConfig.settings, fileType } };
     const options = { filename: filePath, allowInlineConfig: false };
+    startRuleTiming();
     const messages = this.linter.verify(sourceCode, config, options);
-    return transformMessages(messages, { sourceCode, rules: this.linter.getRules() });
+    const ruleTimes = stopRuleTiming();
+    return { ...transformMessages(messages, { sourceCode, rules: this.linter.getRules() }), ruleTimes };
+  }
+
+  /**
+   * Decorates the rules enabled by the linting configuration, so that their
+   * execution times are measured for each linted file
+   */
+  private timeRules() {
+    const rules = this.linter.getRules();
+    const enabledRules = new Set([
+      ...Object.keys(this.config['MAIN'].rules ?? {}),
+      ...Object.keys(this.config['TEST'].rules ?? {}),
+    ]);
+    for (const ruleId of enabledRules) {
+      const rule = rules.get(ruleId);
+      if (rule) {
+        this.linter.defineRule(ruleId, timeRule(ruleId, rule));
+      }
+    }
   }
 
   /**
@@ -17,20 +17,5 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
-package org.sonar.plugins.javascript.eslint;
 
-import java.io.IOException;
-import java.net.ServerSocket;
-
-public class NetUtils {
-
-  private NetUtils() {
-  }
-
-  public static int findOpenPort() throws IOException {
-    try (ServerSocket socket = new ServerSocket(0)) {
-      return socket.getLocalPort();
-    }
-  }
-
-}
+export * from './transport';
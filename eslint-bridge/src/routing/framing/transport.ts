@@ -0,0 +1,200 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import express from 'express';
+import { EventEmitter } from 'events';
+import net from 'net';
+import { debug } from 'helpers';
+import { errorOutput } from 'routing/errors';
+
+/**
+ * The size of a frame header, which holds the size of the frame payload
+ */
+const HEADER_SIZE = 4;
+
+/**
+ * Serves requests received on a stream socket with a length-prefixed framing
+ *
+ * This is a lighter alternative to HTTP used over Unix domain sockets. Every
+ * frame is made of a 32-bit big-endian payload size followed by the payload.
+ * A request is a single frame whose payload is the size of the endpoint path,
+ * the endpoint path and the JSON body. A response is a sequence of frames ended
+ * by an empty one, so that outputs can be streamed as with HTTP chunks.
+ *
+ * Requests received on the same connection are served one after the other,
+ * concurrent requests use distinct connections.
+ *
+ * Express.js handlers are reused as is: they get a request with a parsed body
+ * and a response exposing the subset of the Express.js API they rely on.
+ *
+ * @param socket a connection accepted by the server
+ * @param handlers the request handlers indexed by endpoint path
+ * @param middlewares the middlewares to run before any handler
+ */
+export function serveFramed(
+  socket: net.Socket,
+  handlers: { [path: string]: express.RequestHandler },
+  middlewares: express.RequestHandler[] = [],
+) {
+  let chunks: Buffer[] = [];
+  let size = 0;
+  let queue = Promise.resolve();
+
+  socket.on('data', (data: Buffer) => {
+    chunks.push(data);
+    size += data.length;
+    while (size >= HEADER_SIZE) {
+      if (chunks[0].length < HEADER_SIZE) {
+        chunks = [Buffer.concat(chunks, size)];
+      }
+      const frameSize = chunks[0].readUInt32BE(0);
+      if (size < HEADER_SIZE + frameSize) {
+        break;
+      }
+      const buffer = chunks.length === 1 ? chunks[0] : Buffer.concat(chunks, size);
+      const payload = buffer.subarray(HEADER_SIZE, HEADER_SIZE + frameSize);
+      const rest = buffer.subarray(HEADER_SIZE + frameSize);
+      chunks = rest.length > 0 ? [rest] : [];
+      size = rest.length;
+      queue = queue.then(() => serve(payload, socket, [...middlewares, handlerOf(payload)]));
+    }
+  });
+
+  socket.on('error', (err: Error) => {
+    debug(`eslint-bridge socket error: ${err}`);
+  });
+
+  function handlerOf(payload: Buffer): express.RequestHandler {
+    const path = endpointOf(payload);
+    return (
+      handlers[path] ||
+      (() => {
+        throw new Error(`Unknown endpoint '${path}'`);
+      })
+    );
+  }
+}
+
+function endpointOf(payload: Buffer) {
+  return payload.toString('utf8', HEADER_SIZE, HEADER_SIZE + payload.readUInt32BE(0));
+}
+
+/**
+ * Runs the middlewares and the handler for a request and resolves once the response is sent
+ */
+function serve(payload: Buffer, socket: net.Socket, chain: express.RequestHandler[]) {
+  return new Promise<void>(resolve => {
+    const response = new FramedResponse(socket);
+    response.once('finish', resolve);
+    const fail = (error: Error) => response.json(errorOutput(error));
+    let request;
+    try {
+      const path = endpointOf(payload);
+      const body = payload.toString('utf8', HEADER_SIZE + payload.readUInt32BE(0));
+      request = { path, body: body ? JSON.parse(body) : {} };
+    } catch (error) {
+      fail(error as Error);
+      return;
+    }
+    let index = 0;
+    const next = (error?: Error) => {
+      if (error) {
+        fail(error);
+        return;
+      }
+      const handler = chain[index++];
+      try {
+        Promise.resolve(
+          handler(
+            request as unknown as express.Request,
+            response as unknown as express.Response,
+            next as express.NextFunction,
+          ),
+        ).catch(fail);
+      } catch (error) {
+        fail(error as Error);
+      }
+    };
+    next();
+  });
+}
+
+/**
+ * The subset of the Express.js response API used by the request handlers
+ */
+class FramedResponse extends EventEmitter {
+  private finished = false;
+
+  constructor(private readonly socket: net.Socket) {
+    super();
+  }
+
+  setHeader() {
+    return this;
+  }
+
+  status() {
+    return this;
+  }
+
+  write(chunk: string | Buffer) {
+    const data = typeof chunk === 'string' ? Buffer.from(chunk) : chunk;
+    /**
+     * An empty frame would end the response
+     */
+    if (this.finished || data.length === 0) {
+      return true;
+    }
+    const header = Buffer.alloc(HEADER_SIZE);
+    header.writeUInt32BE(data.length);
+    this.socket.write(header);
+    const flushed = this.socket.write(data);
+    if (!flushed) {
+      this.socket.once('drain', () => this.emit('drain'));
+    }
+    return flushed;
+  }
+
+  end(chunk?: string | Buffer | (() => void), callback?: () => void) {
+    if (typeof chunk === 'function') {
+      callback = chunk;
+      chunk = undefined;
+    }
+    if (this.finished) {
+      return this;
+    }
+    if (chunk !== undefined) {
+      this.write(chunk);
+    }
+    this.finished = true;
+    this.socket.write(Buffer.alloc(HEADER_SIZE), () => {
+      this.emit('finish');
+      callback?.();
+    });
+    return this;
+  }
+
+  send(body: string) {
+    return this.end(body);
+  }
+
+  json(body: unknown) {
+    return this.end(JSON.stringify(body));
+  }
+}
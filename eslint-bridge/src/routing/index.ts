@@ -19,6 +19,7 @@
  */
 
 import express from 'express';
+import onAnalyzeBatch from './on-analyze-batch';
 import onAnalyzeCss from './on-analyze-css';
 import onAnalyzeJs from './on-analyze-js';
 import onAnalyzeTs from './on-analyze-ts';
@@ -27,21 +28,38 @@ import onCreateProgram from './on-create-program';
 import onDeleteProgram from './on-delete-program';
 import onInitLinter from './on-init-linter';
 import onNewTSConfig from './on-new-tsconfig';
+import onSetContext from './on-set-context';
 import onStatus from './on-status';
 import onTSConfigFiles from './on-tsconfig-files';
 
+/**
+ * The request handlers indexed by endpoint path, they are served over HTTP
+ * by the router and over a Unix domain socket by the framed transport.
+ */
+export const handlers: { [path: string]: express.RequestHandler } = {
+  '/analyze-batch': onAnalyzeBatch,
+  '/analyze-css': onAnalyzeCss,
+  '/analyze-js': onAnalyzeJs,
+  '/analyze-ts': onAnalyzeTs,
+  '/analyze-with-program': onAnalyzeTs,
+  '/analyze-yaml': onAnalyzeYaml,
+  '/create-program': onCreateProgram,
+  '/delete-program': onDeleteProgram,
+  '/init-linter': onInitLinter,
+  '/new-tsconfig': onNewTSConfig,
+  '/set-context': onSetContext,
+  '/status': onStatus,
+  '/tsconfig-files': onTSConfigFiles,
+};
+
 const router = express.Router();
 
-router.post('/analyze-css', onAnalyzeCss);
-router.post('/analyze-js', onAnalyzeJs);
-router.post('/analyze-ts', onAnalyzeTs);
-router.post('/analyze-with-program', onAnalyzeTs);
-router.post('/analyze-yaml', onAnalyzeYaml);
-router.post('/create-program', onCreateProgram);
-router.post('/delete-program', onDeleteProgram);
-router.post('/init-linter', onInitLinter);
-router.post('/new-tsconfig', onNewTSConfig);
-router.get('/status', onStatus);
-router.post('/tsconfig-files', onTSConfigFiles);
+for (const [path, handler] of Object.entries(handlers)) {
+  if (path === '/status') {
+    router.get(path, handler);
+  } else {
+    router.post(path, handler);
+  }
+}
 
 export default router;
@@ -0,0 +1,88 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import express from 'express';
+import { once } from 'events';
+import { APIError } from 'errors';
+import { readFile } from 'helpers';
+import {
+  analyzeJSTS,
+  analyzeYAML,
+  AnalysisInput,
+  AnalysisOutput,
+  encodeOutput,
+  JsTsAnalysisInput,
+  YamlAnalysisInput,
+} from 'services/analysis';
+import { errorOutput } from './errors';
+
+/**
+ * The analyses supported by batch requests
+ */
+const BATCH_ANALYSES: { [kind: string]: (input: AnalysisInput) => AnalysisOutput } = {
+  js: input => analyzeJSTS(input as JsTsAnalysisInput, 'js'),
+  ts: input => analyzeJSTS(input as JsTsAnalysisInput, 'ts'),
+  yaml: input => analyzeYAML(input as YamlAnalysisInput),
+};
+
+/**
+ * Handles batch analysis requests
+ *
+ * A batch analysis request holds several analysis inputs of the same kind.
+ * Instead of waiting for the whole batch to be analyzed, the analysis outputs
+ * are streamed back as newline-delimited JSON, one line per input and in the
+ * order of the inputs, as soon as they are computed. An input failing to be
+ * analyzed produces an error output and does not stop the batch.
+ */
+export default async function (
+  request: express.Request,
+  response: express.Response,
+  next: express.NextFunction,
+) {
+  try {
+    const { kind, inputs } = request.body as { kind: string; inputs: AnalysisInput[] };
+    const analysis = BATCH_ANALYSES[kind];
+    if (!analysis) {
+      throw APIError.unexpectedError(`Unsupported batch analysis kind '${kind}'`);
+    }
+    response.setHeader('Content-Type', 'application/x-ndjson');
+    for (const input of inputs) {
+      let output;
+      try {
+        if (input.filePath && !input.fileContent) {
+          input.fileContent = await readFile(input.filePath);
+        }
+        output = encodeOutput(analysis(input), input.encoding);
+      } catch (error) {
+        output = errorOutput(error as Error);
+      }
+      if (!response.write(`${JSON.stringify(output)}\n`)) {
+        await once(response, 'drain');
+      }
+      /**
+       * Analyzing is synchronous, yielding to the event loop lets the output
+       * be flushed and other requests, e.g. status checks, be served.
+       */
+      await new Promise(resolve => setImmediate(resolve));
+    }
+    response.end();
+  } catch (error) {
+    next(error);
+  }
+}
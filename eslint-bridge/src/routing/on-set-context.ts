@@ -0,0 +1,38 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import express from 'express';
+import { Context, setContext } from 'helpers';
+import { clearTypeScriptESLintParserCaches } from 'parsing/jsts';
+
+/**
+ * Handles context update requests
+ *
+ * A bridge running as a daemon outlives the analysis that started it and
+ * is reused by the following ones, which can be analyses of other projects.
+ * Each analysis updates the global context before initializing the linters,
+ * and the caches of the TypeScript ESLint parser are cleared as the analyzed
+ * files may have changed since the previous analysis.
+ */
+export default function (request: express.Request, response: express.Response) {
+  const { workDir, shouldUseTypeScriptParserForJS, sonarlint, bundles } = request.body as Context;
+  setContext({ workDir, shouldUseTypeScriptParserForJS, sonarlint, bundles });
+  clearTypeScriptESLintParserCaches();
+  response.send('OK!');
+}
@@ -25,11 +25,12 @@ import 'module-alias/register';
 
 import express from 'express';
 import http from 'http';
-import router from 'routing';
+import router, { handlers } from 'routing';
 import { errorMiddleware } from 'routing/errors';
+import { serveFramed } from 'routing/framing';
 import { debug } from 'helpers';
 import { timeoutMiddleware } from 'routing/timeout';
-import { AddressInfo } from 'net';
+import net, { AddressInfo } from 'net';
 
 /**
  * The maximum request body size
@@ -112,7 +113,8 @@ export function start(
     server.on('listening', () => {
       /**
        * Since we use 0 as the default port, Node.js assigns a random port to the server,
-       * which we get using server.address().
+       * which we get using server.address(). The plugin waits for this message to know
+       * that the server is ready, and which port it listens to.
        */
       debug(`eslint-bridge server is running at port ${(server.address() as AddressInfo)?.port}`);
       resolve(server);
@@ -121,3 +123,60 @@ export function start(
     server.listen(port, host);
   });
 }
+
+/**
+ * Starts the bridge on a Unix domain socket
+ *
+ * The bridge serves the same endpoints as the HTTP server, but requests and
+ * responses are exchanged with a length-prefixed framing instead of HTTP,
+ * which is cheaper for the large number of requests sent during an analysis.
+ *
+ * @param socketPath the path of the socket to listen to
+ * @param timeout timeout in ms to shut down the server if unresponsive
+ * @returns a socket server
+ */
+export function startOnSocket(socketPath: string, timeout = SHUTDOWN_TIMEOUT): Promise<net.Server> {
+  return new Promise(resolve => {
+    debug(`starting eslint-bridge server on socket ${socketPath}`);
+
+    const server = net.createServer(socket => {
+      serveFramed(
+        socket,
+        {
+          ...handlers,
+          '/close': (_request: express.Request, response: express.Response) => {
+            debug('eslint-bridge server will shutdown');
+            response.end(() => {
+              server.close();
+              socket.end();
+            });
+          },
+        },
+        [orphanTimeout.middleware],
+      );
+    });
+
+    const orphanTimeout = timeoutMiddleware(() => {
+      if (server.listening) {
+        server.close();
+      }
+    }, timeout);
+
+    server.on('close', () => {
+      debug('eslint-bridge server closed');
+      orphanTimeout.stop();
+    });
+
+    server.on('error', (err: Error) => {
+      debug(`eslint-bridge server error: ${err}`);
+    });
+
+    server.on('listening', () => {
+      // the plugin waits for this message to know that the server is ready
+      debug(`eslint-bridge server is running on socket ${socketPath}`);
+      resolve(server);
+    });
+
+    server.listen(socketPath);
+  });
+}
@@ -17,6 +17,7 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
+import { Encoding } from './encoding';
 
 /**
  * An analysis function
@@ -37,11 +38,13 @@ export type Analysis = (input: AnalysisInput) => Promise<AnalysisOutput>;
  *
  * @param filePath the path of the file to analyze
  * @param fileContent the content of the file to analyze
+ * @param encoding the encoding of the analysis output expected by the requester
  */
 export interface AnalysisInput {
   filePath: string;
   fileContent: string;
   linterId?: string;
+  encoding?: Encoding;
 }
 
 /**
@@ -29,9 +29,10 @@ import {
   getLinter,
   SymbolHighlight,
   LinterWrapper,
+  RuleTimes,
 } from 'linting/eslint';
 import { buildSourceCode, Language } from 'parsing/jsts';
-import { measureDuration } from 'services/monitoring';
+import { getHeapUsage, measureDuration } from 'services/monitoring';
 import { JsTsAnalysisInput, JsTsAnalysisOutput } from './analysis';
 
 /**
@@ -56,8 +57,11 @@ export function analyzeJSTS(input: JsTsAnalysisInput, language: Language): JsTsA
   const building = () => buildSourceCode(input, language);
   const { result: built, duration: parseTime } = measureDuration(building);
   const analysis = () => analyzeFile(linter, input, built);
-  const { result: output, duration: analysisTime } = measureDuration(analysis);
-  return { ...output, perf: { parseTime, analysisTime } };
+  const {
+    result: { ruleTimes, ...output },
+    duration: analysisTime,
+  } = measureDuration(analysis);
+  return { ...output, perf: { parseTime, analysisTime, ...getHeapUsage(), ruleTimes } };
 }
 
 /**
@@ -76,10 +80,10 @@ function analyzeFile(
   linter: LinterWrapper,
   input: JsTsAnalysisInput,
   sourceCode: SourceCode,
-): JsTsAnalysisOutput {
+): JsTsAnalysisOutput & { ruleTimes?: RuleTimes } {
   try {
     const { filePath, fileType } = input;
-    const { issues, highlightedSymbols, cognitiveComplexity, ucfgPaths } = linter.lint(
+    const { issues, highlightedSymbols, cognitiveComplexity, ucfgPaths, ruleTimes } = linter.lint(
       sourceCode,
       filePath,
       fileType,
@@ -90,7 +94,7 @@ function analyzeFile(
       highlightedSymbols,
       cognitiveComplexity,
     );
-    return { issues, ucfgPaths, ...extendedMetrics };
+    return { issues, ucfgPaths, ruleTimes, ...extendedMetrics };
   } catch (e) {
     /** Turns exceptions from TypeScript compiler into "parsing" errors */
     if (e.stack.indexOf('typescript.js:') > -1) {
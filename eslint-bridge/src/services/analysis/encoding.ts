@@ -0,0 +1,216 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import { CpdToken, Metrics, SymbolHighlight, SyntaxHighlight } from 'linting/eslint';
+import { Location } from 'linting/eslint/linter/visitors/metrics/helpers';
+import { AnalysisOutput } from './analysis';
+
+/**
+ * The encodings of an analysis output
+ *
+ * The compact encoding is only used when requested by the analysis input,
+ * the plugin decodes both.
+ */
+export type Encoding = 'json' | 'compact';
+
+/**
+ * The version of the compact encoding, which starts every encoded value
+ */
+const COMPACT_VERSION = 1;
+
+/**
+ * The metrics holding line numbers
+ */
+const LINE_METRICS: (keyof Metrics)[] = ['ncloc', 'commentLines', 'nosonarLines', 'executableLines'];
+
+/**
+ * Encodes an analysis output
+ *
+ * Most of an analysis output is made of locations, e.g. those of syntax highlights,
+ * symbols and copy-paste detector tokens, which are very verbose as JSON objects.
+ * The compact encoding replaces each of these lists, as well as the line numbers of
+ * the metrics, with a base64 string of variable-length integers:
+ *
+ * - locations are delta-encoded with respect to the previous location of the list,
+ *   which keeps most numbers on a single byte;
+ * - strings, i.e. text types and token images, are stored once in a dictionary
+ *   and referenced by their index.
+ *
+ * @param output the analysis output to encode
+ * @param encoding the encoding requested by the analysis input
+ * @returns the encoded output
+ */
+export function encodeOutput(output: AnalysisOutput, encoding?: Encoding): AnalysisOutput {
+  if (encoding !== 'compact') {
+    return output;
+  }
+  const { highlights, highlightedSymbols, cpdTokens, metrics } = output as {
+    highlights?: SyntaxHighlight[];
+    highlightedSymbols?: SymbolHighlight[];
+    cpdTokens?: CpdToken[];
+    metrics?: Metrics;
+  };
+  const encoded: { [key: string]: unknown } = { ...output };
+  if (highlights) {
+    encoded.highlights = encodeHighlights(highlights);
+  }
+  if (highlightedSymbols) {
+    encoded.highlightedSymbols = encodeHighlightedSymbols(highlightedSymbols);
+  }
+  if (cpdTokens) {
+    encoded.cpdTokens = encodeCpdTokens(cpdTokens);
+  }
+  if (metrics) {
+    const encodedMetrics: { [key: string]: unknown } = { ...metrics };
+    for (const key of LINE_METRICS) {
+      const lines = metrics[key];
+      if (Array.isArray(lines)) {
+        encodedMetrics[key] = encodeLines(lines);
+      }
+    }
+    encoded.metrics = encodedMetrics;
+  }
+  return encoded;
+}
+
+/**
+ * Encodes syntax highlights as their count, the dictionary of text types,
+ * the index of each text type and the locations.
+ */
+export function encodeHighlights(highlights: SyntaxHighlight[]): string {
+  const writer = new CompactWriter();
+  writer.uint(highlights.length);
+  writer.dictionary(highlights.map(highlight => highlight.textType));
+  writer.locations(highlights.map(highlight => highlight.location));
+  return writer.toString();
+}
+
+/**
+ * Encodes symbol highlights as their count, the declarations, the number of references
+ * of each symbol and the references of all the symbols.
+ */
+export function encodeHighlightedSymbols(symbols: SymbolHighlight[]): string {
+  const writer = new CompactWriter();
+  writer.uint(symbols.length);
+  writer.locations(symbols.map(symbol => symbol.declaration));
+  symbols.forEach(symbol => writer.uint(symbol.references.length));
+  const references: Location[] = [];
+  symbols.forEach(symbol => references.push(...symbol.references));
+  writer.locations(references);
+  return writer.toString();
+}
+
+/**
+ * Encodes copy-paste detector tokens as their count, the dictionary of images,
+ * the index of each image and the locations.
+ */
+export function encodeCpdTokens(cpdTokens: CpdToken[]): string {
+  const writer = new CompactWriter();
+  writer.uint(cpdTokens.length);
+  writer.dictionary(cpdTokens.map(token => token.image));
+  writer.locations(cpdTokens.map(token => token.location));
+  return writer.toString();
+}
+
+/**
+ * Encodes line numbers as their count and the difference with the previous line.
+ */
+export function encodeLines(lines: number[]): string {
+  const writer = new CompactWriter();
+  writer.uint(lines.length);
+  let previous = 0;
+  for (const line of lines) {
+    writer.int(line - previous);
+    previous = line;
+  }
+  return writer.toString();
+}
+
+/**
+ * Writes variable-length integers (LEB128), signed ones being zigzag-encoded
+ */
+class CompactWriter {
+  private buffer = Buffer.alloc(256);
+  private length = 0;
+
+  constructor() {
+    this.uint(COMPACT_VERSION);
+  }
+
+  uint(value: number) {
+    while (value > 0x7f) {
+      this.byte((value & 0x7f) | 0x80);
+      value = Math.floor(value / 0x80);
+    }
+    this.byte(value);
+  }
+
+  int(value: number) {
+    this.uint(value >= 0 ? value * 2 : -value * 2 - 1);
+  }
+
+  /**
+   * Writes the distinct values as a dictionary followed by the index of each value
+   */
+  dictionary(values: string[]) {
+    const indexes = new Map<string, number>();
+    for (const value of values) {
+      if (!indexes.has(value)) {
+        indexes.set(value, indexes.size);
+      }
+    }
+    this.uint(indexes.size);
+    for (const value of indexes.keys()) {
+      const bytes = Buffer.from(value, 'utf8');
+      this.uint(bytes.length);
+      bytes.forEach(b => this.byte(b));
+    }
+    values.forEach(value => this.uint(indexes.get(value)!));
+  }
+
+  /**
+   * Writes each location relatively to the start of the previous one, its end
+   * relatively to its start when on the same line
+   */
+  locations(locations: Location[]) {
+    let previousLine = 0;
+    let previousCol = 0;
+    for (const { startLine, startCol, endLine, endCol } of locations) {
+      this.int(startLine - previousLine);
+      this.int(startLine === previousLine ? startCol - previousCol : startCol);
+      this.int(endLine - startLine);
+      this.int(endLine === startLine ? endCol - startCol : endCol);
+      previousLine = startLine;
+      previousCol = startCol;
+    }
+  }
+
+  toString() {
+    return this.buffer.toString('base64', 0, this.length);
+  }
+
+  private byte(value: number) {
+    if (this.length === this.buffer.length) {
+      const grown = Buffer.alloc(this.buffer.length * 2);
+      this.buffer.copy(grown);
+      this.buffer = grown;
+    }
+    this.buffer[this.length++] = value;
+  }
+}
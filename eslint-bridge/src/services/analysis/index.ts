@@ -20,4 +20,5 @@
 
 export * from './analyzers';
 export * from './analysis';
+export * from './encoding';
 export * from './runner';
@@ -20,6 +20,7 @@
 
 import express from 'express';
 import { Analysis } from './analysis';
+import { encodeOutput } from './encoding';
 import { readFile } from 'helpers';
 
 /**
@@ -45,7 +46,7 @@ export function runner(analysis: Analysis): express.RequestHandler {
         input.fileContent = await readFile(input.filePath);
       }
       const output = await analysis(input);
-      response.json(output);
+      response.json(encodeOutput(output, input.encoding));
     } catch (error) {
       next(error);
     }
@@ -0,0 +1,45 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import v8 from 'v8';
+
+/**
+ * The heap usage of the process
+ *
+ * It is sent along with the analysis performance data so that the plugin can
+ * restart the bridge before it runs out of memory, which happens on large
+ * analyses as TypeScript programs and linter caches accumulate.
+ *
+ * @param heapUsed the size in bytes of the objects on the heap
+ * @param heapLimit the maximum size in bytes of the heap
+ */
+export interface HeapUsage {
+  heapUsed: number;
+  heapLimit: number;
+}
+
+/**
+ * Gets the heap usage of the process, which is cheap enough to be done after each analysis
+ *
+ * @returns the heap usage
+ */
+export function getHeapUsage(): HeapUsage {
+  const { used_heap_size, heap_size_limit } = v8.getHeapStatistics();
+  return { heapUsed: used_heap_size, heapLimit: heap_size_limit };
+}
@@ -18,5 +18,6 @@
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
 
+export * from './heap';
 export * from './measure';
 export * from './performance';
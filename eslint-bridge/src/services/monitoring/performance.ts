@@ -25,8 +25,14 @@
  *
  * @param parseTime the parsing time
  * @param analysisTime the analysis time
+ * @param heapUsed the heap usage once analyzed, see {@link HeapUsage}
+ * @param heapLimit the heap limit, see {@link HeapUsage}
+ * @param ruleTimes the execution times of the rules in microseconds, when monitoring is enabled
  */
 export interface Perf {
   parseTime: number;
   analysisTime: number;
+  heapUsed?: number;
+  heapLimit?: number;
+  ruleTimes?: { [ruleId: string]: number };
 }
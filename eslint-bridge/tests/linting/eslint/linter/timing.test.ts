@@ -0,0 +1,87 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+
+import path from 'path';
+import { Rule, SourceCode } from 'eslint';
+import { setContext } from 'helpers';
+import { LinterWrapper, RuleConfig, startRuleTiming, stopRuleTiming, timeRule } from 'linting/eslint';
+import { parseJavaScriptSourceFile } from '../../../tools';
+
+describe('rule timing', () => {
+  beforeAll(() => {
+    setContext({
+      workDir: '/tmp/workdir',
+      shouldUseTypeScriptParserForJS: true,
+      sonarlint: false,
+      bundles: [],
+    });
+  });
+
+  afterEach(() => {
+    delete process.env.SONARJS_RULE_TIMING;
+  });
+
+  it('should time the creation and the listeners of a rule', () => {
+    process.env.SONARJS_RULE_TIMING = 'true';
+    const listener = jest.fn();
+    const rule: Rule.RuleModule = { meta: { type: 'problem' }, create: () => ({ Identifier: listener }) };
+    const timed = timeRule('some-rule', rule);
+    expect(timed.meta).toEqual(rule.meta);
+
+    startRuleTiming();
+    const listeners = timed.create({} as Rule.RuleContext);
+    (listeners.Identifier as Function)('node');
+    const ruleTimes = stopRuleTiming();
+
+    expect(listener).toHaveBeenCalledWith('node');
+    expect(ruleTimes).toEqual({ 'some-rule': expect.any(Number) });
+    expect(stopRuleTiming()).toBeUndefined();
+  });
+
+  it('should not time rules when disabled', () => {
+    const timed = timeRule('some-rule', { create: () => ({}) });
+    startRuleTiming();
+    timed.create({} as Rule.RuleContext);
+    expect(stopRuleTiming()).toBeUndefined();
+  });
+
+  it('should return the times of the enabled rules with the linting result', async () => {
+    process.env.SONARJS_RULE_TIMING = 'true';
+    const filePath = path.join(__dirname, 'fixtures', 'wrapper', 'eslint.js');
+    const sourceCode = (await parseJavaScriptSourceFile(filePath)) as SourceCode;
+
+    const rules = [{ key: 'no-extra-semi', configurations: [], fileTypeTarget: ['MAIN'] }] as RuleConfig[];
+    const linter = new LinterWrapper({ inputRules: rules });
+    const { issues, ruleTimes } = linter.lint(sourceCode, filePath);
+
+    expect(issues).toEqual([expect.objectContaining({ ruleId: 'no-extra-semi' })]);
+    expect(ruleTimes).toEqual(expect.objectContaining({ 'no-extra-semi': expect.any(Number) }));
+  });
+
+  it('should not return times by default', async () => {
+    const filePath = path.join(__dirname, 'fixtures', 'wrapper', 'eslint.js');
+    const sourceCode = (await parseJavaScriptSourceFile(filePath)) as SourceCode;
+
+    const rules = [{ key: 'no-extra-semi', configurations: [], fileTypeTarget: ['MAIN'] }] as RuleConfig[];
+    const { ruleTimes } = new LinterWrapper({ inputRules: rules }).lint(sourceCode, filePath);
+
+    expect(ruleTimes).toBeUndefined();
+  });
+});
@@ -0,0 +1,139 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import express from 'express';
+import fs from 'fs';
+import net from 'net';
+import os from 'os';
+import path from 'path';
+import { serveFramed } from 'routing/framing';
+
+describe('serveFramed', () => {
+  const socketPath = path.join(os.tmpdir(), `eslint-bridge-framing-${process.pid}.sock`);
+  let server: net.Server;
+
+  const handlers: { [path: string]: express.RequestHandler } = {
+    '/echo': (request, response) => {
+      response.json(request.body);
+    },
+    '/status': (_request, response) => {
+      response.send('OK!');
+    },
+    '/stream': (_request, response) => {
+      response.write('first\n');
+      response.write('second\n');
+      response.end();
+    },
+    '/fail': () => {
+      throw new Error('failure');
+    },
+    '/async-fail': (_request, _response, next) => {
+      next(new Error('async failure'));
+    },
+  };
+
+  beforeEach(async () => {
+    if (fs.existsSync(socketPath)) {
+      fs.unlinkSync(socketPath);
+    }
+    server = net.createServer(socket => serveFramed(socket, handlers));
+    await new Promise<void>(resolve => server.listen(socketPath, resolve));
+  });
+
+  afterEach(async () => {
+    await new Promise(resolve => server.close(resolve));
+  });
+
+  it('should serve requests', async () => {
+    expect(await requests(['/status', ''])).toEqual(['OK!']);
+    expect(JSON.parse((await requests(['/echo', '{"filePath":"/é.js"}']))[0])).toEqual({
+      filePath: '/é.js',
+    });
+  });
+
+  it('should serve requests of the same connection in order', async () => {
+    expect(await requests(['/echo', '{"id":1}'], ['/status', ''], ['/echo', '{"id":2}'])).toEqual([
+      '{"id":1}',
+      'OK!',
+      '{"id":2}',
+    ]);
+  });
+
+  it('should stream responses', async () => {
+    expect(await requests(['/stream', ''])).toEqual(['first\nsecond\n']);
+  });
+
+  it('should serve large requests', async () => {
+    const content = 'x'.repeat(5 * 1024 * 1024);
+    const [response] = await requests(['/echo', JSON.stringify({ content })]);
+    expect(JSON.parse(response).content).toHaveLength(content.length);
+  });
+
+  it('should report errors', async () => {
+    console.error = jest.fn();
+    expect(await requests(['/fail', ''], ['/async-fail', ''], ['/unknown', ''], ['/echo', '{'])).toEqual([
+      '{"error":"failure"}',
+      '{"error":"async failure"}',
+      `{"error":"Unknown endpoint '/unknown'"}`,
+      expect.stringContaining('"error"'),
+    ]);
+  });
+
+  /**
+   * Sends [endpoint, body] requests on a single connection and resolves with the response bodies
+   */
+  function requests(...pairs: [string, string][]): Promise<string[]> {
+    return new Promise((resolve, reject) => {
+      const socket = net.connect(socketPath);
+      const responses: string[] = [];
+      let current = Buffer.alloc(0);
+      let received = Buffer.alloc(0);
+      socket.on('data', (data: Buffer) => {
+        received = Buffer.concat([received, data]);
+        while (received.length >= 4 && received.length >= 4 + received.readUInt32BE(0)) {
+          const size = received.readUInt32BE(0);
+          if (size === 0) {
+            responses.push(current.toString());
+            current = Buffer.alloc(0);
+          } else {
+            current = Buffer.concat([current, received.subarray(4, 4 + size)]);
+          }
+          received = received.subarray(4 + size);
+        }
+        if (responses.length === pairs.length) {
+          socket.end();
+          resolve(responses);
+        }
+      });
+      socket.on('error', reject);
+      for (const [endpoint, body] of pairs) {
+        socket.write(frame(Buffer.concat([frame(Buffer.from(endpoint)), Buffer.from(body)])));
+      }
+    });
+  }
+
+  /**
+   * The endpoint is prefixed with its size just like a frame payload
+   */
+  function frame(payload: Buffer) {
+    const header = Buffer.alloc(4);
+    header.writeUInt32BE(payload.length);
+    return Buffer.concat([header, payload]);
+  }
+});
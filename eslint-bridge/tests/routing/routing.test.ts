@@ -18,7 +18,7 @@
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
 
-import { setContext } from 'helpers';
+import { getContext, setContext } from 'helpers';
 import http from 'http';
 import { initializeLinter } from 'linting/eslint';
 import path from 'path';
@@ -49,6 +49,36 @@ describe('router', () => {
     await close();
   });
 
+  it('should route /analyze-batch requests', async () => {
+    initializeLinter([
+      { key: 'prefer-regex-literals', configurations: [], fileTypeTarget: ['MAIN'] },
+    ]);
+    const fileType = 'MAIN';
+    const inputs = [
+      { filePath: path.join(__dirname, 'fixtures', 'file.js'), fileType, tsConfigs: [] },
+      { filePath: path.join(__dirname, 'fixtures', 'parsing-error.js'), fileType, tsConfigs: [] },
+    ];
+    const data = { kind: 'js', inputs };
+    const response = (await request(server, '/analyze-batch', 'POST', data)) as string;
+    const lines = response.split('\n');
+    expect(lines).toHaveLength(3);
+    expect(lines[2]).toEqual('');
+    const {
+      issues: [issue],
+    } = JSON.parse(lines[0]);
+    expect(issue).toEqual(
+      expect.objectContaining({
+        ruleId: 'prefer-regex-literals',
+        line: 1,
+      }),
+    );
+    expect(JSON.parse(lines[1])).toEqual(
+      expect.objectContaining({
+        parsingError: expect.objectContaining({ code: 'PARSING' }),
+      }),
+    );
+  });
+
   it('should route /analyze-css requests', async () => {
     const filePath = path.join(__dirname, 'fixtures', 'file.css');
     const rules = [{ key: 'function-calc-no-invalid', configurations: [] }];
@@ -204,6 +234,18 @@ describe('router', () => {
     expect(response).toEqual('OK!');
   });
 
+  it('should route /set-context requests', async () => {
+    const data = {
+      workDir: '/tmp/other',
+      shouldUseTypeScriptParserForJS: false,
+      sonarlint: false,
+      bundles: ['/tmp/bundle'],
+    };
+    const response = await request(server, '/set-context', 'POST', data);
+    expect(response).toEqual('OK!');
+    expect(getContext()).toEqual(data);
+  });
+
   it('should route /status requests', async () => {
     const response = await request(server, '/status', 'GET');
     expect(response).toEqual('OK!');
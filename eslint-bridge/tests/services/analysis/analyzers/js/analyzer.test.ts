@@ -729,10 +729,12 @@ describe('analyzeJSTS', () => {
     const language = 'js';
 
     const {
-      perf: { parseTime, analysisTime },
+      perf: { parseTime, analysisTime, heapUsed, heapLimit },
     } = analyzeJSTS(await jsTsInput({ filePath }), language) as JsTsAnalysisOutput;
     expect(parseTime).toBeGreaterThan(0);
     expect(analysisTime).toBeGreaterThan(0);
+    expect(heapUsed).toBeGreaterThan(0);
+    expect(heapLimit).toBeGreaterThan(heapUsed);
   });
 
   it('should return parsing errors', async () => {
@@ -0,0 +1,85 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+import {
+  encodeCpdTokens,
+  encodeHighlightedSymbols,
+  encodeHighlights,
+  encodeLines,
+  encodeOutput,
+} from 'services/analysis';
+
+/**
+ * The expected values are also decoded by the plugin tests, see CompactEncodingTest
+ */
+describe('encoding', () => {
+  const location = (startLine: number, startCol: number, endLine: number, endCol: number) => ({
+    startLine,
+    startCol,
+    endLine,
+    endCol,
+  });
+
+  it('should encode syntax highlights', () => {
+    expect(
+      encodeHighlights([
+        { location: location(1, 0, 1, 5), textType: 'KEYWORD' },
+        { location: location(1, 6, 1, 11), textType: 'STRING' },
+        { location: location(2, 0, 3, 2), textType: 'KEYWORD' },
+      ]),
+    ).toEqual('AQMCB0tFWVdPUkQGU1RSSU5HAAEAAgAACgAMAAoCAAIE');
+    expect(encodeHighlights([])).toEqual('AQAA');
+  });
+
+  it('should encode symbol highlights', () => {
+    expect(
+      encodeHighlightedSymbols([
+        { declaration: location(1, 4, 1, 5), references: [location(2, 0, 2, 1), location(3, 2, 3, 3)] },
+        { declaration: location(4, 0, 4, 1), references: [] },
+      ]),
+    ).toEqual('AQICCAACBgAAAgIABAAAAgIEAAI=');
+  });
+
+  it('should encode cpd tokens', () => {
+    expect(
+      encodeCpdTokens([
+        { location: location(1, 0, 1, 3), image: 'let' },
+        { location: location(1, 4, 1, 5), image: 'x' },
+        { location: location(1, 6, 1, 7), image: '=' },
+        { location: location(2, 0, 2, 3), image: 'let' },
+      ]),
+    ).toEqual('AQQDA2xldAF4AT0AAQIAAgAABgAIAAIABAACAgAABg==');
+  });
+
+  it('should encode lines', () => {
+    expect(encodeLines([1, 2, 3, 10])).toEqual('AQQCAgIO');
+    expect(encodeLines([100000, 5])).toEqual('AQLAmgy1mgw=');
+    expect(encodeLines([])).toEqual('AQA=');
+  });
+
+  it('should encode analysis output only when requested', () => {
+    const output = { issues: [], metrics: { ncloc: [1, 2], nosonarLines: [], functions: 1 } };
+    expect(encodeOutput(output, 'compact')).toEqual({
+      issues: [],
+      metrics: { ncloc: 'AQICAg==', nosonarLines: 'AQA=', functions: 1 },
+    });
+    expect(encodeOutput(output, 'json')).toBe(output);
+    expect(encodeOutput(output)).toBe(output);
+  });
+});
@@ -33,4 +33,9 @@ public class AnchorPrecedenceCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "anchor-precedence";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -32,4 +32,9 @@ public class ArgumentTypesCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "argument-type";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
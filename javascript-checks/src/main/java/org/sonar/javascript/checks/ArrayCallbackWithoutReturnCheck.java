@@ -31,4 +31,9 @@ public class ArrayCallbackWithoutReturnCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "array-callback-without-return";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
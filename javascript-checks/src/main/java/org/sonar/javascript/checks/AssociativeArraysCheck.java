@@ -32,4 +32,9 @@ public class AssociativeArraysCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-associative-arrays";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
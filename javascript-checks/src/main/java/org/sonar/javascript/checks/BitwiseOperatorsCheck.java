@@ -36,4 +36,9 @@ public class BitwiseOperatorsCheck implements EslintBasedCheck {
     return "bitwise-operators";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
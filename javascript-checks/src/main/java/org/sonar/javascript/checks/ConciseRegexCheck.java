@@ -33,4 +33,9 @@ public class ConciseRegexCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "concise-regex";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -33,4 +33,9 @@ public class DeprecationCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "deprecation";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
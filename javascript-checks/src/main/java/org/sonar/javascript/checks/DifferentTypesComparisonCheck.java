@@ -31,5 +31,10 @@ public class DifferentTypesComparisonCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "different-types-comparison";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
 
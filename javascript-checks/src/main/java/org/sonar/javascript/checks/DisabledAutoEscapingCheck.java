@@ -32,4 +32,9 @@ public class DisabledAutoEscapingCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "disabled-auto-escaping";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -33,4 +33,9 @@ public class DuplicatesInCharacterClassCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "duplicates-in-character-class";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
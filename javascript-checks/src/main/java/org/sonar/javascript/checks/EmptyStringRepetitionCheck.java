@@ -33,5 +33,10 @@ public class EmptyStringRepetitionCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "empty-string-repetition";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
 
@@ -33,5 +33,10 @@ public class ExistingGroupsCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "existing-groups";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
 
@@ -34,4 +34,9 @@ public class FileNameDiffersFromClassCheck implements EslintBasedCheck {
     return "file-name-differ-from-class";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
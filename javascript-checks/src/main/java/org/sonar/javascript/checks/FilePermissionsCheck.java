@@ -33,4 +33,9 @@ public class FilePermissionsCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "file-permissions";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -30,4 +30,9 @@ public class FunctionReturnTypeCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "function-return-type";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
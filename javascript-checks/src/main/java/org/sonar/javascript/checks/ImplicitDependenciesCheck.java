@@ -49,4 +49,9 @@ public class ImplicitDependenciesCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-implicit-dependencies";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
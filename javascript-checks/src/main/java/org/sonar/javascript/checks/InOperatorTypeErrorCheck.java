@@ -31,4 +31,9 @@ public class InOperatorTypeErrorCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "in-operator-type-error";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
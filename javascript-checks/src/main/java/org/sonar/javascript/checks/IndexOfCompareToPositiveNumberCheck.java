@@ -34,4 +34,9 @@ public class IndexOfCompareToPositiveNumberCheck implements EslintBasedCheck {
     return "index-of-compare-to-positive-number";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -34,4 +34,9 @@ public class JsxNoLeakedRenderCheck implements EslintBasedCheck {
     return "sonar-jsx-no-leaked-render";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
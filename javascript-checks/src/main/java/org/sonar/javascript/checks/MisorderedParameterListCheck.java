@@ -34,4 +34,9 @@ public class MisorderedParameterListCheck implements EslintBasedCheck {
     return "arguments-order";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -33,4 +33,9 @@ public class NoArrayDeleteCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-array-delete";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
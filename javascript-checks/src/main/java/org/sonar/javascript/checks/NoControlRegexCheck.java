@@ -34,4 +34,9 @@ public class NoControlRegexCheck implements EslintBasedCheck {
     return "sonar-no-control-regex";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -34,4 +34,9 @@ public class NoEmptyAfterReluctantCheck implements EslintBasedCheck {
     return "no-empty-after-reluctant";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
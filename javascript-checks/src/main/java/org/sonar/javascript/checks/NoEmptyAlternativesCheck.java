@@ -33,4 +33,9 @@ public class NoEmptyAlternativesCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-empty-alternatives";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
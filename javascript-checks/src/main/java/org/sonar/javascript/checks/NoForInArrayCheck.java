@@ -33,4 +33,9 @@ public class NoForInArrayCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-for-in-iterable";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
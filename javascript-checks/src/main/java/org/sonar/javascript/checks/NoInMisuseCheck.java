@@ -34,4 +34,9 @@ public class NoInMisuseCheck implements EslintBasedCheck {
     return "no-in-misuse";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
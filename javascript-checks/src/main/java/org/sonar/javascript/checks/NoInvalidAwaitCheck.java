@@ -33,4 +33,9 @@ public class NoInvalidAwaitCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-invalid-await";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
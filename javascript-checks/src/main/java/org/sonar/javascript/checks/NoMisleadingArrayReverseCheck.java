@@ -34,4 +34,9 @@ public class NoMisleadingArrayReverseCheck implements EslintBasedCheck {
     return "no-misleading-array-reverse";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -32,4 +32,9 @@ public class NoRedundantOptionalCheck implements EslintBasedCheck {
     return "no-redundant-optional";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
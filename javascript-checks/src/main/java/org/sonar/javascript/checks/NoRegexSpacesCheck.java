@@ -34,4 +34,9 @@ public class NoRegexSpacesCheck implements EslintBasedCheck {
     return "sonar-no-regex-spaces";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
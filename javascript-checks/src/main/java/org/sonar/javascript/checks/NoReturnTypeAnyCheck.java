@@ -32,4 +32,9 @@ public class NoReturnTypeAnyCheck implements EslintBasedCheck {
     return "no-return-type-any";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
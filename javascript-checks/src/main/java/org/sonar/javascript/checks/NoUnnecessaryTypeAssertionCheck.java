@@ -31,4 +31,9 @@ public class NoUnnecessaryTypeAssertionCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-unnecessary-type-assertion";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -34,4 +34,9 @@ public class NoVueBypassSanitizationCheck implements EslintBasedCheck {
     return "no-vue-bypass-sanitization";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
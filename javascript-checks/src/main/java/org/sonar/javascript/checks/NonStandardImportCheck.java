@@ -34,4 +34,9 @@ public class NonStandardImportCheck implements EslintBasedCheck {
     return "no-require-or-define";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
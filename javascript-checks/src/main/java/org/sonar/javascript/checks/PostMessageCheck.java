@@ -33,4 +33,9 @@ public class PostMessageCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "post-message";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
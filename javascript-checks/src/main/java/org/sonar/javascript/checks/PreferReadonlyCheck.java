@@ -32,4 +32,9 @@ public class PreferReadonlyCheck implements EslintBasedCheck {
     return "prefer-readonly";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -32,4 +32,9 @@ public class PreferTypeGuardCheck implements EslintBasedCheck {
     return "prefer-type-guard";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -50,4 +50,9 @@ public class RegexComplexityCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "regex-complexity";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -34,4 +34,9 @@ public class SingleCharInCharacterClassesCheck implements EslintBasedCheck {
     return "single-char-in-character-classes";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -33,5 +33,10 @@ public class SingleCharacterAlternativeCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "single-character-alternation";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
 
@@ -34,4 +34,9 @@ public class SlowRegexCheck implements EslintBasedCheck {
     return "slow-regex";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -34,4 +34,9 @@ public class SonarNoInvalidRegexCheck implements EslintBasedCheck {
     return "sonar-no-invalid-regexp";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
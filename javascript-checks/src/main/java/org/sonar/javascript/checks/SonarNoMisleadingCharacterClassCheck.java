@@ -34,4 +34,9 @@ public class SonarNoMisleadingCharacterClassCheck implements EslintBasedCheck {
     return "sonar-no-misleading-character-class";
   }
 
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
+
 }
@@ -33,4 +33,9 @@ public class StringsComparisonCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "strings-comparison";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -33,4 +33,9 @@ public class UnicodeAwareRegexCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "unicode-aware-regex";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
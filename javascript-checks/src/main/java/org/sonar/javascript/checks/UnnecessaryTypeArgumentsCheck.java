@@ -31,4 +31,9 @@ public class UnnecessaryTypeArgumentsCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "no-unnecessary-type-arguments";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -33,4 +33,9 @@ public class UnusedImportCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "unused-import";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -33,5 +33,10 @@ public class UnusedNamedGroupsCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "unused-named-groups";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
 
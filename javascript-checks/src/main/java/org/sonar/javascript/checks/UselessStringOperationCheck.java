@@ -33,4 +33,9 @@ public class UselessStringOperationCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "useless-string-operation";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
@@ -31,4 +31,9 @@ public class ValuesNotConvertibleToNumbersCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "values-not-convertible-to-numbers";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
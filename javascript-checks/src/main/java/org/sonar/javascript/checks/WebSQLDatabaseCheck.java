@@ -33,4 +33,9 @@ public class WebSQLDatabaseCheck implements EslintBasedCheck {
   public String eslintKey() {
     return "web-sql-database";
   }
+
+  @Override
+  public boolean isContextDependent() {
+    return true;
+  }
 }
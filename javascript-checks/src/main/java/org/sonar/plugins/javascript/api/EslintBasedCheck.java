@@ -36,4 +36,12 @@ public interface EslintBasedCheck extends JavaScriptCheck {
     return Collections.singletonList(Type.MAIN);
   }
 
+  /**
+   * Whether the issues of the rule depend on more than the content of the file, e.g. on its path, on other files or on types.
+   * Files with the same content are otherwise analyzed once per analysis.
+   */
+  default boolean isContextDependent() {
+    return false;
+  }
+
 }
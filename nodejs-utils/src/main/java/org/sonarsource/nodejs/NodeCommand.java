@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import javax.annotation.Nullable;
@@ -34,7 +35,8 @@ import org.sonar.api.utils.log.Loggers;
 /**
  * Represents invocation of external NodeJS process. Use {@link NodeCommandBuilder} to create instance of this class.
  * Once created you can call {@code start()} to start external process, {@code waitFor()} to wait until process
- * terminates and {@code destroy()} to kill the process.
+ * terminates and {@code destroy()} to kill the process. {@code isAlive()} and {@code onExit()} report the state of the
+ * process without waiting for it.
  *
  * Standard and error output are consumed asynchronously in separate threads and each line is supplied to the
  * consumer set via {@link NodeCommandBuilder#outputConsumer(Consumer)} or {@link NodeCommandBuilder#errorConsumer(Consumer)}.
@@ -114,6 +116,33 @@ public class NodeCommand {
     }
   }
 
+  /**
+   * Kills the external process, if it was started, without waiting for it to terminate
+   */
+  public void destroy() {
+    if (process != null) {
+      processWrapper.destroyForcibly(process);
+    }
+  }
+
+  /**
+   * @return true if the external process was started and has not terminated yet
+   */
+  public boolean isAlive() {
+    return process != null && process.isAlive();
+  }
+
+  /**
+   * @return future completed with the exit value of the external process when it terminates
+   * @throws IllegalStateException when the process was not started
+   */
+  public CompletableFuture<Integer> onExit() {
+    if (process == null) {
+      throw new IllegalStateException("Node.js process was not started");
+    }
+    return process.onExit().thenApply(Process::exitValue);
+  }
+
   @Override
   public String toString() {
     return String.join(" ", command);
@@ -20,6 +20,7 @@
 package org.sonarsource.nodejs;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.function.Consumer;
 import org.sonar.api.config.Configuration;
@@ -50,5 +51,10 @@ public interface NodeCommandBuilder {
 
   NodeCommandBuilder env(Map<String, String> env);
 
+  /**
+   * Persists the version of the Node.js executable in the given file, so that it is not checked again by later builds
+   */
+  NodeCommandBuilder nodeVersionCache(Path cacheFile);
+
   NodeCommand build() throws IOException;
 }
@@ -22,6 +22,7 @@ package org.sonarsource.nodejs;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -64,6 +65,7 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
   private BundlePathResolver pathResolver;
   private Version actualNodeVersion;
   private Map<String, String> env = Map.of();
+  private NodeVersionCache versionCache;
 
   public NodeCommandBuilderImpl(ProcessWrapper processWrapper) {
     this.processWrapper = processWrapper;
@@ -129,10 +131,18 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
     return this;
   }
 
+  @Override
+  public NodeCommandBuilder nodeVersionCache(Path cacheFile) {
+    this.versionCache = new NodeVersionCache(cacheFile);
+    return this;
+  }
+
   /**
    * Retrieves node executable from sonar.node.executable property or using default if absent.
    * Then will check Node.js version by running {@code node -v}, then
    * returns {@link NodeCommand} instance.
+   * <p>
+   * Arguments are reset once the command is built, so the builder can be reused to launch the same script again.
    *
    * @throws NodeCommandException when actual Node.js version doesn't satisfy minimum version requested,
    * or if failed to run {@code node -v}
@@ -148,7 +158,7 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
     if (scriptFilename == null && !args.isEmpty()) {
       throw new IllegalArgumentException("No script provided, but script arguments found.");
     }
-    return new NodeCommand(
+    var nodeCommand = new NodeCommand(
       processWrapper,
       nodeExecutable,
       actualNodeVersion,
@@ -158,6 +168,9 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
       outputConsumer,
       errorConsumer,
       env);
+    nodeJsArgs = new ArrayList<>();
+    args = new ArrayList<>();
+    return nodeCommand;
   }
 
   private void checkNodeCompatibility(String nodeExecutable) throws NodeCommandException {
@@ -166,7 +179,7 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
     }
     LOG.debug("Checking Node.js version");
 
-    String versionString = getVersion(nodeExecutable);
+    String versionString = cachedVersion(nodeExecutable);
     actualNodeVersion = nodeVersion(versionString);
     if (!actualNodeVersion.isGreaterThanOrEqual(minNodeVersion)) {
       throw new NodeCommandException(String.format("Only Node.js v%s or later is supported, got %s.", minNodeVersion, actualNodeVersion));
@@ -188,6 +201,25 @@ public class NodeCommandBuilderImpl implements NodeCommandBuilder {
     }
   }
 
+  private String cachedVersion(String nodeExecutable) throws NodeCommandException {
+    Path executable = null;
+    // run-node looks for Node.js itself, so the version of the executable it runs can't be cached
+    if (versionCache != null && !nodeExecutable.endsWith(NODE_EXECUTABLE_DEFAULT_MACOS)) {
+      executable = NodeVersionCache.resolve(nodeExecutable, processWrapper.getenv("PATH"), processWrapper.isWindows());
+    }
+    if (executable == null) {
+      return getVersion(nodeExecutable);
+    }
+    String versionString = versionCache.get(executable);
+    if (versionString != null) {
+      LOG.debug("Using cached version of Node.js executable {}", executable);
+      return versionString;
+    }
+    versionString = getVersion(nodeExecutable);
+    versionCache.put(executable, versionString);
+    return versionString;
+  }
+
   private String getVersion(String nodeExecutable) throws NodeCommandException {
     StringBuilder output = new StringBuilder();
     NodeCommand nodeCommand = new NodeCommand(
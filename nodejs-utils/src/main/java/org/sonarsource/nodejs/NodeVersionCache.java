@@ -0,0 +1,117 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonarsource.nodejs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Versions of Node.js executables, persisted in a properties file so that {@code node -v} is only run once per executable.
+ * <p>
+ * An executable is identified by its real path, last modified time and size, so that the version is probed again once
+ * Node.js is upgraded in place. Executables found in the PATH are resolved to their file, the version of executables which
+ * can't be resolved, like the macOS run-node script which looks for Node.js itself, is never cached.
+ */
+class NodeVersionCache {
+
+  private static final Logger LOG = Loggers.get(NodeVersionCache.class);
+
+  private final Path file;
+
+  NodeVersionCache(Path file) {
+    this.file = file;
+  }
+
+  @CheckForNull
+  String get(Path executable) {
+    try {
+      return load().getProperty(key(executable));
+    } catch (IOException e) {
+      LOG.debug("Failed to read Node.js versions from " + file, e);
+      return null;
+    }
+  }
+
+  void put(Path executable, String version) {
+    try {
+      var versions = load();
+      versions.setProperty(key(executable), version);
+      Files.createDirectories(file.getParent());
+      // written to a temporary file first, as several analyses can update the cache concurrently
+      var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (OutputStream out = Files.newOutputStream(tmp)) {
+        versions.store(out, null);
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.debug("Failed to write Node.js versions to " + file, e);
+    }
+  }
+
+  private Properties load() throws IOException {
+    var versions = new Properties();
+    if (Files.exists(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        versions.load(in);
+      }
+    }
+    return versions;
+  }
+
+  private static String key(Path executable) throws IOException {
+    var realPath = executable.toRealPath();
+    return realPath + "|" + Files.getLastModifiedTime(realPath).toMillis() + "|" + Files.size(realPath);
+  }
+
+  /**
+   * @param path the value of the PATH environment variable, used when the executable is only a file name
+   * @return the file of the executable, or null when it can't be found
+   */
+  @CheckForNull
+  static Path resolve(String executable, @Nullable String path, boolean isWindows) {
+    if (executable.contains("/") || executable.contains(File.separator)) {
+      var file = Path.of(executable);
+      return Files.isRegularFile(file) ? file : null;
+    }
+    if (path == null) {
+      return null;
+    }
+    for (String directory : path.split(File.pathSeparator)) {
+      if (directory.isEmpty()) {
+        continue;
+      }
+      var file = Path.of(directory, isWindows ? (executable + ".exe") : executable);
+      if (Files.isRegularFile(file)) {
+        return file;
+      }
+    }
+    return null;
+  }
+}
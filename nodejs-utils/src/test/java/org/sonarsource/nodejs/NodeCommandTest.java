@@ -28,6 +28,7 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -85,6 +86,38 @@ class NodeCommandTest {
     assertThat(exitValue).isEqualTo(0);
   }
 
+  @Test
+  void should_report_process_state() throws Exception {
+    NodeCommand nodeCommand = NodeCommand.builder()
+      .script(resourceScript("files/error.js"))
+      .pathResolver(getPathResolver())
+      .build();
+    assertThat(nodeCommand.isAlive()).isFalse();
+    assertThatThrownBy(nodeCommand::onExit)
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("Node.js process was not started");
+
+    nodeCommand.start();
+    assertThat(nodeCommand.onExit().get(1, TimeUnit.MINUTES)).isEqualTo(1);
+    assertThat(nodeCommand.isAlive()).isFalse();
+  }
+
+  @Test
+  void should_destroy_process() throws Exception {
+    NodeCommand nodeCommand = NodeCommand.builder()
+      .nodeJsArgs("-e", "setTimeout(() => {}, 60000)")
+      .pathResolver(getPathResolver())
+      .build();
+    // not started
+    nodeCommand.destroy();
+
+    nodeCommand.start();
+    assertThat(nodeCommand.isAlive()).isTrue();
+    nodeCommand.destroy();
+    nodeCommand.onExit().get(1, TimeUnit.MINUTES);
+    assertThat(nodeCommand.isAlive()).isFalse();
+  }
+
   @Test
   void test_output_error_consumer() throws Exception {
     StringBuilder output = new StringBuilder();
@@ -112,6 +145,43 @@ class NodeCommandTest {
       .hasMessageStartingWith("Only Node.js v99.0 or later is supported, got");
   }
 
+  @Test
+  void should_cache_node_version() throws Exception {
+    Path cacheFile = tempDir.resolve("cache").resolve("node-versions.properties");
+    NodeCommand first = NodeCommand.builder()
+      .minNodeVersion(Version.create(8, 0))
+      .nodeVersionCache(cacheFile)
+      .script(resourceScript(PATH_TO_SCRIPT))
+      .pathResolver(getPathResolver())
+      .build();
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Launching command node -v");
+    assertThat(cacheFile).exists();
+
+    logTester.clear();
+    NodeCommand second = NodeCommand.builder()
+      .minNodeVersion(Version.create(8, 0))
+      .nodeVersionCache(cacheFile)
+      .script(resourceScript(PATH_TO_SCRIPT))
+      .pathResolver(getPathResolver())
+      .build();
+    assertThat(logTester.logs(LoggerLevel.DEBUG))
+      .doesNotContain("Launching command node -v")
+      .anyMatch(log -> log.startsWith("Using cached version of Node.js executable"));
+    assertThat(second.getActualNodeVersion()).isEqualTo(first.getActualNodeVersion());
+  }
+
+  @Test
+  void should_resolve_node_executable() throws Exception {
+    Path bin = Files.createDirectories(tempDir.resolve("bin"));
+    Path node = Files.createFile(bin.resolve("node"));
+    String path = tempDir.resolve("other") + File.pathSeparator + bin;
+    assertThat(NodeVersionCache.resolve("node", path, false)).isEqualTo(node);
+    assertThat(NodeVersionCache.resolve("node", path, true)).isNull();
+    assertThat(NodeVersionCache.resolve("node", null, false)).isNull();
+    assertThat(NodeVersionCache.resolve(node.toString(), null, false)).isEqualTo(node);
+    assertThat(NodeVersionCache.resolve(bin.toString(), null, false)).isNull();
+  }
+
   @Test
   void test_mac_default_executable_not_found() throws IOException {
     when(mockProcessWrapper.isMac()).thenReturn(true);
@@ -164,6 +234,19 @@ class NodeCommandTest {
     assertThat(total_available_size).isGreaterThan(2048 * 1000);
   }
 
+  @Test
+  void should_reuse_builder() throws Exception {
+    NodeCommandBuilder builder = NodeCommand.builder(mockProcessWrapper)
+      .maxOldSpaceSize(2048)
+      .script("script.js")
+      .scriptArgs("arg")
+      .pathResolver(getPathResolver());
+    NodeCommand first = builder.build();
+    NodeCommand second = builder.maxOldSpaceSize(2048).scriptArgs("arg").build();
+    assertThat(second).hasToString(first.toString());
+    assertThat(second.toString()).endsWith("--max-old-space-size=2048 script.js arg");
+  }
+
   @Test
   void test_executable_from_configuration() throws Exception {
     String NODE_EXECUTABLE_PROPERTY = "sonar.nodejs.executable";
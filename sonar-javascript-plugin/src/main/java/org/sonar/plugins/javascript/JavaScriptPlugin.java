@@ -34,7 +34,7 @@ import org.sonar.plugins.javascript.eslint.AnalysisWarningsWrapper;
 import org.sonar.plugins.javascript.eslint.AnalysisWithProgram;
 import org.sonar.plugins.javascript.eslint.BundleImpl;
 import org.sonar.plugins.javascript.eslint.CssRuleSensor;
-import org.sonar.plugins.javascript.eslint.EslintBridgeServerImpl;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerPool;
 import org.sonar.plugins.javascript.eslint.JavaScriptChecks;
 import org.sonar.plugins.javascript.eslint.JavaScriptEslintBasedSensor;
 import org.sonar.plugins.javascript.eslint.Monitoring;
@@ -113,7 +113,7 @@ public class JavaScriptPlugin implements Plugin {
       JavaScriptProfilesDefinition.class,
       NodeCommandBuilderImpl.class,
       ProcessWrapperImpl.class,
-      EslintBridgeServerImpl.class,
+      EslintBridgeServerPool.class,
       NodeDeprecationWarning.class,
       BundleImpl.class,
       JavaScriptEslintBasedSensor.class,
@@ -40,6 +40,8 @@ public class AbstractChecks {
   private final CheckFactory checkFactory;
   private final CustomRuleRepository[] customRuleRepositories;
   private final Set<Checks<JavaScriptCheck>> checksByRepository = new HashSet<>();
+  // the rules of custom repositories are not trusted to declare whether they are context dependent
+  private final Set<Checks<JavaScriptCheck>> customChecks = new HashSet<>();
   private RuleKey parseErrorRuleKey;
 
   public AbstractChecks(CheckFactory checkFactory, @Nullable CustomRuleRepository[] customRuleRepositories) {
@@ -52,10 +54,12 @@ public class AbstractChecks {
     addCustomChecks(language);
   }
 
-  private void doAddChecks(String repositoryKey, Iterable<Class<? extends JavaScriptCheck>> checkClass) {
-    checksByRepository.add(checkFactory
+  private Checks<JavaScriptCheck> doAddChecks(String repositoryKey, Iterable<Class<? extends JavaScriptCheck>> checkClass) {
+    var checks = checkFactory
       .<JavaScriptCheck>create(repositoryKey)
-      .addAnnotatedChecks(checkClass));
+      .addAnnotatedChecks(checkClass);
+    checksByRepository.add(checks);
+    return checks;
   }
 
   private void addCustomChecks(CustomRuleRepository.Language language) {
@@ -66,7 +70,7 @@ public class AbstractChecks {
           LOG.debug("Adding rules for repository '{}', language: {}, {} from {}", repo.repositoryKey(), language,
             repo.checkClasses(),
             repo.getClass().getCanonicalName());
-          doAddChecks(repo.repositoryKey(), repo.checkClasses());
+          customChecks.add(doAddChecks(repo.repositoryKey(), repo.checkClasses()));
         }
       }
     }
@@ -135,7 +139,11 @@ public class AbstractChecks {
 
   List<EslintRule> eslintRules() {
     return eslintBasedChecks()
-      .map(check -> new EslintRule(check.eslintKey(), check.configurations(), check.targets()))
+      .map(check -> new EslintRule(check.eslintKey(), check.configurations(), check.targets(), isContextDependent(check)))
       .collect(Collectors.toList());
   }
+
+  private boolean isContextDependent(EslintBasedCheck check) {
+    return check.isContextDependent() || customChecks.stream().anyMatch(checks -> checks.all().contains(check));
+  }
 }
@@ -36,7 +36,7 @@ public abstract class AbstractEslintSensor implements Sensor {
   private static final Logger LOG = Loggers.get(AbstractEslintSensor.class);
 
   protected final EslintBridgeServer eslintBridgeServer;
-  private final AnalysisWarningsWrapper analysisWarnings;
+  final AnalysisWarningsWrapper analysisWarnings;
   final Monitoring monitoring;
   List<String> environments;
   List<String> globals;
@@ -67,6 +67,16 @@ public abstract class AbstractEslintSensor implements Sensor {
       }
       eslintBridgeServer.startServerLazily(context);
       analyzeFiles(inputFiles);
+      var corruptedFiles = CacheStrategies.awaitDeferredExtraction();
+      if (!corruptedFiles.isEmpty()) {
+        LOG.info("Analyzing {} file(s) whose cached files could not be extracted", corruptedFiles.size());
+        try {
+          analyzeFiles(corruptedFiles);
+        } catch (RuntimeException | IOException e) {
+          LOG.error("Failed to analyze the file(s) whose cached files could not be extracted: {}", corruptedFiles);
+          throw e;
+        }
+      }
     } catch (CancellationException e) {
       // do not propagate the exception
       LOG.info(e.toString());
@@ -87,6 +97,11 @@ public abstract class AbstractEslintSensor implements Sensor {
         throw new IllegalStateException("Analysis failed (\"sonar.internal.analysis.failFast\"=true)", e);
       }
     } finally {
+      // the files of the cache hits are needed by the following sensors, even when the analysis failed
+      var lostFiles = CacheStrategies.awaitDeferredExtraction();
+      if (!lostFiles.isEmpty()) {
+        LOG.warn("The cached files of {} file(s) could not be extracted and the file(s) were not analyzed: {}", lostFiles.size(), lostFiles);
+      }
       CacheStrategies.logReport();
       monitoring.stopSensor();
     }
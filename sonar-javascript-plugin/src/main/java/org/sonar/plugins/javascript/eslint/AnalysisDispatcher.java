@@ -0,0 +1,268 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+
+/**
+ * Sends analysis requests asynchronously and hands the responses over in submission order on the calling (sensor) thread,
+ * so that saving measures, issues and cache entries stays deterministic and single-threaded.
+ * <p>
+ * Up to {@value #REQUESTS_PER_PROCESS} requests per Node.js process are in flight: a process analyzes the next file
+ * while the response of the previous one is saved. When the limit is reached {@link #submit} processes the oldest response,
+ * responses which are already received are processed after each submission. While file deadlines are enabled, eslint-bridge
+ * server sends the requests to a process one after the other, see {@link EslintBridgeServerImpl#FILE_TIMEOUT_PROPERTY}.
+ * <p>
+ * Files submitted with a {@link JsAnalysisRequest} are grouped in batches sent with a single request, their responses are
+ * processed as soon as they are streamed back.
+ */
+class AnalysisDispatcher implements AutoCloseable {
+
+  // internal property to set the maximum number of files analyzed with a single request, 1 disables batching
+  static final String BATCH_SIZE_PROPERTY = "sonar.javascript.bridge.batchSize";
+  static final int DEFAULT_BATCH_SIZE = 20;
+  // batches are kept small enough for each concurrent request to get several of them, which balances the load
+  private static final int BATCHES_PER_REQUEST_SLOT = 4;
+  static final int REQUESTS_PER_PROCESS = 2;
+
+  private final int maxRequestsInFlight;
+  private final int batchSize;
+  @Nullable
+  private final BatchSender batchSender;
+  private final BiConsumer<InputFile, IOException> batchFailureLogger;
+  private final Deque<PendingAnalysis> pending = new ArrayDeque<>();
+  private List<BatchEntry> batch = new ArrayList<>();
+  private int requestsInFlight;
+
+  AnalysisDispatcher(int concurrency) {
+    this(concurrency, 1, null, (file, e) -> {
+    });
+  }
+
+  AnalysisDispatcher(int concurrency, int batchSize, @Nullable BatchSender batchSender, BiConsumer<InputFile, IOException> batchFailureLogger) {
+    this.maxRequestsInFlight = Math.max(1, concurrency) * REQUESTS_PER_PROCESS;
+    this.batchSize = batchSize;
+    this.batchSender = batchSender;
+    this.batchFailureLogger = batchFailureLogger;
+  }
+
+  /**
+   * Creates a dispatcher grouping files in batches according to the configuration and to the number of files
+   */
+  static AnalysisDispatcher withBatches(SensorContext context, int concurrency, int filesToAnalyze, BatchSender batchSender,
+                                        BiConsumer<InputFile, IOException> batchFailureLogger) {
+    int maxBatchSize = Math.max(1, context.config().getInt(BATCH_SIZE_PROPERTY).orElse(DEFAULT_BATCH_SIZE));
+    int requestSlots = Math.max(1, concurrency) * BATCHES_PER_REQUEST_SLOT;
+    int batchSize = Math.max(1, Math.min(maxBatchSize, filesToAnalyze / requestSlots));
+    return new AnalysisDispatcher(concurrency, batchSize, batchSender, batchFailureLogger);
+  }
+
+  void submit(Request request, ResponseHandler handler) throws IOException {
+    waitForRequestSlot();
+    pending.add(new PendingAnalysis(null, send(request::send), handler, true));
+    requestsInFlight++;
+    processReceived();
+  }
+
+  /**
+   * Adds the file to the current batch, which is sent once full or when {@link #finish()} is called
+   */
+  void submit(InputFile file, JsAnalysisRequest request, ResponseHandler handler) throws IOException {
+    batch.add(new BatchEntry(file, request, handler));
+    if (batch.size() >= batchSize) {
+      sendBatch();
+    }
+    processReceived();
+  }
+
+  private void sendBatch() throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (batchSender == null) {
+      throw new IllegalStateException("No batch sender configured");
+    }
+    List<BatchEntry> entries = batch;
+    batch = new ArrayList<>();
+    List<JsAnalysisRequest> requests = entries.stream().map(entry -> entry.request).collect(Collectors.toList());
+    waitForRequestSlot();
+    List<CompletableFuture<AnalysisResponse>> responses = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      var entry = entries.get(i);
+      var response = new CompletableFuture<AnalysisResponse>();
+      responses.add(response);
+      pending.add(new PendingAnalysis(entry.file, response, entry.handler, i == entries.size() - 1));
+    }
+    requestsInFlight++;
+    var received = new AtomicInteger();
+    // the sender guarantees one response per request, in order
+    send(() -> batchSender.send(requests, response -> {
+      int index = received.getAndIncrement();
+      if (index < responses.size()) {
+        responses.get(index).complete(response);
+      }
+    }))
+      .whenComplete((result, e) -> {
+        // responses which were already received are still processed
+        Throwable failure = e == null ? new IllegalStateException("No response received") : unwrap(e);
+        responses.forEach(response -> response.completeExceptionally(failure));
+      });
+  }
+
+  private static <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> sender) {
+    try {
+      return sender.get();
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private void waitForRequestSlot() throws IOException {
+    while (requestsInFlight >= maxRequestsInFlight) {
+      processNext();
+    }
+  }
+
+  private void processReceived() throws IOException {
+    while (!pending.isEmpty() && pending.peek().response.isDone()) {
+      processNext();
+    }
+  }
+
+  /**
+   * Sends the last batch, waits for all the submitted requests and processes their responses, including the ones of files
+   * submitted again by a handler
+   */
+  void finish() throws IOException {
+    while (!batch.isEmpty() || !pending.isEmpty()) {
+      sendBatch();
+      while (!pending.isEmpty()) {
+        processNext();
+      }
+    }
+  }
+
+  private void processNext() throws IOException {
+    var next = pending.poll();
+    if (next.lastOfRequest) {
+      requestsInFlight--;
+    }
+    AnalysisResponse response;
+    try {
+      response = next.response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for analysis response", e);
+    } catch (ExecutionException e) {
+      var cause = unwrap(e.getCause());
+      if (next.file != null && cause instanceof IOException) {
+        batchFailureLogger.accept(next.file, (IOException) cause);
+      }
+      throw rethrow(cause);
+    }
+    next.handler.handle(response);
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+
+  private static IOException rethrow(Throwable cause) {
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IllegalStateException(cause);
+  }
+
+  /**
+   * Abandons requests which were not processed, e.g. after a failure or a cancellation
+   */
+  @Override
+  public void close() {
+    pending.forEach(p -> p.response.cancel(true));
+    pending.clear();
+    batch.clear();
+  }
+
+  interface Request {
+    CompletableFuture<AnalysisResponse> send();
+  }
+
+  interface BatchSender {
+    /**
+     * The returned future completes once all the responses were passed to the consumer
+     */
+    CompletableFuture<Void> send(List<JsAnalysisRequest> requests, Consumer<AnalysisResponse> consumer);
+  }
+
+  interface ResponseHandler {
+    void handle(AnalysisResponse response) throws IOException;
+  }
+
+  private static class BatchEntry {
+    final InputFile file;
+    final JsAnalysisRequest request;
+    final ResponseHandler handler;
+
+    BatchEntry(InputFile file, JsAnalysisRequest request, ResponseHandler handler) {
+      this.file = file;
+      this.request = request;
+      this.handler = handler;
+    }
+  }
+
+  private static class PendingAnalysis {
+    @Nullable
+    final InputFile file;
+    final CompletableFuture<AnalysisResponse> response;
+    final ResponseHandler handler;
+    final boolean lastOfRequest;
+
+    PendingAnalysis(@Nullable InputFile file, CompletableFuture<AnalysisResponse> response, ResponseHandler handler, boolean lastOfRequest) {
+      this.file = file;
+      this.response = response;
+      this.handler = handler;
+      this.lastOfRequest = lastOfRequest;
+    }
+  }
+}
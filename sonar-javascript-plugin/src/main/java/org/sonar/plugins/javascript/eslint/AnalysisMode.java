@@ -20,6 +20,7 @@
 package org.sonar.plugins.javascript.eslint;
 
 import java.util.List;
+import java.util.stream.Collectors;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.Version;
@@ -33,6 +34,8 @@ public enum AnalysisMode {
 
   static final String DEFAULT_LINTER_ID = "default";
   static final String UNCHANGED_LINTER_ID = "unchanged";
+  // only has the context-dependent rules, see DuplicateFiles
+  static final String CONTEXT_DEPENDENT_LINTER_ID = "contextDependent";
   private static final Logger LOG = Loggers.get(AnalysisMode.class);
 
   public static boolean isRuntimeApiCompatible(SensorContext context) {
@@ -70,6 +73,10 @@ public enum AnalysisMode {
     return rule == null ? emptyList() : List.of(rule);
   }
 
+  static List<EslintRule> getContextDependentRules(List<EslintRule> rules) {
+    return rules.stream().filter(rule -> rule.contextDependent).collect(Collectors.toList());
+  }
+
   String getLinterIdFor(InputFile file) {
     if (this == SKIP_UNCHANGED && file.status() == InputFile.Status.SAME) {
       return UNCHANGED_LINTER_ID;
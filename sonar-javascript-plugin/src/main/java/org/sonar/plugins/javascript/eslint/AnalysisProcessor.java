@@ -27,7 +27,6 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
 import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
-import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.batch.sensor.symbol.NewSymbol;
@@ -43,6 +42,8 @@ import org.sonar.api.utils.Version;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
+import org.sonar.plugins.javascript.eslint.Monitoring.SavePhase;
 import org.sonarsource.api.sonarlint.SonarLintSide;
 import org.sonarsource.sonarlint.plugin.api.SonarLintRuntime;
 import org.sonarsource.sonarlint.plugin.api.issue.NewSonarLintIssue;
@@ -61,25 +62,47 @@ public class AnalysisProcessor {
   private final Monitoring monitoring;
   private final NoSonarFilter noSonarFilter;
   private final FileLinesContextFactory fileLinesContextFactory;
+  private final AnalysisWarningsWrapper analysisWarnings;
   private SensorContext context;
   private ContextUtils contextUtils;
   private InputFile file;
   private AbstractChecks checks;
 
-  public AnalysisProcessor(NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory, Monitoring monitoring) {
+  public AnalysisProcessor(NoSonarFilter noSonarFilter, FileLinesContextFactory fileLinesContextFactory, Monitoring monitoring,
+                           AnalysisWarningsWrapper analysisWarnings) {
     this.noSonarFilter = noSonarFilter;
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.monitoring = monitoring;
+    this.analysisWarnings = analysisWarnings;
   }
 
   void processResponse(SensorContext context, AbstractChecks checks, InputFile file, AnalysisResponse response) {
+    if (process(context, checks, file, response)) {
+      monitoring.stopFile(file, response.metrics.ncloc.length, response.perf);
+    } else {
+      monitoring.skipFile(file);
+    }
+  }
+
+  /**
+   * Processes the response of a file identical to the analyzed one, see {@link DuplicateFiles}. The performance of the
+   * analysis is not reported again.
+   */
+  void processDuplicate(SensorContext context, AbstractChecks checks, InputFile file, AnalysisResponse response) {
+    process(context, checks, file, response);
+  }
+
+  /**
+   * @return whether all the analysis data were saved
+   */
+  private boolean process(SensorContext context, AbstractChecks checks, InputFile file, AnalysisResponse response) {
     this.context = context;
     contextUtils = new ContextUtils(context);
     this.checks = checks;
     this.file = file;
     if (response.parsingError != null) {
       processParsingError(response.parsingError);
-      return;
+      return false;
     }
 
     if (YamlSensor.LANGUAGE.equals(file.language())) {
@@ -87,22 +110,36 @@ public class AnalysisProcessor {
       // and symbols. There is an exception for issues, though. Since sonar-iac saves such data for YAML files
       // from Cloudformation configurations, we can only save issues for these files.
       saveIssues(response.issues);
-    } else {
-      // it's important to have an order here:
-      // saving metrics should be done before saving issues so that NO SONAR lines with issues are indeed ignored
-      saveMetrics(response.metrics);
-      saveIssues(response.issues);
-      saveHighlights(response.highlights);
-      saveHighlightedSymbols(response.highlightedSymbols);
-      saveCpd(response.cpdTokens);
-      monitoring.stopFile(file, response.metrics.ncloc.length, response.perf);
+      return false;
     }
+    // it's important to have an order here:
+    // saving metrics should be done before saving issues so that NO SONAR lines with issues are indeed ignored
+    save(SavePhase.METRICS, () -> saveMetrics(response.metrics));
+    save(SavePhase.ISSUES, () -> saveIssues(response.issues));
+    save(SavePhase.HIGHLIGHTS, () -> saveHighlights(response.highlights));
+    save(SavePhase.SYMBOLS, () -> saveHighlightedSymbols(response.highlightedSymbols));
+    save(SavePhase.CPD, () -> saveCpd(response.cpdTokens));
+    return true;
+  }
+
+  private void save(SavePhase phase, Runnable saver) {
+    var start = System.nanoTime();
+    saver.run();
+    monitoring.fileSaved(file, phase, start);
   }
 
   private void processParsingError(EslintBridgeServer.ParsingError parsingError) {
     Integer line = parsingError.line;
     String message = parsingError.message;
 
+    if (parsingError.code == EslintBridgeServer.ParsingErrorCode.TIMEOUT) {
+      if (contextUtils.failFast()) {
+        throw new IllegalStateException("Failed to analyze file " + file);
+      }
+      FileQuarantine.skipped(context, analysisWarnings, Analyzer.ESLINT, file, message);
+      return;
+    }
+
     if (line != null) {
       LOG.error("Failed to parse file [{}] at line {}: {}", file, line, message);
     } else if (parsingError.code == EslintBridgeServer.ParsingErrorCode.FAILING_TYPESCRIPT) {
@@ -146,21 +183,22 @@ public class AnalysisProcessor {
     }
   }
 
-  private void saveHighlights(EslintBridgeServer.Highlight[] highlights) {
+  private void saveHighlights(EslintBridgeServer.Highlights highlights) {
     NewHighlighting highlighting = context.newHighlighting().onFile(file);
-    for (EslintBridgeServer.Highlight highlight : highlights) {
-      highlighting.highlight(highlight.location.toTextRange(file), TypeOfText.valueOf(highlight.textType));
+    for (int i = 0; i < highlights.size(); i++) {
+      highlighting.highlight(highlights.locations.toTextRange(file, i), highlights.textTypes[i]);
     }
     highlighting.save();
   }
 
-  private void saveHighlightedSymbols(EslintBridgeServer.HighlightedSymbol[] highlightedSymbols) {
+  private void saveHighlightedSymbols(EslintBridgeServer.HighlightedSymbols highlightedSymbols) {
     NewSymbolTable symbolTable = context.newSymbolTable().onFile(file);
-    for (EslintBridgeServer.HighlightedSymbol highlightedSymbol : highlightedSymbols) {
-      EslintBridgeServer.Location declaration = highlightedSymbol.declaration;
-      NewSymbol newSymbol = symbolTable.newSymbol(declaration.startLine, declaration.startCol, declaration.endLine, declaration.endCol);
-      for (EslintBridgeServer.Location reference : highlightedSymbol.references) {
-        newSymbol.newReference(reference.startLine, reference.startCol, reference.endLine, reference.endCol);
+    EslintBridgeServer.Locations declarations = highlightedSymbols.declarations;
+    EslintBridgeServer.Locations references = highlightedSymbols.references;
+    for (int i = 0; i < highlightedSymbols.size(); i++) {
+      NewSymbol newSymbol = symbolTable.newSymbol(declarations.startLine(i), declarations.startCol(i), declarations.endLine(i), declarations.endCol(i));
+      for (int r = highlightedSymbols.referenceStarts[i]; r < highlightedSymbols.referenceStarts[i + 1]; r++) {
+        newSymbol.newReference(references.startLine(r), references.startCol(r), references.endLine(r), references.endCol(r));
       }
     }
     symbolTable.save();
@@ -202,14 +240,14 @@ public class AnalysisProcessor {
       .save();
   }
 
-  private void saveCpd(EslintBridgeServer.CpdToken[] cpdTokens) {
+  private void saveCpd(EslintBridgeServer.CpdTokens cpdTokens) {
     if (file.type().equals(InputFile.Type.TEST) || contextUtils.isSonarLint()) {
       // even providing empty 'NewCpdTokens' will trigger duplication computation so skipping
       return;
     }
     NewCpdTokens newCpdTokens = context.newCpdTokens().onFile(file);
-    for (EslintBridgeServer.CpdToken cpdToken : cpdTokens) {
-      newCpdTokens.addToken(cpdToken.location.toTextRange(file), cpdToken.image);
+    for (int i = 0; i < cpdTokens.size(); i++) {
+      newCpdTokens.addToken(cpdTokens.locations.toTextRange(file, i), cpdTokens.images[i]);
     }
     newCpdTokens.save();
   }
@@ -21,10 +21,12 @@ package org.sonar.plugins.javascript.eslint;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.scanner.ScannerSide;
@@ -35,6 +37,7 @@ import org.sonar.plugins.javascript.CancellationException;
 import org.sonar.plugins.javascript.TypeScriptLanguage;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgram;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgramRequest;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategy;
 import org.sonar.plugins.javascript.utils.ProgressReport;
@@ -57,6 +60,7 @@ public class AnalysisWithProgram {
   private AbstractChecks checks;
   private ProgressReport progressReport;
   private AnalysisMode analysisMode;
+  private ResponseCache responseCache;
 
   public AnalysisWithProgram(EslintBridgeServer eslintBridgeServer, Monitoring monitoring, AnalysisProcessor processAnalysis) {
     this.eslintBridgeServer = eslintBridgeServer;
@@ -64,8 +68,9 @@ public class AnalysisWithProgram {
     this.processAnalysis = processAnalysis;
   }
 
-  void analyzeFiles(SensorContext context, AbstractChecks checks, List<InputFile> inputFiles) throws IOException {
+  void analyzeFiles(SensorContext context, AbstractChecks checks, List<InputFile> inputFiles, ResponseCache responseCache) throws IOException {
     this.context = context;
+    this.responseCache = responseCache;
     this.contextUtils = new ContextUtils(context);
     this.checks = checks;
     this.analysisMode = AnalysisMode.getMode(context, checks.eslintRules());
@@ -79,26 +84,35 @@ public class AnalysisWithProgram {
     try {
       Deque<String> workList = new ArrayDeque<>(tsConfigs);
       Set<String> analyzedProjects = new HashSet<>();
+      Set<InputFile> requestedFiles = new HashSet<>(inputFiles);
       Set<InputFile> analyzedFiles = new HashSet<>();
+      // each Node.js process analyzes the files of its own program, see EslintBridgeServerPool#createProgram
+      int concurrency = Math.max(1, eslintBridgeServer.startWorkers(inputFiles.size()));
       while (!workList.isEmpty()) {
-        var tsConfig = workList.pop();
-        if (!analyzedProjects.add(tsConfig)) {
-          continue;
-        }
-        monitoring.startProgram(tsConfig);
-        PROFILER.startInfo("Creating TypeScript program");
-        LOG.info("TypeScript configuration file " + tsConfig);
-        var program = eslintBridgeServer.createProgram(new TsProgramRequest(tsConfig));
-        if (program.error != null) {
-          LOG.error("Failed to create program: " + program.error);
+        var programs = new ArrayList<ProgramFiles>();
+        while (!workList.isEmpty() && programs.size() < concurrency) {
+          var tsConfig = workList.pop();
+          if (!analyzedProjects.add(tsConfig)) {
+            continue;
+          }
+          monitoring.startProgram(tsConfig);
+          PROFILER.startInfo("Creating TypeScript program");
+          LOG.info("TypeScript configuration file " + tsConfig);
+          var program = eslintBridgeServer.createProgram(new TsProgramRequest(tsConfig));
+          if (program.error != null) {
+            LOG.error("Failed to create program: " + program.error);
+            PROFILER.stopInfo();
+            continue;
+          }
           PROFILER.stopInfo();
-          continue;
+          monitoring.stopProgram();
+          programs.add(new ProgramFiles(program, tsConfig, programFiles(program, requestedFiles, analyzedFiles)));
+        }
+        analyzePrograms(programs, concurrency);
+        for (var programFiles : programs) {
+          workList.addAll(programFiles.program.projectReferences);
+          eslintBridgeServer.deleteProgram(programFiles.program);
         }
-        PROFILER.stopInfo();
-        monitoring.stopProgram();
-        analyzeProgram(program, analyzedFiles);
-        workList.addAll(program.projectReferences);
-        eslintBridgeServer.deleteProgram(program);
       }
       Set<InputFile> skippedFiles = new HashSet<>(inputFiles);
       skippedFiles.removeAll(analyzedFiles);
@@ -116,10 +130,9 @@ public class AnalysisWithProgram {
     }
   }
 
-  private void analyzeProgram(TsProgram program, Set<InputFile> analyzedFiles) throws IOException {
-    LOG.info("Starting analysis with current program");
+  private List<InputFile> programFiles(TsProgram program, Set<InputFile> requestedFiles, Set<InputFile> analyzedFiles) {
     var fs = context.fileSystem();
-    var counter = 0;
+    var inputFiles = new ArrayList<InputFile>();
     for (var file : program.files) {
       var inputFile = fs.inputFile(fs.predicates().and(
         fs.predicates().hasAbsolutePath(file),
@@ -130,36 +143,127 @@ public class AnalysisWithProgram {
         LOG.debug("File not part of the project: '{}'", file);
         continue;
       }
+      if (!requestedFiles.contains(inputFile)) {
+        // e.g. only the files whose cached files could not be extracted are analyzed again
+        continue;
+      }
       if (analyzedFiles.add(inputFile)) {
-        var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile);
-        if (cacheStrategy.isAnalysisRequired()) {
-          analyze(inputFile, program, cacheStrategy);
-        }
-        counter++;
+        inputFiles.add(inputFile);
       } else {
         LOG.debug("File already analyzed: '{}'. Check your project configuration to avoid files being part of multiple projects.", file);
       }
     }
+    return inputFiles;
+  }
 
-    LOG.info("Analyzed {} file(s) with current program", counter);
+  /**
+   * The files of the programs are submitted in turn, so that the processes owning them analyze their files concurrently. The
+   * programs are deleted once all their files are analyzed.
+   */
+  private void analyzePrograms(List<ProgramFiles> programs, int concurrency) throws IOException {
+    LOG.info("Starting analysis with {} program(s)", programs.size());
+    try (var dispatcher = new AnalysisDispatcher(concurrency)) {
+      boolean submitted = true;
+      while (submitted) {
+        submitted = false;
+        for (var programFiles : programs) {
+          submitted |= submitNext(programFiles, dispatcher);
+        }
+      }
+      dispatcher.finish();
+    }
+    for (var programFiles : programs) {
+      LOG.info("Analyzed {} file(s) with program of {}", programFiles.files.size(), programFiles.tsConfig);
+    }
   }
 
-  private void analyze(InputFile file, TsProgram tsProgram, CacheStrategy cacheStrategy) throws IOException {
+  /**
+   * @return false when all the files of the program were already submitted
+   */
+  private boolean submitNext(ProgramFiles programFiles, AnalysisDispatcher dispatcher) throws IOException {
+    while (programFiles.next < programFiles.files.size()) {
+      var inputFile = programFiles.files.get(programFiles.next++);
+      if (programFiles.duplicateFiles.isRepresented(inputFile)) {
+        continue;
+      }
+      var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+      if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)) {
+        analyze(inputFile, programFiles, cacheStrategy, dispatcher);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void analyze(InputFile file, ProgramFiles programFiles, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher) throws IOException {
     if (context.isCancelled()) {
       throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
     }
-    try {
-      LOG.debug("Analyzing file: {}", file.uri());
-      progressReport.nextFile(file.absolutePath());
-      monitoring.startFile(file);
-      EslintBridgeServer.JsAnalysisRequest request = new EslintBridgeServer.JsAnalysisRequest(file.absolutePath(),
-        file.type().toString(), null, contextUtils.ignoreHeaderComments(), null, tsProgram.programId, analysisMode.getLinterIdFor(file));
-      EslintBridgeServer.AnalysisResponse response = eslintBridgeServer.analyzeWithProgram(request);
+    LOG.debug("Analyzing file: {}", file.uri());
+    progressReport.nextFile(file.absolutePath());
+    monitoring.startFile(file);
+    var duplicateFiles = programFiles.duplicateFiles;
+    var duplicates = duplicateFiles.representedBy(file);
+    var cachedResponse = responseCache.forFile(file, List.of(programFiles.tsConfig));
+    var replayed = cachedResponse.replay();
+    if (replayed != null) {
+      duplicateFiles.replayed(file, replayed);
+      processAnalysis.processResponse(context, checks, file, replayed);
+      cacheStrategy.writeGeneratedFilesToCache(replayed.ucfgPaths);
+      processDuplicates(duplicates, programFiles.tsConfig, replayed);
+      return;
+    }
+    submit(file, programFiles, cacheStrategy, dispatcher, cachedResponse, duplicates);
+  }
+
+  private void submit(InputFile file, ProgramFiles programFiles, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher,
+                      ResponseCache.Entry cachedResponse, List<InputFile> duplicates) throws IOException {
+    var duplicateFiles = programFiles.duplicateFiles;
+    EslintBridgeServer.JsAnalysisRequest request = new EslintBridgeServer.JsAnalysisRequest(file.absolutePath(),
+      file.type().toString(), null, contextUtils.ignoreHeaderComments(), null, programFiles.program.programId,
+      duplicateFiles.linterIdFor(file, analysisMode.getLinterIdFor(file)));
+    // failures are logged where they happen, as the dispatcher may process the response of another file
+    dispatcher.submit(() -> eslintBridgeServer.analyzeWithProgramAsync(request).whenComplete((response, e) -> {
+      if (e != null) {
+        LOG.error("Failed to get response while analyzing " + file, e instanceof CompletionException ? e.getCause() : e);
+      }
+    }), analyzed -> {
+      var response = duplicateFiles.completed(file, analyzed);
+      if (response == null) {
+        submit(file, programFiles, cacheStrategy, dispatcher, cachedResponse, duplicates);
+        return;
+      }
       processAnalysis.processResponse(context, checks, file, response);
       cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
-    } catch (IOException e) {
-      LOG.error("Failed to get response while analyzing " + file, e);
-      throw e;
+      cachedResponse.save(response);
+      processDuplicates(duplicates, programFiles.tsConfig, response);
+    });
+  }
+
+  private void processDuplicates(List<InputFile> duplicates, String tsConfig, EslintBridgeServer.AnalysisResponse response) throws IOException {
+    for (InputFile duplicate : duplicates) {
+      var cacheStrategy = CacheStrategies.getStrategyFor(context, duplicate, monitoring);
+      if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, duplicate)) {
+        LOG.debug("Reusing the analysis of an identical file for: {}", duplicate.uri());
+        processAnalysis.processDuplicate(context, checks, duplicate, response);
+        cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
+        responseCache.forFile(duplicate, List.of(tsConfig)).save(response);
+      }
+    }
+  }
+
+  private class ProgramFiles {
+    final TsProgram program;
+    final String tsConfig;
+    final List<InputFile> files;
+    final DuplicateFiles duplicateFiles;
+    int next;
+
+    ProgramFiles(TsProgram program, String tsConfig, List<InputFile> files) {
+      this.program = program;
+      this.tsConfig = tsConfig;
+      this.files = files;
+      duplicateFiles = DuplicateFiles.of(files, checks.eslintRules());
     }
   }
 
@@ -27,5 +27,15 @@ interface Bundle extends BundlePathResolver {
 
   void deploy(Path deployLocation) throws IOException;
 
+  /**
+   * Uses the bundle already deployed at the given location, see {@link BundleCache}
+   */
+  void setDeployLocation(Path deployLocation);
+
   String startServerScript();
+
+  /**
+   * Hash of the bundle content, which identifies the eslint-bridge a daemon was started from
+   */
+  String hash() throws IOException;
 }
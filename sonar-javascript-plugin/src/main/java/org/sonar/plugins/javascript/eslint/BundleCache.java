@@ -0,0 +1,196 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+
+/**
+ * Persistent cache of the deployed eslint-bridge bundle, reused by the following analyses instead of extracting the bundle again.
+ * <p>
+ * The bundle is extracted in a directory named after the hash of its content, and each rules bundle in a directory of its
+ * {@code package} directory named after its own hash, where it resolves the dependencies of eslint-bridge. These directories are
+ * never modified once created: a bundle is extracted in a temporary directory which is then atomically renamed, so concurrent
+ * analyses can share the cache. When the cache is cold, the bundles are extracted in parallel. The cache also holds the versions
+ * of the Node.js executables, see {@link org.sonarsource.nodejs.NodeCommandBuilder#nodeVersionCache(Path)}.
+ * <p>
+ * Bundles which were not used for a month are deleted, as well as temporary directories left by interrupted analyses.
+ */
+class BundleCache {
+
+  private static final Logger LOG = Loggers.get(BundleCache.class);
+  private static final Profiler PROFILER = Profiler.createIfDebug(LOG);
+
+  // internal property to enable the cache, which is always used by daemons, see EslintBridgeDaemon
+  static final String DEPLOY_CACHE_PROPERTY = "sonar.javascript.bridge.deployCache";
+  private static final String RULES_BUNDLE_PREFIX = "custom-rules-";
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final String NODE_VERSIONS_FILE_NAME = "node-versions.properties";
+  private static final Duration RETENTION = Duration.ofDays(30);
+
+  private final Path root;
+
+  BundleCache(Path root) {
+    this.root = root;
+  }
+
+  static BundleCache of(Configuration config) {
+    return new BundleCache(BundleUtils.sonarUserHome(config).resolve("js").resolve("eslint-bridge-cache"));
+  }
+
+  Path nodeVersionsFile() {
+    return root.resolve(NODE_VERSIONS_FILE_NAME);
+  }
+
+  /**
+   * Deploys the bundle and the rules bundles, only extracting those which are not cached yet
+   *
+   * @return the deployed rules bundles
+   */
+  List<Path> deploy(Bundle bundle, RulesBundles rulesBundles) throws IOException {
+    Files.createDirectories(root);
+    var hash = bundle.hash();
+    var location = root.resolve(hash);
+    var packageDir = location.resolve("package");
+    Map<Path, URL> rulesBundleLocations = new LinkedHashMap<>();
+    for (URL url : rulesBundles.bundles()) {
+      rulesBundleLocations.put(packageDir.resolve(RULES_BUNDLE_PREFIX + BundleUtils.sha256(url.openStream())), url);
+    }
+
+    PROFILER.startDebug("Deploying bundles");
+    ExecutorService executor = Executors.newFixedThreadPool(rulesBundleLocations.size() + 1);
+    try {
+      Future<Path> extractedBundle = extract(executor, location, hash, bundle::deploy);
+      List<Future<Path>> extractedRulesBundles = new ArrayList<>();
+      for (Map.Entry<Path, URL> rulesBundle : rulesBundleLocations.entrySet()) {
+        var url = rulesBundle.getValue();
+        extractedRulesBundles.add(extract(executor, rulesBundle.getKey(), rulesBundle.getKey().getFileName().toString(),
+          target -> BundleUtils.extractFromClasspath(url.openStream(), target)));
+      }
+
+      // rules bundles are moved in the package directory of the bundle, so once it is in place
+      commit(extractedBundle, location);
+      bundle.setDeployLocation(location);
+      List<Path> deployed = new ArrayList<>();
+      int i = 0;
+      for (Path rulesBundleLocation : rulesBundleLocations.keySet()) {
+        commit(extractedRulesBundles.get(i++), rulesBundleLocation);
+        Path deployedBundle = rulesBundleLocation.resolve("package");
+        if (!Files.exists(deployedBundle)) {
+          // see RulesBundles#deploy
+          throw new IllegalStateException("Failed to deploy bundle " + rulesBundleLocations.get(rulesBundleLocation) + ". Didn't find 'package' dir.");
+        }
+        deployed.add(deployedBundle.toAbsolutePath());
+      }
+      return deployed;
+    } finally {
+      executor.shutdownNow();
+      PROFILER.stopDebug();
+      purge(location);
+    }
+  }
+
+  /**
+   * @return a future of the temporary directory where the bundle is extracted, or null when it is already cached
+   */
+  @Nullable
+  private Future<Path> extract(ExecutorService executor, Path location, String name, Extractor extractor) {
+    if (Files.isDirectory(location)) {
+      LOG.debug("Using cached bundle {}", location);
+      return null;
+    }
+    return executor.submit(() -> {
+      var tmp = Files.createTempDirectory(root, name + TMP_SUFFIX);
+      extractor.extract(tmp);
+      return tmp;
+    });
+  }
+
+  private static void commit(@Nullable Future<Path> extracted, Path location) throws IOException {
+    if (extracted == null) {
+      Files.setLastModifiedTime(location, FileTime.from(Instant.now()));
+      return;
+    }
+    Path tmp;
+    try {
+      tmp = extracted.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Deploying bundle was interrupted", e);
+    } catch (ExecutionException e) {
+      var cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+    try {
+      Files.move(tmp, location, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      if (!Files.isDirectory(location)) {
+        throw e;
+      }
+      // deployed by a concurrent analysis
+      BundleUtils.deleteRecursively(tmp);
+    }
+  }
+
+  /**
+   * Deletes the bundles and temporary directories which were not used for a month
+   */
+  private void purge(Path current) {
+    var limit = Instant.now().minus(RETENTION);
+    try (Stream<Path> entries = Files.list(root)) {
+      for (Path entry : entries.filter(Files::isDirectory).collect(Collectors.toList())) {
+        if (!entry.equals(current) && Files.getLastModifiedTime(entry).toInstant().isBefore(limit)) {
+          LOG.debug("Deleting unused bundle {}", entry);
+          BundleUtils.deleteRecursively(entry);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to purge bundle cache " + root, e);
+    }
+  }
+
+  interface Extractor {
+    void extract(Path location) throws IOException;
+  }
+}
@@ -42,6 +42,7 @@ public class BundleImpl implements Bundle {
   private static final String DEFAULT_STARTUP_SCRIPT = "package/bin/server";
   private Path deployLocation;
   private final String bundleLocation;
+  private String hash;
 
   public BundleImpl() {
     this(BUNDLE_LOCATION);
@@ -55,13 +56,30 @@ public class BundleImpl implements Bundle {
   public void deploy(Path deployLocation) throws IOException {
     PROFILER.startDebug("Deploying bundle");
     LOG.debug("Deploying eslint-bridge into {}", deployLocation);
+    BundleUtils.extractFromClasspath(openBundle(), deployLocation);
+    this.deployLocation = deployLocation;
+    PROFILER.stopDebug();
+  }
+
+  @Override
+  public synchronized String hash() throws IOException {
+    if (hash == null) {
+      hash = BundleUtils.sha256(openBundle());
+    }
+    return hash;
+  }
+
+  @Override
+  public void setDeployLocation(Path deployLocation) {
+    this.deployLocation = deployLocation;
+  }
+
+  private InputStream openBundle() {
     InputStream bundle = getClass().getResourceAsStream(bundleLocation);
     if (bundle == null) {
       throw new IllegalStateException("eslint-bridge not found in plugin jar");
     }
-    BundleUtils.extractFromClasspath(bundle, deployLocation);
-    this.deployLocation = deployLocation;
-    PROFILER.stopDebug();
+    return bundle;
   }
 
   @Override
@@ -25,12 +25,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.utils.IOUtils;
+import org.sonar.api.config.Configuration;
 
 class BundleUtils {
 
@@ -61,6 +67,38 @@ class BundleUtils {
     }
   }
 
+  /**
+   * Hash of the content of the stream, which is closed
+   */
+  static String sha256(InputStream resource) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+    try (InputStream stream = new DigestInputStream(resource, digest)) {
+      stream.transferTo(OutputStream.nullOutputStream());
+    }
+    var hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  static Path sonarUserHome(Configuration config) {
+    return config.get("sonar.userHome").map(Path::of).orElseGet(() -> Path.of(System.getProperty("user.home"), ".sonar"));
+  }
+
+  static void deleteRecursively(Path path) throws IOException {
+    try (Stream<Path> paths = Files.walk(path)) {
+      for (Path file : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
   private static Path entryPath(Path targetPath, ArchiveEntry entry) {
     Path entryPath = targetPath.resolve(entry.getName()).normalize();
     if (!entryPath.startsWith(targetPath)) {
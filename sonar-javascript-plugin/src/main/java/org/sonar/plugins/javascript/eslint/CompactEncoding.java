@@ -0,0 +1,206 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.JsonSyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.CpdTokens;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.HighlightedSymbols;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Highlights;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Locations;
+
+import static org.sonar.plugins.javascript.eslint.EslintBridgeServer.Locations.INTS_PER_LOCATION;
+
+/**
+ * Decodes the compact encoding of analysis responses, see eslint-bridge/src/services/analysis/encoding.ts.
+ * <p>
+ * Lists of locations, and the line numbers of metrics, are sent as base64 strings of variable-length integers, signed ones
+ * being zigzag-encoded. A location is relative to the start of the previous one, its end relative to its start when on the
+ * same line. Text types and CPD token images are sent once in a dictionary and referenced by their index.
+ */
+final class CompactEncoding {
+
+  // requested with each analysis request, eslint-bridge versions not supporting it send JSON arrays
+  static final String COMPACT = "compact";
+  private static final int VERSION = 1;
+
+  private CompactEncoding() {
+  }
+
+  static Highlights highlights(String encoded) {
+    var reader = new Reader(encoded);
+    int size = reader.size();
+    String[] dictionary = reader.dictionary();
+    var textTypes = new TypeOfText[size];
+    for (int i = 0; i < size; i++) {
+      textTypes[i] = textType(reader.entry(dictionary));
+    }
+    var locations = reader.locations(size);
+    reader.checkEnd();
+    return new Highlights(locations, textTypes);
+  }
+
+  static HighlightedSymbols highlightedSymbols(String encoded) {
+    var reader = new Reader(encoded);
+    int size = reader.size();
+    var declarations = reader.locations(size);
+    int[] referenceStarts = new int[size + 1];
+    for (int i = 0; i < size; i++) {
+      referenceStarts[i + 1] = referenceStarts[i] + reader.size();
+    }
+    var references = reader.locations(referenceStarts[size]);
+    reader.checkEnd();
+    return new HighlightedSymbols(declarations, referenceStarts, references);
+  }
+
+  static CpdTokens cpdTokens(String encoded) {
+    var reader = new Reader(encoded);
+    int size = reader.size();
+    String[] dictionary = reader.dictionary();
+    var images = new String[size];
+    for (int i = 0; i < size; i++) {
+      images[i] = reader.entry(dictionary);
+    }
+    var locations = reader.locations(size);
+    reader.checkEnd();
+    return new CpdTokens(locations, images);
+  }
+
+  static int[] lines(String encoded) {
+    var reader = new Reader(encoded);
+    int[] lines = new int[reader.size()];
+    int previous = 0;
+    for (int i = 0; i < lines.length; i++) {
+      previous += reader.nextInt();
+      lines[i] = previous;
+    }
+    reader.checkEnd();
+    return lines;
+  }
+
+  private static TypeOfText textType(String name) {
+    try {
+      return TypeOfText.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      throw new JsonSyntaxException("Unknown text type " + name, e);
+    }
+  }
+
+  private static class Reader {
+    private final byte[] bytes;
+    private int position;
+
+    Reader(String encoded) {
+      try {
+        this.bytes = Base64.getDecoder().decode(encoded);
+      } catch (IllegalArgumentException e) {
+        throw new JsonSyntaxException("Invalid compact encoding", e);
+      }
+      int version = nextUnsignedInt();
+      if (version != VERSION) {
+        throw new JsonSyntaxException("Unsupported compact encoding version " + version);
+      }
+    }
+
+    int nextUnsignedInt() {
+      int value = 0;
+      for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+        if (position == bytes.length) {
+          throw new JsonSyntaxException("Truncated compact encoding");
+        }
+        byte b = bytes[position++];
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new JsonSyntaxException("Invalid variable-length integer in compact encoding");
+    }
+
+    int nextInt() {
+      int zigzag = nextUnsignedInt();
+      return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * A number of elements, which can't exceed the number of remaining bytes as each element takes at least one byte
+     */
+    int size() {
+      int size = nextUnsignedInt();
+      if (size < 0 || size > bytes.length - position) {
+        throw new JsonSyntaxException("Invalid size " + size + " in compact encoding");
+      }
+      return size;
+    }
+
+    String[] dictionary() {
+      var dictionary = new String[size()];
+      for (int i = 0; i < dictionary.length; i++) {
+        int length = nextUnsignedInt();
+        if (length < 0 || length > bytes.length - position) {
+          throw new JsonSyntaxException("Truncated compact encoding");
+        }
+        dictionary[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+      }
+      return dictionary;
+    }
+
+    String entry(String[] dictionary) {
+      int index = nextUnsignedInt();
+      if (index < 0 || index >= dictionary.length) {
+        throw new JsonSyntaxException("Invalid dictionary index " + index + " in compact encoding");
+      }
+      return dictionary[index];
+    }
+
+    Locations locations(int size) {
+      // each value takes at least one byte
+      if ((long) size * INTS_PER_LOCATION > bytes.length - position) {
+        throw new JsonSyntaxException("Truncated compact encoding");
+      }
+      int[] values = new int[size * INTS_PER_LOCATION];
+      int previousLine = 0;
+      int previousCol = 0;
+      for (int i = 0; i < size; i++) {
+        int startLine = previousLine + nextInt();
+        int startCol = startLine == previousLine ? previousCol + nextInt() : nextInt();
+        int endLine = startLine + nextInt();
+        int endCol = endLine == startLine ? startCol + nextInt() : nextInt();
+        int offset = i * INTS_PER_LOCATION;
+        values[offset] = startLine;
+        values[offset + 1] = startCol;
+        values[offset + 2] = endLine;
+        values[offset + 3] = endCol;
+        previousLine = startLine;
+        previousCol = startCol;
+      }
+      return new Locations(values, size);
+    }
+
+    void checkEnd() {
+      if (position != bytes.length) {
+        throw new JsonSyntaxException("Unexpected data at the end of compact encoding");
+      }
+    }
+  }
+}
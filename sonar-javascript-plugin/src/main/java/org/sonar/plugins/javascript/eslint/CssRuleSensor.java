@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -45,6 +46,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.javascript.CancellationException;
 import org.sonar.plugins.javascript.css.CssLanguage;
 import org.sonar.plugins.javascript.css.CssRules;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
 import org.sonar.plugins.javascript.utils.ProgressReport;
 
 public class CssRuleSensor extends AbstractEslintSensor {
@@ -97,16 +99,21 @@ public class CssRuleSensor extends AbstractEslintSensor {
 
     try {
       progressReport.start(inputFiles.size(), inputFiles.iterator().next().absolutePath());
-      for (InputFile inputFile : inputFiles) {
-        if (context.isCancelled()) {
-          throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+      try (var dispatcher = new AnalysisDispatcher(eslintBridgeServer.startWorkers(inputFiles.size()))) {
+        for (InputFile inputFile : inputFiles) {
+          if (context.isCancelled()) {
+            throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+          }
+          if (!eslintBridgeServer.isAlive()) {
+            throw new IllegalStateException("eslint-bridge server is not answering");
+          }
+
+          if (!FileQuarantine.isQuarantined(context, Analyzer.STYLELINT, inputFile)) {
+            analyzeFile(inputFile, context, rules, dispatcher);
+          }
+          progressReport.nextFile(inputFile.absolutePath());
         }
-        if (!eslintBridgeServer.isAlive()) {
-          throw new IllegalStateException("eslint-bridge server is not answering");
-        }
-
-        analyzeFile(inputFile, context, rules);
-        progressReport.nextFile(inputFile.absolutePath());
+        dispatcher.finish();
       }
       success = true;
 
@@ -119,7 +126,8 @@ public class CssRuleSensor extends AbstractEslintSensor {
     }
   }
 
-  void analyzeFile(InputFile inputFile, SensorContext context, List<StylelintRule> rules) {
+  void analyzeFile(InputFile inputFile, SensorContext context, List<StylelintRule> rules, AnalysisDispatcher dispatcher) throws IOException {
+    EslintBridgeServer.CssAnalysisRequest request;
     try {
       URI uri = inputFile.uri();
       if (!"file".equalsIgnoreCase(uri.getScheme())) {
@@ -128,13 +136,35 @@ public class CssRuleSensor extends AbstractEslintSensor {
       }
       LOG.debug("Analyzing file: {}", uri);
       String fileContent = contextUtils.shouldSendFileContent(inputFile) ? inputFile.contents() : null;
-      EslintBridgeServer.CssAnalysisRequest request = new EslintBridgeServer.CssAnalysisRequest(new File(uri).getAbsolutePath(), fileContent, rules);
-      EslintBridgeServer.AnalysisResponse analysisResponse = eslintBridgeServer.analyzeCss(request);
-      LOG.debug("Found {} issue(s)", analysisResponse.issues.size());
-      saveIssues(context, inputFile, analysisResponse.issues);
+      request = new EslintBridgeServer.CssAnalysisRequest(new File(uri).getAbsolutePath(), fileContent, rules);
     } catch (IOException | RuntimeException e) {
-      throw new IllegalStateException("Failure during analysis of " + inputFile.uri(), e);
+      throw failure(inputFile, e);
     }
+    // failures are wrapped where they happen, as the dispatcher may process the response of another file
+    dispatcher.submit(() -> eslintBridgeServer.analyzeCssAsync(request).exceptionally(e -> {
+      throw failure(inputFile, e instanceof CompletionException ? e.getCause() : e);
+    }), analysisResponse -> {
+      try {
+        if (analysisResponse.parsingError != null && analysisResponse.parsingError.code == EslintBridgeServer.ParsingErrorCode.TIMEOUT) {
+          FileQuarantine.skipped(context, analysisWarnings, Analyzer.STYLELINT, inputFile, analysisResponse.parsingError.message);
+          return;
+        }
+        if (analysisResponse.parsingError != null) {
+          // e.g. the Node.js process crashed while analyzing the file
+          LOG.error("Failed to analyze file [{}]: {}", inputFile, analysisResponse.parsingError.message);
+          context.newAnalysisError().onFile(inputFile).message(analysisResponse.parsingError.message).save();
+          return;
+        }
+        LOG.debug("Found {} issue(s)", analysisResponse.issues.size());
+        saveIssues(context, inputFile, analysisResponse.issues);
+      } catch (RuntimeException e) {
+        throw failure(inputFile, e);
+      }
+    });
+  }
+
+  private static IllegalStateException failure(InputFile inputFile, Throwable e) {
+    return new IllegalStateException("Failure during analysis of " + inputFile.uri(), e);
   }
 
   private void saveIssues(SensorContext context, InputFile inputFile, List<EslintBridgeServer.Issue> issues) {
@@ -0,0 +1,191 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Issue;
+import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
+
+/**
+ * Files of a sensor with the same content, extension, type and language, e.g. vendored libraries copied in several folders.
+ * Only the first file of each group that needs to be analyzed is sent to eslint-bridge with all the active rules.
+ * <p>
+ * When no active rule is {@link EslintRule#contextDependent}, the following files of the group get the same response, which
+ * is processed for them. Otherwise, they are sent to eslint-bridge with the context-dependent rules only, see
+ * {@link AnalysisMode#CONTEXT_DEPENDENT_LINTER_ID}, and the issues of the other rules are taken from the first file.
+ */
+final class DuplicateFiles {
+
+  private static final Logger LOG = Loggers.get(DuplicateFiles.class);
+
+  private final Map<InputFile, List<InputFile>> groups;
+  // groups are keyed by identity rather than by content
+  private final Map<List<InputFile>, InputFile> representatives = new IdentityHashMap<>();
+  // eslint keys of the rules whose issues are not reused, empty when the whole response is
+  private final Set<String> contextDependentRules;
+  // issues of the context-independent rules found in the first file of each group
+  private final Map<List<InputFile>, List<Issue>> reusedIssues = new IdentityHashMap<>();
+  // following files analyzed again with all the rules, as the analysis of the first file of their group failed
+  private final Set<InputFile> reanalyzed = new HashSet<>();
+
+  private DuplicateFiles(Map<InputFile, List<InputFile>> groups, Set<String> contextDependentRules) {
+    this.groups = groups;
+    this.contextDependentRules = contextDependentRules;
+  }
+
+  static DuplicateFiles none() {
+    return new DuplicateFiles(Map.of(), Set.of());
+  }
+
+  static DuplicateFiles of(List<InputFile> files, List<EslintRule> rules) {
+    if (files.size() < 2 || EslintRule.containsRuleWithKey(rules, EslintRule.UCFG_ESLINT_KEY)
+      || rules.stream().allMatch(rule -> rule.contextDependent)) {
+      return none();
+    }
+    var contextDependentRules = AnalysisMode.getContextDependentRules(rules).stream()
+      .map(rule -> rule.key)
+      .collect(Collectors.toSet());
+    var filesByKey = new HashMap<String, List<InputFile>>();
+    for (InputFile file : files) {
+      var key = key(file);
+      if (key != null) {
+        filesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+      }
+    }
+    var groups = new HashMap<InputFile, List<InputFile>>();
+    var duplicates = 0;
+    for (List<InputFile> group : filesByKey.values()) {
+      if (group.size() > 1) {
+        group.forEach(file -> groups.put(file, group));
+        duplicates += group.size() - 1;
+      }
+    }
+    if (duplicates > 0 && contextDependentRules.isEmpty()) {
+      LOG.debug("{} file(s) are identical to another file and will reuse its analysis", duplicates);
+    } else if (duplicates > 0) {
+      LOG.debug("{} file(s) are identical to another file and will reuse the issues of its context-independent rules", duplicates);
+    }
+    return new DuplicateFiles(groups, contextDependentRules);
+  }
+
+  @Nullable
+  private static String key(InputFile file) {
+    var contentHash = CacheStrategies.contentHash(file);
+    if (contentHash == null) {
+      LOG.debug("Unknown content of file {}, it is analyzed on its own", file);
+      return null;
+    }
+    var filename = file.filename();
+    var extension = filename.substring(filename.lastIndexOf('.') + 1);
+    return String.join(":", contentHash, extension, file.type().name(), String.valueOf(file.language()));
+  }
+
+  /**
+   * @return whether the file is analyzed through another file of its group, and therefore not sent to eslint-bridge
+   */
+  boolean isRepresented(InputFile file) {
+    return contextDependentRules.isEmpty() && isCopy(file);
+  }
+
+  private boolean isCopy(InputFile file) {
+    var representative = representatives.get(groups.get(file));
+    return representative != null && !representative.equals(file);
+  }
+
+  /**
+   * Makes the file the one sent to eslint-bridge with all the rules for its group, unless the group already has one.
+   *
+   * @return the files of the group which follow it, whose analysis is the one of the file, empty when they are sent to
+   * eslint-bridge with the context-dependent rules
+   */
+  List<InputFile> representedBy(InputFile file) {
+    var group = groups.get(file);
+    if (group == null || representatives.putIfAbsent(group, file) != null || !contextDependentRules.isEmpty()) {
+      return List.of();
+    }
+    return List.copyOf(group.subList(group.indexOf(file) + 1, group.size()));
+  }
+
+  /**
+   * @return the linter of the context-dependent rules for a file following the one analyzed for its group, the given one
+   * otherwise
+   */
+  String linterIdFor(InputFile file, String linterId) {
+    var onlyContextDependent = !contextDependentRules.isEmpty() && isCopy(file) && !reanalyzed.contains(file);
+    return onlyContextDependent ? AnalysisMode.CONTEXT_DEPENDENT_LINTER_ID : linterId;
+  }
+
+  /**
+   * Keeps the issues of the context-independent rules from the response of the file analyzed for its group, and adds them to
+   * the response of the following files, which only have the issues of the context-dependent rules. The response of the
+   * first file is processed before the ones of the following files, as responses are processed in submission order, see
+   * {@link AnalysisDispatcher}.
+   *
+   * @return the complete response of the file, null when the analysis of the first file failed, e.g. timed out, the file
+   * must then be submitted again, {@link #linterIdFor} giving it all the rules
+   */
+  @Nullable
+  AnalysisResponse completed(InputFile file, AnalysisResponse response) {
+    if (!isCopy(file) || reanalyzed.contains(file)) {
+      replayed(file, response);
+      return response;
+    }
+    if (contextDependentRules.isEmpty() || response.parsingError != null) {
+      return response;
+    }
+    var issues = reusedIssues.get(groups.get(file));
+    if (issues == null) {
+      LOG.debug("No analysis of an identical file to reuse for: {}, it is analyzed with all the rules", file.uri());
+      reanalyzed.add(file);
+      return null;
+    }
+    LOG.debug("Reusing the issues of an identical file for: {}", file.uri());
+    var completed = new ArrayList<>(response.issues);
+    completed.addAll(issues);
+    response.issues = completed;
+    return response;
+  }
+
+  /**
+   * Keeps the issues of the context-independent rules from the response of the file analyzed for its group, when it is
+   * replayed from the cache, as it is then already complete
+   */
+  void replayed(InputFile file, AnalysisResponse response) {
+    var group = groups.get(file);
+    if (contextDependentRules.isEmpty() || group == null || response.parsingError != null || isCopy(file)) {
+      return;
+    }
+    reusedIssues.put(group, response.issues.stream()
+      .filter(issue -> !contextDependentRules.contains(issue.ruleId))
+      .collect(Collectors.toList()));
+  }
+}
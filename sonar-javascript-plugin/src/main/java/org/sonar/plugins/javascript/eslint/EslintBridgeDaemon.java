@@ -0,0 +1,218 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * A lease on an eslint-bridge daemon, i.e. a Node.js process which outlives the analysis that started it, so that the following
+ * analyses on the same machine reuse it warm. The daemon shuts down once no request was received for the idle timeout.
+ * <p>
+ * Daemons are kept in the user home, in a directory per compatibility key: the plugin version, the hash of the eslint-bridge
+ * bundle and the settings of the Node.js process. A daemon only serves one analysis at once, so the directory has several
+ * slots, and an analysis, or each process of the pool, locks a slot for its whole duration. A slot holds the log of the daemon,
+ * and its handshake file which tells the compatibility key, the process id and the port of the daemon. Daemons run the bundle
+ * deployed in the {@link BundleCache}.
+ */
+class EslintBridgeDaemon implements AutoCloseable {
+
+  private static final Logger LOG = Loggers.get(EslintBridgeDaemon.class);
+
+  // internal property to reuse eslint-bridge across analyses
+  static final String DAEMON_PROPERTY = "sonar.javascript.bridge.daemon";
+  // internal property to set the time in minutes after which an unused daemon shuts down
+  static final String IDLE_TIMEOUT_PROPERTY = "sonar.javascript.bridge.daemon.idleTimeout";
+  private static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 30;
+  static final int MAX_SLOTS = 8;
+  private static final String LOCK_FILE_NAME = "daemon.lock";
+  private static final String HANDSHAKE_FILE_NAME = "daemon.json";
+  private static final Gson GSON = new Gson();
+
+  private final Path slot;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+  private final Handshake expected;
+
+  private EslintBridgeDaemon(Path slot, FileChannel lockChannel, FileLock lock, Handshake expected) {
+    this.slot = slot;
+    this.lockChannel = lockChannel;
+    this.lock = lock;
+    this.expected = expected;
+  }
+
+  static Path home(Configuration config) {
+    return BundleUtils.sonarUserHome(config).resolve("js").resolve("eslint-bridge-daemon");
+  }
+
+  static long idleTimeoutMillis(Configuration config) {
+    return config.getInt(IDLE_TIMEOUT_PROPERTY).orElse(DEFAULT_IDLE_TIMEOUT_MINUTES) * 60_000L;
+  }
+
+  /**
+   * Locks the first free slot for the given compatibility key
+   *
+   * @return null when all the slots are used by running analyses
+   */
+  @Nullable
+  static EslintBridgeDaemon acquire(Path home, Handshake expected) throws IOException {
+    var directory = home.resolve(expected.key());
+    for (int i = 0; i < MAX_SLOTS; i++) {
+      var slot = Files.createDirectories(directory.resolve(String.valueOf(i)));
+      var channel = FileChannel.open(slot.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = null;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // locked by another process of the pool
+      }
+      if (lock != null) {
+        LOG.debug("Using eslint-bridge daemon slot {}", slot);
+        return new EslintBridgeDaemon(slot, channel, lock, expected);
+      }
+      channel.close();
+    }
+    return null;
+  }
+
+  Path handshakeFile() {
+    return slot.resolve(HANDSHAKE_FILE_NAME);
+  }
+
+  /**
+   * @return the handshake of the daemon last started in this slot, when it is compatible with this analysis
+   */
+  @Nullable
+  Handshake running() {
+    var file = handshakeFile();
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      var handshake = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), Handshake.class);
+      return expected.isCompatible(handshake) ? handshake : null;
+    } catch (IOException | JsonParseException e) {
+      LOG.debug("Failed to read eslint-bridge daemon handshake " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return the process id and the port written by the daemon launched in this slot once it listens, or null while it doesn't
+   */
+  @Nullable
+  Handshake started() {
+    var file = handshakeFile();
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      var started = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), Handshake.class);
+      return started != null && started.port > 0 ? started : null;
+    } catch (IOException | JsonParseException e) {
+      // the file is being written
+      return null;
+    }
+  }
+
+  /**
+   * Completes the handshake file written by the daemon once started, which only has its process id and port
+   */
+  Handshake register(int nodeVersion) throws IOException {
+    var file = handshakeFile();
+    Handshake started;
+    try {
+      started = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), Handshake.class);
+    } catch (JsonParseException e) {
+      throw new IOException("Invalid eslint-bridge daemon handshake " + file, e);
+    }
+    var handshake = new Handshake(expected.pluginVersion, expected.bundleHash, expected.settings);
+    handshake.pid = started.pid;
+    handshake.port = started.port;
+    handshake.nodeVersion = nodeVersion;
+    var tmp = slot.resolve(HANDSHAKE_FILE_NAME + ".tmp");
+    Files.writeString(tmp, GSON.toJson(handshake), StandardCharsets.UTF_8);
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return handshake;
+  }
+
+  /**
+   * Stops a daemon which doesn't respond anymore. The process is only destroyed when its command line shows it runs the given
+   * script, as its process id could have been reused.
+   */
+  void stop(Handshake handshake, String script) {
+    ProcessHandle.of(handshake.pid)
+      .filter(process -> process.info().commandLine().map(commandLine -> commandLine.contains(script)).orElse(false))
+      .ifPresent(process -> {
+        LOG.debug("Stopping unresponsive eslint-bridge daemon process {}", handshake.pid);
+        process.destroy();
+      });
+  }
+
+  @Override
+  public void close() {
+    try {
+      lock.release();
+      lockChannel.close();
+    } catch (IOException e) {
+      LOG.debug("Failed to release eslint-bridge daemon slot " + slot, e);
+    }
+  }
+
+  static class Handshake {
+    final String pluginVersion;
+    final String bundleHash;
+    final String settings;
+    long pid;
+    int port;
+    int nodeVersion;
+
+    Handshake(String pluginVersion, String bundleHash, String settings) {
+      this.pluginVersion = pluginVersion;
+      this.bundleHash = bundleHash;
+      this.settings = settings;
+    }
+
+    String key() {
+      return UUID.nameUUIDFromBytes((pluginVersion + "\n" + bundleHash + "\n" + settings).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    boolean isCompatible(@Nullable Handshake other) {
+      return other != null
+        && pluginVersion.equals(other.pluginVersion)
+        && bundleHash.equals(other.bundleHash)
+        && settings.equals(other.settings);
+    }
+  }
+}
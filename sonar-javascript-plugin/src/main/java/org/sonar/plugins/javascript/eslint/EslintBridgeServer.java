@@ -19,13 +19,18 @@
  */
 package org.sonar.plugins.javascript.eslint;
 
+import com.google.gson.annotations.JsonAdapter;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.sonar.api.Startable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.scanner.ScannerSide;
 import org.sonarsource.api.sonarlint.SonarLintSide;
 
@@ -39,6 +44,13 @@ public interface EslintBridgeServer extends Startable {
 
   void initLinter(List<EslintRule> rules, List<String> environments, List<String> globals, AnalysisMode analysisMode) throws IOException;
 
+  /**
+   * Makes sure enough Node.js processes are running to analyze the given number of files, must be called after {@link #initLinter}
+   *
+   * @return the number of files which can be analyzed concurrently
+   */
+  int startWorkers(int filesToAnalyze) throws IOException;
+
   AnalysisResponse analyzeJavaScript(JsAnalysisRequest request) throws IOException;
 
   AnalysisResponse analyzeTypeScript(JsAnalysisRequest request) throws IOException;
@@ -49,10 +61,29 @@ public interface EslintBridgeServer extends Startable {
 
   AnalysisResponse analyzeYaml(JsAnalysisRequest request) throws IOException;
 
+  /**
+   * Sends the request without waiting for the response, the returned future completes on a thread of the HTTP client
+   */
+  CompletableFuture<AnalysisResponse> analyzeCssAsync(CssAnalysisRequest request);
+
+  /**
+   * Like {@link #analyzeCssAsync}, for a file of a program created with {@link #createProgram}
+   */
+  CompletableFuture<AnalysisResponse> analyzeWithProgramAsync(JsAnalysisRequest request);
+
+  /**
+   * Analyzes several files with a single request, responses are passed to the consumer in the order of the requests as soon as they are received.
+   * The returned future completes once all the responses were received.
+   */
+  CompletableFuture<Void> analyzeBatchAsync(BatchKind kind, List<JsAnalysisRequest> requests, Consumer<AnalysisResponse> consumer);
+
   void clean();
 
   String getCommandInfo();
 
+  /**
+   * Cheap enough to be checked before each file, no request is sent to the server
+   */
   boolean isAlive();
 
   boolean newTsConfig();
@@ -71,6 +102,7 @@ public interface EslintBridgeServer extends Startable {
     final List<String> tsConfigs;
     final String programId;
     final String linterId;
+    final String encoding = CompactEncoding.COMPACT;
 
     JsAnalysisRequest(String filePath, String fileType, @Nullable String fileContent, boolean ignoreHeaderComments, @Nullable List<String> tsConfigs, @Nullable String programId,
       String linterId) {
@@ -84,6 +116,18 @@ public interface EslintBridgeServer extends Startable {
     }
   }
 
+  enum BatchKind {
+    JAVASCRIPT("js"),
+    TYPESCRIPT("ts"),
+    YAML("yaml");
+
+    final String key;
+
+    BatchKind(String key) {
+      this.key = key;
+    }
+  }
+
   class CssAnalysisRequest {
     final String filePath;
     final String fileContent;
@@ -99,10 +143,10 @@ public interface EslintBridgeServer extends Startable {
   class AnalysisResponse {
     ParsingError parsingError;
     List<Issue> issues = List.of();
-    Highlight[] highlights = {};
-    HighlightedSymbol[] highlightedSymbols = {};
+    Highlights highlights = new Highlights();
+    HighlightedSymbols highlightedSymbols = new HighlightedSymbols();
     Metrics metrics = new Metrics();
-    CpdToken[] cpdTokens = {};
+    CpdTokens cpdTokens = new CpdTokens();
     Perf perf;
     List<String> ucfgPaths = List.of();
   }
@@ -118,7 +162,9 @@ public interface EslintBridgeServer extends Startable {
     MISSING_TYPESCRIPT,
     UNSUPPORTED_TYPESCRIPT,
     FAILING_TYPESCRIPT,
-    GENERAL_ERROR
+    GENERAL_ERROR,
+    // not sent by eslint-bridge, the analysis of the file exceeded its deadline, see EslintBridgeServerImpl#FILE_TIMEOUT_PROPERTY
+    TIMEOUT
   }
 
   class Issue {
@@ -151,31 +197,101 @@ public interface EslintBridgeServer extends Startable {
     String message;
   }
 
-  class Highlight {
-    Location location;
-    String textType;
+  /**
+   * Text ranges stored as consecutive (startLine, startCol, endLine, endCol) values, which avoids one object per location
+   * for files with many tokens.
+   */
+  class Locations {
+    static final int INTS_PER_LOCATION = 4;
+
+    final int[] values;
+    final int size;
+
+    Locations() {
+      this(new int[0], 0);
+    }
+
+    Locations(int[] values, int size) {
+      this.values = values;
+      this.size = size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int startLine(int index) {
+      return values[index * INTS_PER_LOCATION];
+    }
+
+    int startCol(int index) {
+      return values[index * INTS_PER_LOCATION + 1];
+    }
+
+    int endLine(int index) {
+      return values[index * INTS_PER_LOCATION + 2];
+    }
+
+    int endCol(int index) {
+      return values[index * INTS_PER_LOCATION + 3];
+    }
+
+    TextRange toTextRange(InputFile inputFile, int index) {
+      return inputFile.newRange(startLine(index), startCol(index), endLine(index), endCol(index));
+    }
   }
 
-  class HighlightedSymbol {
-    Location declaration;
-    Location[] references;
+  @JsonAdapter(value = ResponseTypeAdapters.HighlightsAdapter.class, nullSafe = false)
+  class Highlights {
+    final Locations locations;
+    final TypeOfText[] textTypes;
+
+    Highlights() {
+      this(new Locations(), new TypeOfText[0]);
+    }
+
+    Highlights(Locations locations, TypeOfText[] textTypes) {
+      this.locations = locations;
+      this.textTypes = textTypes;
+    }
+
+    int size() {
+      return locations.size();
+    }
   }
 
-  class Location {
-    int startLine;
-    int startCol;
-    int endLine;
-    int endCol;
+  /**
+   * References of symbol {@code i} are the ones from {@code referenceStarts[i]} (inclusive) to {@code referenceStarts[i + 1]} (exclusive)
+   */
+  @JsonAdapter(value = ResponseTypeAdapters.HighlightedSymbolsAdapter.class, nullSafe = false)
+  class HighlightedSymbols {
+    final Locations declarations;
+    final int[] referenceStarts;
+    final Locations references;
+
+    HighlightedSymbols() {
+      this(new Locations(), new int[] {0}, new Locations());
+    }
 
-    TextRange toTextRange(InputFile inputFile) {
-      return inputFile.newRange(this.startLine, this.startCol, this.endLine, this.endCol);
+    HighlightedSymbols(Locations declarations, int[] referenceStarts, Locations references) {
+      this.declarations = declarations;
+      this.referenceStarts = referenceStarts;
+      this.references = references;
+    }
+
+    int size() {
+      return declarations.size();
     }
   }
 
   class Metrics {
+    @JsonAdapter(ResponseTypeAdapters.LinesAdapter.class)
     int[] ncloc = {};
+    @JsonAdapter(ResponseTypeAdapters.LinesAdapter.class)
     int[] commentLines = {};
+    @JsonAdapter(ResponseTypeAdapters.LinesAdapter.class)
     int[] nosonarLines = {};
+    @JsonAdapter(ResponseTypeAdapters.LinesAdapter.class)
     int[] executableLines = {};
     int functions;
     int statements;
@@ -184,14 +300,42 @@ public interface EslintBridgeServer extends Startable {
     int cognitiveComplexity;
   }
 
-  class CpdToken {
-    Location location;
-    String image;
+  @JsonAdapter(value = ResponseTypeAdapters.CpdTokensAdapter.class, nullSafe = false)
+  class CpdTokens {
+    final Locations locations;
+    final String[] images;
+
+    CpdTokens() {
+      this(new Locations(), new String[0]);
+    }
+
+    CpdTokens(Locations locations, String[] images) {
+      this.locations = locations;
+      this.images = images;
+    }
+
+    int size() {
+      return locations.size();
+    }
   }
 
   class Perf {
     int parseTime;
     int analysisTime;
+    // in bytes, see HeapWatcher
+    long heapUsed;
+    long heapLimit;
+    // in microseconds by rule key, only when monitoring is enabled
+    @Nullable
+    Map<String, Integer> ruleTimes;
+    // System.nanoTime() when the response was read, 0 for a response replayed from the cache, see TraceWriter
+    transient long receivedNanos;
+    // Java side, in microseconds and bytes, see EslintBridgeServerImpl.Exchange
+    transient int serializationTime;
+    transient int waitTime;
+    transient int responseParseTime;
+    transient long requestSize;
+    transient long responseSize;
   }
 
   class TsConfigResponse {
@@ -20,30 +20,56 @@
 package org.sonar.plugins.javascript.eslint;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
+import org.apache.commons.compress.utils.CountingInputStream;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -53,7 +79,6 @@ import org.sonarsource.nodejs.NodeCommandBuilder;
 import org.sonarsource.nodejs.NodeCommandException;
 
 import static java.util.Collections.emptyList;
-import static org.sonar.plugins.javascript.eslint.NetUtils.findOpenPort;
 
 public class EslintBridgeServerImpl implements EslintBridgeServer {
 
@@ -70,7 +95,19 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
   // internal property to set "--max-old-space-size" for Node process running this server
   private static final String MAX_OLD_SPACE_SIZE_PROPERTY = "sonar.javascript.node.maxspace";
   private static final String ALLOW_TS_PARSER_JS_FILES = "sonar.javascript.allowTsParserJsFiles";
+  private static final String NODE_EXECUTABLE_PROPERTY = "sonar.nodejs.executable";
+  // internal property to communicate with eslint-bridge over a Unix domain socket instead of HTTP, requires Java 16
+  static final String UNIX_SOCKET_PROPERTY = "sonar.javascript.bridge.unixSocket";
+  private static final String SOCKET_FILE_NAME = "eslint-bridge.sock";
+  // internal property to set how many times the process is replaced after crashing or not responding during an analysis
+  static final String MAX_CRASH_RESTARTS_PROPERTY = "sonar.javascript.bridge.maxCrashRestarts";
+  private static final int DEFAULT_MAX_CRASH_RESTARTS = 3;
+  private static final String CRASH_MESSAGE = "eslint-bridge Node.js process crashed or stopped responding while analyzing this file";
+  // internal property to set the time after which the analysis of a file is aborted, in seconds, 0 disables it
+  static final String FILE_TIMEOUT_PROPERTY = "sonar.javascript.bridge.fileTimeout";
+  private static final int DEFAULT_FILE_TIMEOUT_SECONDS = 60;
   private static final Gson GSON = new Gson();
+  private static final TypeAdapter<AnalysisResponse> RESPONSE_ADAPTER = GSON.getAdapter(AnalysisResponse.class);
 
   private static final String DEPLOY_LOCATION = "eslint-bridge-bundle";
 
@@ -80,15 +117,51 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
   private final Bundle bundle;
   private final String hostAddress;
   private int port;
+  @Nullable
+  private UnixSocketTransport socketTransport;
   private NodeCommand nodeCommand;
+  private ReadinessConsumer readiness;
+  private CompletableFuture<Void> starting;
+  @Nullable
+  private StartContext startContext;
+  private HeapWatcher heapWatcher = new HeapWatcher(1);
+  // guarded by this, the process is only restarted once there are no requests in flight
+  private int requestsInFlight;
+  // state of the process which is restored when it is restarted
+  private final Map<String, InitLinterRequest> linters = new LinkedHashMap<>();
+  private final Map<String, Program> programs = new ConcurrentHashMap<>();
+  // number of times the process was replaced, which identifies the current one
+  private int restarts;
+  // guarded by this, see #isCause
+  private int crashRestartsLeft;
+  private int crashedProcess = -1;
+  // stopped as it exceeded the deadline of a file, it is replaced whatever the number of crashes, see FileDeadline
+  private int timedOutProcess = -1;
+  private int fileTimeoutSeconds;
+  // guarded by this, completed once the last analysis request sent while deadlines are enabled is, see #analyzeAsync
+  private CompletableFuture<Void> lastAnalysis = CompletableFuture.completedFuture(null);
+  @Nullable
+  private BundleCache bundleCache;
+  @Nullable
+  private EslintBridgeDaemon daemon;
+  // process of the daemon this analysis is attached to, the Node.js command only launched it
+  @Nullable
+  private ProcessHandle daemonProcess;
   private Status status = Status.NOT_STARTED;
+  // outcome of the last request or heartbeat, the state of the process is checked separately
+  private final AtomicBoolean responsive = new AtomicBoolean();
+  private volatile boolean closing;
   private final RulesBundles rulesBundles;
   private final NodeDeprecationWarning deprecationWarning;
   private final Path deployLocation;
+  private List<Path> deployedBundles = emptyList();
   private final Monitoring monitoring;
 
   private static final int HEARTBEAT_INTERVAL_SECONDS = 5;
-  private final ScheduledExecutorService heartbeatService;
+  // created when the server is started or restarted, and shut down by #clean, see #startExecutors
+  private volatile ScheduledExecutorService heartbeatService;
+  private volatile ExecutorService responseExecutor;
+  private volatile ScheduledExecutorService deadlineService;
   private ScheduledFuture<?> heartbeatFuture;
 
   // Used by pico container for dependency injection
@@ -113,12 +186,38 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     this.hostAddress = InetAddress.getLoopbackAddress().getHostAddress();
     this.deployLocation = tempFolder.newDir(DEPLOY_LOCATION).toPath();
     this.monitoring = monitoring;
-    this.heartbeatService = Executors.newSingleThreadScheduledExecutor();
   }
 
+  private static Thread newResponseThread(Runnable runnable) {
+    return newThread(runnable, "eslint-bridge-response");
+  }
+
+  private static Thread newThread(Runnable runnable, String name) {
+    var thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  static int fileTimeoutSeconds(Configuration config) {
+    return config.getInt(FILE_TIMEOUT_PROPERTY).orElse(DEFAULT_FILE_TIMEOUT_SECONDS);
+  }
+
+  /**
+   * The outcome of the ping is ignored when the process was replaced or its state was changed while the ping was in flight, e.g.
+   * by a failed request or by {@link #started()}, as it is then stale
+   */
   void heartbeat() {
     LOG.trace("Pinging the server");
-    isAlive();
+    var process = currentProcess();
+    var wasResponsive = responsive.get();
+    var pong = ping();
+    if (process != currentProcess() || !responsive.compareAndSet(wasResponsive, pong)) {
+      LOG.trace("Ignoring stale ping of the server");
+    }
+  }
+
+  private synchronized int currentProcess() {
+    return restarts;
   }
 
   int getTimeoutSeconds() {
@@ -130,40 +229,260 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
   }
 
   void startServer(SensorContext context, List<Path> deployedBundles) throws IOException {
+    var startContext = StartContext.of(context);
+    init(startContext);
+    startServer(startContext, deployedBundles);
+  }
+
+  private void init(StartContext context) {
+    startExecutors();
+    startContext = context;
+    heapWatcher = new HeapWatcher(context.config);
+    synchronized (this) {
+      crashRestartsLeft = context.config.getInt(MAX_CRASH_RESTARTS_PROPERTY).orElse(DEFAULT_MAX_CRASH_RESTARTS);
+    }
+    fileTimeoutSeconds = fileTimeoutSeconds(context.config);
+  }
+
+  /**
+   * The executors are created again when the server is started after {@link #clean()}, which shuts them down
+   */
+  private synchronized void startExecutors() {
+    if (heartbeatService == null || heartbeatService.isShutdown()) {
+      heartbeatService = Executors.newSingleThreadScheduledExecutor();
+      heartbeatFuture = null;
+    }
+    if (responseExecutor == null || responseExecutor.isShutdown()) {
+      responseExecutor = Executors.newCachedThreadPool(EslintBridgeServerImpl::newResponseThread);
+    }
+    if (deadlineService == null || deadlineService.isShutdown()) {
+      deadlineService = Executors.newSingleThreadScheduledExecutor(runnable -> newThread(runnable, "eslint-bridge-deadline"));
+    }
+  }
+
+  /**
+   * The server listens to a port chosen by the OS, which it tells once ready, see {@link ReadinessConsumer}
+   */
+  private void startServer(StartContext context, List<Path> deployedBundles) throws IOException {
     PROFILER.startDebug("Starting server");
-    port = findOpenPort();
+    closeSocketTransport();
+    socketTransport = socketTransport(context);
+    port = 0;
 
+    File scriptFile = scriptFile();
+    String bundles = deployedBundles.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+    initNodeCommand(context, scriptFile, context.workDir, bundles);
+
+    if (socketTransport != null) {
+      LOG.debug("Starting Node.js process to start eslint-bridge server on socket " + socketTransport.socketPath());
+    } else {
+      LOG.debug("Starting Node.js process to start eslint-bridge server at port chosen by the OS");
+    }
+    nodeCommand.start();
+    closing = false;
+    watchProcess(nodeCommand);
+
+    if (!waitServerToBeReady(timeoutSeconds * 1000)) {
+      status = Status.FAILED;
+      throw new NodeCommandException(nodeCommand.isAlive() ? ("Failed to start server (" + timeoutSeconds + "s timeout)")
+        : "Failed to start server, eslint-bridge Node.js process exited");
+    } else {
+      started();
+    }
+    PROFILER.stopDebug();
+    deprecationWarning.logNodeDeprecation(nodeCommand.getActualNodeVersion().major());
+  }
+
+  private File scriptFile() {
     File scriptFile = new File(bundle.startServerScript());
     if (!scriptFile.exists()) {
       throw new NodeCommandException("Node.js script to start eslint-bridge server doesn't exist: " + scriptFile.getAbsolutePath());
     }
+    return scriptFile;
+  }
 
-    String bundles = deployedBundles.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
-    initNodeCommand(context, scriptFile, context.fileSystem().workDir(), bundles);
+  private void started() {
+    status = Status.STARTED;
+    responsive.set(true);
+    if (heartbeatFuture == null) {
+      LOG.trace("Starting heartbeat service");
+      heartbeatFuture = heartbeatService.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+  }
 
-    LOG.debug("Starting Node.js process to start eslint-bridge server at port " + port);
-    nodeCommand.start();
+  /**
+   * Attaches this analysis to a daemon compatible with it, which is started when none is running. Its context, e.g. the working
+   * directory and the rules bundles, is then set for this analysis.
+   *
+   * @return false when all the daemons are used by other analyses, the server is then started for this analysis only
+   */
+  private boolean startDaemon(StartContext context) throws IOException {
+    var expected = new EslintBridgeDaemon.Handshake(String.valueOf(PluginUtils.getVersion()), bundle.hash(), daemonSettings(context));
+    daemon = EslintBridgeDaemon.acquire(EslintBridgeDaemon.home(context.config), expected);
+    if (daemon == null) {
+      LOG.debug("All eslint-bridge daemons are used by other analyses, starting a server for this analysis only");
+      return false;
+    }
+    deployedBundles = bundleCache.deploy(bundle, rulesBundles);
+    PROFILER.startDebug("Starting server");
+    closing = false;
+    var running = daemon.running();
+    if (running != null && attach(running)) {
+      LOG.debug("Reusing eslint-bridge daemon process " + running.pid + " at port " + port);
+    } else {
+      if (running != null) {
+        daemon.stop(running, scriptFile().getAbsolutePath());
+      }
+      running = launchDaemon(context);
+    }
+    started();
+    setContext(context);
+    PROFILER.stopDebug();
+    deprecationWarning.logNodeDeprecation(running.nodeVersion);
+    return true;
+  }
 
+  /**
+   * The daemon listens to a port chosen by the OS, which it writes to its handshake file, see {@link #waitServerToStart}
+   */
+  private EslintBridgeDaemon.Handshake launchDaemon(StartContext context) throws IOException {
+    port = 0;
+    Files.deleteIfExists(daemon.handshakeFile());
+    String bundles = deployedBundles.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+    initNodeCommand(context, scriptFile(), context.workDir, bundles,
+      String.valueOf(EslintBridgeDaemon.idleTimeoutMillis(context.config)), daemon.handshakeFile().toString());
+    LOG.debug("Starting Node.js process to start eslint-bridge daemon at port chosen by the OS");
+    // this process exits once the daemon is started in a detached process
+    nodeCommand.start();
+    nodeCommand.waitFor();
     if (!waitServerToStart(timeoutSeconds * 1000)) {
       status = Status.FAILED;
       throw new NodeCommandException("Failed to start server (" + timeoutSeconds + "s timeout)");
-    } else {
-      status = Status.STARTED;
-      if (heartbeatFuture == null) {
-        LOG.trace("Starting heartbeat service");
-        heartbeatFuture = heartbeatService.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    var handshake = daemon.register(nodeCommand.getActualNodeVersion().major());
+    if (!attach(handshake)) {
+      status = Status.FAILED;
+      throw new NodeCommandException("Failed to start eslint-bridge daemon, see " + daemon.handshakeFile().resolveSibling("daemon.log"));
+    }
+    return handshake;
+  }
+
+  private boolean attach(EslintBridgeDaemon.Handshake handshake) {
+    var process = ProcessHandle.of(handshake.pid).filter(ProcessHandle::isAlive);
+    if (process.isEmpty()) {
+      return false;
+    }
+    port = handshake.port;
+    daemonProcess = process.get();
+    if (!ping()) {
+      daemonProcess = null;
+      return false;
+    }
+    var attached = daemonProcess;
+    attached.onExit().thenAccept(p -> {
+      if (attached == daemonProcess) {
+        responsive.set(false);
+        if (!closing) {
+          LOG.error("eslint-bridge daemon process " + attached.pid() + " exited");
+        }
       }
+    });
+    return true;
+  }
+
+  /**
+   * The settings of the Node.js process which can't be changed once it is started, analyses with different settings can't share
+   * a daemon
+   */
+  private String daemonSettings(StartContext context) {
+    var config = context.config;
+    return "node=" + config.get(NODE_EXECUTABLE_PROPERTY).orElse("")
+      + ";maxspace=" + config.getInt(MAX_OLD_SPACE_SIZE_PROPERTY).map(String::valueOf).orElse("")
+      + ";monitoring=" + monitoring.isMonitoringEnabled();
+  }
+
+  private void setContext(StartContext context) throws IOException {
+    var request = new ContextRequest(context.workDir.getAbsolutePath(), allowTsParserJsFiles(context), context.sonarLint,
+      deployedBundles.stream().map(Path::toString).collect(Collectors.toList()));
+    if (!"OK!".equals(request(GSON.toJson(request), "set-context"))) {
+      throw new IllegalStateException("Failed to set eslint-bridge context");
+    }
+  }
+
+  private void closeDaemon() {
+    daemonProcess = null;
+    if (daemon != null) {
+      daemon.close();
+      daemon = null;
     }
-    PROFILER.stopDebug();
-    deprecationWarning.logNodeDeprecation(nodeCommand.getActualNodeVersion().major());
   }
 
+  /**
+   * The socket is created in the system temporary directory, as the path of a Unix domain socket is limited to about 100 bytes.
+   * HTTP is used when the socket can't be created.
+   */
+  @Nullable
+  private UnixSocketTransport socketTransport(StartContext context) throws IOException {
+    if (!context.config.getBoolean(UNIX_SOCKET_PROPERTY).orElse(false)) {
+      return null;
+    }
+    if (!UnixSocketTransport.isSupported()) {
+      LOG.debug("Unix domain sockets are not supported by this Java runtime or OS, eslint-bridge will use HTTP");
+      return null;
+    }
+    var socketPath = Files.createTempDirectory("eslint-bridge").resolve(SOCKET_FILE_NAME);
+    if (!UnixSocketTransport.isSupported(socketPath)) {
+      LOG.debug("Path of Unix domain socket is too long, eslint-bridge will use HTTP: " + socketPath);
+      Files.deleteIfExists(socketPath.getParent());
+      return null;
+    }
+    return new UnixSocketTransport(socketPath, timeoutSeconds);
+  }
+
+  private void watchProcess(NodeCommand command) {
+    command.onExit().thenAccept(exitValue -> {
+      if (command == nodeCommand) {
+        responsive.set(false);
+        if (!closing) {
+          LOG.error("eslint-bridge Node.js process exited with code " + exitValue);
+        }
+      }
+    });
+  }
+
+  /**
+   * Waits for the server to tell it is ready, rather than polling it. Fails as soon as the process exits.
+   */
+  private boolean waitServerToBeReady(int timeoutMs) {
+    var ready = readiness.ready();
+    try {
+      CompletableFuture.anyOf(ready, nodeCommand.onExit()).get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException | TimeoutException e) {
+      return false;
+    }
+    if (!ready.isDone()) {
+      // the process exited before the server was started
+      return false;
+    }
+    if (socketTransport == null) {
+      port = ready.join();
+    }
+    return true;
+  }
+
+  /**
+   * Polls the handshake file of the daemon until it tells the port the daemon listens to, and then the server until it responds.
+   * Only used for daemons, whose output goes to their log file rather than to the {@link ReadinessConsumer}.
+   */
   boolean waitServerToStart(int timeoutMs) {
     int sleepStep = 100;
     long start = System.currentTimeMillis();
     try {
       Thread.sleep(sleepStep);
-      while (!isAlive()) {
+      while (!isDaemonListening()) {
         if (System.currentTimeMillis() - start > timeoutMs) {
           return false;
         }
@@ -175,36 +494,57 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     return true;
   }
 
-  private void initNodeCommand(SensorContext context, File scriptFile, File workDir, String bundles) throws IOException {
-    boolean allowTsParserJsFiles = context.config().getBoolean(ALLOW_TS_PARSER_JS_FILES).orElse(true);
-    boolean isSonarLint = context.runtime().getProduct() == SonarProduct.SONARLINT;
+  private boolean isDaemonListening() {
+    var started = daemon == null ? null : daemon.started();
+    if (started == null) {
+      return false;
+    }
+    port = started.port;
+    return ping();
+  }
+
+  private static boolean allowTsParserJsFiles(StartContext context) {
+    return context.config.getBoolean(ALLOW_TS_PARSER_JS_FILES).orElse(true);
+  }
+
+  /**
+   * @param daemonArgs the idle timeout and the handshake file when starting a daemon
+   */
+  private void initNodeCommand(StartContext context, File scriptFile, File workDir, String bundles, String... daemonArgs) throws IOException {
+    boolean allowTsParserJsFiles = allowTsParserJsFiles(context);
+    boolean isSonarLint = context.sonarLint;
     if (isSonarLint) {
       LOG.info("Running in SonarLint context, metrics will not be computed.");
     }
-    var outputConsumer = monitoring.isMonitoringEnabled() ?
-      new LogOutputConsumer().andThen(new MonitoringOutputConsumer(monitoring)) : new LogOutputConsumer();
-    // enable per rule performance tracking https://eslint.org/docs/1.0.0/developer-guide/working-with-rules#per-rule-performance
+    readiness = new ReadinessConsumer();
+    var outputConsumer = new LogOutputConsumer().andThen(readiness);
 
     nodeCommandBuilder
       .outputConsumer(outputConsumer)
       .pathResolver(bundle)
       .minNodeVersion(NodeDeprecationWarning.MIN_SUPPORTED_NODE_VERSION)
-      .configuration(context.config())
+      .configuration(context.config)
       .script(scriptFile.getAbsolutePath())
-      .scriptArgs(String.valueOf(port), hostAddress, workDir.getAbsolutePath(), String.valueOf(allowTsParserJsFiles), String.valueOf(isSonarLint), bundles)
+      .scriptArgs(socketTransport != null ? socketTransport.socketPath().toString() : String.valueOf(port), hostAddress, workDir.getAbsolutePath(), String.valueOf(allowTsParserJsFiles), String.valueOf(isSonarLint), bundles)
+      .scriptArgs(daemonArgs)
       .env(getEnv());
 
-    context.config()
+    context.config
       .getInt(MAX_OLD_SPACE_SIZE_PROPERTY)
       .ifPresent(nodeCommandBuilder::maxOldSpaceSize);
 
+    if (bundleCache != null) {
+      nodeCommandBuilder.nodeVersionCache(bundleCache.nodeVersionsFile());
+    }
+
     nodeCommand = nodeCommandBuilder.build();
   }
 
   private Map<String, String> getEnv() {
     Map<String, String> env = new HashMap<>();
-    if (monitoring.isMonitoringEnabled()) {
-      env.put("TIMING", "all");
+    if (monitoring.isMonitoringEnabled() || monitoring.isTraceEnabled()) {
+      // the execution time of each rule is then sent with the response of each file, see Perf#ruleTimes
+      env.put("SONARJS_RULE_TIMING", "true");
     }
     // see https://github.com/SonarSource/SonarJS/issues/2803
     env.put("BROWSERSLIST_IGNORE_OLD_DATA", "true");
@@ -213,6 +553,42 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
 
   @Override
   public void startServerLazily(SensorContext context) throws IOException {
+    awaitStart();
+    startServerLazily(StartContext.of(context));
+  }
+
+  /**
+   * Starts the server in the background, the following call to {@link #startServerLazily(SensorContext)} waits for it and fails
+   * if it failed
+   */
+  void startAsync(StartContext context) {
+    starting = CompletableFuture.runAsync(() -> {
+      try {
+        startServerLazily(context);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, runnable -> newThread(runnable, "eslint-bridge-start").start());
+  }
+
+  private void awaitStart() throws IOException {
+    if (starting == null) {
+      return;
+    }
+    var started = starting;
+    starting = null;
+    try {
+      started.join();
+    } catch (CompletionException e) {
+      var cause = e.getCause();
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+  }
+
+  private void startServerLazily(StartContext context) throws IOException {
     if (status == Status.FAILED) {
       // required for SonarLint context to avoid restarting already failed server
       throw new ServerAlreadyFailedException();
@@ -225,8 +601,18 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
         status = Status.FAILED;
         throw new ServerAlreadyFailedException();
       }
-      deploy();
-      List<Path> deployedBundles = rulesBundles.deploy(deployLocation.resolve("package"));
+      init(context);
+      boolean daemonEnabled = isDaemonEnabled(context);
+      bundleCache = daemonEnabled || context.config.getBoolean(BundleCache.DEPLOY_CACHE_PROPERTY).orElse(false) ? BundleCache.of(context.config) : null;
+      if (daemonEnabled && startDaemon(context)) {
+        return;
+      }
+      if (bundleCache != null) {
+        deployedBundles = bundleCache.deploy(bundle, rulesBundles);
+      } else {
+        deploy();
+        deployedBundles = rulesBundles.deploy(deployLocation.resolve("package"));
+      }
       startServer(context, deployedBundles);
 
     } catch (NodeCommandException e) {
@@ -235,17 +621,43 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     }
   }
 
+  private static boolean isDaemonEnabled(StartContext context) {
+    // SonarLint already keeps eslint-bridge running across analyses
+    return context.config.getBoolean(EslintBridgeDaemon.DAEMON_PROPERTY).orElse(false) && !context.sonarLint;
+  }
+
   @Override
   public void initLinter(List<EslintRule> rules, List<String> environments, List<String> globals, AnalysisMode analysisMode) throws IOException {
-    initLinter(AnalysisMode.DEFAULT_LINTER_ID, rules, environments, globals);
+    beginRequest();
+    try {
+      initLinter(AnalysisMode.DEFAULT_LINTER_ID, rules, environments, globals);
 
-    if (analysisMode == AnalysisMode.SKIP_UNCHANGED) {
-      initLinter(AnalysisMode.UNCHANGED_LINTER_ID, AnalysisMode.getUnchangedFileRules(rules), environments, globals);
+      if (analysisMode == AnalysisMode.SKIP_UNCHANGED) {
+        initLinter(AnalysisMode.UNCHANGED_LINTER_ID, AnalysisMode.getUnchangedFileRules(rules), environments, globals);
+      }
+
+      var contextDependentRules = AnalysisMode.getContextDependentRules(rules);
+      if (!contextDependentRules.isEmpty() && contextDependentRules.size() < rules.size()) {
+        initLinter(AnalysisMode.CONTEXT_DEPENDENT_LINTER_ID, contextDependentRules, environments, globals);
+      }
+    } finally {
+      endRequest();
     }
   }
 
+  @Override
+  public int startWorkers(int filesToAnalyze) {
+    // single Node.js process, see EslintBridgeServerPool
+    return 1;
+  }
+
   private void initLinter(String linterId, List<EslintRule> rules, List<String> environments, List<String> globals) throws IOException {
     InitLinterRequest initLinterRequest = new InitLinterRequest(linterId, rules, environments, globals);
+    linters.put(linterId, initLinterRequest);
+    initLinter(initLinterRequest);
+  }
+
+  private void initLinter(InitLinterRequest initLinterRequest) throws IOException {
     String request = GSON.toJson(initLinterRequest);
     String response = request(request, "init-linter");
     if (!"OK!".equals(response)) {
@@ -255,52 +667,506 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
 
   @Override
   public AnalysisResponse analyzeJavaScript(JsAnalysisRequest request) throws IOException {
-    String json = GSON.toJson(request);
-    return response(request(json, "analyze-js"), request.filePath);
+    return analyze("analyze-js", () -> GSON.toJson(request), request.filePath);
   }
 
   @Override
   public AnalysisResponse analyzeTypeScript(JsAnalysisRequest request) throws IOException {
-    String json = GSON.toJson(request);
-    return response(request(json, "analyze-ts"), request.filePath);
+    return analyze("analyze-ts", () -> GSON.toJson(request), request.filePath);
   }
 
   @Override
   public AnalysisResponse analyzeWithProgram(JsAnalysisRequest request) throws IOException {
-    return response(request(GSON.toJson(request), "analyze-with-program"), request.filePath);
+    return analyze("analyze-with-program", () -> GSON.toJson(withLiveProgram(request)), request.filePath);
   }
 
   @Override
   public AnalysisResponse analyzeCss(CssAnalysisRequest request) throws IOException {
-    String json = GSON.toJson(request);
-    return response(request(json, "analyze-css"), request.filePath);
+    return analyze("analyze-css", () -> GSON.toJson(request), request.filePath);
   }
 
   @Override
   public AnalysisResponse analyzeYaml(JsAnalysisRequest request) throws IOException {
-    String json = GSON.toJson(request);
-    return response(request(json, "analyze-yaml"), request.filePath);
+    return analyze("analyze-yaml", () -> GSON.toJson(request), request.filePath);
+  }
+
+  @Override
+  public CompletableFuture<AnalysisResponse> analyzeCssAsync(CssAnalysisRequest request) {
+    return analyzeAsync("analyze-css", 1, () -> GSON.toJson(request), (body, exchange) -> readResponse(body, request.filePath, exchange),
+      failed -> failed != null ? CompletableFuture.completedFuture(failed) : analyzeCssAsync(request));
+  }
+
+  @Override
+  public CompletableFuture<AnalysisResponse> analyzeWithProgramAsync(JsAnalysisRequest request) {
+    return analyzeAsync("analyze-with-program", 1, () -> GSON.toJson(withLiveProgram(request)),
+      (body, exchange) -> readResponse(body, request.filePath, exchange),
+      failed -> failed != null ? CompletableFuture.completedFuture(failed) : analyzeWithProgramAsync(request));
+  }
+
+  @Override
+  public CompletableFuture<Void> analyzeBatchAsync(BatchKind kind, List<JsAnalysisRequest> requests, Consumer<AnalysisResponse> consumer) {
+    var received = new AtomicInteger();
+    return analyzeAsync("analyze-batch", requests.size(), () -> {
+      var liveRequests = new ArrayList<JsAnalysisRequest>(requests.size());
+      for (JsAnalysisRequest request : requests) {
+        liveRequests.add(withLiveProgram(request));
+      }
+      return GSON.toJson(new BatchAnalysisRequest(kind, liveRequests));
+    }, (body, exchange) -> {
+      readBatch(body, requests, exchange, response -> {
+        consumer.accept(response);
+        received.incrementAndGet();
+        exchange.nextFile();
+      });
+      return null;
+    }, failed -> {
+      // the responses received before the failure were already passed to the consumer, the following files are sent again
+      int next = received.get();
+      if (failed != null && next < requests.size()) {
+        consumer.accept(failed);
+        next++;
+      }
+      return next == requests.size() ? CompletableFuture.completedFuture(null) : analyzeBatchAsync(kind, requests.subList(next, requests.size()), consumer);
+    });
+  }
+
+  /**
+   * While deadlines are enabled, the requests are sent one after the other, once the previous one is completed: eslint-bridge
+   * analyzes the files of concurrent requests in turn, and the deadline of a file would otherwise include the time spent on
+   * the files of the other requests, see {@link FileDeadline}. The next request is still sent without waiting for the
+   * response of the previous one to be saved.
+   *
+   * @param files      files analyzed by the request, its Java side costs are divided among them, see {@link Exchange}
+   * @param afterCrash called when the process crashed or stopped responding, with the response for the file being analyzed
+   *                   when the request is the cause of it, null otherwise, see {@link #failedResponse}
+   */
+  private <T> CompletableFuture<T> analyzeAsync(String endpoint, int files, RequestBody json, BiFunction<InputStream, Exchange, T> reader,
+                                                Function<AnalysisResponse, CompletableFuture<T>> afterCrash) {
+    var completed = new CompletableFuture<Void>();
+    if (fileTimeoutSeconds <= 0) {
+      return analyzeAsync(endpoint, files, json, reader, afterCrash, completed);
+    }
+    CompletableFuture<Void> previous;
+    synchronized (this) {
+      previous = lastAnalysis;
+      lastAnalysis = completed;
+    }
+    if (previous.isDone()) {
+      return analyzeAsync(endpoint, files, json, reader, afterCrash, completed);
+    }
+    return previous.thenComposeAsync(ignored -> analyzeAsync(endpoint, files, json, reader, afterCrash, completed), responseExecutor)
+      // e.g. when the executor is shut down, the following requests must not wait for this one
+      .whenComplete((result, e) -> completed.complete(null));
+  }
+
+  /**
+   * The request body is only serialized once the request begins, as the process may be restarted before
+   *
+   * @param completed completed once the response is read or the request failed, before it is sent again after a crash
+   */
+  private <T> CompletableFuture<T> analyzeAsync(String endpoint, int files, RequestBody json, BiFunction<InputStream, Exchange, T> reader,
+                                                Function<AnalysisResponse, CompletableFuture<T>> afterCrash,
+                                                CompletableFuture<Void> completed) {
+    int process;
+    try {
+      process = beginRequest();
+    } catch (IOException | RuntimeException e) {
+      completed.complete(null);
+      return CompletableFuture.failedFuture(e);
+    }
+    String body;
+    var serializationStart = System.nanoTime();
+    try {
+      body = json.get();
+    } catch (IOException e) {
+      endRequest();
+      completed.complete(null);
+      return CompletableFuture.failedFuture(e);
+    }
+    var deadline = new FileDeadline(process);
+    var exchange = new Exchange(deadline, files, serializationStart, body);
+    CompletableFuture<T> response;
+    try {
+      exchange.nextFile();
+      var start = System.nanoTime();
+      response = sendAsync(endpoint, body)
+        .thenApplyAsync(stream -> reader.apply(stream, exchange), responseExecutor)
+        .whenComplete((result, e) -> {
+          deadline.cancel();
+          monitoring.bridgeRequestCompleted(endpoint, start);
+          exchange.completed(endpoint, null);
+          endRequest();
+          completed.complete(null);
+        });
+    } catch (RuntimeException e) {
+      deadline.cancel();
+      endRequest();
+      completed.complete(null);
+      throw e;
+    }
+    return response
+      .handle((result, e) -> e == null ? CompletableFuture.completedFuture(result) : afterFailure(e, process, deadline, afterCrash))
+      .thenCompose(Function.identity());
+  }
+
+  private <T> CompletableFuture<T> afterFailure(Throwable e, int process, FileDeadline deadline,
+                                                Function<AnalysisResponse, CompletableFuture<T>> afterCrash) {
+    var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    if (!(cause instanceof UnresponsiveException)) {
+      return CompletableFuture.failedFuture(cause);
+    }
+    try {
+      return afterCrash.apply(failedResponse(process, deadline, (UnresponsiveException) cause));
+    } catch (RuntimeException failure) {
+      return CompletableFuture.failedFuture(failure);
+    }
+  }
+
+  private void readBatch(InputStream body, List<JsAnalysisRequest> requests, Exchange exchange, Consumer<AnalysisResponse> consumer) {
+    int received = 0;
+    // responses are streamed as newline-delimited JSON, one line per file, and decoded as they arrive
+    try (JsonReader reader = jsonReader(exchange.count(body))) {
+      while (received < requests.size() && hasNext(reader)) {
+        consumer.accept(response(reader, requests.get(received).filePath, exchange));
+        received++;
+      }
+    } catch (IOException e) {
+      throw unresponsive(e);
+    }
+    if (received < requests.size()) {
+      throw new IllegalStateException("eslint-bridge sent " + received + " responses for " + requests.size() + " files");
+    }
+  }
+
+  /**
+   * Sends the request again when the process crashed or stopped responding while analyzing another file
+   */
+  private AnalysisResponse analyze(String endpoint, RequestBody json, String filePath) throws IOException {
+    while (true) {
+      int process = beginRequest();
+      var deadline = new FileDeadline(process);
+      try {
+        var serializationStart = System.nanoTime();
+        var body = json.get();
+        var exchange = new Exchange(deadline, 1, serializationStart, body);
+        exchange.nextFile();
+        var start = System.nanoTime();
+        var response = readResponse(send(endpoint, body), filePath, exchange);
+        monitoring.bridgeRequestCompleted(endpoint, start);
+        exchange.completed(endpoint, filePath);
+        return response;
+      } catch (UnresponsiveException e) {
+        var failed = failedResponse(process, deadline, e);
+        if (failed != null) {
+          return failed;
+        }
+      } finally {
+        deadline.cancel();
+        endRequest();
+      }
+    }
+  }
+
+  /**
+   * Replaces the process first when it crashed, or restarts it when its heap is almost full, once the requests in flight are
+   * completed
+   *
+   * @return the process the request is sent to, see {@link #restarts}
+   */
+  private synchronized int beginRequest() throws IOException {
+    if (isRecoveryNeeded() || heapWatcher.isRestartNeeded()) {
+      while (requestsInFlight > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw handleInterruptedException(e, "Interrupted while waiting for eslint-bridge requests to complete.");
+        }
+      }
+      if (isRecoveryNeeded()) {
+        recover();
+      } else if (heapWatcher.isRestartNeeded()) {
+        restart();
+      }
+    }
+    requestsInFlight++;
+    monitoring.bridgeRequestStarted();
+    return restarts;
+  }
+
+  private synchronized void endRequest() {
+    requestsInFlight--;
+    monitoring.bridgeRequestEnded();
+    notifyAll();
+  }
+
+  private void restart() throws IOException {
+    LOG.info("Restarting eslint-bridge Node.js process, which uses {}% of its heap", heapWatcher.usagePercent());
+    PROFILER.startDebug("Restarting server");
+    closing = true;
+    try {
+      request("", "close");
+    } catch (IOException | IllegalStateException e) {
+      LOG.debug("Failed to close eslint-bridge server before restarting it", e);
+    }
+    replaceProcess();
+    heapWatcher.restarted();
+    PROFILER.stopDebug();
+  }
+
+  private void recover() throws IOException {
+    if (timedOutProcess == restarts) {
+      LOG.info("Restarting eslint-bridge Node.js process, which was stopped as the analysis of a file exceeded {} s", fileTimeoutSeconds);
+    } else {
+      crashRestartsLeft--;
+      LOG.warn("Restarting eslint-bridge Node.js process, which crashed or stopped responding ({} restart(s) left)", crashRestartsLeft);
+    }
+    PROFILER.startDebug("Restarting server");
+    stopProcess();
+    replaceProcess();
+    PROFILER.stopDebug();
+  }
+
+  /**
+   * Starts a new process, whose linters are initialized like those of the previous one. Programs are only created again
+   * when they are used, see {@link #withLiveProgram}.
+   */
+  private void replaceProcess() throws IOException {
+    startExecutors();
+    if (daemonProcess != null) {
+      var process = daemonProcess;
+      daemonProcess = null;
+      awaitExit(process);
+      closing = false;
+      launchDaemon(startContext);
+      started();
+      setContext(startContext);
+    } else {
+      closeSocketTransport();
+      nodeCommand.waitFor();
+      startServer(startContext, deployedBundles);
+    }
+    restarts++;
+    programs.values().forEach(program -> program.serverId = null);
+    for (InitLinterRequest linter : linters.values()) {
+      initLinter(linter);
+    }
+  }
+
+  /**
+   * The file analyzed by the first request which fails because the process crashed or stopped responding is considered to be
+   * the cause of it. The process is then stopped, so that the other requests sent to it fail without waiting for their
+   * timeout, and they are sent again to the process replacing it, see {@link #beginRequest()}.
+   *
+   * @return true when the file of the request is the cause of the failure, false when the request must be sent again
+   * @throws UnresponsiveException the failure, when the process is not replaced anymore
+   */
+  private synchronized boolean isCause(int process, UnresponsiveException failure) {
+    if (process == crashedProcess) {
+      return false;
+    }
+    if (!canRecover()) {
+      throw failure;
+    }
+    crashedProcess = process;
+    stopProcess();
+    return true;
+  }
+
+  /**
+   * @return the response for the file of the request when it caused the failure, or null when the request must be sent again
+   */
+  @Nullable
+  private AnalysisResponse failedResponse(int process, FileDeadline deadline, UnresponsiveException failure) {
+    if (deadline.isExpired()) {
+      return timeoutResponse();
+    }
+    return isCause(process, failure) ? crashResponse() : null;
+  }
+
+  /**
+   * Stops the process as the analysis of a file exceeded its deadline, the request analyzing it then fails and the other ones
+   * are sent again, like after a crash
+   */
+  private synchronized void onDeadline(int process) {
+    if (process != restarts || process == crashedProcess || startContext == null) {
+      return;
+    }
+    crashedProcess = process;
+    timedOutProcess = process;
+    stopProcess();
+  }
+
+  private synchronized boolean canRecover() {
+    return (crashRestartsLeft > 0 || timedOutProcess == restarts) && startContext != null && status == Status.STARTED;
+  }
+
+  private boolean isRecoveryNeeded() {
+    return !isProcessAlive() && canRecover();
+  }
+
+  private void stopProcess() {
+    closing = true;
+    if (daemonProcess != null) {
+      daemonProcess.destroyForcibly();
+    } else if (nodeCommand != null) {
+      nodeCommand.destroy();
+    }
+  }
+
+  private static AnalysisResponse crashResponse() {
+    return errorResponse(CRASH_MESSAGE, ParsingErrorCode.GENERAL_ERROR);
+  }
+
+  private AnalysisResponse timeoutResponse() {
+    return errorResponse("skipped: exceeded " + fileTimeoutSeconds + " s", ParsingErrorCode.TIMEOUT);
+  }
+
+  private static AnalysisResponse errorResponse(String message, ParsingErrorCode code) {
+    var parsingError = new ParsingError();
+    parsingError.message = message;
+    parsingError.code = code;
+    var response = new AnalysisResponse();
+    response.parsingError = parsingError;
+    return response;
+  }
+
+  private void awaitExit(ProcessHandle process) {
+    try {
+      process.onExit().get(timeoutSeconds, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      process.destroyForcibly();
+    }
+  }
+
+  /**
+   * @return the request with the id the program has in the current process, which creates it when it was restarted
+   */
+  private JsAnalysisRequest withLiveProgram(JsAnalysisRequest request) throws IOException {
+    var program = request.programId == null ? null : programs.get(request.programId);
+    if (program == null) {
+      return request;
+    }
+    if (program.serverId == null) {
+      LOG.debug("Creating again TypeScript program for {} in restarted eslint-bridge", program.request.tsConfig);
+      var created = GSON.fromJson(request(GSON.toJson(program.request), "create-program"), TsProgram.class);
+      if (created.programId == null) {
+        throw new IllegalStateException("Failed to create again TypeScript program: " + created.error);
+      }
+      program.serverId = created.programId;
+    }
+    if (program.serverId.equals(request.programId)) {
+      return request;
+    }
+    return new JsAnalysisRequest(request.filePath, request.fileType, request.fileContent, request.ignoreHeaderComments, request.tsConfigs,
+      program.serverId, request.linterId);
+  }
+
+  private AnalysisResponse readResponse(InputStream body, String filePath, Exchange exchange) {
+    try (JsonReader reader = jsonReader(exchange.count(body))) {
+      return response(reader, filePath, exchange);
+    } catch (IOException e) {
+      throw unresponsive(e);
+    }
   }
 
   private String request(String json, String endpoint) throws IOException {
-    var request = HttpRequest.newBuilder()
-      .uri(url(endpoint))
-      .timeout(Duration.ofSeconds(timeoutSeconds))
-      .header("Content-Type", "application/json")
-      .POST(HttpRequest.BodyPublishers.ofString(json))
-      .build();
+    var event = new JfrEvents.BridgeRequest();
+    event.begin();
+    var response = sendRequest(json, endpoint);
+    event.end();
+    if (event.shouldCommit()) {
+      event.endpoint = endpoint;
+      event.requestSize = utf8Length(json);
+      event.responseSize = utf8Length(response);
+      event.commit();
+    }
+    return response;
+  }
 
+  private String sendRequest(String json, String endpoint) throws IOException {
+    if (socketTransport == null) {
+      return send(endpoint, json, BodyHandlers.ofString());
+    }
+    try (InputStream body = send(endpoint, json)) {
+      return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw unresponsive(e);
+    }
+  }
+
+  private InputStream send(String endpoint, String json) throws IOException {
+    if (socketTransport == null) {
+      return send(endpoint, json, BodyHandlers.ofInputStream());
+    }
     try {
-      var response = client.send(request, BodyHandlers.ofString());
+      return socketTransport.send(endpoint, json);
+    } catch (IOException e) {
+      throw unresponsive(e);
+    }
+  }
+
+  private <T> T send(String endpoint, String json, BodyHandler<T> bodyHandler) throws IOException {
+    try {
+      var response = client.send(httpRequest(endpoint, json), bodyHandler);
       return response.body();
     } catch (InterruptedException e) {
       throw handleInterruptedException(e, "Request " + endpoint + " was interrupted.");
     } catch (IOException e) {
-      String msg = "eslint-bridge Node.js process is unresponsive. This is most likely caused by process running out of memory." +
-        " Consider setting sonar.javascript.node.maxspace to higher value (e.g. 4096).";
+      throw unresponsive(e);
+    }
+  }
+
+  /**
+   * The response body is read on a thread of {@link #responseExecutor}, as reading it blocks until it is fully received
+   */
+  private CompletableFuture<InputStream> sendAsync(String endpoint, String json) {
+    if (socketTransport != null) {
+      var transport = socketTransport;
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return transport.send(endpoint, json);
+        } catch (IOException e) {
+          throw unresponsive(e);
+        }
+      }, responseExecutor);
+    }
+    return client.sendAsync(httpRequest(endpoint, json), BodyHandlers.ofInputStream())
+      .handle((response, e) -> {
+        if (e != null) {
+          throw asyncFailure(e);
+        }
+        return response.body();
+      });
+  }
+
+  private HttpRequest httpRequest(String endpoint, String json) {
+    return HttpRequest.newBuilder()
+      .uri(url(endpoint))
+      .timeout(Duration.ofSeconds(timeoutSeconds))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(json))
+      .build();
+  }
+
+  private RuntimeException asyncFailure(Throwable e) {
+    var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    if (cause instanceof IOException) {
+      return unresponsive((IOException) cause);
+    }
+    return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+  }
+
+  private UnresponsiveException unresponsive(IOException e) {
+    responsive.set(false);
+    String msg = "eslint-bridge Node.js process is unresponsive. This is most likely caused by process running out of memory." +
+      " Consider setting sonar.javascript.node.maxspace to higher value (e.g. 4096).";
+    if (!closing) {
+      // otherwise the process was stopped on purpose, e.g. see #stopProcess
       LOG.error(msg);
-      throw new IllegalStateException("eslint-bridge is unresponsive", e);
     }
+    return new UnresponsiveException(e);
   }
 
   private IllegalStateException handleInterruptedException(InterruptedException e, String msg) {
@@ -309,27 +1175,81 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     return new IllegalStateException(msg, e);
   }
 
-  private static AnalysisResponse response(String result, String filePath) {
+  /**
+   * Responses are decoded from the HTTP stream, so the whole JSON text is never held in memory
+   */
+  private static JsonReader jsonReader(InputStream body) {
+    var reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    // required to read several top-level values, and consistent with Gson#fromJson(String)
+    reader.setLenient(true);
+    return reader;
+  }
+
+  private boolean hasNext(JsonReader reader) {
     try {
-      return GSON.fromJson(result, AnalysisResponse.class);
-    } catch (JsonSyntaxException e) {
-      String msg = "Failed to parse response for file " + filePath + ": \n-----\n" + result + "\n-----\n";
-      LOG.error(msg, e);
+      return reader.peek() != JsonToken.END_DOCUMENT;
+    } catch (IOException e) {
+      throw unresponsive(e);
+    }
+  }
+
+  private AnalysisResponse response(JsonReader reader, String filePath, Exchange exchange) {
+    try {
+      // blocks until the response begins to be received
+      reader.peek();
+      var parseStart = System.nanoTime();
+      var response = RESPONSE_ADAPTER.read(reader);
+      if (response.perf != null) {
+        exchange.record(response.perf, parseStart);
+      }
+      heapWatcher.onResponse(response.perf);
+      monitoring.bridgeHeap(response.perf);
+      return response;
+    } catch (MalformedJsonException | EOFException | JsonParseException | IllegalStateException | IllegalArgumentException e) {
+      LOG.error("Failed to parse response for file " + filePath, e);
       throw new IllegalStateException("Failed to parse response", e);
+    } catch (IOException e) {
+      throw unresponsive(e);
     }
   }
 
+  /**
+   * Doesn't send any request: the server is considered alive while its process is running and the last request or heartbeat
+   * got a response, or while it can be replaced after crashing, see {@link #isCause}.
+   */
+  @Override
   public boolean isAlive() {
-    if (nodeCommand == null) {
+    return isProcessAlive() || canRecover();
+  }
+
+  private boolean isProcessAlive() {
+    var process = daemonProcess;
+    if (process != null) {
+      return responsive.get() && process.isAlive();
+    }
+    var command = nodeCommand;
+    return command != null && responsive.get() && command.isAlive();
+  }
+
+  private boolean ping() {
+    if (nodeCommand == null && daemonProcess == null) {
       return false;
     }
-    var request = HttpRequest.newBuilder(url("status")).GET().build();
+    if (socketTransport != null) {
+      try (InputStream body = socketTransport.send("status", "")) {
+        return "OK!".equals(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    // a daemon left by another analysis can accept connections without responding
+    var request = HttpRequest.newBuilder(url("status")).timeout(Duration.ofSeconds(timeoutSeconds)).GET().build();
     try {
       var response = client.send(request, BodyHandlers.ofString());
       String body = response.body();
       return "OK!".equals(body);
     } catch (InterruptedException e) {
-      throw handleInterruptedException(e, "isAlive was interrupted");
+      throw handleInterruptedException(e, "Ping was interrupted");
     } catch (IOException e) {
       return false;
     }
@@ -371,15 +1291,56 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
 
   @Override
   public TsProgram createProgram(TsProgramRequest tsProgramRequest) throws IOException {
-    var response = request(GSON.toJson(tsProgramRequest), "create-program");
-    return GSON.fromJson(response, TsProgram.class);
+    beginRequest();
+    var event = new JfrEvents.ProgramCreation();
+    event.begin();
+    try {
+      var start = System.nanoTime();
+      var response = request(GSON.toJson(tsProgramRequest), "create-program");
+      monitoring.programCreated(System.nanoTime() - start);
+      event.end();
+      var program = GSON.fromJson(response, TsProgram.class);
+      if (event.shouldCommit()) {
+        event.tsConfig = tsProgramRequest.tsConfig;
+        event.programId = program.programId;
+        event.files = program.files != null ? program.files.size() : 0;
+        event.commit();
+      }
+      if (program.programId == null) {
+        return program;
+      }
+      // a restarted process numbers its programs from the start again
+      var id = restarts == 0 ? program.programId : (program.programId + "@" + restarts);
+      programs.put(id, new Program(tsProgramRequest, program.programId));
+      return id.equals(program.programId) ? program : new TsProgram(id, program.files, program.projectReferences);
+    } finally {
+      endRequest();
+    }
   }
 
   @Override
   public boolean deleteProgram(TsProgram tsProgram) throws IOException {
-    var programToDelete = new TsProgram(tsProgram.programId, null, null);
-    var response = request(GSON.toJson(programToDelete), "delete-program");
-    return "OK!".equals(response);
+    beginRequest();
+    try {
+      var program = programs.remove(tsProgram.programId);
+      var serverId = program != null ? program.serverId : tsProgram.programId;
+      if (serverId == null) {
+        // not created again since the process was restarted
+        return true;
+      }
+      var programToDelete = new TsProgram(serverId, null, null);
+      var event = new JfrEvents.ProgramDeletion();
+      event.begin();
+      var response = request(GSON.toJson(programToDelete), "delete-program");
+      event.end();
+      if (event.shouldCommit()) {
+        event.programId = tsProgram.programId;
+        event.commit();
+      }
+      return "OK!".equals(response);
+    } finally {
+      endRequest();
+    }
   }
 
   private static <T> List<T> emptyListIfNull(@Nullable List<T> list) {
@@ -388,19 +1349,70 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
 
   @Override
   public void clean() {
-    LOG.trace("Closing heartbeat service");
-    heartbeatService.shutdownNow();
-    if (nodeCommand != null && isAlive()) {
+    if (starting != null) {
+      // the server may be started in the background, it is then stopped below
+      starting.exceptionally(e -> null).join();
+      starting = null;
+    }
+    synchronized (this) {
+      crashRestartsLeft = 0;
+      timedOutProcess = -1;
+    }
+    closing = true;
+    if (daemonProcess != null) {
+      // the daemon is left running for the next analyses, until it is idle for too long
+      LOG.debug("Leaving eslint-bridge daemon process " + daemonProcess.pid() + " running");
+      responsive.set(false);
+    } else if (nodeCommand != null && isProcessAlive()) {
       try {
         request("", "close");
       } catch (IOException e) {
         LOG.warn("Failed to close server", e);
       }
+      // open connections would keep the Node.js process alive
+      closeSocketTransport();
       nodeCommand.waitFor();
       nodeCommand = null;
+      responsive.set(false);
+    }
+    closeDaemon();
+    closeSocketTransport();
+    shutdownExecutors();
+  }
+
+  private synchronized void shutdownExecutors() {
+    LOG.trace("Closing heartbeat, response and deadline services");
+    if (heartbeatService != null) {
+      heartbeatService.shutdownNow();
+      heartbeatFuture = null;
+    }
+    if (deadlineService != null) {
+      deadlineService.shutdownNow();
+    }
+    if (responseExecutor != null) {
+      responseExecutor.shutdownNow();
     }
   }
 
+  private void closeSocketTransport() {
+    if (socketTransport == null) {
+      return;
+    }
+    socketTransport.close();
+    var socketPath = socketTransport.socketPath();
+    socketTransport = null;
+    try {
+      Files.deleteIfExists(socketPath);
+      Files.deleteIfExists(socketPath.getParent());
+    } catch (IOException e) {
+      LOG.debug("Failed to delete Unix domain socket " + socketPath, e);
+    }
+  }
+
+  List<Path> deployedBundles() {
+    return deployedBundles;
+  }
+
   /**
    * Required for testing purposes
    */
@@ -410,7 +1422,9 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
 
   @Override
   public String getCommandInfo() {
-    if (nodeCommand == null) {
+    if (daemonProcess != null) {
+      return "eslint-bridge daemon process " + daemonProcess.pid() + " is running at port " + port;
+    } else if (nodeCommand == null) {
       return "Node.js command to start eslint-bridge server was not built yet.";
     } else {
       return "Node.js command to start eslint-bridge was: " + nodeCommand;
@@ -443,6 +1457,214 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     }
   }
 
+  static class BatchAnalysisRequest {
+    final String kind;
+    final List<JsAnalysisRequest> inputs;
+
+    BatchAnalysisRequest(BatchKind kind, List<JsAnalysisRequest> inputs) {
+      this.kind = kind.key;
+      this.inputs = inputs;
+    }
+  }
+
+  /**
+   * What the server needs from the analysis to start, which is also available before the sensors are executed, see
+   * {@link EslintBridgeServerPool#start()}
+   */
+  static class StartContext {
+    final Configuration config;
+    final File workDir;
+    final boolean sonarLint;
+
+    StartContext(Configuration config, File workDir, boolean sonarLint) {
+      this.config = config;
+      this.workDir = workDir;
+      this.sonarLint = sonarLint;
+    }
+
+    static StartContext of(SensorContext context) {
+      return new StartContext(context.config(), context.fileSystem().workDir(), context.runtime().getProduct() == SonarProduct.SONARLINT);
+    }
+  }
+
+  static class ContextRequest {
+    final String workDir;
+    final boolean shouldUseTypeScriptParserForJS;
+    final boolean sonarlint;
+    final List<String> bundles;
+
+    ContextRequest(String workDir, boolean shouldUseTypeScriptParserForJS, boolean sonarlint, List<String> bundles) {
+      this.workDir = workDir;
+      this.shouldUseTypeScriptParserForJS = shouldUseTypeScriptParserForJS;
+      this.sonarlint = sonarlint;
+      this.bundles = bundles;
+    }
+  }
+
+  @FunctionalInterface
+  private interface RequestBody {
+    String get() throws IOException;
+  }
+
+  /**
+   * Stops the process when the analysis of a file takes longer than {@link #fileTimeoutSeconds}, see {@link #onDeadline}. The
+   * deadline is started again for each file of a batch. It starts when the request is sent or when the response of the
+   * previous file is received, which is when eslint-bridge starts analyzing the file as long as no other analysis request is
+   * in flight, see {@link #analyzeAsync}.
+   */
+  private class FileDeadline {
+    private final int process;
+    @Nullable
+    private ScheduledFuture<?> timer;
+    private volatile boolean expired;
+
+    FileDeadline(int process) {
+      this.process = process;
+    }
+
+    synchronized void start() {
+      cancel();
+      var service = deadlineService;
+      if (fileTimeoutSeconds > 0 && service != null && !service.isShutdown()) {
+        timer = service.schedule(this::expire, fileTimeoutSeconds, TimeUnit.SECONDS);
+      }
+    }
+
+    synchronized void cancel() {
+      if (timer != null) {
+        timer.cancel(false);
+        timer = null;
+      }
+    }
+
+    boolean isExpired() {
+      return expired;
+    }
+
+    private void expire() {
+      expired = true;
+      onDeadline(process);
+    }
+  }
+
+  /**
+   * Java side costs of a request, reported with the response of each file, see {@link Perf}. The serialization and the size
+   * of a batch request are divided among its files.
+   */
+  private class Exchange {
+    final FileDeadline deadline;
+    private final JfrEvents.BridgeRequest event = new JfrEvents.BridgeRequest();
+    private final int files;
+    private final long serializationNanos;
+    private final long requestSize;
+    @Nullable
+    private CountingInputStream body;
+    private long bytesRead;
+    private long waitStart;
+
+    Exchange(FileDeadline deadline, int files, long serializationStart, String body) {
+      this.deadline = deadline;
+      this.files = Math.max(1, files);
+      serializationNanos = System.nanoTime() - serializationStart;
+      // computing the size of a large request is not free, and it is only reported with monitoring or a JFR recording
+      requestSize = monitoring.isMonitoringEnabled() || event.isEnabled() ? utf8Length(body) : 0;
+      event.begin();
+    }
+
+    InputStream count(InputStream body) {
+      this.body = new CountingInputStream(body);
+      return this.body;
+    }
+
+    /**
+     * Starts the deadline of the next file, and the time its response is waited for
+     */
+    void nextFile() {
+      deadline.start();
+      waitStart = System.nanoTime();
+    }
+
+    /**
+     * The response size is approximate for the files of a batch, as the response is read ahead
+     */
+    void record(Perf perf, long parseStart) {
+      var end = System.nanoTime();
+      perf.serializationTime = micros(serializationNanos / files);
+      perf.waitTime = micros(parseStart - waitStart);
+      perf.responseParseTime = micros(end - parseStart);
+      perf.requestSize = requestSize / files;
+      if (body != null) {
+        var read = body.getBytesRead();
+        perf.responseSize = read - bytesRead;
+        bytesRead = read;
+      }
+      perf.receivedNanos = end;
+    }
+
+    /**
+     * Commits the JFR event of the request, once the last response is read or the request failed
+     */
+    void completed(String endpoint, @Nullable String filePath) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.endpoint = endpoint;
+        event.file = filePath;
+        event.files = files;
+        event.requestSize = requestSize;
+        event.responseSize = body != null ? body.getBytesRead() : 0;
+        event.commit();
+      }
+    }
+
+    private int micros(long nanos) {
+      return (int) TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+  }
+
+  /**
+   * Size of the text once encoded in UTF-8, as sent to eslint-bridge, without encoding it
+   */
+  static long utf8Length(CharSequence text) {
+    long length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        // a lone surrogate is replaced by '?'
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static class UnresponsiveException extends IllegalStateException {
+    UnresponsiveException(IOException cause) {
+      super("eslint-bridge is unresponsive", cause);
+    }
+  }
+
+  /**
+   * A program created by the analysis, with its id in the current process, which is null when it must be created again
+   */
+  private static class Program {
+    final TsProgramRequest request;
+    @Nullable
+    volatile String serverId;
+
+    Program(TsProgramRequest request, String serverId) {
+      this.request = request;
+      this.serverId = serverId;
+    }
+  }
+
   static class InitLinterRequest {
 
     String linterId;
@@ -458,39 +1680,28 @@ public class EslintBridgeServerImpl implements EslintBridgeServer {
     }
   }
 
-  static class MonitoringOutputConsumer implements Consumer<String> {
-
-    // number of spaces after "Rule" depends on the rule keys lengths
-    private static final Pattern HEADER = Pattern.compile("Rule\\s+\\|\\s+Time \\(ms\\)\\s+\\|\\s+Relative\\s*");
-    private static final Pattern RULE_LINE = Pattern.compile("(\\S+)\\s*\\|\\s*(\\d+\\.?\\d+)\\s*\\|\\s*(\\d+\\.?\\d+)%");
-    private final Monitoring monitoring;
+  /**
+   * Completes once eslint-bridge logs that it is listening, with the port it listens to, see eslint-bridge/src/server.ts
+   */
+  static class ReadinessConsumer implements Consumer<String> {
 
-    boolean headerDetected;
-
-    MonitoringOutputConsumer(Monitoring monitoring) {
-      this.monitoring = monitoring;
-    }
+    private static final Pattern READY = Pattern.compile("DEBUG eslint-bridge server is running (?:at port (\\d+)|on socket .*)");
+    private final CompletableFuture<Integer> ready = new CompletableFuture<>();
 
     @Override
-    public void accept(String s) {
-      if (HEADER.matcher(s).matches()) {
-        headerDetected = true;
+    public void accept(String message) {
+      if (ready.isDone()) {
         return;
       }
-      if (headerDetected) {
-        try {
-          var matcher = RULE_LINE.matcher(s);
-          if (matcher.matches()) {
-            var ruleKey = matcher.group(1);
-            var timeMs = Double.parseDouble(matcher.group(2));
-            var relative = Double.parseDouble(matcher.group(3));
-            monitoring.ruleStatistics(ruleKey, timeMs, relative);
-          }
-        } catch (Exception e) {
-          LOG.error("Error parsing rule timing data", e);
-        }
+      var matcher = READY.matcher(message);
+      if (matcher.matches()) {
+        ready.complete(matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : 0);
       }
     }
+
+    CompletableFuture<Integer> ready() {
+      return ready;
+    }
   }
 
   static class LogOutputConsumer implements Consumer<String> {
@@ -0,0 +1,459 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.SonarRuntime;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerImpl.StartContext;
+import org.sonarsource.nodejs.NodeCommandBuilder;
+import org.sonarsource.nodejs.NodeCommandBuilderImpl;
+import org.sonarsource.nodejs.ProcessWrapper;
+
+/**
+ * Runs several eslint-bridge Node.js processes ("workers") to analyze files concurrently.
+ * <p>
+ * Linter configuration is sent to every worker, single file analysis goes to the least busy one. A TypeScript program is
+ * created by the worker owning the fewest programs, and the requests depending on it (analysis with program, deletion) are
+ * sent to that worker. Programs are only analyzed concurrently when several of them are alive at the same time, see
+ * {@link AnalysisWithProgram}: the files of a single program are all analyzed by the same worker. Only the first worker is
+ * started in SonarLint.
+ */
+public class EslintBridgeServerPool implements EslintBridgeServer {
+
+  private static final Logger LOG = Loggers.get(EslintBridgeServerPool.class);
+
+  // internal property to set the maximum number of Node.js processes used for the analysis
+  static final String WORKERS_PROPERTY = "sonar.javascript.bridge.workers";
+  private static final String MAX_OLD_SPACE_SIZE_PROPERTY = "sonar.javascript.node.maxspace";
+  // memory we reserve for each worker when "sonar.javascript.node.maxspace" is not set
+  private static final long DEFAULT_WORKER_MEMORY_MB = 2048;
+  // internal property to start the first Node.js process in the background as soon as the analysis of the project starts
+  static final String EAGER_START_PROPERTY = "sonar.javascript.bridge.eagerStart";
+  // starting a Node.js process and initializing the linter is not worth it for fewer files
+  static final int MIN_FILES_PER_WORKER = 50;
+
+  private final Supplier<EslintBridgeServerImpl> workerFactory;
+  private final Worker primary;
+  private final List<Worker> workers = new CopyOnWriteArrayList<>();
+  private final AtomicInteger workerIds = new AtomicInteger();
+  // by id returned to the analysis, which is unique across the workers
+  private final Map<String, OwnedProgram> programs = new ConcurrentHashMap<>();
+  @Nullable
+  private final StartContext startContext;
+  private SensorContext context;
+  private int maxWorkers = 1;
+  private LinterConfig linterConfig;
+
+  // Used by pico container for dependency injection
+  public EslintBridgeServerPool(NodeCommandBuilder nodeCommandBuilder, ProcessWrapper processWrapper, Bundle bundle, RulesBundles rulesBundles,
+                                NodeDeprecationWarning deprecationWarning, TempFolder tempFolder, Monitoring monitoring) {
+    this(nodeCommandBuilder, processWrapper, bundle, rulesBundles, deprecationWarning, tempFolder, monitoring, null);
+  }
+
+  // Used by pico container for dependency injection when the file system of the project is available, i.e. not in SonarLint
+  public EslintBridgeServerPool(NodeCommandBuilder nodeCommandBuilder, ProcessWrapper processWrapper, Bundle bundle, RulesBundles rulesBundles,
+                                NodeDeprecationWarning deprecationWarning, TempFolder tempFolder, Monitoring monitoring,
+                                Configuration config, FileSystem fileSystem, SonarRuntime runtime) {
+    this(nodeCommandBuilder, processWrapper, bundle, rulesBundles, deprecationWarning, tempFolder, monitoring,
+      new StartContext(config, fileSystem.workDir(), runtime.getProduct() == SonarProduct.SONARLINT));
+  }
+
+  private EslintBridgeServerPool(NodeCommandBuilder nodeCommandBuilder, ProcessWrapper processWrapper, Bundle bundle, RulesBundles rulesBundles,
+                                 NodeDeprecationWarning deprecationWarning, TempFolder tempFolder, Monitoring monitoring, @Nullable StartContext startContext) {
+    // the builder holds the arguments of the command being built, so each additional worker, started concurrently, needs its own
+    this(new EslintBridgeServerImpl(nodeCommandBuilder, bundle, rulesBundles, deprecationWarning, tempFolder, monitoring),
+      () -> new EslintBridgeServerImpl(new NodeCommandBuilderImpl(processWrapper), bundle, rulesBundles, deprecationWarning, tempFolder, monitoring),
+      startContext);
+  }
+
+  EslintBridgeServerPool(EslintBridgeServerImpl primary, Supplier<EslintBridgeServerImpl> workerFactory) {
+    this(primary, workerFactory, null);
+  }
+
+  EslintBridgeServerPool(EslintBridgeServerImpl primary, Supplier<EslintBridgeServerImpl> workerFactory, @Nullable StartContext startContext) {
+    this.primary = new Worker(primary, workerIds.getAndIncrement());
+    this.workerFactory = workerFactory;
+    this.startContext = startContext;
+    workers.add(this.primary);
+  }
+
+  @Override
+  public void startServerLazily(SensorContext context) throws IOException {
+    this.context = context;
+    primary.server.startServerLazily(context);
+    maxWorkers = maxWorkers(context);
+  }
+
+  static int maxWorkers(SensorContext context) {
+    if (context.runtime().getProduct() == SonarProduct.SONARLINT) {
+      return 1;
+    }
+    var configured = context.config().getInt(WORKERS_PROPERTY);
+    if (configured.isPresent()) {
+      return Math.max(1, configured.get());
+    }
+    long workerMemoryMb = context.config().getInt(MAX_OLD_SPACE_SIZE_PROPERTY).map(Integer::longValue).orElse(DEFAULT_WORKER_MEMORY_MB);
+    long availableMemoryMb = physicalMemoryMb() - Runtime.getRuntime().maxMemory() / (1024 * 1024);
+    // one core is left to the scanner which processes the responses
+    long workers = Math.min(Runtime.getRuntime().availableProcessors() - 1L, availableMemoryMb / workerMemoryMb);
+    return (int) Math.max(1, workers);
+  }
+
+  private static long physicalMemoryMb() {
+    var osBean = ManagementFactory.getOperatingSystemMXBean();
+    if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) osBean).getTotalPhysicalMemorySize() / (1024 * 1024);
+    }
+    return 0;
+  }
+
+  @Override
+  public void initLinter(List<EslintRule> rules, List<String> environments, List<String> globals, AnalysisMode analysisMode) throws IOException {
+    linterConfig = new LinterConfig(rules, environments, globals, analysisMode);
+    for (Worker worker : workers) {
+      linterConfig.init(worker.server);
+    }
+  }
+
+  @Override
+  public int startWorkers(int filesToAnalyze) throws IOException {
+    int wanted = Math.min(maxWorkers, Math.max(1, filesToAnalyze / MIN_FILES_PER_WORKER));
+    int missing = wanted - workers.size();
+    if (missing > 0) {
+      LOG.debug("Starting {} additional eslint-bridge processes", missing);
+      ExecutorService executor = Executors.newFixedThreadPool(missing);
+      try {
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        for (int i = 0; i < missing; i++) {
+          started.add(CompletableFuture.runAsync(this::startWorker, executor));
+        }
+        CompletableFuture.allOf(started.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+      } finally {
+        executor.shutdownNow();
+      }
+      LOG.debug("Using {} eslint-bridge processes", workers.size());
+    }
+    return workers.size();
+  }
+
+  private void startWorker() {
+    var server = workerFactory.get();
+    try {
+      server.startServer(context, primary.server.deployedBundles());
+      if (linterConfig != null) {
+        linterConfig.init(server);
+      }
+      workers.add(new Worker(server, workerIds.getAndIncrement()));
+    } catch (Exception e) {
+      // the analysis can go on with the workers already running
+      LOG.warn("Failed to start additional eslint-bridge process", e);
+      server.clean();
+    }
+  }
+
+  @Override
+  public AnalysisResponse analyzeJavaScript(JsAnalysisRequest request) throws IOException {
+    return dispatch(server -> server.analyzeJavaScript(request));
+  }
+
+  @Override
+  public AnalysisResponse analyzeTypeScript(JsAnalysisRequest request) throws IOException {
+    return dispatch(server -> server.analyzeTypeScript(request));
+  }
+
+  @Override
+  public AnalysisResponse analyzeWithProgram(JsAnalysisRequest request) throws IOException {
+    var program = ownedProgram(request.programId);
+    if (program == null) {
+      return primary.server.analyzeWithProgram(request);
+    }
+    return dispatch(program.worker, server -> server.analyzeWithProgram(program.request(request)));
+  }
+
+  @Override
+  public AnalysisResponse analyzeCss(CssAnalysisRequest request) throws IOException {
+    return dispatch(server -> server.analyzeCss(request));
+  }
+
+  @Override
+  public AnalysisResponse analyzeYaml(JsAnalysisRequest request) throws IOException {
+    return dispatch(server -> server.analyzeYaml(request));
+  }
+
+  @Override
+  public CompletableFuture<AnalysisResponse> analyzeCssAsync(CssAnalysisRequest request) {
+    return dispatchAsync(server -> server.analyzeCssAsync(request));
+  }
+
+  @Override
+  public CompletableFuture<AnalysisResponse> analyzeWithProgramAsync(JsAnalysisRequest request) {
+    var program = ownedProgram(request.programId);
+    if (program == null) {
+      return primary.server.analyzeWithProgramAsync(request);
+    }
+    return dispatchAsync(program.worker, server -> server.analyzeWithProgramAsync(program.request(request)));
+  }
+
+  @Override
+  public CompletableFuture<Void> analyzeBatchAsync(BatchKind kind, List<JsAnalysisRequest> requests, Consumer<AnalysisResponse> consumer) {
+    return dispatchAsync(server -> server.analyzeBatchAsync(kind, requests, consumer));
+  }
+
+  private <T> T dispatch(Analysis<T> analysis) throws IOException {
+    return dispatch(leastBusy(), analysis);
+  }
+
+  private static <T> T dispatch(Worker worker, Analysis<T> analysis) throws IOException {
+    worker.inFlight.incrementAndGet();
+    try {
+      return analysis.analyze(worker.server);
+    } finally {
+      worker.inFlight.decrementAndGet();
+    }
+  }
+
+  private <T> CompletableFuture<T> dispatchAsync(Function<EslintBridgeServer, CompletableFuture<T>> analysis) {
+    return dispatchAsync(leastBusy(), analysis);
+  }
+
+  private static <T> CompletableFuture<T> dispatchAsync(Worker worker, Function<EslintBridgeServer, CompletableFuture<T>> analysis) {
+    worker.inFlight.incrementAndGet();
+    try {
+      return analysis.apply(worker.server).whenComplete((result, e) -> worker.inFlight.decrementAndGet());
+    } catch (RuntimeException e) {
+      worker.inFlight.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the alive worker with the fewest requests in flight, the first worker when none is alive, so that the request
+   * reports the failure
+   */
+  private Worker leastBusy() {
+    removeDeadWorkers();
+    Worker leastBusy = null;
+    for (Worker worker : workers) {
+      if ((leastBusy == null || worker.inFlight.get() < leastBusy.inFlight.get()) && worker.server.isAlive()) {
+        leastBusy = worker;
+      }
+    }
+    return leastBusy == null ? primary : leastBusy;
+  }
+
+  /**
+   * The other workers than the first one are not restarted once they can't recover, they are removed from the rotation
+   */
+  private void removeDeadWorkers() {
+    for (Worker worker : workers) {
+      if (worker != primary && !worker.server.isAlive() && workers.remove(worker)) {
+        LOG.warn("eslint-bridge process #{} is not answering, the analysis goes on with {} process(es)", worker.id, workers.size());
+        worker.server.clean();
+      }
+    }
+  }
+
+  @Override
+  public void clean() {
+    for (Worker worker : workers) {
+      worker.server.clean();
+    }
+    workers.retainAll(List.of(primary));
+    programs.clear();
+    primary.programs.set(0);
+  }
+
+  @Override
+  public String getCommandInfo() {
+    return primary.server.getCommandInfo();
+  }
+
+  /**
+   * The pool is alive while one of its workers is, requests are then sent to the alive ones, see {@link #leastBusy()}
+   */
+  @Override
+  public boolean isAlive() {
+    for (Worker worker : workers) {
+      if (worker.server.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean newTsConfig() {
+    boolean result = true;
+    for (Worker worker : workers) {
+      result &= worker.server.newTsConfig();
+    }
+    return result;
+  }
+
+  @Override
+  public TsConfigFile loadTsConfig(String tsConfigAbsolutePath) {
+    return primary.server.loadTsConfig(tsConfigAbsolutePath);
+  }
+
+  /**
+   * The ids of the programs created by the other workers than the first one are suffixed with the id of the worker, as each
+   * worker numbers its programs from the start
+   */
+  @Override
+  public TsProgram createProgram(TsProgramRequest tsProgramRequest) throws IOException {
+    var worker = fewestPrograms();
+    var program = worker.server.createProgram(tsProgramRequest);
+    if (program.programId == null) {
+      return program;
+    }
+    worker.programs.incrementAndGet();
+    var id = worker == primary ? program.programId : (program.programId + "#" + worker.id);
+    programs.put(id, new OwnedProgram(worker, program.programId));
+    return id.equals(program.programId) ? program : new TsProgram(id, program.files, program.projectReferences);
+  }
+
+  @Override
+  public boolean deleteProgram(TsProgram tsProgram) throws IOException {
+    var program = tsProgram.programId == null ? null : programs.remove(tsProgram.programId);
+    if (program == null) {
+      return primary.server.deleteProgram(tsProgram);
+    }
+    program.worker.programs.decrementAndGet();
+    if (!program.workerProgramId.equals(tsProgram.programId)) {
+      tsProgram = new TsProgram(program.workerProgramId, tsProgram.files, tsProgram.projectReferences);
+    }
+    return program.worker.server.deleteProgram(tsProgram);
+  }
+
+  @Nullable
+  private OwnedProgram ownedProgram(@Nullable String programId) {
+    return programId == null ? null : programs.get(programId);
+  }
+
+  private Worker fewestPrograms() {
+    removeDeadWorkers();
+    Worker fewest = null;
+    for (Worker worker : workers) {
+      if ((fewest == null || worker.programs.get() < fewest.programs.get()) && worker.server.isAlive()) {
+        fewest = worker;
+      }
+    }
+    return fewest == null ? primary : fewest;
+  }
+
+  /**
+   * When enabled, the first worker is started in the background, overlapping with the indexing of the project files and the
+   * sensors of other languages, the first sensor then only waits for it. Otherwise, it is started lazily from the
+   * org.sonar.plugins.javascript.eslint.EslintBasedRulesSensor, as projects without JavaScript files don't need it.
+   */
+  @Override
+  public void start() {
+    if (startContext != null && !startContext.sonarLint && startContext.config.getBoolean(EAGER_START_PROPERTY).orElse(false)) {
+      LOG.debug("Starting eslint-bridge server in the background");
+      primary.server.startAsync(startContext);
+    }
+  }
+
+  @Override
+  public void stop() {
+    clean();
+  }
+
+  int workerCount() {
+    return workers.size();
+  }
+
+  private interface Analysis<T> {
+    T analyze(EslintBridgeServer server) throws IOException;
+  }
+
+  private static class Worker {
+    final EslintBridgeServerImpl server;
+    final int id;
+    final AtomicInteger inFlight = new AtomicInteger();
+    // programs created by the worker which are not deleted yet
+    final AtomicInteger programs = new AtomicInteger();
+
+    Worker(EslintBridgeServerImpl server, int id) {
+      this.server = server;
+      this.id = id;
+    }
+  }
+
+  private static class OwnedProgram {
+    final Worker worker;
+    final String workerProgramId;
+
+    OwnedProgram(Worker worker, String workerProgramId) {
+      this.worker = worker;
+      this.workerProgramId = workerProgramId;
+    }
+
+    /**
+     * @return the request with the id the program has in its worker
+     */
+    JsAnalysisRequest request(JsAnalysisRequest request) {
+      if (workerProgramId.equals(request.programId)) {
+        return request;
+      }
+      return new JsAnalysisRequest(request.filePath, request.fileType, request.fileContent, request.ignoreHeaderComments, request.tsConfigs,
+        workerProgramId, request.linterId);
+    }
+  }
+
+  private static class LinterConfig {
+    final List<EslintRule> rules;
+    final List<String> environments;
+    final List<String> globals;
+    final AnalysisMode analysisMode;
+
+    LinterConfig(List<EslintRule> rules, List<String> environments, List<String> globals, AnalysisMode analysisMode) {
+      this.rules = rules;
+      this.environments = environments;
+      this.globals = globals;
+      this.analysisMode = analysisMode;
+    }
+
+    void init(EslintBridgeServer server) throws IOException {
+      server.initLinter(rules, environments, globals, analysisMode);
+    }
+  }
+}
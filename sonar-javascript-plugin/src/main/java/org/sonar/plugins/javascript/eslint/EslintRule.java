@@ -30,11 +30,18 @@ class EslintRule {
   final String key;
   final List<String> fileTypeTarget;
   final List<Object> configurations;
+  // not sent to eslint-bridge, see DuplicateFiles
+  final transient boolean contextDependent;
 
   EslintRule(String key, List<Object> configurations, List<InputFile.Type> fileTypeTarget) {
+    this(key, configurations, fileTypeTarget, false);
+  }
+
+  EslintRule(String key, List<Object> configurations, List<InputFile.Type> fileTypeTarget, boolean contextDependent) {
     this.key = key;
     this.fileTypeTarget = fileTypeTarget.stream().map(InputFile.Type::name).collect(Collectors.toList());
     this.configurations = configurations;
+    this.contextDependent = contextDependent;
   }
 
   static boolean containsRuleWithKey(List<EslintRule> rules, String eslintKey) {
@@ -0,0 +1,111 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.Version;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Files whose analysis exceeded the deadline set by {@link EslintBridgeServerImpl#FILE_TIMEOUT_PROPERTY} are stored in the
+ * sensor cache, so that the next analysis skips them instead of stalling again, as long as they are unchanged and the
+ * deadline is not increased. The files analyzed by both ESLint and Stylelint, e.g. Vue.js files, are put in quarantine for
+ * each of them separately.
+ */
+final class FileQuarantine {
+
+  private static final Logger LOG = Loggers.get(FileQuarantine.class);
+
+  enum Analyzer {
+    ESLINT,
+    STYLELINT
+  }
+
+  private FileQuarantine() {
+  }
+
+  static boolean isQuarantined(SensorContext context, Analyzer analyzer, InputFile file) {
+    if (!isCacheAvailable(context) || file.status() != InputFile.Status.SAME) {
+      return false;
+    }
+    var key = cacheKey(analyzer, file);
+    if (!context.previousCache().contains(key)) {
+      return false;
+    }
+    int deadline;
+    try (var input = context.previousCache().read(key)) {
+      deadline = ByteBuffer.wrap(input.readAllBytes()).getInt();
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Failure when reading quarantine cache entry of file {}", file, e);
+      return false;
+    }
+    int timeoutSeconds = EslintBridgeServerImpl.fileTimeoutSeconds(context.config());
+    if (timeoutSeconds <= 0 || deadline < timeoutSeconds) {
+      return false;
+    }
+    try {
+      context.nextCache().copyFromPrevious(key);
+    } catch (IllegalArgumentException e) {
+      // already copied, e.g. the file was checked before
+      LOG.debug("File {} is already in quarantine", file);
+    }
+    LOG.warn("Skipping file [{}] as its analysis exceeded {} s during the previous analysis", file, deadline);
+    return true;
+  }
+
+  /**
+   * Reports the file whose analysis exceeded the deadline and puts it in quarantine for the next analysis
+   */
+  static void skipped(SensorContext context, AnalysisWarningsWrapper analysisWarnings, Analyzer analyzer, InputFile file, String message) {
+    LOG.error("Failed to analyze file [{}]: {}", file, message);
+    context.newAnalysisError()
+      .onFile(file)
+      .message(message)
+      .save();
+    analysisWarnings.addUnique("File " + file + " was " + message + ". It will be skipped by the next analysis until it changes.");
+    if (isCacheAvailable(context)) {
+      int timeoutSeconds = EslintBridgeServerImpl.fileTimeoutSeconds(context.config());
+      try {
+        context.nextCache().write(cacheKey(analyzer, file), ByteBuffer.allocate(Integer.BYTES).putInt(timeoutSeconds).array());
+      } catch (IllegalArgumentException e) {
+        // already written, as cache entries can only be written once
+        LOG.debug("File {} is already in quarantine", file);
+      }
+    }
+  }
+
+  private static boolean isCacheAvailable(SensorContext context) {
+    return context.runtime().getApiVersion().isGreaterThanOrEqual(Version.create(9, 4))
+      && context.runtime().getProduct() != SonarProduct.SONARLINT
+      && context.isCacheEnabled();
+  }
+
+  private static String cacheKey(Analyzer analyzer, InputFile file) {
+    var version = PluginUtils.getVersion();
+    return "js:quarantine:" + analyzer.name().toLowerCase(Locale.ROOT) + ":" + (version == null ? "" : (version + ":")) + file.key();
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import javax.annotation.Nullable;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Perf;
+
+/**
+ * Watches the heap usage that eslint-bridge reports with each analysis response, to restart the Node.js process between
+ * two files before it runs out of memory. The heap grows during long analyses, as TypeScript programs are created and the
+ * linter keeps caches.
+ * <p>
+ * A restart is only worth it when it frees memory: when the heap is full again shortly after a restart, e.g. because a
+ * single program doesn't fit in it, restarts are disabled for the process.
+ */
+class HeapWatcher {
+
+  private static final Logger LOG = Loggers.get(HeapWatcher.class);
+
+  // internal property to set the fraction of the heap limit above which eslint-bridge is restarted, 1 disables restarts
+  static final String MAX_HEAP_USAGE_PROPERTY = "sonar.javascript.bridge.maxHeapUsage";
+  static final double DEFAULT_MAX_HEAP_USAGE = 0.85;
+  static final int MIN_RESPONSES_BETWEEN_RESTARTS = 20;
+
+  private final double maxHeapUsage;
+  private int restarts;
+  private int responses;
+  private double usage;
+  private boolean restartNeeded;
+  private boolean disabled;
+
+  HeapWatcher(Configuration config) {
+    this(config.get(MAX_HEAP_USAGE_PROPERTY).map(Double::parseDouble).orElse(DEFAULT_MAX_HEAP_USAGE));
+  }
+
+  HeapWatcher(double maxHeapUsage) {
+    this.maxHeapUsage = maxHeapUsage;
+    this.disabled = maxHeapUsage <= 0 || maxHeapUsage >= 1;
+  }
+
+  /**
+   * Called on the threads reading the responses
+   */
+  synchronized void onResponse(@Nullable Perf perf) {
+    responses++;
+    if (disabled || restartNeeded || perf == null || perf.heapLimit <= 0) {
+      return;
+    }
+    usage = (double) perf.heapUsed / perf.heapLimit;
+    if (usage < maxHeapUsage) {
+      return;
+    }
+    if (restarts > 0 && responses < MIN_RESPONSES_BETWEEN_RESTARTS) {
+      disabled = true;
+      LOG.warn("eslint-bridge Node.js process uses {}% of its heap shortly after being restarted. Consider setting " +
+        "sonar.javascript.node.maxspace to higher value (e.g. 4096).", percent(usage));
+      return;
+    }
+    restartNeeded = true;
+  }
+
+  synchronized boolean isRestartNeeded() {
+    return restartNeeded;
+  }
+
+  /**
+   * @return the last reported heap usage, as a percentage of the heap limit
+   */
+  synchronized long usagePercent() {
+    return percent(usage);
+  }
+
+  synchronized void restarted() {
+    restarts++;
+    responses = 0;
+    restartNeeded = false;
+  }
+
+  private static long percent(double usage) {
+    return Math.round(usage * 100);
+  }
+}
@@ -37,7 +37,9 @@ import org.sonar.plugins.javascript.CancellationException;
 import org.sonar.plugins.javascript.JavaScriptFilePredicate;
 import org.sonar.plugins.javascript.JavaScriptLanguage;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
 import org.sonar.plugins.javascript.eslint.TsConfigProvider.DefaultTsConfigProvider;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategy;
@@ -50,6 +52,7 @@ public class JavaScriptEslintBasedSensor extends AbstractEslintSensor {
   private final JavaScriptChecks checks;
   private final AnalysisProcessor processAnalysis;
   private AnalysisMode analysisMode;
+  private ResponseCache responseCache;
 
   public JavaScriptEslintBasedSensor(JavaScriptChecks checks, EslintBridgeServer eslintBridgeServer,
                                      AnalysisWarningsWrapper analysisWarnings, TempFolder folder, Monitoring monitoring,
@@ -77,25 +80,39 @@ public class JavaScriptEslintBasedSensor extends AbstractEslintSensor {
 
   private void runEslintAnalysis(List<String> tsConfigs, List<InputFile> inputFiles) throws IOException {
     analysisMode = AnalysisMode.getMode(context, checks.eslintRules());
+    responseCache = ResponseCache.create(context, monitoring, checks.eslintRules(), environments, globals);
+    var duplicateFiles = DuplicateFiles.of(inputFiles, checks.eslintRules());
     ProgressReport progressReport = new ProgressReport("Analysis progress", TimeUnit.SECONDS.toMillis(10));
     boolean success = false;
     try {
       progressReport.start(inputFiles.size(), inputFiles.iterator().next().absolutePath());
       eslintBridgeServer.initLinter(checks.eslintRules(), environments, globals, analysisMode);
-      for (InputFile inputFile : inputFiles) {
-        monitoring.startFile(inputFile);
-        if (context.isCancelled()) {
-          throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
-        }
-        if (eslintBridgeServer.isAlive()) {
-          progressReport.nextFile(inputFile.absolutePath());
-          var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile);
-          if (cacheStrategy.isAnalysisRequired()) {
-            analyze(inputFile, tsConfigs, cacheStrategy);
+      int concurrency = eslintBridgeServer.startWorkers(inputFiles.size());
+      try (var dispatcher = AnalysisDispatcher.withBatches(context, concurrency, inputFiles.size(),
+        (requests, consumer) -> eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, consumer),
+        (file, e) -> LOG.error("Failed to get response while analyzing " + file.uri(), e))) {
+        for (InputFile inputFile : inputFiles) {
+          monitoring.startFile(inputFile);
+          if (context.isCancelled()) {
+            throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+          }
+          if (eslintBridgeServer.isAlive()) {
+            progressReport.nextFile(inputFile.absolutePath());
+            if (duplicateFiles.isRepresented(inputFile)) {
+              monitoring.skipFile(inputFile);
+              continue;
+            }
+            var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+            if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)) {
+              analyze(inputFile, tsConfigs, cacheStrategy, dispatcher, duplicateFiles);
+            } else {
+              monitoring.skipFile(inputFile);
+            }
+          } else {
+            throw new IllegalStateException("eslint-bridge server is not answering");
           }
-        } else {
-          throw new IllegalStateException("eslint-bridge server is not answering");
         }
+        dispatcher.finish();
       }
       success = true;
     } finally {
@@ -107,18 +124,49 @@ public class JavaScriptEslintBasedSensor extends AbstractEslintSensor {
     }
   }
 
-  private void analyze(InputFile file, List<String> tsConfigs, CacheStrategy cacheStrategy) throws IOException {
-    try {
-      LOG.debug("Analyzing file: {}", file.uri());
-      String fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
-      JsAnalysisRequest jsAnalysisRequest = new JsAnalysisRequest(file.absolutePath(), file.type().toString(),
-        fileContent, contextUtils.ignoreHeaderComments(), tsConfigs, null, analysisMode.getLinterIdFor(file));
-      AnalysisResponse response = eslintBridgeServer.analyzeJavaScript(jsAnalysisRequest);
+  private void analyze(InputFile file, List<String> tsConfigs, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher,
+                       DuplicateFiles duplicateFiles) throws IOException {
+    var duplicates = duplicateFiles.representedBy(file);
+    var cachedResponse = responseCache.forFile(file, tsConfigs);
+    var replayed = cachedResponse.replay();
+    if (replayed != null) {
+      duplicateFiles.replayed(file, replayed);
+      processAnalysis.processResponse(context, checks, file, replayed);
+      cacheStrategy.writeGeneratedFilesToCache(replayed.ucfgPaths);
+      processDuplicates(duplicates, tsConfigs, replayed);
+      return;
+    }
+    LOG.debug("Analyzing file: {}", file.uri());
+    submit(file, tsConfigs, cacheStrategy, dispatcher, duplicateFiles, cachedResponse, duplicates);
+  }
+
+  private void submit(InputFile file, List<String> tsConfigs, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher,
+                      DuplicateFiles duplicateFiles, ResponseCache.Entry cachedResponse, List<InputFile> duplicates) throws IOException {
+    String fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
+    JsAnalysisRequest jsAnalysisRequest = new JsAnalysisRequest(file.absolutePath(), file.type().toString(),
+      fileContent, contextUtils.ignoreHeaderComments(), tsConfigs, null, duplicateFiles.linterIdFor(file, analysisMode.getLinterIdFor(file)));
+    dispatcher.submit(file, jsAnalysisRequest, analyzed -> {
+      var response = duplicateFiles.completed(file, analyzed);
+      if (response == null) {
+        submit(file, tsConfigs, cacheStrategy, dispatcher, duplicateFiles, cachedResponse, duplicates);
+        return;
+      }
       processAnalysis.processResponse(context, checks, file, response);
       cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
-    } catch (IOException e) {
-      LOG.error("Failed to get response while analyzing " + file.uri(), e);
-      throw e;
+      cachedResponse.save(response);
+      processDuplicates(duplicates, tsConfigs, response);
+    });
+  }
+
+  private void processDuplicates(List<InputFile> duplicates, List<String> tsConfigs, AnalysisResponse response) throws IOException {
+    for (InputFile duplicate : duplicates) {
+      var cacheStrategy = CacheStrategies.getStrategyFor(context, duplicate, monitoring);
+      if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, duplicate)) {
+        LOG.debug("Reusing the analysis of an identical file for: {}", duplicate.uri());
+        processAnalysis.processDuplicate(context, checks, duplicate, response);
+        cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
+        responseCache.forFile(duplicate, tsConfigs).save(response);
+      }
     }
   }
 
@@ -0,0 +1,155 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+
+/**
+ * Java Flight Recorder events of the analysis, to correlate the activity of the plugin with GC and CPU in a recording, e.g.
+ * started with -XX:StartFlightRecording. When no recording is running, creating an event is cheap: their fields are only
+ * computed once {@link Event#shouldCommit()} is true.
+ */
+final class JfrEvents {
+
+  private static final String CATEGORY = "SonarJS";
+
+  private JfrEvents() {
+  }
+
+  /**
+   * Commits an event for an access to the cache, whose duration was already measured
+   */
+  static void cacheAccess(CacheType cacheType, String operation, InputFile inputFile, long size, long durationNanos) {
+    var event = new CacheAccess();
+    if (event.isEnabled()) {
+      event.cacheType = cacheType.name();
+      event.operation = operation;
+      event.file = inputFile.toString();
+      event.size = size;
+      event.accessTime = durationNanos;
+      event.commit();
+    }
+  }
+
+  @Name("org.sonarsource.javascript.BridgeRequest")
+  @Label("eslint-bridge Request")
+  @Description("From the sending of a request to eslint-bridge to the reading of its response")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class BridgeRequest extends Event {
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("File")
+    @Description("The analyzed file, not set for a batch")
+    String file;
+
+    @Label("Files")
+    int files;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestSize;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseSize;
+  }
+
+  @Name("org.sonarsource.javascript.ProgramCreation")
+  @Label("TypeScript Program Creation")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class ProgramCreation extends Event {
+
+    @Label("tsconfig")
+    String tsConfig;
+
+    @Label("Program Id")
+    String programId;
+
+    @Label("Files")
+    int files;
+  }
+
+  @Name("org.sonarsource.javascript.ProgramDeletion")
+  @Label("TypeScript Program Deletion")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class ProgramDeletion extends Event {
+
+    @Label("Program Id")
+    String programId;
+  }
+
+  /**
+   * Committed once the access is complete, see {@link #cacheAccess}
+   */
+  @Name("org.sonarsource.javascript.CacheAccess")
+  @Label("Cache Access")
+  @Description("Read, extraction or write of a cache entry")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class CacheAccess extends Event {
+
+    @Label("Cache Type")
+    String cacheType;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    // the built-in duration of the event is zero, as it is committed afterwards
+    @Label("Access Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long accessTime;
+  }
+
+  @Name("org.sonarsource.javascript.SensorExecution")
+  @Label("Sensor Execution")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static class SensorExecution extends Event {
+
+    @Label("Sensor")
+    String sensor;
+
+    @Label("Files")
+    @Description("Files whose analysis was started")
+    int files;
+  }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Perf;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+
+/**
+ * Counters and gauges of the analysis published while it runs, unlike the metrics of {@link Monitoring} which are only
+ * written once each file or sensor is complete. They are exposed through a JMX MBean, see {@link #JMX_PROPERTY}, and through a file in the
+ * Prometheus text format which is rewritten periodically, see {@link #PROMETHEUS_FILE_PROPERTY}, e.g. for the textfile
+ * collector of node_exporter.
+ * <p>
+ * Values are recorded on the threads of the sensor and on those reading the responses of eslint-bridge.
+ */
+class LiveMetrics implements LiveMetricsMBean {
+
+  private static final Logger LOG = Loggers.get(LiveMetrics.class);
+
+  // internal properties, the metrics are recorded in any case but only published when one of them is set
+  static final String JMX_PROPERTY = "sonar.javascript.monitoring.jmx";
+  static final String PROMETHEUS_FILE_PROPERTY = "sonar.javascript.monitoring.prometheusFile";
+  static final String PROMETHEUS_PERIOD_PROPERTY = "sonar.javascript.monitoring.prometheusPeriod";
+  static final int DEFAULT_PROMETHEUS_PERIOD_SECONDS = 10;
+  static final String OBJECT_NAME = "org.sonarsource.javascript:type=LiveMetrics";
+  // the rate of analyzed files is averaged over the last complete seconds
+  static final int RATE_WINDOW_SECONDS = 10;
+
+  private final boolean jmx;
+  @Nullable
+  private final Path prometheusFile;
+  private final int prometheusPeriodSeconds;
+  private final LongSupplier nanoTime;
+
+  private final LongAdder filesAnalyzed = new LongAdder();
+  private final AtomicLong lastFileAnalyzedMillis = new AtomicLong();
+  // guarded by filesBySecond, files analyzed during each of the last seconds, indexed by the second modulo the length
+  private final long[] filesBySecond = new long[RATE_WINDOW_SECONDS + 1];
+  private final long[] seconds = new long[RATE_WINDOW_SECONDS + 1];
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder requestNanos = new LongAdder();
+  private final AtomicLong lastRequestNanos = new AtomicLong();
+  private final AtomicInteger requestsInFlight = new AtomicInteger();
+  private final AtomicLong heapUsed = new AtomicLong();
+  private final AtomicLong heapLimit = new AtomicLong();
+  private final Map<CacheType, LongAdder> cacheHits = new EnumMap<>(CacheType.class);
+  private final Map<CacheType, LongAdder> cacheMisses = new EnumMap<>(CacheType.class);
+  private final LongAdder programs = new LongAdder();
+  private final LongAdder programNanos = new LongAdder();
+  private final AtomicLong lastProgramNanos = new AtomicLong();
+
+  @Nullable
+  private ScheduledExecutorService prometheusWriter;
+  @Nullable
+  private ObjectName registeredName;
+
+  LiveMetrics(Configuration configuration) {
+    this(configuration.getBoolean(JMX_PROPERTY).orElse(false),
+      configuration.get(PROMETHEUS_FILE_PROPERTY).map(Paths::get).orElse(null),
+      configuration.getInt(PROMETHEUS_PERIOD_PROPERTY).orElse(DEFAULT_PROMETHEUS_PERIOD_SECONDS),
+      System::nanoTime);
+  }
+
+  LiveMetrics(boolean jmx, @Nullable Path prometheusFile, int prometheusPeriodSeconds, LongSupplier nanoTime) {
+    this.jmx = jmx;
+    this.prometheusFile = prometheusFile;
+    this.prometheusPeriodSeconds = Math.max(1, prometheusPeriodSeconds);
+    this.nanoTime = nanoTime;
+    for (CacheType cacheType : CacheType.values()) {
+      cacheHits.put(cacheType, new LongAdder());
+      cacheMisses.put(cacheType, new LongAdder());
+    }
+  }
+
+  synchronized void start() {
+    if (jmx && registeredName == null) {
+      try {
+        var name = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, LiveMetricsMBean.class), name);
+        registeredName = name;
+        LOG.debug("Live metrics are published through JMX as {}", OBJECT_NAME);
+      } catch (JMException e) {
+        LOG.warn("Failed to publish live metrics through JMX", e);
+      }
+    }
+    if (prometheusFile != null && prometheusWriter == null) {
+      prometheusWriter = Executors.newSingleThreadScheduledExecutor(LiveMetrics::newThread);
+      prometheusWriter.scheduleAtFixedRate(this::writePrometheusFile, 0, prometheusPeriodSeconds, TimeUnit.SECONDS);
+      LOG.debug("Live metrics are written every {} s to {}", prometheusPeriodSeconds, prometheusFile);
+    }
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    var thread = new Thread(runnable, "live-metrics");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Writes the file a last time, so that it holds the final values
+   */
+  synchronized void stop() {
+    if (prometheusWriter != null) {
+      prometheusWriter.shutdownNow();
+      prometheusWriter = null;
+      writePrometheusFile();
+    }
+    if (registeredName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+      } catch (JMException e) {
+        LOG.debug("Failed to unregister live metrics", e);
+      }
+      registeredName = null;
+    }
+  }
+
+  void fileAnalyzed() {
+    filesAnalyzed.increment();
+    lastFileAnalyzedMillis.set(System.currentTimeMillis());
+    var second = TimeUnit.NANOSECONDS.toSeconds(nanoTime.getAsLong());
+    var index = (int) Math.floorMod(second, (long) seconds.length);
+    synchronized (filesBySecond) {
+      if (seconds[index] != second) {
+        seconds[index] = second;
+        filesBySecond[index] = 0;
+      }
+      filesBySecond[index]++;
+    }
+  }
+
+  void requestStarted() {
+    requestsInFlight.incrementAndGet();
+  }
+
+  void requestEnded() {
+    requestsInFlight.decrementAndGet();
+  }
+
+  void requestCompleted(long durationNanos) {
+    requests.increment();
+    requestNanos.add(durationNanos);
+    lastRequestNanos.set(durationNanos);
+  }
+
+  void heap(@Nullable Perf perf) {
+    if (perf != null && perf.heapLimit > 0) {
+      heapUsed.set(perf.heapUsed);
+      heapLimit.set(perf.heapLimit);
+    }
+  }
+
+  void cacheLookup(CacheType cacheType, boolean hit) {
+    (hit ? cacheHits : cacheMisses).get(cacheType).increment();
+  }
+
+  void programCreated(long durationNanos) {
+    programs.increment();
+    programNanos.add(durationNanos);
+    lastProgramNanos.set(durationNanos);
+  }
+
+  @Override
+  public long getFilesAnalyzed() {
+    return filesAnalyzed.sum();
+  }
+
+  @Override
+  public double getFilesPerSecond() {
+    var current = TimeUnit.NANOSECONDS.toSeconds(nanoTime.getAsLong());
+    long files = 0;
+    synchronized (filesBySecond) {
+      for (int i = 0; i < seconds.length; i++) {
+        var age = current - seconds[i];
+        if (age >= 1 && age <= RATE_WINDOW_SECONDS) {
+          files += filesBySecond[i];
+        }
+      }
+    }
+    return (double) files / RATE_WINDOW_SECONDS;
+  }
+
+  @Override
+  public long getLastFileAnalyzedTime() {
+    return lastFileAnalyzedMillis.get();
+  }
+
+  @Override
+  public long getBridgeRequests() {
+    return requests.sum();
+  }
+
+  @Override
+  public double getBridgeRequestLatencyMillis() {
+    return mean(requestNanos, requests);
+  }
+
+  @Override
+  public double getLastBridgeRequestLatencyMillis() {
+    return millis(lastRequestNanos.get());
+  }
+
+  @Override
+  public int getBridgeRequestsInFlight() {
+    return requestsInFlight.get();
+  }
+
+  @Override
+  public long getBridgeHeapUsed() {
+    return heapUsed.get();
+  }
+
+  @Override
+  public long getBridgeHeapLimit() {
+    return heapLimit.get();
+  }
+
+  @Override
+  public long getUcfgCacheHits() {
+    return cacheHits.get(CacheType.UCFG).sum();
+  }
+
+  @Override
+  public long getUcfgCacheMisses() {
+    return cacheMisses.get(CacheType.UCFG).sum();
+  }
+
+  @Override
+  public long getResponseCacheHits() {
+    return cacheHits.get(CacheType.RESPONSE).sum();
+  }
+
+  @Override
+  public long getResponseCacheMisses() {
+    return cacheMisses.get(CacheType.RESPONSE).sum();
+  }
+
+  @Override
+  public long getProgramsCreated() {
+    return programs.sum();
+  }
+
+  @Override
+  public double getProgramCreationMillis() {
+    return mean(programNanos, programs);
+  }
+
+  @Override
+  public double getLastProgramCreationMillis() {
+    return millis(lastProgramNanos.get());
+  }
+
+  private static double mean(LongAdder nanos, LongAdder count) {
+    var n = count.sum();
+    return n == 0 ? 0 : (millis(nanos.sum()) / n);
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  /**
+   * The file is replaced atomically, so that it is never read partially written
+   */
+  private void writePrometheusFile() {
+    if (prometheusFile == null) {
+      return;
+    }
+    try {
+      var directory = prometheusFile.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      var temp = Files.createTempFile(directory, prometheusFile.getFileName().toString(), ".tmp");
+      Files.write(temp, prometheusText().getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, prometheusFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Failed to write live metrics to {}", prometheusFile, e);
+    }
+  }
+
+  String prometheusText() {
+    var text = new StringBuilder();
+    metric(text, "sonarjs_files_analyzed_total", "counter", "Files analyzed by eslint-bridge", getFilesAnalyzed());
+    metric(text, "sonarjs_files_analyzed_per_second", "gauge",
+      "Files analyzed per second over the last " + RATE_WINDOW_SECONDS + " seconds", getFilesPerSecond());
+    metric(text, "sonarjs_last_file_analyzed_timestamp_seconds", "gauge", "Time at which the last file was analyzed",
+      getLastFileAnalyzedTime() / 1000.0);
+    header(text, "sonarjs_bridge_request_duration_seconds", "summary", "Duration of the analysis requests sent to eslint-bridge");
+    sample(text, "sonarjs_bridge_request_duration_seconds_sum", "", requestNanos.sum() / 1e9);
+    sample(text, "sonarjs_bridge_request_duration_seconds_count", "", getBridgeRequests());
+    metric(text, "sonarjs_bridge_requests_in_flight", "gauge", "Requests sent to eslint-bridge and not answered yet",
+      getBridgeRequestsInFlight());
+    metric(text, "sonarjs_bridge_heap_used_bytes", "gauge", "Heap used by the eslint-bridge Node.js process", getBridgeHeapUsed());
+    metric(text, "sonarjs_bridge_heap_limit_bytes", "gauge", "Heap limit of the eslint-bridge Node.js process", getBridgeHeapLimit());
+    header(text, "sonarjs_cache_hits_total", "counter", "Files whose results are reused from the cache");
+    cacheHits.forEach((cacheType, hits) -> sample(text, "sonarjs_cache_hits_total", cacheLabel(cacheType), hits.sum()));
+    header(text, "sonarjs_cache_misses_total", "counter", "Files whose results are not found in the cache");
+    cacheMisses.forEach((cacheType, misses) -> sample(text, "sonarjs_cache_misses_total", cacheLabel(cacheType), misses.sum()));
+    header(text, "sonarjs_program_creation_seconds", "summary", "Duration of the creation of TypeScript programs");
+    sample(text, "sonarjs_program_creation_seconds_sum", "", programNanos.sum() / 1e9);
+    sample(text, "sonarjs_program_creation_seconds_count", "", getProgramsCreated());
+    return text.toString();
+  }
+
+  private static String cacheLabel(CacheType cacheType) {
+    return "{cache=\"" + cacheType.name().toLowerCase(Locale.ROOT) + "\"}";
+  }
+
+  private static void metric(StringBuilder text, String name, String type, String help, double value) {
+    header(text, name, type, help);
+    sample(text, name, "", value);
+  }
+
+  private static void header(StringBuilder text, String name, String type, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder text, String name, String labels, double value) {
+    text.append(name).append(labels).append(' ');
+    if (value == Math.rint(value) && !Double.isInfinite(value)) {
+      text.append((long) value);
+    } else {
+      text.append(value);
+    }
+    text.append('\n');
+  }
+}
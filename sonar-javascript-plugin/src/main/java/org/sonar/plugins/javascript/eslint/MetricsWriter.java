@@ -0,0 +1,161 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.Monitoring.Metric;
+
+/**
+ * Appends the metrics of {@link Monitoring} to a file as they are produced, instead of keeping them until the end of the
+ * analysis. Metrics are serialized and written on a background thread, the queue being bounded the memory used is bounded
+ * as well: the threads producing metrics wait when the writer falls behind.
+ */
+class MetricsWriter {
+
+  private static final Logger LOG = Loggers.get(MetricsWriter.class);
+
+  static final int QUEUE_CAPACITY = 1024;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // marks the end of the metrics, it is never written
+  private static final Metric END = new Metric(Monitoring.MetricType.SENSOR, "", false);
+
+  private final Path path;
+  private final Writer writer;
+  private final BlockingQueue<Metric> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Gson gson = new GsonBuilder().create();
+  private final Thread thread;
+  // set by the writing thread, read once it is terminated
+  @Nullable
+  private IOException failure;
+  private boolean closed;
+
+  MetricsWriter(Path path) throws IOException {
+    this.path = path;
+    Files.createDirectories(path.getParent());
+    writer = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER_SIZE);
+    thread = new Thread(this::run, "monitoring-writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  void write(Metric metric) {
+    if (closed) {
+      throw new IllegalStateException("Metrics are already written to " + path);
+    }
+    try {
+      queue.put(metric);
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while writing metrics to {}", path);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for the metrics already queued to be written
+   */
+  void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      queue.put(END);
+      thread.join();
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while writing metrics to {}", path);
+      Thread.currentThread().interrupt();
+      return;
+    }
+    if (failure != null) {
+      LOG.error("Failed to save metrics", failure);
+      throw new IllegalStateException("Failed to write metrics", failure);
+    }
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        var metric = queue.poll();
+        if (metric == null) {
+          // the file is flushed whenever the writer catches up, so that it can be followed during the analysis
+          flush();
+          metric = queue.take();
+        }
+        if (metric == END) {
+          break;
+        }
+        append(metric);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+  }
+
+  private void append(Metric metric) {
+    // once writing failed, the metrics are still consumed to not block the analysis
+    if (failure != null) {
+      return;
+    }
+    metric.formatTimestamp();
+    try {
+      // each metric is written on separate line - this format is used by AWS Athena
+      writer.write(gson.toJson(metric));
+      writer.write('\n');
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void flush() {
+    if (failure != null) {
+      return;
+    }
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void fail(IOException e) {
+    if (failure == null) {
+      failure = e;
+    }
+  }
+
+}
@@ -19,19 +19,20 @@
  */
 package org.sonar.plugins.javascript.eslint;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import org.sonar.api.Startable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.Sensor;
@@ -43,6 +44,7 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonarsource.api.sonarlint.SonarLintSide;
 
+import static org.sonar.plugins.javascript.eslint.Monitoring.MetricType.CACHE;
 import static org.sonar.plugins.javascript.eslint.Monitoring.MetricType.FILE;
 import static org.sonar.plugins.javascript.eslint.Monitoring.MetricType.PROGRAM;
 import static org.sonar.plugins.javascript.eslint.Monitoring.MetricType.RULE;
@@ -58,26 +60,46 @@ public class Monitoring implements Startable {
   private static final String MONITORING_ON = "sonar.javascript.monitoring";
   private static final String MONITORING_PATH = "sonar.javascript.monitoring.path";
 
-  private final List<Metric> metrics = new ArrayList<>();
   private final Configuration configuration;
+  // opened with the first sensor, metrics are written as soon as they are complete
+  @Nullable
+  private MetricsWriter metricsWriter;
 
   private boolean enabled;
   private boolean canSkipUnchangedFiles;
   private SensorMetric sensorMetric;
-  private FileMetric fileMetric;
+  // files can be analyzed concurrently, their metrics are kept until the response is processed
+  private final Map<String, FileMetric> fileMetrics = new HashMap<>();
   private ProgramMetric programMetric;
+  // cache entries are also read in the background, see org.sonar.plugins.javascript.eslint.cache.DeferredExtraction
+  private final Map<String, CacheMetric> cacheMetrics = new HashMap<>();
+  private final Map<String, RuleMetric> ruleMetrics = new HashMap<>();
   private final String executionId;
+  private final LiveMetrics liveMetrics;
+  private final TraceWriter traceWriter;
+  // sensors are started and stopped by the same thread
+  @Nullable
+  private JfrEvents.SensorExecution sensorEvent;
 
   public Monitoring(Configuration configuration) {
     this.configuration = configuration;
     this.executionId = UUID.randomUUID().toString();
+    this.liveMetrics = new LiveMetrics(configuration);
+    this.traceWriter = new TraceWriter(configuration);
   }
 
   void startSensor(SensorContext sensorContext, Sensor sensor) {
+    traceWriter.sensorStarted(sensor.getClass().getSimpleName());
+    sensorEvent = new JfrEvents.SensorExecution();
+    sensorEvent.sensor = sensor.getClass().getCanonicalName();
+    sensorEvent.begin();
     this.enabled = isMonitoringEnabled();
     if (!enabled) {
       return;
     }
+    if (metricsWriter == null) {
+      metricsWriter = openMetricsWriter();
+    }
     if (AnalysisMode.isRuntimeApiCompatible(sensorContext)) {
       canSkipUnchangedFiles = sensorContext.canSkipUnchangedFiles();
     } else {
@@ -89,63 +111,103 @@ public class Monitoring implements Startable {
   }
 
   void stopSensor() {
+    traceWriter.sensorStopped();
+    if (sensorEvent != null) {
+      sensorEvent.commit();
+      sensorEvent = null;
+    }
     if (!enabled) {
       return;
     }
     sensorMetric.duration = sensorMetric.clock.stop();
-    metrics.add(sensorMetric);
+    metricsWriter.write(sensorMetric);
+    synchronized (cacheMetrics) {
+      cacheMetrics.values().forEach(CacheMetric::summarize);
+      cacheMetrics.values().forEach(metricsWriter::write);
+      cacheMetrics.clear();
+    }
+    var totalRuleTime = ruleMetrics.values().stream().mapToLong(ruleMetric -> ruleMetric.totalTime).sum();
+    ruleMetrics.values().forEach(ruleMetric -> ruleMetric.summarize(totalRuleTime));
+    ruleMetrics.values().forEach(metricsWriter::write);
+    ruleMetrics.clear();
+    // files which were not analyzed (e.g. cached) are never stopped
+    fileMetrics.clear();
   }
 
   void startFile(InputFile inputFile) {
+    traceWriter.fileStarted(inputFile);
+    if (sensorEvent != null) {
+      sensorEvent.files++;
+    }
     if (!enabled) {
       return;
     }
-    fileMetric = new FileMetric(executionId, sensorMetric.projectKey, canSkipUnchangedFiles);
+    var fileMetric = new FileMetric(executionId, sensorMetric.projectKey, canSkipUnchangedFiles);
     fileMetric.component = inputFile.toString();
     fileMetric.ordinal = sensorMetric.fileCount;
     sensorMetric.fileCount++;
+    fileMetrics.put(fileMetric.component, fileMetric);
   }
 
   public void stopFile(InputFile inputFile, int ncloc, EslintBridgeServer.Perf perf) {
+    liveMetrics.fileAnalyzed();
+    traceWriter.fileStopped(inputFile, perf);
     if (!enabled) {
       return;
     }
-    fileMetric.duration = fileMetric.clock.stop();
-    if (!fileMetric.component.equals(inputFile.toString())) {
+    var fileMetric = fileMetrics.remove(inputFile.toString());
+    if (fileMetric == null) {
       throw new IllegalStateException("Mismatched Monitoring.startFile / stopFile");
     }
+    fileMetric.duration = fileMetric.clock.stop();
     fileMetric.ncloc = ncloc;
     fileMetric.parseTime = perf.parseTime;
     fileMetric.analysisTime = perf.analysisTime;
-    metrics.add(fileMetric);
+    fileMetric.serializationTime = perf.serializationTime;
+    fileMetric.waitTime = perf.waitTime;
+    fileMetric.responseParseTime = perf.responseParseTime;
+    fileMetric.requestSize = perf.requestSize;
+    fileMetric.responseSize = perf.responseSize;
+    metricsWriter.write(fileMetric);
+    if (perf.ruleTimes != null) {
+      perf.ruleTimes.forEach((ruleKey, time) -> ruleMetrics
+        .computeIfAbsent(ruleKey, key -> new RuleMetric(key, sensorMetric, executionId, canSkipUnchangedFiles))
+        .add(fileMetric.component, time));
+    }
+  }
+
+  /**
+   * Forgets a started file whose analysis is not reported, e.g. unchanged, identical to another file or failed
+   */
+  void skipFile(InputFile inputFile) {
+    traceWriter.fileSkipped(inputFile);
+    if (!enabled) {
+      return;
+    }
+    fileMetrics.remove(inputFile.toString());
   }
 
   @Override
   public void start() {
-    // not used
+    liveMetrics.start();
+    traceWriter.start();
   }
 
   @Override
   public void stop() {
-    if (!enabled) {
-      return;
+    liveMetrics.stop();
+    traceWriter.stop();
+    if (metricsWriter != null) {
+      metricsWriter.close();
+      metricsWriter = null;
     }
-    saveMetrics();
   }
 
-  private void saveMetrics() {
-    Path monitoringPath = monitoringPath();
-    Gson gson = new GsonBuilder().create();
+  private MetricsWriter openMetricsWriter() {
+    Path path = monitoringPath().resolve("metrics.json");
+    LOG.info("Saving performance metrics with executionId {} to {}", executionId, path);
     try {
-      Path path = monitoringPath.resolve("metrics.json");
-      LOG.info("Saving performance metrics with executionId {} to {}", executionId, path);
-      Files.createDirectories(monitoringPath);
-      try (BufferedWriter bw = Files.newBufferedWriter(path)) {
-        for (Metric metric : metrics) {
-          // each metric is written on separate line - this format is used by AWS Athena
-          bw.write(gson.toJson(metric) + "\n");
-        }
-      }
+      return new MetricsWriter(path);
     } catch (IOException e) {
       LOG.error("Failed to save metrics", e);
       throw new IllegalStateException("Failed to write metrics", e);
@@ -156,17 +218,17 @@ public class Monitoring implements Startable {
     return configuration.getBoolean(MONITORING_ON).orElse(false);
   }
 
+  boolean isTraceEnabled() {
+    return traceWriter.isEnabled();
+  }
+
   private Path monitoringPath() {
     return configuration.get(MONITORING_PATH).map(Paths::get)
       .orElseThrow(() -> new IllegalStateException("Monitoring path " + MONITORING_PATH + " not configured"));
   }
 
-  public void ruleStatistics(String ruleKey, double timeMs, double relative) {
-    var ruleMetric = new RuleMetric(ruleKey, timeMs, relative, sensorMetric.projectKey, executionId, canSkipUnchangedFiles);
-    metrics.add(ruleMetric);
-  }
-
   public void startProgram(String tsConfig) {
+    traceWriter.programStarted(tsConfig);
     if (!enabled) {
       return;
     }
@@ -174,24 +236,159 @@ public class Monitoring implements Startable {
   }
 
   public void stopProgram() {
+    traceWriter.programStopped();
     if (!enabled) {
       return;
     }
     programMetric.duration = programMetric.clock.stop();
-    metrics.add(programMetric);
+    metricsWriter.write(programMetric);
+  }
+
+  /**
+   * Requests sent to eslint-bridge, whatever their kind, are only counted by {@link LiveMetrics}
+   */
+  void bridgeRequestStarted() {
+    liveMetrics.requestStarted();
+  }
+
+  void bridgeRequestEnded() {
+    liveMetrics.requestEnded();
+  }
+
+  /**
+   * @param startNanos {@link System#nanoTime()} when the analysis request was sent, it is complete once its last response
+   *                   is read
+   */
+  void bridgeRequestCompleted(String endpoint, long startNanos) {
+    liveMetrics.requestCompleted(System.nanoTime() - startNanos);
+    traceWriter.request(endpoint, startNanos);
+  }
+
+  void fileSaved(InputFile inputFile, SavePhase phase, long startNanos) {
+    traceWriter.fileSaved(inputFile, phase, startNanos);
+    if (!enabled) {
+      return;
+    }
+    // not started for the files identical to an analyzed one, see DuplicateFiles
+    var fileMetric = fileMetrics.get(inputFile.toString());
+    if (fileMetric != null) {
+      fileMetric.saved(phase, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+  }
+
+  void bridgeHeap(@Nullable EslintBridgeServer.Perf perf) {
+    liveMetrics.heap(perf);
+  }
+
+  void programCreated(long durationNanos) {
+    liveMetrics.programCreated(durationNanos);
+  }
+
+  /**
+   * Counts the files whose results are reused from the cache, or not
+   */
+  public void cacheLookup(CacheType cacheType, InputFile inputFile, boolean hit) {
+    liveMetrics.cacheLookup(cacheType, hit);
+    if (!enabled) {
+      return;
+    }
+    synchronized (cacheMetrics) {
+      var cacheMetric = cacheMetric(cacheType, inputFile);
+      if (hit) {
+        cacheMetric.hits++;
+      } else {
+        cacheMetric.misses++;
+      }
+    }
+  }
+
+  /**
+   * @param size bytes read from the previous cache, e.g. the header of an entry
+   */
+  public void cacheRead(CacheType cacheType, InputFile inputFile, long size, long durationNanos) {
+    JfrEvents.cacheAccess(cacheType, "read", inputFile, size, durationNanos);
+    if (!enabled) {
+      return;
+    }
+    synchronized (cacheMetrics) {
+      var cacheMetric = cacheMetric(cacheType, inputFile);
+      cacheMetric.bytesRead += size;
+      cacheMetric.readTime += TimeUnit.NANOSECONDS.toMicros(durationNanos);
+    }
+  }
+
+  /**
+   * Reading of a whole entry from the previous cache, and writing of the files it contains
+   */
+  public void cacheExtraction(CacheType cacheType, InputFile inputFile, long size, long durationNanos) {
+    JfrEvents.cacheAccess(cacheType, "extraction", inputFile, size, durationNanos);
+    if (!enabled) {
+      return;
+    }
+    synchronized (cacheMetrics) {
+      var cacheMetric = cacheMetric(cacheType, inputFile);
+      cacheMetric.bytesRead += size;
+      cacheMetric.extractionTime += TimeUnit.NANOSECONDS.toMicros(durationNanos);
+      cacheMetric.entrySizes.add(size);
+    }
   }
 
-  List<Metric> metrics() {
-    return metrics;
+  public void cacheWrite(CacheType cacheType, InputFile inputFile, long size, long durationNanos) {
+    JfrEvents.cacheAccess(cacheType, "write", inputFile, size, durationNanos);
+    if (!enabled) {
+      return;
+    }
+    synchronized (cacheMetrics) {
+      var cacheMetric = cacheMetric(cacheType, inputFile);
+      cacheMetric.bytesWritten += size;
+      cacheMetric.writeTime += TimeUnit.NANOSECONDS.toMicros(durationNanos);
+      cacheMetric.entrySizes.add(size);
+    }
+  }
+
+  private CacheMetric cacheMetric(CacheType cacheType, InputFile inputFile) {
+    var language = inputFile.language();
+    return cacheMetrics.computeIfAbsent(cacheType + ":" + language, key -> {
+      var cacheMetric = new CacheMetric(cacheType, language, executionId, sensorMetric.projectKey, canSkipUnchangedFiles);
+      cacheMetric.component = sensorMetric.component;
+      return cacheMetric;
+    });
+  }
+
+  LiveMetrics liveMetrics() {
+    return liveMetrics;
   }
 
   enum MetricType {
-    SENSOR, FILE, RULE, PROGRAM
+    SENSOR, FILE, RULE, PROGRAM, CACHE
+  }
+
+  /**
+   * Analysis data of a file saved to the sensor context, see {@link AnalysisProcessor}
+   */
+  enum SavePhase {
+    METRICS, ISSUES, HIGHLIGHTS, SYMBOLS, CPD
+  }
+
+  public enum CacheType {
+    // files generated for the security engine
+    UCFG,
+    // analysis responses of eslint-bridge
+    RESPONSE
   }
 
 
   static class Metric implements Serializable {
 
+    // resolved once, reading the manifest for each metric is a noticeable overhead on large projects
+    private static final String PLUGIN_VERSION = PluginUtils.getVersion();
+    private static final String PLUGIN_BUILD = ManifestUtils.getPropertyValues(Metric.class.getClassLoader(), "Implementation-Build").get(0);
+    // timestamps are derived from the monotonic clock of the metric, anchored once to the wall clock
+    private static final long EPOCH_MILLIS = System.currentTimeMillis();
+    private static final long EPOCH_NANOS = System.nanoTime();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+      .withZone(ZoneId.systemDefault());
+
     final MetricType metricType;
     boolean canSkipUnchangedFiles;
     String component;
@@ -200,18 +397,23 @@ public class Monitoring implements Startable {
     // sha of the commit
     String pluginBuild;
     final String executionId;
-    final String timestamp;
+    // formatted when the metric is written, see MetricsWriter
+    String timestamp;
     // transient to exclude field from json
     transient Clock clock = new Clock();
 
     Metric(MetricType metricType, String executionId, boolean canSkipUnchangedFiles) {
       this.executionId = executionId;
-      pluginVersion = PluginUtils.getVersion();
-      pluginBuild = ManifestUtils.getPropertyValues(Metric.class.getClassLoader(), "Implementation-Build").get(0);
+      pluginVersion = PLUGIN_VERSION;
+      pluginBuild = PLUGIN_BUILD;
       this.metricType = metricType;
-      this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"));
       this.canSkipUnchangedFiles = canSkipUnchangedFiles;
     }
+
+    void formatTimestamp() {
+      var millis = EPOCH_MILLIS + TimeUnit.NANOSECONDS.toMillis(clock.start - EPOCH_NANOS);
+      timestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
   }
 
   static class SensorMetric extends Metric {
@@ -231,11 +433,44 @@ public class Monitoring implements Startable {
     int parseTime;
     int analysisTime;
     long duration;
+    // Java side, the serialization of a batch request is divided among its files
+    int serializationTime;
+    // from the sending of the request, or the previous response of a batch, to the beginning of the response
+    int waitTime;
+    int responseParseTime;
+    long saveMetricsTime;
+    long saveIssuesTime;
+    long saveHighlightsTime;
+    long saveSymbolsTime;
+    long saveCpdTime;
+    // in bytes, the request of a batch is divided among its files
+    long requestSize;
+    long responseSize;
 
     FileMetric(String executionId, String projectKey, boolean canSkipUnchangedFiles) {
       super(FILE, executionId, canSkipUnchangedFiles);
       this.projectKey = projectKey;
     }
+
+    void saved(SavePhase phase, long time) {
+      switch (phase) {
+        case METRICS:
+          saveMetricsTime += time;
+          break;
+        case ISSUES:
+          saveIssuesTime += time;
+          break;
+        case HIGHLIGHTS:
+          saveHighlightsTime += time;
+          break;
+        case SYMBOLS:
+          saveSymbolsTime += time;
+          break;
+        default:
+          saveCpdTime += time;
+          break;
+      }
+    }
   }
 
   static class Clock {
@@ -251,19 +486,171 @@ public class Monitoring implements Startable {
     }
   }
 
+  /**
+   * Execution times of a rule on the files of a sensor, as reported by eslint-bridge with each file
+   */
   static class RuleMetric extends Metric {
 
+    static final int TOP_FILES = 5;
+
     String ruleKey;
+    int fileCount;
     double timeMs;
+    // percentage of the time of all the rules
     double timeRelative;
-
-    RuleMetric(String ruleKey, double timeMs, double timeRelative, String projectKey, String executionId, boolean canSkipUnchangedFiles) {
+    // time on a single file, in microseconds
+    long fileTimeP50;
+    long fileTimeP95;
+    long fileTimeMax;
+    // the files the rule spent the most time on, slowest first
+    List<FileTime> topFiles = new ArrayList<>();
+    transient long totalTime;
+    final transient TimeHistogram fileTimes = new TimeHistogram();
+
+    RuleMetric(String ruleKey, SensorMetric sensorMetric, String executionId, boolean canSkipUnchangedFiles) {
       super(RULE, executionId, canSkipUnchangedFiles);
       this.ruleKey = ruleKey;
-      this.timeMs = timeMs;
-      this.timeRelative = timeRelative;
+      this.component = sensorMetric.component;
+      this.projectKey = sensorMetric.projectKey;
+    }
+
+    void add(String file, int time) {
+      fileTimes.add(time);
+      fileCount++;
+      totalTime += time;
+      if (topFiles.size() < TOP_FILES || time > topFiles.get(TOP_FILES - 1).time) {
+        var index = 0;
+        while (index < topFiles.size() && topFiles.get(index).time >= time) {
+          index++;
+        }
+        topFiles.add(index, new FileTime(file, time));
+        if (topFiles.size() > TOP_FILES) {
+          topFiles.remove(TOP_FILES);
+        }
+      }
+    }
+
+    void summarize(long totalRuleTime) {
+      timeMs = totalTime / 1000.0;
+      timeRelative = totalRuleTime == 0 ? 0 : (100.0 * totalTime / totalRuleTime);
+      if (fileCount > 0) {
+        fileTimeP50 = fileTimes.percentile(0.5);
+        fileTimeP95 = fileTimes.percentile(0.95);
+        fileTimeMax = fileTimes.max();
+      }
+    }
+  }
+
+  /**
+   * Distribution of times in fixed buckets, whose size doesn't depend on the number of files. Times below
+   * {@value #SUB_BUCKETS} are counted exactly, larger ones in {@value #SUB_BUCKETS} buckets per power of two, so percentiles
+   * are at most 1/{@value #SUB_BUCKETS} below the actual time.
+   */
+  static class TimeHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final int[] counts = new int[bucket(Integer.MAX_VALUE) + 1];
+    private int count;
+    private int max;
+
+    void add(int time) {
+      var value = Math.max(0, time);
+      counts[bucket(value)]++;
+      count++;
+      max = Math.max(max, value);
+    }
+
+    int max() {
+      return max;
+    }
+
+    /**
+     * @return the lower bound of the bucket of the time at the quantile, 0 when empty
+     */
+    int percentile(double quantile) {
+      var rank = Math.max(1, (long) Math.ceil(count * quantile));
+      long seen = 0;
+      for (int bucket = 0; bucket < counts.length; bucket++) {
+        seen += counts[bucket];
+        if (seen >= rank) {
+          return Math.min(lowerBound(bucket), max);
+        }
+      }
+      return max;
+    }
+
+    private static int bucket(int value) {
+      if (value < SUB_BUCKETS) {
+        return value;
+      }
+      var exponent = 31 - Integer.numberOfLeadingZeros(value);
+      var shift = exponent - SUB_BUCKET_BITS;
+      return SUB_BUCKETS + shift * SUB_BUCKETS + ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static int lowerBound(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      var shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+      return (SUB_BUCKETS + (bucket % SUB_BUCKETS)) << shift;
+    }
+  }
+
+  static class FileTime implements Serializable {
+    final String component;
+    // in microseconds
+    final int time;
+
+    FileTime(String component, int time) {
+      this.component = component;
+      this.time = time;
+    }
+  }
+
+  /**
+   * Cache usage of a sensor, for the files of a language
+   */
+  static class CacheMetric extends Metric {
+
+    final CacheType cacheType;
+    final String language;
+    int hits;
+    int misses;
+    double hitRatio;
+    long bytesRead;
+    long bytesWritten;
+    // time is measured in microseconds
+    long readTime;
+    long extractionTime;
+    long writeTime;
+    // sizes of the entries read or written, in bytes
+    int entryCount;
+    long entrySizeMedian;
+    long entrySizeP90;
+    long entrySizeMax;
+    transient List<Long> entrySizes = new ArrayList<>();
+
+    CacheMetric(CacheType cacheType, @Nullable String language, String executionId, String projectKey, boolean canSkipUnchangedFiles) {
+      super(CACHE, executionId, canSkipUnchangedFiles);
+      this.cacheType = cacheType;
+      this.language = language;
       this.projectKey = projectKey;
     }
+
+    void summarize() {
+      var lookups = hits + misses;
+      hitRatio = lookups == 0 ? 0 : ((double) hits / lookups);
+      entryCount = entrySizes.size();
+      if (entryCount > 0) {
+        entrySizes.sort(null);
+        entrySizeMedian = entrySizes.get((entryCount - 1) / 2);
+        entrySizeP90 = entrySizes.get((int) Math.ceil(entryCount * 0.9) - 1);
+        entrySizeMax = entrySizes.get(entryCount - 1);
+      }
+    }
   }
 
   static class ProgramMetric extends Metric {
@@ -0,0 +1,254 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import org.sonar.api.SonarProduct;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.ParsingErrorCode;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Perf;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
+
+/**
+ * Complete responses of eslint-bridge stored in the sensor cache, so that the analysis of a file whose content and analysis
+ * configuration did not change is replayed through {@link AnalysisProcessor} instead of being sent to eslint-bridge.
+ * <p>
+ * Entries are keyed by a fingerprint hashing the content and the name of the file, the active rules and their
+ * configurations, the plugin version and the tsconfig files. The response of a file is thus reused for an identical file,
+ * even when it was moved, or analyzed on another branch, unless an active rule is {@link EslintRule#contextDependent}, the
+ * path of the file is then part of its fingerprint. Responses are replayed only when the analysis
+ * can skip unchanged files, e.g. in pull requests, as they don't account for changes in other files, like types. Nothing is
+ * cached when the security engine rule is active, the UCFG files it generates are cached by
+ * {@link org.sonar.plugins.javascript.eslint.cache.CacheStrategies}.
+ */
+final class ResponseCache {
+
+  private static final Logger LOG = Loggers.get(ResponseCache.class);
+  private static final Gson GSON = new Gson();
+
+  @Nullable
+  private final SensorContext context;
+  private final Monitoring monitoring;
+  // shared by all the files of the sensor, part of the fingerprint of each file
+  private final String configuration;
+  private final boolean replayEnabled;
+  // whether the path of the file is part of its fingerprint, see EslintRule#contextDependent
+  private final boolean pathDependent;
+  private final Map<String, String> tsConfigHashes = new HashMap<>();
+
+  private ResponseCache(@Nullable SensorContext context, Monitoring monitoring, String configuration, boolean replayEnabled,
+                        boolean pathDependent) {
+    this.context = context;
+    this.monitoring = monitoring;
+    this.configuration = configuration;
+    this.replayEnabled = replayEnabled;
+    this.pathDependent = pathDependent;
+  }
+
+  static ResponseCache create(SensorContext context, Monitoring monitoring, List<EslintRule> rules, List<String> environments,
+                              List<String> globals) {
+    if (!AnalysisMode.isRuntimeApiCompatible(context) || context.runtime().getProduct() == SonarProduct.SONARLINT
+      || !context.isCacheEnabled() || EslintRule.containsRuleWithKey(rules, EslintRule.UCFG_ESLINT_KEY)) {
+      return new ResponseCache(null, monitoring, "", false, false);
+    }
+    // lists are copied as Gson can't serialize some implementations, e.g. Collections.emptyList(), by their runtime type
+    var configuration = GSON.toJson(Arrays.asList(PluginUtils.getVersion(), List.copyOf(rules), List.copyOf(environments),
+      List.copyOf(globals), new ContextUtils(context).ignoreHeaderComments()));
+    var replayEnabled = context.canSkipUnchangedFiles();
+    LOG.debug(replayEnabled
+      ? "Analysis responses of unchanged files are replayed from the cache"
+      : "Analysis responses are cached for the next analysis");
+    var pathDependent = rules.stream().anyMatch(rule -> rule.contextDependent);
+    return new ResponseCache(context, monitoring, configuration, replayEnabled, pathDependent);
+  }
+
+  /**
+   * @param tsConfigs the tsconfig files used to analyze the file
+   */
+  Entry forFile(InputFile file, List<String> tsConfigs) throws IOException {
+    return new Entry(file, context == null ? null : fingerprint(file, tsConfigs));
+  }
+
+  /**
+   * @return null when the content of the file is unknown, it is then not cached
+   */
+  @Nullable
+  private String fingerprint(InputFile file, List<String> tsConfigs) throws IOException {
+    var contentHash = CacheStrategies.contentHash(file);
+    if (contentHash == null) {
+      return null;
+    }
+    // the name of the file is part of the fingerprint as some rules depend on it, e.g. on the extension
+    var fingerprint = new StringBuilder(configuration).append(file.type()).append(file.filename()).append(contentHash);
+    if (pathDependent) {
+      // context-dependent rules, e.g. custom ones, may depend on the location of the file
+      fingerprint.append(file.key());
+    }
+    for (String tsConfig : tsConfigs) {
+      fingerprint.append(tsConfigHash(tsConfig));
+    }
+    return BundleUtils.sha256(new ByteArrayInputStream(fingerprint.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * The content of tsconfig files is hashed rather than their path, as default ones are generated in temporary folders.
+   * Only the compiler options of generated ones are hashed, as they list all the files, which would otherwise invalidate
+   * every entry whenever a file is added, removed or moved.
+   */
+  private String tsConfigHash(String tsConfig) throws IOException {
+    var hash = tsConfigHashes.get(tsConfig);
+    if (hash == null) {
+      var path = Path.of(tsConfig);
+      if (!Files.isRegularFile(path)) {
+        hash = tsConfig;
+      } else if (TsConfigProvider.isGenerated(tsConfig)) {
+        hash = BundleUtils.sha256(new ByteArrayInputStream(compilerOptions(path).getBytes(StandardCharsets.UTF_8)));
+      } else {
+        hash = BundleUtils.sha256(Files.newInputStream(path));
+      }
+      tsConfigHashes.put(tsConfig, hash);
+    }
+    return hash;
+  }
+
+  private static String compilerOptions(Path tsConfig) throws IOException {
+    try (var reader = Files.newBufferedReader(tsConfig, StandardCharsets.UTF_8)) {
+      var json = GSON.fromJson(reader, JsonObject.class);
+      return String.valueOf(json == null ? null : json.get("compilerOptions"));
+    } catch (JsonParseException e) {
+      throw new IOException("Invalid tsconfig file " + tsConfig, e);
+    }
+  }
+
+  class Entry {
+    private final InputFile file;
+    @Nullable
+    private final String fingerprint;
+
+    private Entry(InputFile file, @Nullable String fingerprint) {
+      this.file = file;
+      this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the response of the previous analysis of an identical file, if any, which is then kept for the next one
+     */
+    @Nullable
+    AnalysisResponse replay() {
+      if (context == null || fingerprint == null || !replayEnabled) {
+        return null;
+      }
+      var response = read();
+      monitoring.cacheLookup(CacheType.RESPONSE, file, response != null);
+      if (response == null) {
+        return null;
+      }
+      // the time spent analyzing the file is not replayed
+      response.perf = new Perf();
+      try {
+        context.nextCache().copyFromPrevious(cacheKey());
+      } catch (IllegalArgumentException e) {
+        // already copied for an identical file
+      }
+      LOG.debug("Replaying cached analysis response of file {}", file);
+      return response;
+    }
+
+    @Nullable
+    private AnalysisResponse read() {
+      if (!context.previousCache().contains(cacheKey())) {
+        return null;
+      }
+      var start = System.nanoTime();
+      byte[] bytes;
+      try (var input = context.previousCache().read(cacheKey())) {
+        bytes = input.readAllBytes();
+      } catch (IOException e) {
+        LOG.debug("Failure when reading cached analysis response of file {}", file, e);
+        return null;
+      }
+      try (var input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+        return GSON.fromJson(new InputStreamReader(input, StandardCharsets.UTF_8), AnalysisResponse.class);
+      } catch (IOException | JsonParseException e) {
+        LOG.debug("Failure when reading cached analysis response of file {}", file, e);
+        return null;
+      } finally {
+        monitoring.cacheExtraction(CacheType.RESPONSE, file, bytes.length, System.nanoTime() - start);
+      }
+    }
+
+    void save(AnalysisResponse response) throws IOException {
+      if (context == null || fingerprint == null || !isCacheable(response)) {
+        return;
+      }
+      var start = System.nanoTime();
+      var bytes = new ByteArrayOutputStream();
+      try (var writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+        GSON.toJson(response, writer);
+      }
+      try {
+        context.nextCache().write(cacheKey(), bytes.toByteArray());
+        monitoring.cacheWrite(CacheType.RESPONSE, file, bytes.size(), System.nanoTime() - start);
+      } catch (IllegalArgumentException e) {
+        // already written, e.g. for an identical file, or the file is part of several TypeScript programs
+        LOG.debug("Analysis response of file {} is already cached", file);
+      }
+    }
+
+    private String cacheKey() {
+      var version = PluginUtils.getVersion();
+      return "js:response:" + (version == null ? "" : (version + ":")) + fingerprint;
+    }
+  }
+
+  /**
+   * Failures of the Node.js process, e.g. crashes, don't depend on the file and are not cached, nor UCFG files, which
+   * are written on disk
+   */
+  private static boolean isCacheable(AnalysisResponse response) {
+    var parsingError = response.parsingError;
+    if (parsingError != null && (parsingError.code == ParsingErrorCode.GENERAL_ERROR || parsingError.code == ParsingErrorCode.TIMEOUT)) {
+      return false;
+    }
+    return response.ucfgPaths == null || response.ucfgPaths.isEmpty();
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.CpdTokens;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.HighlightedSymbols;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Highlights;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Locations;
+
+import static org.sonar.plugins.javascript.eslint.EslintBridgeServer.Locations.INTS_PER_LOCATION;
+
+/**
+ * Gson adapters reading the locations of highlights, symbols and CPD tokens straight from the JSON stream into primitive arrays,
+ * instead of creating an object per token and per location.
+ * <p>
+ * When the compact encoding was requested, these values are received as strings decoded by {@link CompactEncoding}.
+ */
+final class ResponseTypeAdapters {
+
+  private static final String LOCATION = "location";
+  private static final String TEXT_TYPE = "textType";
+  private static final String DECLARATION = "declaration";
+  private static final String REFERENCES = "references";
+  private static final String IMAGE = "image";
+
+  private ResponseTypeAdapters() {
+  }
+
+  static class HighlightsAdapter extends TypeAdapter<Highlights> {
+
+    @Override
+    public void write(JsonWriter out, Highlights highlights) throws IOException {
+      if (highlights == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (int i = 0; i < highlights.size(); i++) {
+        out.beginObject();
+        out.name(LOCATION);
+        writeLocation(out, highlights.locations, i);
+        out.name(TEXT_TYPE).value(highlights.textTypes[i].name());
+        out.endObject();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public Highlights read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return new Highlights();
+      }
+      if (in.peek() == JsonToken.STRING) {
+        return CompactEncoding.highlights(in.nextString());
+      }
+      var locations = new LocationsBuilder();
+      List<TypeOfText> textTypes = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        in.beginObject();
+        while (in.hasNext()) {
+          String name = in.nextName();
+          if (LOCATION.equals(name)) {
+            locations.read(in);
+          } else if (TEXT_TYPE.equals(name)) {
+            textTypes.add(TypeOfText.valueOf(in.nextString()));
+          } else {
+            in.skipValue();
+          }
+        }
+        in.endObject();
+        checkConsistent(locations.size, textTypes.size(), "highlight", in);
+      }
+      in.endArray();
+      return new Highlights(locations.build(), textTypes.toArray(new TypeOfText[0]));
+    }
+  }
+
+  static class HighlightedSymbolsAdapter extends TypeAdapter<HighlightedSymbols> {
+
+    @Override
+    public void write(JsonWriter out, HighlightedSymbols symbols) throws IOException {
+      if (symbols == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (int i = 0; i < symbols.size(); i++) {
+        out.beginObject();
+        out.name(DECLARATION);
+        writeLocation(out, symbols.declarations, i);
+        out.name(REFERENCES).beginArray();
+        for (int r = symbols.referenceStarts[i]; r < symbols.referenceStarts[i + 1]; r++) {
+          writeLocation(out, symbols.references, r);
+        }
+        out.endArray();
+        out.endObject();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public HighlightedSymbols read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return new HighlightedSymbols();
+      }
+      if (in.peek() == JsonToken.STRING) {
+        return CompactEncoding.highlightedSymbols(in.nextString());
+      }
+      var declarations = new LocationsBuilder();
+      var references = new LocationsBuilder();
+      int[] referenceStarts = new int[16];
+      int symbols = 0;
+      in.beginArray();
+      while (in.hasNext()) {
+        in.beginObject();
+        while (in.hasNext()) {
+          String name = in.nextName();
+          if (DECLARATION.equals(name)) {
+            declarations.read(in);
+          } else if (REFERENCES.equals(name) && in.peek() != JsonToken.NULL) {
+            in.beginArray();
+            while (in.hasNext()) {
+              references.read(in);
+            }
+            in.endArray();
+          } else {
+            in.skipValue();
+          }
+        }
+        in.endObject();
+        symbols++;
+        checkConsistent(declarations.size, symbols, "symbol", in);
+        if (symbols + 1 > referenceStarts.length) {
+          referenceStarts = Arrays.copyOf(referenceStarts, referenceStarts.length * 2);
+        }
+        referenceStarts[symbols] = references.size;
+      }
+      in.endArray();
+      return new HighlightedSymbols(declarations.build(), referenceStarts, references.build());
+    }
+  }
+
+  static class CpdTokensAdapter extends TypeAdapter<CpdTokens> {
+
+    @Override
+    public void write(JsonWriter out, CpdTokens cpdTokens) throws IOException {
+      if (cpdTokens == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (int i = 0; i < cpdTokens.size(); i++) {
+        out.beginObject();
+        out.name(LOCATION);
+        writeLocation(out, cpdTokens.locations, i);
+        out.name(IMAGE).value(cpdTokens.images[i]);
+        out.endObject();
+      }
+      out.endArray();
+    }
+
+    @Override
+    public CpdTokens read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return new CpdTokens();
+      }
+      if (in.peek() == JsonToken.STRING) {
+        return CompactEncoding.cpdTokens(in.nextString());
+      }
+      var locations = new LocationsBuilder();
+      List<String> images = new ArrayList<>();
+      // the same keywords, punctuators and literal placeholders are repeated all over the file
+      Map<String, String> distinctImages = new HashMap<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        in.beginObject();
+        while (in.hasNext()) {
+          String name = in.nextName();
+          if (LOCATION.equals(name)) {
+            locations.read(in);
+          } else if (IMAGE.equals(name)) {
+            String image = in.nextString();
+            images.add(distinctImages.computeIfAbsent(image, i -> image));
+          } else {
+            in.skipValue();
+          }
+        }
+        in.endObject();
+        checkConsistent(locations.size, images.size(), "CPD token", in);
+      }
+      in.endArray();
+      return new CpdTokens(locations.build(), images.toArray(new String[0]));
+    }
+  }
+
+  /**
+   * Line numbers of metrics
+   */
+  static class LinesAdapter extends TypeAdapter<int[]> {
+
+    @Override
+    public void write(JsonWriter out, int[] lines) throws IOException {
+      if (lines == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (int line : lines) {
+        out.value(line);
+      }
+      out.endArray();
+    }
+
+    @Override
+    public int[] read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.STRING) {
+        return CompactEncoding.lines(in.nextString());
+      }
+      int[] lines = new int[16];
+      int size = 0;
+      in.beginArray();
+      while (in.hasNext()) {
+        if (size == lines.length) {
+          lines = Arrays.copyOf(lines, size * 2);
+        }
+        lines[size++] = in.nextInt();
+      }
+      in.endArray();
+      return Arrays.copyOf(lines, size);
+    }
+  }
+
+  private static void checkConsistent(int locations, int values, String element, JsonReader in) {
+    if (locations != values) {
+      throw new JsonSyntaxException("Incomplete " + element + " at " + in.getPath());
+    }
+  }
+
+  private static void writeLocation(JsonWriter out, Locations locations, int index) throws IOException {
+    out.beginObject()
+      .name("startLine").value(locations.startLine(index))
+      .name("startCol").value(locations.startCol(index))
+      .name("endLine").value(locations.endLine(index))
+      .name("endCol").value(locations.endCol(index))
+      .endObject();
+  }
+
+  private static class LocationsBuilder {
+    private int[] values = new int[16 * INTS_PER_LOCATION];
+    private int size;
+
+    void read(JsonReader in) throws IOException {
+      int startLine = 0;
+      int startCol = 0;
+      int endLine = 0;
+      int endCol = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "startLine":
+            startLine = in.nextInt();
+            break;
+          case "startCol":
+            startCol = in.nextInt();
+            break;
+          case "endLine":
+            endLine = in.nextInt();
+            break;
+          case "endCol":
+            endCol = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      add(startLine, startCol, endLine, endCol);
+    }
+
+    void add(int startLine, int startCol, int endLine, int endCol) {
+      int offset = size * INTS_PER_LOCATION;
+      if (offset + INTS_PER_LOCATION > values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[offset] = startLine;
+      values[offset + 1] = startCol;
+      values[offset + 2] = endLine;
+      values[offset + 3] = endCol;
+      size++;
+    }
+
+    Locations build() {
+      return new Locations(values, size);
+    }
+  }
+}
@@ -62,6 +62,10 @@ public class RulesBundles {
       .collect(Collectors.toList());
   }
 
+  List<URL> bundles() {
+    return bundles;
+  }
+
   /**
    * Deploy bundles in temporary directory and return list of paths for deployed modules
    *
@@ -0,0 +1,319 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Writes the spans of the analysis in the Chrome trace-event format, which is opened by chrome://tracing or
+ * https://ui.perfetto.dev, see {@link #TRACE_FILE_PROPERTY}.
+ * <p>
+ * Sensors and programs are complete events on the thread of the sensor. Files and requests to eslint-bridge can overlap,
+ * they are async events, with the phases of a file nested in it:
+ * <ul>
+ *   <li>parse and lint, as reported by eslint-bridge, placed right before the response is received as the clocks of both
+ *   processes are unrelated. The remaining time of the request is spent in serialization, transfer and waiting.</li>
+ *   <li>the slowest rules within lint, one after the other, as eslint-bridge only reports the total time of each rule on the
+ *   file.</li>
+ *   <li>the saving of the analysis data to the sensor context.</li>
+ * </ul>
+ * Events are written as they are complete, the file is only a valid JSON array once the trace is stopped, though trace
+ * viewers also accept an unterminated one.
+ */
+class TraceWriter {
+
+  private static final Logger LOG = Loggers.get(TraceWriter.class);
+
+  // internal property, the path of the file the trace is written to
+  static final String TRACE_FILE_PROPERTY = "sonar.javascript.monitoring.traceFile";
+  // rules of a file which are written as spans, the slowest first
+  static final int RULES_PER_FILE = 10;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int PID = 1;
+  private static final String FILE_CATEGORY = "file";
+
+  @Nullable
+  private final Path path;
+  private final long origin = System.nanoTime();
+  private final AtomicLong ids = new AtomicLong();
+  private final Map<String, FileSpan> files = new ConcurrentHashMap<>();
+  // written while holding the lock, read without it to skip the events when tracing is disabled
+  @Nullable
+  private volatile JsonWriter writer;
+  // guarded by this
+  private final Set<Long> namedThreads = new HashSet<>();
+  // sensors and programs are started and stopped by the thread of the sensor
+  private String sensorName;
+  private long sensorStart;
+  private String tsConfig;
+  private long programStart;
+
+  TraceWriter(Configuration configuration) {
+    this(configuration.get(TRACE_FILE_PROPERTY).map(Paths::get).orElse(null));
+  }
+
+  TraceWriter(@Nullable Path path) {
+    this.path = path;
+  }
+
+  boolean isEnabled() {
+    return path != null;
+  }
+
+  synchronized void start() {
+    if (path == null || writer != null) {
+      return;
+    }
+    try {
+      if (path.getParent() != null) {
+        Files.createDirectories(path.getParent());
+      }
+      writer = new JsonWriter(new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER_SIZE));
+      writer.beginArray();
+      LOG.info("Writing the trace of the analysis to {}", path);
+    } catch (IOException e) {
+      LOG.warn("Failed to write the trace of the analysis to " + path, e);
+      writer = null;
+    }
+  }
+
+  synchronized void stop() {
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.endArray();
+      writer.close();
+    } catch (IOException e) {
+      LOG.warn("Failed to write the trace of the analysis to " + path, e);
+    }
+    writer = null;
+  }
+
+  void sensorStarted(String name) {
+    if (writer == null) {
+      return;
+    }
+    sensorName = name;
+    sensorStart = System.nanoTime();
+  }
+
+  void sensorStopped() {
+    if (writer == null) {
+      return;
+    }
+    complete(sensorName, "sensor", sensorStart, System.nanoTime(), null);
+    // files which were not analyzed (e.g. cached) are never stopped
+    files.clear();
+  }
+
+  void programStarted(String tsConfig) {
+    if (writer == null) {
+      return;
+    }
+    this.tsConfig = tsConfig;
+    programStart = System.nanoTime();
+  }
+
+  void programStopped() {
+    if (writer == null) {
+      return;
+    }
+    complete("program", "program", programStart, System.nanoTime(), tsConfig);
+  }
+
+  void fileStarted(InputFile inputFile) {
+    if (writer == null) {
+      return;
+    }
+    files.put(inputFile.toString(), new FileSpan(ids.incrementAndGet(), System.nanoTime()));
+  }
+
+  /**
+   * Forgets a started file whose analysis is not reported, see {@link Monitoring#skipFile}
+   */
+  void fileSkipped(InputFile inputFile) {
+    if (writer == null) {
+      return;
+    }
+    files.remove(inputFile.toString());
+  }
+
+  /**
+   * @param phase the data of the file saved to the sensor context, e.g. issues
+   */
+  void fileSaved(InputFile inputFile, Monitoring.SavePhase phase, long start) {
+    if (writer == null) {
+      return;
+    }
+    var span = files.get(inputFile.toString());
+    if (span != null) {
+      async(phase.name().toLowerCase(Locale.ROOT), FILE_CATEGORY, span.id, start, System.nanoTime(), "save");
+    }
+  }
+
+  void fileStopped(InputFile inputFile, EslintBridgeServer.Perf perf) {
+    if (writer == null) {
+      return;
+    }
+    var end = System.nanoTime();
+    var span = files.remove(inputFile.toString());
+    if (span == null) {
+      return;
+    }
+    var component = inputFile.toString();
+    async(component, FILE_CATEGORY, span.id, span.start, end, null);
+    // responses replayed from the cache were not received from eslint-bridge
+    if (perf.receivedNanos == 0) {
+      return;
+    }
+    var lintStart = perf.receivedNanos - TimeUnit.MICROSECONDS.toNanos(perf.analysisTime);
+    var parseStart = lintStart - TimeUnit.MICROSECONDS.toNanos(perf.parseTime);
+    async("parse", FILE_CATEGORY, span.id, parseStart, lintStart, "eslint-bridge");
+    async("lint", FILE_CATEGORY, span.id, lintStart, perf.receivedNanos, "eslint-bridge");
+    if (perf.ruleTimes != null) {
+      var ruleStart = new long[] {lintStart};
+      perf.ruleTimes.entrySet().stream()
+        .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+        .limit(RULES_PER_FILE)
+        .forEach(rule -> {
+          var ruleEnd = ruleStart[0] + TimeUnit.MICROSECONDS.toNanos(rule.getValue());
+          async(rule.getKey(), FILE_CATEGORY, span.id, ruleStart[0], ruleEnd, "rule");
+          ruleStart[0] = ruleEnd;
+        });
+    }
+  }
+
+  void request(String endpoint, long start) {
+    if (writer == null) {
+      return;
+    }
+    async(endpoint, "request", ids.incrementAndGet(), start, System.nanoTime(), null);
+  }
+
+  private synchronized void complete(String name, String category, long start, long end, @Nullable String detail) {
+    if (writer == null) {
+      return;
+    }
+    try {
+      var tid = threadId();
+      writeEvent(name, category, "X", tid, start, detail);
+      writer.name("dur").value(micros(end - start));
+      writer.endObject();
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  /**
+   * Async events with the same category and id are nested, the phases of a file are distinguished by their detail
+   */
+  private synchronized void async(String name, String category, long id, long start, long end, @Nullable String detail) {
+    if (writer == null) {
+      return;
+    }
+    try {
+      var tid = threadId();
+      writeEvent(name, category, "b", tid, start, detail);
+      writer.name("id").value(Long.toHexString(id));
+      writer.endObject();
+      writeEvent(name, category, "e", tid, end, null);
+      writer.name("id").value(Long.toHexString(id));
+      writer.endObject();
+    } catch (IOException e) {
+      failed(e);
+    }
+  }
+
+  private void writeEvent(String name, String category, String phase, long tid, long time, @Nullable String detail) throws IOException {
+    writer.beginObject();
+    writer.name("name").value(name);
+    writer.name("cat").value(category);
+    writer.name("ph").value(phase);
+    writer.name("ts").value(micros(time - origin));
+    writer.name("pid").value(PID);
+    writer.name("tid").value(tid);
+    if (detail != null) {
+      writer.name("args").beginObject().name("detail").value(detail).endObject();
+    }
+  }
+
+  /**
+   * Names the thread on its first event
+   */
+  private long threadId() throws IOException {
+    var thread = Thread.currentThread();
+    var tid = thread.getId();
+    if (namedThreads.add(tid)) {
+      writer.beginObject();
+      writer.name("name").value("thread_name");
+      writer.name("ph").value("M");
+      writer.name("pid").value(PID);
+      writer.name("tid").value(tid);
+      writer.name("args").beginObject().name("name").value(thread.getName()).endObject();
+      writer.endObject();
+    }
+    return tid;
+  }
+
+  private void failed(IOException e) {
+    LOG.warn("Failed to write the trace of the analysis to " + path, e);
+    try {
+      writer.close();
+    } catch (IOException ignored) {
+      // already failed
+    }
+    writer = null;
+  }
+
+  private static double micros(long nanos) {
+    return nanos / 1000.0;
+  }
+
+  private static class FileSpan {
+    final long id;
+    final long start;
+
+    FileSpan(long id, long start) {
+      this.id = id;
+      this.start = start;
+    }
+  }
+
+}
@@ -33,6 +33,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -169,8 +170,17 @@ class TsConfigProvider {
     }
   }
 
+  /**
+   * @return whether the tsconfig file was generated by {@link DefaultTsConfigProvider}, it then lists all the files
+   */
+  static boolean isGenerated(String tsconfig) {
+    return DefaultTsConfigProvider.GENERATED_TSCONFIGS.contains(tsconfig);
+  }
+
   static class DefaultTsConfigProvider implements Provider {
 
+    private static final Set<String> GENERATED_TSCONFIGS = ConcurrentHashMap.newKeySet();
+
     private final TempFolder folder;
     private final Function<FileSystem, FilePredicate> filePredicateProvider;
     private final Map<String, Object> compilerOptions;
@@ -196,6 +206,7 @@ class TsConfigProvider {
       TsConfig tsConfig = new TsConfig(inputFiles, compilerOptions);
       File tsconfigFile = writeToJsonFile(tsConfig);
       LOG.debug("Using generated tsconfig.json file {}", tsconfigFile.getAbsolutePath());
+      GENERATED_TSCONFIGS.add(tsconfigFile.getAbsolutePath());
       return singletonList(tsconfigFile.getAbsolutePath());
     }
 
@@ -42,7 +42,9 @@ import org.sonar.plugins.javascript.JavaScriptFilePredicate;
 import org.sonar.plugins.javascript.JavaScriptLanguage;
 import org.sonar.plugins.javascript.TypeScriptLanguage;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategy;
 import org.sonar.plugins.javascript.utils.ProgressReport;
@@ -60,6 +62,7 @@ public class TypeScriptSensor extends AbstractEslintSensor {
   private final TypeScriptChecks checks;
 
   private AnalysisMode analysisMode;
+  private ResponseCache responseCache;
 
   public TypeScriptSensor(TypeScriptChecks typeScriptChecks, EslintBridgeServer eslintBridgeServer,
                           AnalysisWarningsWrapper analysisWarnings, TempFolder tempFolder, Monitoring monitoring,
@@ -90,9 +93,10 @@ public class TypeScriptSensor extends AbstractEslintSensor {
   @Override
   protected void analyzeFiles(List<InputFile> inputFiles) throws IOException {
     analysisMode = AnalysisMode.getMode(context, checks.eslintRules());
+    responseCache = ResponseCache.create(context, monitoring, checks.eslintRules(), environments, globals);
     eslintBridgeServer.initLinter(checks.eslintRules(), environments, globals, analysisMode);
     if (shouldAnalyzeWithProgram(inputFiles)) {
-      analysisWithProgram.analyzeFiles(context, checks, inputFiles);
+      analysisWithProgram.analyzeFiles(context, checks, inputFiles, responseCache);
       return;
     }
     List<String> tsConfigs = new TsConfigProvider(tempFolder).tsconfigs(context);
@@ -107,6 +111,7 @@ public class TypeScriptSensor extends AbstractEslintSensor {
     Map<TsConfigFile, List<InputFile>> filesByTsConfig = TsConfigFile.inputFilesByTsConfig(loadTsConfigs(tsConfigs), inputFiles);
     try {
       progressReport.start(inputFiles.size(), inputFiles.iterator().next().absolutePath());
+      int concurrency = eslintBridgeServer.startWorkers(inputFiles.size());
       for (Map.Entry<TsConfigFile, List<InputFile>> entry : filesByTsConfig.entrySet()) {
         TsConfigFile tsConfigFile = entry.getKey();
         List<InputFile> files = entry.getValue();
@@ -116,7 +121,7 @@ public class TypeScriptSensor extends AbstractEslintSensor {
           continue;
         }
         LOG.info("Analyzing {} files using tsconfig: {}", files.size(), tsConfigFile);
-        analyzeFilesWithTsConfig(files, tsConfigFile, progressReport);
+        analyzeFilesWithTsConfig(files, tsConfigFile, progressReport, concurrency);
         eslintBridgeServer.newTsConfig();
       }
       success = true;
@@ -133,36 +138,81 @@ public class TypeScriptSensor extends AbstractEslintSensor {
     return inputFiles.stream().noneMatch(f -> f.filename().endsWith(".vue")) && !contextUtils.isSonarLint();
   }
 
-  private void analyzeFilesWithTsConfig(List<InputFile> files, TsConfigFile tsConfigFile, ProgressReport progressReport) throws IOException {
-    for (InputFile inputFile : files) {
-      if (context.isCancelled()) {
-        throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
-      }
-      if (eslintBridgeServer.isAlive()) {
-        monitoring.startFile(inputFile);
-        var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile);
-        if (cacheStrategy.isAnalysisRequired()) {
-          analyze(inputFile, tsConfigFile, cacheStrategy);
+  private void analyzeFilesWithTsConfig(List<InputFile> files, TsConfigFile tsConfigFile, ProgressReport progressReport, int concurrency) throws IOException {
+    // all the files of the tsconfig are processed before moving to the next one
+    try (var dispatcher = AnalysisDispatcher.withBatches(context, concurrency, files.size(),
+      (requests, consumer) -> eslintBridgeServer.analyzeBatchAsync(BatchKind.TYPESCRIPT, requests, consumer),
+      (file, e) -> LOG.error("Failed to get response while analyzing " + file, e))) {
+      var duplicateFiles = DuplicateFiles.of(files, checks.eslintRules());
+      for (InputFile inputFile : files) {
+        if (context.isCancelled()) {
+          throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+        }
+        if (eslintBridgeServer.isAlive()) {
+          monitoring.startFile(inputFile);
+          if (duplicateFiles.isRepresented(inputFile)) {
+            monitoring.skipFile(inputFile);
+          } else {
+            var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+            if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)) {
+              analyze(inputFile, tsConfigFile, cacheStrategy, dispatcher, duplicateFiles);
+            } else {
+              monitoring.skipFile(inputFile);
+            }
+          }
+          progressReport.nextFile(inputFile.absolutePath());
+        } else {
+          throw new IllegalStateException("eslint-bridge server is not answering");
         }
-        progressReport.nextFile(inputFile.absolutePath());
-      } else {
-        throw new IllegalStateException("eslint-bridge server is not answering");
       }
+      dispatcher.finish();
     }
   }
 
-  private void analyze(InputFile file, TsConfigFile tsConfigFile, CacheStrategy cacheStrategy) throws IOException {
-    try {
-      LOG.debug("Analyzing file: " + file.uri());
-      String fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
-      JsAnalysisRequest request = new JsAnalysisRequest(file.absolutePath(), file.type().toString(), fileContent,
-        contextUtils.ignoreHeaderComments(), singletonList(tsConfigFile.filename), null, analysisMode.getLinterIdFor(file));
-      AnalysisResponse response = eslintBridgeServer.analyzeTypeScript(request);
+  private void analyze(InputFile file, TsConfigFile tsConfigFile, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher,
+                       DuplicateFiles duplicateFiles) throws IOException {
+    var duplicates = duplicateFiles.representedBy(file);
+    var cachedResponse = responseCache.forFile(file, singletonList(tsConfigFile.filename));
+    var replayed = cachedResponse.replay();
+    if (replayed != null) {
+      duplicateFiles.replayed(file, replayed);
+      analysisProcessor.processResponse(context, checks, file, replayed);
+      cacheStrategy.writeGeneratedFilesToCache(replayed.ucfgPaths);
+      processDuplicates(duplicates, tsConfigFile, replayed);
+      return;
+    }
+    LOG.debug("Analyzing file: " + file.uri());
+    submit(file, tsConfigFile, cacheStrategy, dispatcher, duplicateFiles, cachedResponse, duplicates);
+  }
+
+  private void submit(InputFile file, TsConfigFile tsConfigFile, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher,
+                      DuplicateFiles duplicateFiles, ResponseCache.Entry cachedResponse, List<InputFile> duplicates) throws IOException {
+    String fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
+    JsAnalysisRequest request = new JsAnalysisRequest(file.absolutePath(), file.type().toString(), fileContent,
+      contextUtils.ignoreHeaderComments(), singletonList(tsConfigFile.filename), null,
+      duplicateFiles.linterIdFor(file, analysisMode.getLinterIdFor(file)));
+    dispatcher.submit(file, request, analyzed -> {
+      var response = duplicateFiles.completed(file, analyzed);
+      if (response == null) {
+        submit(file, tsConfigFile, cacheStrategy, dispatcher, duplicateFiles, cachedResponse, duplicates);
+        return;
+      }
       analysisProcessor.processResponse(context, checks, file, response);
       cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
-    } catch (IOException e) {
-      LOG.error("Failed to get response while analyzing " + file, e);
-      throw e;
+      cachedResponse.save(response);
+      processDuplicates(duplicates, tsConfigFile, response);
+    });
+  }
+
+  private void processDuplicates(List<InputFile> duplicates, TsConfigFile tsConfigFile, AnalysisResponse response) throws IOException {
+    for (InputFile duplicate : duplicates) {
+      var cacheStrategy = CacheStrategies.getStrategyFor(context, duplicate, monitoring);
+      if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, duplicate)) {
+        LOG.debug("Reusing the analysis of an identical file for: " + duplicate.uri());
+        analysisProcessor.processDuplicate(context, checks, duplicate, response);
+        cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
+        responseCache.forFile(duplicate, singletonList(tsConfigFile.filename)).save(response);
+      }
     }
   }
 
@@ -0,0 +1,289 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Sends requests to eslint-bridge over a Unix domain socket instead of HTTP.
+ * <p>
+ * Each request is a frame made of its size as a 32-bit big-endian integer followed by the payload: the size of the endpoint
+ * path, the endpoint path and the JSON body. The response is a sequence of frames ended by an empty one, which allows to
+ * stream it. Requests on a connection are handled one after the other by eslint-bridge, so a connection is only reused
+ * once the previous response was fully read, concurrent requests open additional connections.
+ * <p>
+ * Unix domain socket channels are only available from Java 16, they are created reflectively as the plugin targets Java 11.
+ */
+class UnixSocketTransport implements AutoCloseable {
+
+  // the limit for the socket path is 108 bytes on Linux and 104 on macOS
+  static final int MAX_SOCKET_PATH_LENGTH = 100;
+
+  @Nullable
+  private static final Method ADDRESS_FACTORY;
+  @Nullable
+  private static final Method CHANNEL_FACTORY;
+  @Nullable
+  private static final ProtocolFamily UNIX_FAMILY;
+
+  static {
+    Method addressFactory = null;
+    Method channelFactory = null;
+    ProtocolFamily unixFamily = null;
+    try {
+      addressFactory = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+      channelFactory = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+      unixFamily = StandardProtocolFamily.valueOf("UNIX");
+    } catch (ReflectiveOperationException | IllegalArgumentException e) {
+      // Java runtime older than 16
+    }
+    ADDRESS_FACTORY = addressFactory;
+    CHANNEL_FACTORY = channelFactory;
+    UNIX_FAMILY = unixFamily;
+  }
+
+  private final Path socketPath;
+  private final int timeoutSeconds;
+  private final Deque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+  private final ScheduledThreadPoolExecutor deadlines;
+  private volatile boolean closed;
+
+  UnixSocketTransport(Path socketPath, int timeoutSeconds) {
+    this.socketPath = socketPath;
+    this.timeoutSeconds = timeoutSeconds;
+    this.deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+      var thread = new Thread(runnable, "eslint-bridge-socket-timeout");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.deadlines.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Node.js listens to named pipes instead of Unix domain sockets on Windows, they are not supported
+   */
+  static boolean isSupported() {
+    return ADDRESS_FACTORY != null && !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+  }
+
+  static boolean isSupported(Path socketPath) {
+    return isSupported() && socketPath.toString().getBytes(StandardCharsets.UTF_8).length <= MAX_SOCKET_PATH_LENGTH;
+  }
+
+  Path socketPath() {
+    return socketPath;
+  }
+
+  /**
+   * Sends the request and returns its response body, which must be closed to release the connection.
+   * The connection is closed if no response is received within the timeout, which fails the read.
+   */
+  InputStream send(String endpoint, String json) throws IOException {
+    if (closed) {
+      throw new IOException("Connection to eslint-bridge is closed");
+    }
+    var connection = idleConnections.pollFirst();
+    if (connection == null) {
+      connection = new Connection(open(socketPath));
+    }
+    try {
+      connection.write(endpoint, json);
+    } catch (IOException e) {
+      connection.close();
+      throw e;
+    }
+    return new ResponseStream(connection, deadlines.schedule(connection::close, timeoutSeconds, TimeUnit.SECONDS));
+  }
+
+  private static SocketChannel open(Path socketPath) throws IOException {
+    if (!isSupported()) {
+      throw new IllegalStateException("Unix domain sockets are not supported by this Java runtime");
+    }
+    try {
+      var address = (SocketAddress) ADDRESS_FACTORY.invoke(null, socketPath);
+      var channel = (SocketChannel) CHANNEL_FACTORY.invoke(null, UNIX_FAMILY);
+      try {
+        channel.connect(address);
+      } catch (IOException e) {
+        channel.close();
+        throw e;
+      }
+      return channel;
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Failed to open Unix domain socket " + socketPath, e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Failed to open Unix domain socket " + socketPath, e);
+    }
+  }
+
+  private void release(Connection connection) {
+    if (closed) {
+      connection.close();
+    } else {
+      idleConnections.addFirst(connection);
+      // the transport might have been closed concurrently
+      if (closed && idleConnections.remove(connection)) {
+        connection.close();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    Connection connection;
+    while ((connection = idleConnections.pollFirst()) != null) {
+      connection.close();
+    }
+    deadlines.shutdownNow();
+  }
+
+  private static class Connection {
+    final SocketChannel channel;
+    final DataInputStream input;
+    final DataOutputStream output;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+      this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    void write(String endpoint, String json) throws IOException {
+      byte[] path = ("/" + endpoint).getBytes(StandardCharsets.UTF_8);
+      byte[] body = json.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(Integer.BYTES + path.length + body.length);
+      output.writeInt(path.length);
+      output.write(path);
+      output.write(body);
+      output.flush();
+    }
+
+    void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // nothing to do, the connection is not used anymore
+      }
+    }
+  }
+
+  /**
+   * Reads the frames of a response as a single stream
+   */
+  private class ResponseStream extends InputStream {
+    private final Connection connection;
+    private final ScheduledFuture<?> deadline;
+    private int remainingInFrame;
+    private boolean ended;
+    private boolean released;
+
+    ResponseStream(Connection connection, ScheduledFuture<?> deadline) {
+      this.connection = connection;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read < 0 ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (remainingInFrame == 0 && !ended) {
+        int frameSize = connection.input.readInt();
+        if (frameSize < 0) {
+          throw new IOException("Invalid frame size " + frameSize);
+        }
+        remainingInFrame = frameSize;
+        ended = frameSize == 0;
+      }
+      if (ended) {
+        return -1;
+      }
+      int read = connection.input.read(buffer, offset, Math.min(length, remainingInFrame));
+      if (read < 0) {
+        throw new IOException("Connection closed by eslint-bridge before the end of the response");
+      }
+      remainingInFrame -= read;
+      return read;
+    }
+
+    /**
+     * The connection is reused only once the whole response was read, otherwise the remaining frames would be
+     * read as the response of the next request. A JSON reader usually stops before the final empty frame.
+     */
+    @Override
+    public void close() {
+      if (released) {
+        return;
+      }
+      released = true;
+      boolean reusable = skipToEnd();
+      boolean timedOut = !deadline.cancel(false);
+      if (reusable && !timedOut) {
+        release(connection);
+      } else {
+        connection.close();
+      }
+    }
+
+    private boolean skipToEnd() {
+      byte[] buffer = new byte[8192];
+      try {
+        while (read(buffer, 0, buffer.length) >= 0) {
+          // discard the rest of the response
+        }
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -34,7 +34,9 @@ import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.javascript.CancellationException;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
 import org.sonar.plugins.javascript.eslint.cache.CacheStrategy;
 import org.sonar.plugins.javascript.utils.ProgressReport;
@@ -49,6 +51,7 @@ public class YamlSensor extends AbstractEslintSensor {
   private final JavaScriptChecks checks;
   private final AnalysisProcessor analysisProcessor;
   private AnalysisMode analysisMode;
+  private ResponseCache responseCache;
 
   public YamlSensor(
       JavaScriptChecks checks,
@@ -73,24 +76,31 @@ public class YamlSensor extends AbstractEslintSensor {
   @Override
   protected void analyzeFiles(List<InputFile> inputFiles) throws IOException {
     analysisMode = AnalysisMode.getMode(context, checks.eslintRules());
+    responseCache = ResponseCache.create(context, monitoring, checks.eslintRules(), environments, globals);
     var progressReport = new ProgressReport("Analysis progress", TimeUnit.SECONDS.toMillis(10));
     var success = false;
     try {
       progressReport.start(inputFiles.size(), inputFiles.iterator().next().absolutePath());
       eslintBridgeServer.initLinter(checks.eslintRules(), environments, globals, analysisMode);
-      for (var inputFile : inputFiles) {
-        if (context.isCancelled()) {
-          throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
-        }
-        if (eslintBridgeServer.isAlive()) {
-          progressReport.nextFile(inputFile.absolutePath());
-          var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile);
-          if (cacheStrategy.isAnalysisRequired()) {
-            analyze(inputFile, cacheStrategy);
+      int concurrency = eslintBridgeServer.startWorkers(inputFiles.size());
+      try (var dispatcher = AnalysisDispatcher.withBatches(context, concurrency, inputFiles.size(),
+        (requests, consumer) -> eslintBridgeServer.analyzeBatchAsync(BatchKind.YAML, requests, consumer),
+        (file, e) -> LOG.error("Failed to get response while analyzing " + file.uri(), e))) {
+        for (var inputFile : inputFiles) {
+          if (context.isCancelled()) {
+            throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+          }
+          if (eslintBridgeServer.isAlive()) {
+            progressReport.nextFile(inputFile.absolutePath());
+            var cacheStrategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+            if (cacheStrategy.isAnalysisRequired() && !FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)) {
+              analyze(inputFile, cacheStrategy, dispatcher);
+            }
+          } else {
+            throw new IllegalStateException("eslint-bridge server is not answering");
           }
-        } else {
-          throw new IllegalStateException("eslint-bridge server is not answering");
         }
+        dispatcher.finish();
       }
       success = true;
     } finally {
@@ -143,24 +153,28 @@ public class YamlSensor extends AbstractEslintSensor {
     return false;
   }
 
-  private void analyze(InputFile file, CacheStrategy cacheStrategy) throws IOException {
-    try {
-      LOG.debug("Analyzing file: {}", file.uri());
-      var fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
-      var jsAnalysisRequest = new JsAnalysisRequest(
-        file.absolutePath(),
-        file.type().toString(),
-        fileContent,
-        contextUtils.ignoreHeaderComments(),
-        null,
-        null,
-        analysisMode.getLinterIdFor(file));
-      var response = eslintBridgeServer.analyzeYaml(jsAnalysisRequest);
+  private void analyze(InputFile file, CacheStrategy cacheStrategy, AnalysisDispatcher dispatcher) throws IOException {
+    var cachedResponse = responseCache.forFile(file, List.of());
+    var replayed = cachedResponse.replay();
+    if (replayed != null) {
+      analysisProcessor.processResponse(context, checks, file, replayed);
+      cacheStrategy.writeGeneratedFilesToCache(replayed.ucfgPaths);
+      return;
+    }
+    LOG.debug("Analyzing file: {}", file.uri());
+    var fileContent = contextUtils.shouldSendFileContent(file) ? file.contents() : null;
+    var jsAnalysisRequest = new JsAnalysisRequest(
+      file.absolutePath(),
+      file.type().toString(),
+      fileContent,
+      contextUtils.ignoreHeaderComments(),
+      null,
+      null,
+      analysisMode.getLinterIdFor(file));
+    dispatcher.submit(file, jsAnalysisRequest, response -> {
       analysisProcessor.processResponse(context, checks, file, response);
       cacheStrategy.writeGeneratedFilesToCache(response.ucfgPaths);
-    } catch (IOException e) {
-      LOG.error("Failed to get response while analyzing " + file.uri(), e);
-      throw e;
-    }
+      cachedResponse.save(response);
+    });
   }
 }
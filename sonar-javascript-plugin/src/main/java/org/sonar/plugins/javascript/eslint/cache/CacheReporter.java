@@ -61,6 +61,10 @@ class CacheReporter {
     getCounter(missReason).incrementAndGet();
   }
 
+  void decrementHits() {
+    getCounter(null).decrementAndGet();
+  }
+
   void reset() {
     counters.clear();
   }
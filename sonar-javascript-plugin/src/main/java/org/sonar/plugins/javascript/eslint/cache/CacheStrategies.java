@@ -20,6 +20,16 @@
 package org.sonar.plugins.javascript.eslint.cache;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.fs.InputFile;
@@ -28,7 +38,10 @@ import org.sonar.api.utils.Version;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.javascript.eslint.AnalysisMode;
+import org.sonar.plugins.javascript.eslint.Monitoring;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
 
+import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.WRITE_ONLY;
 import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.noCache;
 import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.readAndWrite;
 import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.writeOnly;
@@ -39,6 +52,14 @@ public class CacheStrategies {
 
   private static final CacheReporter REPORTER = new CacheReporter();
 
+  static final String DEFERRED_EXTRACTION_PROPERTY = "sonar.javascript.cache.deferredExtraction";
+
+  private static DeferredExtraction deferredExtraction;
+  // files whose deferred extraction failed, to be analyzed
+  private static final Set<String> CORRUPTED_FILES = new HashSet<>();
+  // see #contentHash
+  private static final Map<InputFile, Optional<String>> CONTENT_HASHES = new ConcurrentHashMap<>();
+
   private CacheStrategies() {
   }
 
@@ -57,15 +78,23 @@ public class CacheStrategies {
     return logBuilder.toString();
   }
 
-  public static CacheStrategy getStrategyFor(SensorContext context, InputFile inputFile) {
+  public static CacheStrategy getStrategyFor(SensorContext context, InputFile inputFile, Monitoring monitoring) {
+    var strategy = selectStrategy(context, inputFile, monitoring);
+    // hits are counted once the files are extracted
+    if (WRITE_ONLY.equals(strategy.getName())) {
+      monitoring.cacheLookup(CacheType.UCFG, inputFile, false);
+    }
+    return strategy;
+  }
+
+  private static CacheStrategy selectStrategy(SensorContext context, InputFile inputFile, Monitoring monitoring) {
     if (!isRuntimeApiCompatible(context)) {
       var strategy = noCache();
       REPORTER.logAndIncrement(strategy, inputFile, MissReason.RUNTIME_API_INCOMPATIBLE);
       return strategy;
     }
 
-    var cacheKey = CacheKey.forFile(inputFile);
-    var serialization = new UCFGFilesSerialization(context, cacheKey);
+    var serialization = new UCFGFilesSerialization(context, inputFile, monitoring);
 
     if (!AnalysisMode.isRuntimeApiCompatible(context) || !context.canSkipUnchangedFiles()) {
       var strategy = writeOnly(serialization);
@@ -73,9 +102,9 @@ public class CacheStrategies {
       return strategy;
     }
 
-    if (inputFile.status() != InputFile.Status.SAME) {
+    if (CORRUPTED_FILES.contains(inputFile.key())) {
       var strategy = writeOnly(serialization);
-      REPORTER.logAndIncrement(strategy, inputFile, MissReason.FILE_CHANGED);
+      REPORTER.logAndIncrement(strategy, inputFile, MissReason.CACHE_CORRUPTED);
       return strategy;
     }
 
@@ -85,20 +114,59 @@ public class CacheStrategies {
       return strategy;
     }
 
-    if (!writeFilesFromCache(serialization)) {
+    // the content is compared rather than the status of the file, which is unknown e.g. on new branches
+    var manifest = readManifest(serialization);
+    if (manifest == null) {
+      var strategy = writeOnly(serialization);
+      REPORTER.logAndIncrement(strategy, inputFile, MissReason.CACHE_CORRUPTED);
+      return strategy;
+    }
+
+    if (!serialization.isUpToDate(manifest)) {
+      var strategy = writeOnly(serialization);
+      REPORTER.logAndIncrement(strategy, inputFile, MissReason.FILE_CHANGED);
+      return strategy;
+    }
+
+    if (isDeferredExtractionEnabled(context)) {
+      if (deferredExtraction == null) {
+        deferredExtraction = new DeferredExtraction();
+      }
+      deferredExtraction.submit(inputFile, serialization, manifest, monitoring);
+      var strategy = readAndWrite(serialization);
+      REPORTER.logAndIncrement(strategy, inputFile, null);
+      return strategy;
+    }
+
+    if (!writeFilesFromCache(serialization, manifest)) {
       var strategy = writeOnly(serialization);
       REPORTER.logAndIncrement(strategy, inputFile, MissReason.CACHE_CORRUPTED);
       return strategy;
     }
+    monitoring.cacheLookup(CacheType.UCFG, inputFile, true);
 
     var strategy = readAndWrite(serialization);
     REPORTER.logAndIncrement(strategy, inputFile, null);
     return strategy;
   }
 
-  static boolean writeFilesFromCache(UCFGFilesSerialization serialization) {
+  private static boolean isDeferredExtractionEnabled(SensorContext context) {
+    return context.config().getBoolean(DEFERRED_EXTRACTION_PROPERTY).orElse(false);
+  }
+
+  @Nullable
+  private static FilesManifest readManifest(UCFGFilesSerialization serialization) {
     try {
-      serialization.readFromCache();
+      return serialization.readManifest();
+    } catch (IOException e) {
+      LOG.error("Failure when reading cache entry", e);
+      return null;
+    }
+  }
+
+  static boolean writeFilesFromCache(UCFGFilesSerialization serialization, FilesManifest manifest) {
+    try {
+      serialization.readFromCache(manifest);
       serialization.copyFromPrevious();
       return true;
     } catch (IOException e) {
@@ -107,8 +175,60 @@ public class CacheStrategies {
     }
   }
 
+  /**
+   * SHA-256 of the content of the file, which is the key of its content shared by the caches and by the grouping of
+   * identical files. It is computed once per file, the first time it is needed, so that the file is read at most once more.
+   *
+   * @return null when the file can't be read
+   */
+  @Nullable
+  public static String contentHash(InputFile inputFile) {
+    return CONTENT_HASHES.computeIfAbsent(inputFile, CacheStrategies::computeContentHash).orElse(null);
+  }
+
+  private static Optional<String> computeContentHash(InputFile inputFile) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+    try (var input = new DigestInputStream(inputFile.inputStream(), digest)) {
+      input.transferTo(OutputStream.nullOutputStream());
+    } catch (IOException e) {
+      LOG.debug("Failure when reading file {}", inputFile, e);
+      return Optional.empty();
+    }
+    var hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(String.format("%02x", b));
+    }
+    return Optional.of(hex.toString());
+  }
+
+  /**
+   * Waits for the files of the cache hits to be extracted. The files whose entry is corrupted are counted as misses, and
+   * are not hits anymore for the following calls to {@link #getStrategyFor(SensorContext, InputFile, Monitoring)}.
+   *
+   * @return the files whose cached files could not be extracted, which must be analyzed
+   */
+  public static List<InputFile> awaitDeferredExtraction() {
+    if (deferredExtraction == null) {
+      return List.of();
+    }
+    var failed = deferredExtraction.await();
+    for (var inputFile : failed) {
+      CORRUPTED_FILES.add(inputFile.key());
+      REPORTER.decrementHits();
+    }
+    return failed;
+  }
+
   public static void reset() {
     REPORTER.reset();
+    deferredExtraction = null;
+    CORRUPTED_FILES.clear();
+    CONTENT_HASHES.clear();
   }
 
   public static void logReport() {
@@ -0,0 +1,120 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.Monitoring;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+
+/**
+ * Extracts the files generated for the cache hits in the background, while the sensor analyzes the other files.
+ * <p>
+ * The extracted files are read by the security sensors, which run after this plugin's sensors, so the extraction is awaited
+ * at the end of each sensor. The entries are copied to the next cache on the sensor thread once extracted, and the files
+ * whose entry turns out to be corrupted are returned to be analyzed.
+ */
+class DeferredExtraction {
+
+  private static final Logger LOG = Loggers.get(DeferredExtraction.class);
+
+  private final ThreadPoolExecutor executor;
+  private final List<Extraction> extractions = new ArrayList<>();
+
+  DeferredExtraction() {
+    executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), DeferredExtraction::newThread);
+    // the thread stops when the sensor is done, without explicit shutdown
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    var thread = new Thread(runnable, "ucfg-extraction");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  void submit(InputFile inputFile, UCFGFilesSerialization serialization, FilesManifest manifest, Monitoring monitoring) {
+    var future = executor.submit(() -> {
+      serialization.readFromCache(manifest);
+      monitoring.cacheLookup(CacheType.UCFG, inputFile, true);
+      return null;
+    });
+    extractions.add(new Extraction(inputFile, serialization, future));
+  }
+
+  /**
+   * @return the files whose generated files could not be extracted, including the files still pending when interrupted
+   */
+  List<InputFile> await() {
+    var failed = new ArrayList<InputFile>();
+    int processed = 0;
+    try {
+      for (var extraction : extractions) {
+        if (extraction.isDone()) {
+          extraction.serialization.copyFromPrevious();
+        } else {
+          failed.add(extraction.inputFile);
+        }
+        processed++;
+      }
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted while extracting the cached files, {} file(s) will be analyzed", extractions.size() - processed);
+      extractions.subList(processed, extractions.size()).forEach(extraction -> failed.add(extraction.inputFile));
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    } finally {
+      extractions.clear();
+    }
+    return failed;
+  }
+
+  private static class Extraction {
+
+    private final InputFile inputFile;
+    private final UCFGFilesSerialization serialization;
+    private final Future<?> future;
+
+    Extraction(InputFile inputFile, UCFGFilesSerialization serialization, Future<?> future) {
+      this.inputFile = inputFile;
+      this.serialization = serialization;
+      this.future = future;
+    }
+
+    boolean isDone() throws InterruptedException {
+      try {
+        future.get();
+        return true;
+      } catch (ExecutionException e) {
+        LOG.error("Failure when reading cache entry", e.getCause());
+        return false;
+      }
+    }
+
+  }
+
+}
@@ -20,18 +20,36 @@
 package org.sonar.plugins.javascript.eslint.cache;
 
 import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 class FilesManifest {
   private final List<FileSize> fileSizes;
+  // of the analyzed file the files were generated from, missing in entries written by older versions
+  @Nullable
+  private final String contentHash;
+  // CRC32 of the content of the files
+  private final long crc;
 
-  FilesManifest(List<FileSize> fileSizes) {
+  FilesManifest(List<FileSize> fileSizes, @Nullable String contentHash, long crc) {
     this.fileSizes = List.copyOf(fileSizes);
+    this.contentHash = contentHash;
+    this.crc = crc;
   }
 
   List<FileSize> getFileSizes() {
     return fileSizes;
   }
 
+  @CheckForNull
+  String getContentHash() {
+    return contentHash;
+  }
+
+  long getCrc() {
+    return crc;
+  }
+
   static class FileSize {
     private final String name;
     private final long size;
@@ -19,51 +19,191 @@
  */
 package org.sonar.plugins.javascript.eslint.cache;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import org.apache.commons.compress.utils.CountingInputStream;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.javascript.eslint.Monitoring;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
 
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Files generated for an analyzed file, stored in a single cache entry: a header describing the files, followed by their
+ * content, compressed.
+ * <p>
+ * The header holds the names and sizes of the files, the hash of the content of the analyzed file and a CRC of the content of
+ * the generated files. The content is checked against the header before any file is written, so that a corrupted entry
+ * doesn't leave partial files in the working directory.
+ */
 class UCFGFilesSerialization extends AbstractSerialization {
 
-  static final String SEQ_PREFIX = "SEQ";
-  static final String JSON_PREFIX = "JSON";
+  private static final Logger LOG = Loggers.get(UCFGFilesSerialization.class);
 
-  private final JsonSerialization<FilesManifest> json;
-  private final SequenceSerialization sequence;
+  static final String PACK_PREFIX = "PACK";
+  // first bytes of an entry, to be changed with the format
+  static final int FORMAT = 0x55434601;
+  private static final String ENTRY_SEPARATOR = "/";
+  private static final Gson GSON = new Gson();
 
-  UCFGFilesSerialization(SensorContext context, CacheKey cacheKey) {
-    super(context, cacheKey);
-    json = new JsonSerialization<>(FilesManifest.class, context, cacheKey.withPrefix(JSON_PREFIX));
-    sequence = new SequenceSerialization(context, cacheKey.withPrefix(SEQ_PREFIX));
+  private final InputFile inputFile;
+  private final Monitoring monitoring;
+
+  UCFGFilesSerialization(SensorContext context, InputFile inputFile, Monitoring monitoring) {
+    super(context, CacheKey.forFile(inputFile).withPrefix(PACK_PREFIX));
+    this.inputFile = inputFile;
+    this.monitoring = monitoring;
   }
 
-  void writeToCache(List<String> files) throws IOException {
-    var manifest = sequence.writeToCache(files);
-    json.writeToCache(manifest);
+  private static String convertToEntryName(Path baseAbsolutePath, Path fileAbsolutePath) {
+    var relativePath = baseAbsolutePath.relativize(fileAbsolutePath);
+    return StreamSupport.stream(relativePath.spliterator(), false)
+      .map(Path::getFileName)
+      .map(Path::toString)
+      .collect(joining(ENTRY_SEPARATOR));
   }
 
-  @Override
-  boolean isInCache() {
-    if (!json.isInCache()) {
-      return false;
-    } else {
-      return sequence.isInCache();
+  private static Path convertFromEntryName(Path baseAbsolutePath, String entryName) {
+    var fileAbsolutePath = baseAbsolutePath;
+    for (var name : entryName.split(ENTRY_SEPARATOR)) {
+      // This validates that the name is a valid OS path.
+      fileAbsolutePath = fileAbsolutePath.resolve(Path.of(name));
     }
+    return fileAbsolutePath;
   }
 
-  void readFromCache() throws IOException {
-    var manifest = json.readFromCache();
-    if (manifest == null) {
-      throw new IOException("The manifest is null for key " + getCacheKey());
+  void writeToCache(@Nullable List<String> generatedFiles) throws IOException {
+    var start = System.nanoTime();
+    List<Path> paths = generatedFiles == null ? emptyList() : generatedFiles.stream().map(Path::of).collect(toList());
+    var iterator = new FileIterator(paths);
+    var crc = new CRC32();
+    var payload = new ByteArrayOutputStream();
+    try (var input = new CheckedInputStream(new SequenceInputStream(new IteratorEnumeration<>(iterator)), crc);
+         var output = new GZIPOutputStream(payload)) {
+      input.transferTo(output);
+    }
+
+    var workingDirectory = getWorkingDirectoryAbsolutePath();
+    var fileSizes = iterator.getFiles().stream()
+      .map(file -> new FilesManifest.FileSize(convertToEntryName(workingDirectory, file), iterator.getFileSize(file)))
+      .collect(toList());
+    var header = GSON.toJson(new FilesManifest(fileSizes, CacheStrategies.contentHash(inputFile), crc.getValue())).getBytes(StandardCharsets.UTF_8);
+
+    var entry = new ByteArrayOutputStream(2 * Integer.BYTES + header.length + payload.size());
+    try (var output = new DataOutputStream(entry)) {
+      output.writeInt(FORMAT);
+      output.writeInt(header.length);
+      output.write(header);
+      payload.writeTo(output);
     }
+    write(entry.toByteArray());
+    monitoring.cacheWrite(CacheType.UCFG, inputFile, entry.size(), System.nanoTime() - start);
+    LOG.debug("Cache entry created for key '{}' containing {} file(s)", getCacheKey(), iterator.getCount());
+  }
+
+  /**
+   * Reads the header of the entry only
+   */
+  FilesManifest readManifest() throws IOException {
+    var start = System.nanoTime();
+    var counting = new CountingInputStream(getInputStream());
+    try (var input = new DataInputStream(counting)) {
+      return readHeader(input);
+    } finally {
+      monitoring.cacheRead(CacheType.UCFG, inputFile, counting.getBytesRead(), System.nanoTime() - start);
+    }
+  }
 
-    sequence.readFromCache(manifest);
+  /**
+   * @return whether the files in cache were generated from a file with the same content as the current one
+   */
+  boolean isUpToDate(FilesManifest manifest) {
+    var contentHash = CacheStrategies.contentHash(inputFile);
+    return contentHash != null && contentHash.equals(manifest.getContentHash());
+  }
+
+  void readFromCache(FilesManifest manifest) throws IOException {
+    var start = System.nanoTime();
+    var totalSize = manifest.getFileSizes().stream().mapToLong(FilesManifest.FileSize::getSize).sum();
+    if (totalSize < 0 || totalSize >= Integer.MAX_VALUE) {
+      throw new IOException(String.format("Invalid size %d of cache entry for key '%s'", totalSize, getCacheKey()));
+    }
+
+    byte[] content;
+    var counting = new CountingInputStream(getInputStream());
+    try (var input = new DataInputStream(counting)) {
+      readHeader(input);
+      try (var payload = new GZIPInputStream(input)) {
+        // one more byte to detect a payload bigger than expected
+        content = payload.readNBytes((int) totalSize + 1);
+      }
+    }
+    if (content.length != totalSize) {
+      throw new IOException(String.format("The cache entry for key '%s' has %d byte(s) instead of %d", getCacheKey(), content.length, totalSize));
+    }
+    var crc = new CRC32();
+    crc.update(content);
+    if (crc.getValue() != manifest.getCrc()) {
+      throw new IOException(String.format("The checksum of the cache entry for key '%s' doesn't match", getCacheKey()));
+    }
+
+    var workingDirectory = getWorkingDirectoryAbsolutePath();
+    var offset = 0;
+    for (var fileSize : manifest.getFileSizes()) {
+      var file = convertFromEntryName(workingDirectory, fileSize.getName());
+      Files.createDirectories(file.getParent());
+      try (var output = Files.newOutputStream(file)) {
+        output.write(content, offset, (int) fileSize.getSize());
+      }
+      offset += (int) fileSize.getSize();
+    }
+    monitoring.cacheExtraction(CacheType.UCFG, inputFile, counting.getBytesRead(), System.nanoTime() - start);
+    LOG.debug("Cache entry extracted for key '{}' containing {} file(s)", getCacheKey(), manifest.getFileSizes().size());
+  }
+
+  private FilesManifest readHeader(DataInputStream input) throws IOException {
+    if (input.readInt() != FORMAT) {
+      throw new IOException("Unexpected format of cache entry for key " + getCacheKey());
+    }
+    var length = input.readInt();
+    var header = input.readNBytes(Math.max(length, 0));
+    if (length < 0 || header.length != length) {
+      throw new IOException("Incomplete header of cache entry for key " + getCacheKey());
+    }
+    FilesManifest manifest;
+    try {
+      manifest = GSON.fromJson(new String(header, StandardCharsets.UTF_8), FilesManifest.class);
+    } catch (JsonParseException e) {
+      throw new IOException("Failure when parsing cache entry header", e);
+    }
+    if (manifest == null || manifest.getFileSizes() == null) {
+      throw new IOException("The manifest is null for key " + getCacheKey());
+    }
+    return manifest;
   }
 
-  @Override
-  void copyFromPrevious() {
-    json.copyFromPrevious();
-    sequence.copyFromPrevious();
+  private Path getWorkingDirectoryAbsolutePath() {
+    return getContext().fileSystem().workDir().toPath();
   }
 
 }
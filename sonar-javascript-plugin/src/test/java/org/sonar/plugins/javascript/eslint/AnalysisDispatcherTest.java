@@ -0,0 +1,257 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sonar.plugins.javascript.eslint.AnalysisDispatcher.REQUESTS_PER_PROCESS;
+
+class AnalysisDispatcherTest {
+
+  @Test
+  void should_process_responses_in_submission_order() throws Exception {
+    List<Integer> processed = new ArrayList<>();
+    var first = new CompletableFuture<AnalysisResponse>();
+    try (var dispatcher = new AnalysisDispatcher(8)) {
+      dispatcher.submit(() -> first, r -> processed.add(r.metrics.ncloc.length));
+      for (int i = 1; i < 10; i++) {
+        var response = response(i);
+        dispatcher.submit(() -> CompletableFuture.completedFuture(response), r -> processed.add(r.metrics.ncloc.length));
+      }
+      assertThat(processed).isEmpty();
+      first.complete(response(0));
+      dispatcher.finish();
+    }
+    assertThat(processed).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+  }
+
+  @Test
+  void should_send_next_request_before_processing_previous_response() throws Exception {
+    List<String> events = new ArrayList<>();
+    var firstResponse = new CompletableFuture<AnalysisResponse>();
+    var secondResponse = new CompletableFuture<AnalysisResponse>();
+    try (var dispatcher = new AnalysisDispatcher(1)) {
+      dispatcher.submit(() -> {
+        events.add("send first");
+        return firstResponse;
+      }, r -> events.add("process first"));
+      dispatcher.submit(() -> {
+        events.add("send second");
+        return secondResponse;
+      }, r -> events.add("process second"));
+      firstResponse.complete(new AnalysisResponse());
+      secondResponse.complete(new AnalysisResponse());
+      dispatcher.finish();
+    }
+    assertThat(events).containsExactly("send first", "send second", "process first", "process second");
+  }
+
+  @Test
+  void should_bound_requests_in_flight() throws Exception {
+    List<CompletableFuture<AnalysisResponse>> sent = new ArrayList<>();
+    var maxInFlight = 0L;
+    try (var dispatcher = new AnalysisDispatcher(2)) {
+      for (int i = 0; i < 20; i++) {
+        maxInFlight = Math.max(maxInFlight, sent.stream().filter(f -> !f.isDone()).count());
+        dispatcher.submit(() -> {
+          var response = CompletableFuture.supplyAsync(AnalysisResponse::new, CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+          sent.add(response);
+          return response;
+        }, r -> {
+        });
+      }
+      dispatcher.finish();
+    }
+    assertThat(maxInFlight).isBetween(2L, 2L * REQUESTS_PER_PROCESS);
+  }
+
+  @Test
+  void should_process_responses_on_calling_thread() throws Exception {
+    List<String> threads = new ArrayList<>();
+    try (var dispatcher = new AnalysisDispatcher(2)) {
+      for (int i = 0; i < 5; i++) {
+        dispatcher.submit(() -> CompletableFuture.supplyAsync(AnalysisResponse::new), r -> threads.add(Thread.currentThread().getName()));
+      }
+      dispatcher.finish();
+    }
+    assertThat(threads).hasSize(5).containsOnly(Thread.currentThread().getName());
+  }
+
+  @Test
+  void should_propagate_failures() throws IOException {
+    try (var dispatcher = new AnalysisDispatcher(2)) {
+      // failures are thrown as soon as they are received
+      assertThatThrownBy(() -> dispatcher.submit(() -> CompletableFuture.failedFuture(new IOException("error")), r -> {
+      }))
+        .isInstanceOf(IOException.class)
+        .hasMessage("error");
+    }
+
+    try (var dispatcher = new AnalysisDispatcher(2)) {
+      var response = new CompletableFuture<AnalysisResponse>();
+      dispatcher.submit(() -> response, r -> {
+      });
+      response.completeExceptionally(new IllegalStateException("unresponsive"));
+      assertThatThrownBy(dispatcher::finish)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("unresponsive");
+    }
+  }
+
+  @Test
+  void should_send_files_in_batches() throws Exception {
+    List<Integer> batchSizes = new ArrayList<>();
+    List<String> processed = new ArrayList<>();
+    AnalysisDispatcher.BatchSender sender = (requests, consumer) -> {
+      batchSizes.add(requests.size());
+      return CompletableFuture.runAsync(() -> requests.forEach(request -> consumer.accept(response(request.filePath.length()))));
+    };
+    for (int concurrency : new int[] {1, 3}) {
+      batchSizes.clear();
+      processed.clear();
+      try (var dispatcher = new AnalysisDispatcher(concurrency, 4, sender, (file, e) -> {
+      })) {
+        for (int i = 0; i < 10; i++) {
+          var file = inputFile("file" + i + ".js");
+          dispatcher.submit(file, request(file), r -> processed.add(file.filename()));
+        }
+        dispatcher.finish();
+      }
+      assertThat(batchSizes).containsExactly(4, 4, 2);
+      assertThat(processed).containsExactly("file0.js", "file1.js", "file2.js", "file3.js", "file4.js", "file5.js", "file6.js", "file7.js",
+        "file8.js", "file9.js");
+    }
+  }
+
+  @Test
+  void should_report_file_of_failed_batch() throws Exception {
+    AnalysisDispatcher.BatchSender sender = (requests, consumer) -> {
+      consumer.accept(new AnalysisResponse());
+      return CompletableFuture.failedFuture(new IOException("error"));
+    };
+    for (int concurrency : new int[] {1, 3}) {
+      List<String> processed = new ArrayList<>();
+      List<String> failed = new ArrayList<>();
+      try (var dispatcher = new AnalysisDispatcher(concurrency, 2, sender, (file, e) -> failed.add(file.filename()))) {
+        var first = inputFile("first.js");
+        var second = inputFile("second.js");
+        dispatcher.submit(first, request(first), r -> processed.add(first.filename()));
+        assertThatThrownBy(() -> {
+          dispatcher.submit(second, request(second), r -> processed.add(second.filename()));
+          dispatcher.finish();
+        }).isInstanceOf(IOException.class);
+      }
+      assertThat(processed).containsExactly("first.js");
+      assertThat(failed).containsExactly("second.js");
+    }
+  }
+
+  @Test
+  void should_fail_when_batch_response_is_missing() throws Exception {
+    AnalysisDispatcher.BatchSender sender = (requests, consumer) -> CompletableFuture.completedFuture(null);
+    try (var dispatcher = new AnalysisDispatcher(1, 2, sender, (file, e) -> {
+    })) {
+      var file = inputFile("file.js");
+      dispatcher.submit(file, request(file), r -> {
+      });
+      assertThatThrownBy(dispatcher::finish)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("No response received");
+    }
+  }
+
+  @Test
+  void should_process_files_submitted_again_by_handler() throws Exception {
+    List<String> processed = new ArrayList<>();
+    AnalysisDispatcher.BatchSender sender = (requests, consumer) -> {
+      requests.forEach(request -> consumer.accept(new AnalysisResponse()));
+      return CompletableFuture.completedFuture(null);
+    };
+    try (var dispatcher = new AnalysisDispatcher(1, 10, sender, (file, e) -> {
+    })) {
+      var file = inputFile("file.js");
+      dispatcher.submit(file, request(file), r -> {
+        processed.add("first");
+        dispatcher.submit(file, request(file), again -> processed.add("again"));
+      });
+      dispatcher.finish();
+    }
+    assertThat(processed).containsExactly("first", "again");
+  }
+
+  @Test
+  void should_compute_batch_size() throws Exception {
+    var context = SensorContextTester.create(Path.of("."));
+    List<Integer> batchSizes = new ArrayList<>();
+    AnalysisDispatcher.BatchSender sender = (requests, consumer) -> {
+      batchSizes.add(requests.size());
+      requests.forEach(request -> consumer.accept(new AnalysisResponse()));
+      return CompletableFuture.completedFuture(null);
+    };
+    try (var dispatcher = AnalysisDispatcher.withBatches(context, 1, 1000, sender, (file, e) -> {
+    })) {
+      var file = inputFile("file.js");
+      for (int i = 0; i < AnalysisDispatcher.DEFAULT_BATCH_SIZE; i++) {
+        dispatcher.submit(file, request(file), r -> {
+        });
+      }
+      assertThat(batchSizes).containsExactly(AnalysisDispatcher.DEFAULT_BATCH_SIZE);
+    }
+
+    context.setSettings(new MapSettings().setProperty(AnalysisDispatcher.BATCH_SIZE_PROPERTY, 1));
+    batchSizes.clear();
+    try (var dispatcher = AnalysisDispatcher.withBatches(context, 1, 1000, sender, (file, e) -> {
+    })) {
+      var file = inputFile("file.js");
+      dispatcher.submit(file, request(file), r -> {
+      });
+      assertThat(batchSizes).containsExactly(1);
+    }
+  }
+
+  private static InputFile inputFile(String filename) {
+    return TestInputFileBuilder.create("module", filename).build();
+  }
+
+  private static JsAnalysisRequest request(InputFile file) {
+    return new JsAnalysisRequest(file.absolutePath(), "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+  }
+
+  private static AnalysisResponse response(int id) {
+    var response = new AnalysisResponse();
+    // the size of the array identifies the response
+    response.metrics.ncloc = new int[id];
+    return response;
+  }
+}
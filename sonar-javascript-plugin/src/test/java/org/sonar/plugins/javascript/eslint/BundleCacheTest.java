@@ -0,0 +1,93 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.log.LogTesterJUnit5;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.plugins.javascript.eslint.RulesBundlesTest.TestRulesBundle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BundleCacheTest {
+
+  private static final String BUNDLE_HASH = "6cf7c09ab7617a0fc672a0506052d55a1db96358fec94760efc0814ab7e5a956";
+
+  @TempDir
+  Path root;
+
+  @RegisterExtension
+  public LogTesterJUnit5 logTester = new LogTesterJUnit5();
+
+  private final RulesBundles rulesBundles = new RulesBundles(new TestRulesBundle[] {new TestRulesBundle("/test-bundle.tgz")});
+
+  @Test
+  void should_deploy_bundles_once() throws Exception {
+    var cache = new BundleCache(root);
+    var bundle = new BundleImpl("/test-bundle.tgz");
+    List<Path> deployed = cache.deploy(bundle, rulesBundles);
+
+    var location = root.resolve(BUNDLE_HASH);
+    assertThat(bundle.startServerScript()).isEqualTo(location.resolve("package/bin/server").toAbsolutePath().toString());
+    assertThat(Path.of(bundle.startServerScript())).hasContent("#!/usr/bin/env node\n\n");
+    assertThat(deployed).containsExactly(location.resolve("package/custom-rules-" + BUNDLE_HASH + "/package").toAbsolutePath());
+    assertThat(deployed.get(0).resolve("bin/server")).exists();
+    // only the deployed bundle is left in the cache
+    try (var entries = Files.list(root)) {
+      assertThat(entries).containsExactly(location);
+    }
+
+    logTester.clear();
+    var otherBundle = new BundleImpl("/test-bundle.tgz");
+    assertThat(cache.deploy(otherBundle, rulesBundles)).isEqualTo(deployed);
+    assertThat(otherBundle.startServerScript()).isEqualTo(bundle.startServerScript());
+    assertThat(logTester.logs(LoggerLevel.DEBUG))
+      .contains("Using cached bundle " + location, "Using cached bundle " + deployed.get(0).getParent())
+      .noneMatch(log -> log.startsWith("Deploying eslint-bridge"));
+  }
+
+  @Test
+  void should_purge_unused_bundles() throws Exception {
+    var unused = Files.createDirectories(root.resolve("unused"));
+    Files.setLastModifiedTime(unused, FileTime.from(Instant.now().minus(31, ChronoUnit.DAYS)));
+    var recent = Files.createDirectories(root.resolve("recent"));
+    Files.setLastModifiedTime(recent, FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+
+    new BundleCache(root).deploy(new BundleImpl("/test-bundle.tgz"), new RulesBundles());
+    assertThat(unused).doesNotExist();
+    assertThat(recent).exists();
+    assertThat(root.resolve(BUNDLE_HASH)).exists();
+  }
+
+  @Test
+  void should_be_in_user_home() {
+    var config = new MapSettings().setProperty("sonar.userHome", root.toString()).asConfig();
+    assertThat(BundleCache.of(config).nodeVersionsFile()).isEqualTo(root.resolve("js/eslint-bridge-cache/node-versions.properties"));
+  }
+}
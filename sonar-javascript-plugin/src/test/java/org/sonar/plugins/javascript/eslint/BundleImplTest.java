@@ -51,4 +51,10 @@ class BundleImplTest {
     bundle.deploy(deployLocation);
     // no exception expected
   }
+
+  @Test
+  void should_hash_bundle_content() throws Exception {
+    BundleImpl bundle = new BundleImpl("/test-bundle.tgz");
+    assertThat(bundle.hash()).isEqualTo("6cf7c09ab7617a0fc672a0506052d55a1db96358fec94760efc0814ab7e5a956");
+  }
 }
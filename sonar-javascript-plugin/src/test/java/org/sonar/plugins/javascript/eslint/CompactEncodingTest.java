@@ -0,0 +1,108 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Locations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sonar.api.batch.sensor.highlighting.TypeOfText.KEYWORD;
+import static org.sonar.api.batch.sensor.highlighting.TypeOfText.STRING;
+
+/**
+ * The encoded values are produced by eslint-bridge, see eslint-bridge/tests/services/analysis/encoding.test.ts
+ */
+class CompactEncodingTest {
+
+  @Test
+  void should_decode_highlights() {
+    var highlights = CompactEncoding.highlights("AQMCB0tFWVdPUkQGU1RSSU5HAAEAAgAACgAMAAoCAAIE");
+    assertThat(highlights.textTypes).containsExactly(KEYWORD, STRING, KEYWORD);
+    assertLocations(highlights.locations, 1, 0, 1, 5, 1, 6, 1, 11, 2, 0, 3, 2);
+
+    assertThat(CompactEncoding.highlights("AQAA").size()).isZero();
+  }
+
+  @Test
+  void should_decode_highlighted_symbols() {
+    var symbols = CompactEncoding.highlightedSymbols("AQICCAACBgAAAgIABAAAAgIEAAI=");
+    assertLocations(symbols.declarations, 1, 4, 1, 5, 4, 0, 4, 1);
+    assertThat(symbols.referenceStarts).containsExactly(0, 2, 2);
+    assertLocations(symbols.references, 2, 0, 2, 1, 3, 2, 3, 3);
+  }
+
+  @Test
+  void should_decode_cpd_tokens() {
+    var cpdTokens = CompactEncoding.cpdTokens("AQQDA2xldAF4AT0AAQIAAgAABgAIAAIABAACAgAABg==");
+    assertThat(cpdTokens.images).containsExactly("let", "x", "=", "let");
+    assertThat(cpdTokens.images[3]).isSameAs(cpdTokens.images[0]);
+    assertLocations(cpdTokens.locations, 1, 0, 1, 3, 1, 4, 1, 5, 1, 6, 1, 7, 2, 0, 2, 3);
+  }
+
+  @Test
+  void should_decode_lines() {
+    assertThat(CompactEncoding.lines("AQQCAgIO")).containsExactly(1, 2, 3, 10);
+    assertThat(CompactEncoding.lines("AQLAmgy1mgw=")).containsExactly(100000, 5);
+    assertThat(CompactEncoding.lines("AQA=")).isEmpty();
+  }
+
+  @Test
+  void should_read_compact_response() {
+    var response = new Gson().fromJson("{ highlights: \"AQAA\", cpdTokens: \"AQQDA2xldAF4AT0AAQIAAgAABgAIAAIABAACAgAABg==\","
+      + " metrics: { ncloc: \"AQQCAgIO\", executableLines: [3, 4], functions: 1 } }", AnalysisResponse.class);
+    assertThat(response.highlights.size()).isZero();
+    assertThat(response.cpdTokens.size()).isEqualTo(4);
+    assertThat(response.metrics.ncloc).containsExactly(1, 2, 3, 10);
+    assertThat(response.metrics.executableLines).containsExactly(3, 4);
+    assertThat(response.metrics.commentLines).isEmpty();
+    assertThat(response.metrics.functions).isEqualTo(1);
+  }
+
+  @Test
+  void should_fail_on_invalid_encoding() {
+    // truncated
+    assertThatThrownBy(() -> CompactEncoding.lines("AQQCAgI="))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessage("Invalid size 4 in compact encoding");
+    assertThatThrownBy(() -> CompactEncoding.lines("not base64!"))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessage("Invalid compact encoding");
+    assertThatThrownBy(() -> CompactEncoding.lines("AgA="))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessage("Unsupported compact encoding version 2");
+    // trailing byte
+    assertThatThrownBy(() -> CompactEncoding.lines("AQAA"))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessage("Unexpected data at the end of compact encoding");
+    // text type which is not a TypeOfText
+    assertThatThrownBy(() -> CompactEncoding.highlights("AQEBA0ZPTwAAAAAA"))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessage("Unknown text type FOO");
+  }
+
+  private static void assertLocations(Locations locations, int... values) {
+    assertThat(locations.size()).isEqualTo(values.length / Locations.INTS_PER_LOCATION);
+    assertThat(locations.values).startsWith(values);
+  }
+}
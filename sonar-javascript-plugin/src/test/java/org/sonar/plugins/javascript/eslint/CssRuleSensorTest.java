@@ -27,6 +27,7 @@ import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -63,6 +64,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -102,6 +104,13 @@ class CssRuleSensorTest {
     when(eslintBridgeServerMock.isAlive()).thenReturn(true);
     when(eslintBridgeServerMock.analyzeCss(any()))
       .thenReturn(response("{ issues: [{\"line\":2,\"ruleId\":\"block-no-empty\",\"message\":\"Unexpected empty block\"}]}"));
+    doAnswer(invocation -> {
+      try {
+        return CompletableFuture.completedFuture(eslintBridgeServerMock.analyzeCss(invocation.getArgument(0)));
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }).when(eslintBridgeServerMock).analyzeCssAsync(any());
     when(eslintBridgeServerMock.getCommandInfo()).thenReturn("eslintBridgeServerMock command info");
     context = SensorContextTester.create(baseDir);
     context.fileSystem().setWorkDir(workDir);
@@ -240,7 +249,7 @@ class CssRuleSensorTest {
     InputFile httpFile = mock(InputFile.class);
     when(httpFile.filename()).thenReturn("file.css");
     when(httpFile.uri()).thenReturn(new URI("http://lost-on-earth.com/file.css"));
-    sensor.analyzeFile(httpFile, context, Collections.emptyList());
+    sensor.analyzeFile(httpFile, context, Collections.emptyList(), new AnalysisDispatcher(1));
     assertThat(String.join("\n", logTester.logs(LoggerLevel.DEBUG)))
       .matches("(?s).*Skipping \\S*file.css as it has not 'file' scheme.*")
       .doesNotMatch("(?s).*\nAnalyzing \\S*file.css.*");
@@ -277,6 +286,18 @@ class CssRuleSensorTest {
     assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to parse " + inputFileNotCss.uri() + ", line 2, Missed semicolon");
   }
 
+  @Test
+  void should_save_analysis_error_when_analysis_failed() throws IOException {
+    when(eslintBridgeServerMock.analyzeCss(any()))
+      .thenReturn(response("{ parsingError: { message: \"eslint-bridge Node.js process crashed\", code: \"GENERAL_ERROR\" } }"));
+
+    InputFile inputFile = addInputFile("crash.css");
+    sensor.execute(context);
+    assertThat(context.allIssues()).isEmpty();
+    assertThat(context.allAnalysisErrors()).extracting(error -> error.inputFile()).containsExactly(inputFile);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Failed to analyze file [" + inputFile + "]: eslint-bridge Node.js process crashed");
+  }
+
   @Test
   void test_unknown_rule() throws IOException {
     AnalysisResponse responseIssues = response("{ issues: [{\"line\":2,\"ruleId\":\"unknown-rule-key\",\"message\":\"Some message\"}]}");
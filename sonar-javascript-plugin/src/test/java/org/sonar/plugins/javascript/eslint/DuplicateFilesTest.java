@@ -0,0 +1,201 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Issue;
+import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DuplicateFilesTest {
+
+  private static final List<EslintRule> RULES = List.of(new EslintRule("no-extra-semi", emptyList(), List.of(InputFile.Type.MAIN)));
+
+  @BeforeEach
+  void setUp() {
+    // the content of files is hashed once per analysis
+    CacheStrategies.reset();
+  }
+
+  @Test
+  void should_group_identical_files() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var file3 = file("dir3/file.js", "foo();");
+    var other = file("dir4/file.js", "bar();");
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2, file3, other), RULES);
+
+    assertThat(duplicateFiles.isRepresented(file2)).isFalse();
+    assertThat(duplicateFiles.representedBy(file1)).containsExactly(file2, file3);
+    assertThat(duplicateFiles.isRepresented(file1)).isFalse();
+    assertThat(duplicateFiles.isRepresented(file2)).isTrue();
+    assertThat(duplicateFiles.isRepresented(file3)).isTrue();
+    assertThat(duplicateFiles.representedBy(file2)).isEmpty();
+    assertThat(duplicateFiles.isRepresented(other)).isFalse();
+    assertThat(duplicateFiles.representedBy(other)).isEmpty();
+  }
+
+  @Test
+  void should_represent_following_files_only() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var file3 = file("dir3/file.js", "foo();");
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2, file3), RULES);
+
+    // file1 was not analyzed, e.g. it was unchanged
+    assertThat(duplicateFiles.representedBy(file2)).containsExactly(file3);
+    assertThat(duplicateFiles.isRepresented(file3)).isTrue();
+  }
+
+  @Test
+  void should_not_group_files_of_different_extension_or_type() {
+    var file = file("dir/file.js", "foo();");
+    var jsx = file("dir/file.jsx", "foo();");
+    var test = new TestInputFileBuilder("module", "dir/file.test.js").setType(InputFile.Type.TEST).setContents("foo();")
+      .setCharset(StandardCharsets.UTF_8).build();
+    var duplicateFiles = DuplicateFiles.of(List.of(file, jsx, test), RULES);
+
+    assertThat(duplicateFiles.representedBy(file)).isEmpty();
+    assertThat(duplicateFiles.isRepresented(jsx)).isFalse();
+    assertThat(duplicateFiles.isRepresented(test)).isFalse();
+  }
+
+  @Test
+  void should_not_group_files_with_context_dependent_rules() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var rules = List.of(new EslintRule("file-name-differ-from-class", emptyList(), List.of(InputFile.Type.MAIN), true));
+
+    assertThat(DuplicateFiles.of(List.of(file1, file2), rules).representedBy(file1)).isEmpty();
+    var ucfgRules = List.of(new EslintRule(EslintRule.UCFG_ESLINT_KEY, emptyList(), List.of(InputFile.Type.MAIN)));
+    assertThat(DuplicateFiles.of(List.of(file1, file2), ucfgRules).representedBy(file1)).isEmpty();
+  }
+
+  @Test
+  void should_reuse_issues_of_context_independent_rules() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var file3 = file("dir3/file.js", "foo();");
+    var rules = List.of(
+      new EslintRule("no-extra-semi", emptyList(), List.of(InputFile.Type.MAIN)),
+      new EslintRule("no-in-misuse", emptyList(), List.of(InputFile.Type.MAIN), true));
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2, file3), rules);
+
+    // the following files are sent to eslint-bridge with the context-dependent rules only
+    assertThat(duplicateFiles.representedBy(file1)).isEmpty();
+    assertThat(duplicateFiles.isRepresented(file2)).isFalse();
+    assertThat(duplicateFiles.linterIdFor(file1, AnalysisMode.DEFAULT_LINTER_ID)).isEqualTo(AnalysisMode.DEFAULT_LINTER_ID);
+    assertThat(duplicateFiles.linterIdFor(file2, AnalysisMode.DEFAULT_LINTER_ID)).isEqualTo(AnalysisMode.CONTEXT_DEPENDENT_LINTER_ID);
+
+    var analyzed = response(issue("no-extra-semi"), issue("no-in-misuse"));
+    assertThat(duplicateFiles.completed(file1, analyzed)).isSameAs(analyzed);
+    assertThat(analyzed.issues).extracting(issue -> issue.ruleId).containsExactly("no-extra-semi", "no-in-misuse");
+
+    assertThat(duplicateFiles.completed(file2, response()).issues).extracting(issue -> issue.ruleId)
+      .containsExactly("no-extra-semi");
+    assertThat(duplicateFiles.completed(file3, response(issue("no-in-misuse"))).issues).extracting(issue -> issue.ruleId)
+      .containsExactlyInAnyOrder("no-in-misuse", "no-extra-semi");
+  }
+
+  @Test
+  void should_reuse_issues_of_replayed_response() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var rules = List.of(
+      new EslintRule("no-extra-semi", emptyList(), List.of(InputFile.Type.MAIN)),
+      new EslintRule("no-in-misuse", emptyList(), List.of(InputFile.Type.MAIN), true));
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2), rules);
+    duplicateFiles.representedBy(file1);
+
+    duplicateFiles.replayed(file1, response(issue("no-extra-semi")));
+    // the replayed response of a following file is already complete
+    var replayed = response(issue("no-extra-semi"));
+    duplicateFiles.replayed(file2, replayed);
+    assertThat(replayed.issues).hasSize(1);
+    assertThat(duplicateFiles.completed(file2, response()).issues).extracting(issue -> issue.ruleId)
+      .containsExactly("no-extra-semi");
+  }
+
+  @Test
+  void should_analyze_following_files_with_all_rules_when_first_one_failed() {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = file("dir2/file.js", "foo();");
+    var rules = List.of(
+      new EslintRule("no-extra-semi", emptyList(), List.of(InputFile.Type.MAIN)),
+      new EslintRule("no-in-misuse", emptyList(), List.of(InputFile.Type.MAIN), true));
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2), rules);
+    duplicateFiles.representedBy(file1);
+
+    var timeout = new AnalysisResponse();
+    timeout.parsingError = new EslintBridgeServer.ParsingError();
+    timeout.parsingError.code = EslintBridgeServer.ParsingErrorCode.TIMEOUT;
+    assertThat(duplicateFiles.completed(file1, timeout)).isSameAs(timeout);
+    assertThat(duplicateFiles.linterIdFor(file2, AnalysisMode.DEFAULT_LINTER_ID)).isEqualTo(AnalysisMode.CONTEXT_DEPENDENT_LINTER_ID);
+
+    // the response of the context-dependent rules only is incomplete, the file is submitted again with all the rules
+    assertThat(duplicateFiles.completed(file2, response(issue("no-in-misuse")))).isNull();
+    assertThat(duplicateFiles.linterIdFor(file2, AnalysisMode.DEFAULT_LINTER_ID)).isEqualTo(AnalysisMode.DEFAULT_LINTER_ID);
+    var analyzed = response(issue("no-extra-semi"), issue("no-in-misuse"));
+    assertThat(duplicateFiles.completed(file2, analyzed)).isSameAs(analyzed);
+    assertThat(analyzed.issues).hasSize(2);
+  }
+
+  @Test
+  void should_analyze_unreadable_files_on_their_own() throws IOException {
+    var file1 = file("dir1/file.js", "foo();");
+    var file2 = mock(InputFile.class);
+    when(file2.filename()).thenReturn("file.js");
+    when(file2.inputStream()).thenThrow(new IOException("unreadable"));
+    var duplicateFiles = DuplicateFiles.of(List.of(file1, file2), RULES);
+
+    assertThat(duplicateFiles.representedBy(file1)).isEmpty();
+    assertThat(duplicateFiles.isRepresented(file2)).isFalse();
+  }
+
+  private static AnalysisResponse response(Issue... issues) {
+    var response = new AnalysisResponse();
+    response.issues = List.of(issues);
+    return response;
+  }
+
+  private static Issue issue(String ruleId) {
+    var issue = new Issue();
+    issue.ruleId = ruleId;
+    return issue;
+  }
+
+  private static InputFile file(String path, String contents) {
+    return TestInputFileBuilder.create("module", path)
+      .setContents(contents)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.plugins.javascript.eslint.EslintBridgeDaemon.Handshake;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EslintBridgeDaemonTest {
+
+  @TempDir
+  Path home;
+
+  private final Handshake expected = new Handshake("1.0", "hash", "node=");
+
+  @Test
+  void should_lock_a_slot_per_analysis() throws Exception {
+    List<EslintBridgeDaemon> daemons = new ArrayList<>();
+    for (int i = 0; i < EslintBridgeDaemon.MAX_SLOTS; i++) {
+      var daemon = EslintBridgeDaemon.acquire(home, expected);
+      assertThat(daemon).isNotNull();
+      assertThat(daemon.handshakeFile()).isEqualTo(home.resolve(expected.key()).resolve(String.valueOf(i)).resolve("daemon.json"));
+      daemons.add(daemon);
+    }
+    assertThat(EslintBridgeDaemon.acquire(home, expected)).isNull();
+
+    daemons.get(3).close();
+    var daemon = EslintBridgeDaemon.acquire(home, expected);
+    assertThat(daemon.handshakeFile().getParent().getFileName()).hasToString("3");
+    daemons.add(daemon);
+    daemons.forEach(EslintBridgeDaemon::close);
+  }
+
+  @Test
+  void should_use_a_directory_per_compatibility_key() {
+    assertThat(expected.key())
+      .isEqualTo(new Handshake("1.0", "hash", "node=").key())
+      .isNotEqualTo(new Handshake("1.1", "hash", "node=").key())
+      .isNotEqualTo(new Handshake("1.0", "other", "node=").key())
+      .isNotEqualTo(new Handshake("1.0", "hash", "node=/usr/bin/node").key());
+  }
+
+  @Test
+  void should_read_handshake_of_compatible_daemon() throws Exception {
+    try (var daemon = EslintBridgeDaemon.acquire(home, expected)) {
+      assertThat(daemon.running()).isNull();
+
+      assertThat(daemon.started()).isNull();
+      Files.writeString(daemon.handshakeFile(), "{ \"pid\": 42, \"port\"");
+      assertThat(daemon.started()).isNull();
+
+      // written by eslint-bridge once it listens to the port chosen by the OS
+      Files.writeString(daemon.handshakeFile(), "{ \"pid\": 42, \"port\": 1234 }");
+      assertThat(daemon.started().port).isEqualTo(1234);
+      assertThat(daemon.running()).isNull();
+      var registered = daemon.register(16);
+      assertThat(registered.pid).isEqualTo(42);
+      assertThat(registered.port).isEqualTo(1234);
+
+      var running = daemon.running();
+      assertThat(running).isNotNull();
+      assertThat(running.pid).isEqualTo(42);
+      assertThat(running.port).isEqualTo(1234);
+      assertThat(running.nodeVersion).isEqualTo(16);
+
+      Files.writeString(daemon.handshakeFile(), "{ \"pluginVersion\": \"0.9\", \"bundleHash\": \"hash\", \"settings\": \"node=\", \"pid\": 42 }");
+      assertThat(daemon.running()).isNull();
+      Files.writeString(daemon.handshakeFile(), "not json");
+      assertThat(daemon.running()).isNull();
+    }
+  }
+
+  @Test
+  void should_read_settings() {
+    var settings = new MapSettings();
+    assertThat(EslintBridgeDaemon.home(settings.setProperty("sonar.userHome", "/home/user/.sonar").asConfig()))
+      .isEqualTo(Path.of("/home/user/.sonar", "js", "eslint-bridge-daemon"));
+    assertThat(EslintBridgeDaemon.idleTimeoutMillis(settings.asConfig())).isEqualTo(30 * 60_000L);
+    settings.setProperty(EslintBridgeDaemon.IDLE_TIMEOUT_PROPERTY, 5);
+    assertThat(EslintBridgeDaemon.idleTimeoutMillis(settings.asConfig())).isEqualTo(5 * 60_000L);
+  }
+}
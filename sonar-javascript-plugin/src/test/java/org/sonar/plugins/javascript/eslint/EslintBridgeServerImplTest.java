@@ -19,15 +19,23 @@
  */
 package org.sonar.plugins.javascript.eslint;
 
+import com.google.gson.Gson;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -47,10 +55,15 @@ import org.sonar.api.internal.SonarRuntimeImpl;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.Version;
 import org.sonar.api.utils.log.LogTesterJUnit5;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.CssAnalysisRequest;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.ParsingErrorCode;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgram;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgramRequest;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerImpl.ReadinessConsumer;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerImpl.StartContext;
 import org.sonarsource.nodejs.NodeCommand;
 import org.sonarsource.nodejs.NodeCommandBuilder;
 import org.sonarsource.nodejs.NodeCommandException;
@@ -59,7 +72,10 @@ import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.mock;
 import static org.sonar.api.utils.log.LoggerLevel.DEBUG;
 import static org.sonar.api.utils.log.LoggerLevel.ERROR;
@@ -85,6 +101,9 @@ class EslintBridgeServerImplTest {
   @TempDir
   File tempDir;
 
+  @TempDir
+  Path userHome;
+
   TempFolder tempFolder;
 
   private SensorContextTester context;
@@ -180,6 +199,20 @@ class EslintBridgeServerImplTest {
     assertThat(logTester.logs()).contains("{\"linterId\":\"default\",\"rules\":[{\"key\":\"key\",\"fileTypeTarget\":[\"MAIN\"],\"configurations\":[\"config\"]}],\"environments\":[],\"globals\":[]}");
   }
 
+  @Test
+  void should_init_linter_of_context_dependent_rules() throws Exception {
+    eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServer(context, emptyList());
+
+    List<EslintRule> rules = List.of(
+      new EslintRule("key", singletonList("config"), singletonList(InputFile.Type.MAIN)),
+      new EslintRule("dependent", emptyList(), singletonList(InputFile.Type.MAIN), true));
+    eslintBridgeServer.initLinter(rules, emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    eslintBridgeServer.stop();
+    assertThat(logTester.logs()).contains("{\"linterId\":\"contextDependent\",\"rules\":[{\"key\":\"dependent\",\"fileTypeTarget\":[\"MAIN\"],\"configurations\":[]}],\"environments\":[],\"globals\":[]}");
+  }
+
   @Test
   void should_get_answer_from_server_for_ts_request() throws Exception {
     eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
@@ -210,6 +243,79 @@ class EslintBridgeServerImplTest {
     assertThat(eslintBridgeServer.analyzeYaml(request).issues).isEmpty();
   }
 
+  @Test
+  void should_get_answers_from_server_for_batch_request() throws Exception {
+    eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServer(context, emptyList());
+
+    var requests = List.of(
+      new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID),
+      new JsAnalysisRequest("/bar.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+    List<AnalysisResponse> responses = new ArrayList<>();
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add).get(5, TimeUnit.SECONDS);
+
+    assertThat(responses).hasSize(2).allSatisfy(response -> assertThat(response.issues).isEmpty());
+    assertThat(logTester.logs()).anyMatch(log -> log.startsWith("{\"kind\":\"js\",\"inputs\":[{\"filePath\":\"/foo.js\""));
+  }
+
+  @Test
+  void should_communicate_over_unix_domain_socket() throws Exception {
+    assumeTrue(UnixSocketTransport.isSupported());
+    context.setSettings(new MapSettings().setProperty(EslintBridgeServerImpl.UNIX_SOCKET_PROPERTY, true));
+    eslintBridgeServer = createEslintBridgeServer("startFramedServer.js");
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServer(context, emptyList());
+    assertThat(logTester.logs(DEBUG)).anyMatch(log -> log.startsWith("Starting Node.js process to start eslint-bridge server on socket"));
+    assertThat(eslintBridgeServer.isAlive()).isTrue();
+
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    assertThat(eslintBridgeServer.analyzeJavaScript(request).issues).isEmpty();
+    // the connection is reused once the response is read
+    assertThat(eslintBridgeServer.analyzeJavaScript(request).issues).isEmpty();
+
+    var requests = List.of(request, new JsAnalysisRequest("/bar.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+    List<AnalysisResponse> responses = new ArrayList<>();
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add).get(5, TimeUnit.SECONDS);
+    assertThat(responses).hasSize(2).allSatisfy(response -> assertThat(response.issues).isEmpty());
+
+    eslintBridgeServer.clean();
+    assertThat(eslintBridgeServer.isAlive()).isFalse();
+  }
+
+  @Test
+  void should_reuse_daemon_across_analyses() throws Exception {
+    context.setSettings(new MapSettings()
+      .setProperty(EslintBridgeDaemon.DAEMON_PROPERTY, true)
+      .setProperty("sonar.userHome", userHome.toString()));
+    eslintBridgeServer = createEslintBridgeServer("startDaemon.js");
+    try {
+      eslintBridgeServer.startServerLazily(context);
+      assertThat(logTester.logs(DEBUG)).anyMatch(log -> log.startsWith("Starting Node.js process to start eslint-bridge daemon at port"));
+      assertThat(eslintBridgeServer.isAlive()).isTrue();
+      var commandInfo = eslintBridgeServer.getCommandInfo();
+      assertThat(commandInfo).startsWith("eslint-bridge daemon process");
+      eslintBridgeServer.clean();
+      assertThat(eslintBridgeServer.isAlive()).isFalse();
+
+      eslintBridgeServer = createEslintBridgeServer("startDaemon.js");
+      eslintBridgeServer.startServerLazily(context);
+      assertThat(logTester.logs(DEBUG)).anyMatch(log -> log.startsWith("Reusing eslint-bridge daemon process"));
+      assertThat(eslintBridgeServer.getCommandInfo()).isEqualTo(commandInfo);
+      var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+      assertThat(eslintBridgeServer.analyzeJavaScript(request).issues).isEmpty();
+
+      // a daemon serves a single analysis at once
+      var concurrent = createEslintBridgeServer("startDaemon.js");
+      concurrent.startServerLazily(context);
+      assertThat(concurrent.getCommandInfo()).startsWith("eslint-bridge daemon process").isNotEqualTo(commandInfo);
+      concurrent.clean();
+    } finally {
+      stopDaemons();
+    }
+  }
+
   @Test
   void should_get_answer_from_server_for_program_based_requests() throws Exception {
     eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
@@ -226,10 +332,61 @@ class EslintBridgeServerImplTest {
     JsAnalysisRequest request = new JsAnalysisRequest("/absolute/path/file.ts", "MAIN",
       null, true, null, programCreated.programId, DEFAULT_LINTER_ID);
     assertThat(eslintBridgeServer.analyzeWithProgram(request).issues).isEmpty();
+    assertThat(eslintBridgeServer.analyzeWithProgramAsync(request).get(5, TimeUnit.SECONDS).issues).isEmpty();
 
     assertThat(eslintBridgeServer.deleteProgram(programCreated)).isTrue();
   }
 
+  @Test
+  void should_record_jfr_events() throws Exception {
+    eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServer(context, emptyList());
+
+    List<RecordedEvent> events;
+    try (var recording = new Recording()) {
+      recording.enable(JfrEvents.BridgeRequest.class);
+      recording.enable(JfrEvents.ProgramCreation.class);
+      recording.enable(JfrEvents.ProgramDeletion.class);
+      recording.start();
+      TsProgram program = eslintBridgeServer.createProgram(new TsProgramRequest("/absolute/path/tsconfig.json"));
+      JsAnalysisRequest request = new JsAnalysisRequest("/absolute/path/file.ts", "MAIN", null, true, null, program.programId, DEFAULT_LINTER_ID);
+      eslintBridgeServer.analyzeWithProgram(request);
+      var requests = List.of(
+        new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID),
+        new JsAnalysisRequest("/bar.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+      eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, response -> {}).get(5, TimeUnit.SECONDS);
+      eslintBridgeServer.deleteProgram(program);
+      recording.stop();
+      var path = workDir.resolve("recording.jfr");
+      recording.dump(path);
+      events = RecordingFile.readAllEvents(path);
+    }
+
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.BridgeRequest"))
+      .extracting(e -> e.getString("endpoint"), e -> e.getString("file"), e -> e.getInt("files"))
+      .containsExactlyInAnyOrder(
+        tuple("create-program", null, 0),
+        tuple("analyze-with-program", "/absolute/path/file.ts", 1),
+        tuple("analyze-batch", null, 2),
+        tuple("delete-program", null, 0));
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.BridgeRequest"))
+      .allSatisfy(e -> {
+        assertThat(e.getLong("requestSize")).isPositive();
+        assertThat(e.getLong("responseSize")).isPositive();
+      });
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.ProgramCreation"))
+      .extracting(e -> e.getString("tsConfig"), e -> e.getString("programId"), e -> e.getInt("files"))
+      .containsExactly(tuple("/absolute/path/tsconfig.json", "42", 3));
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.ProgramDeletion"))
+      .extracting(e -> e.getString("programId"))
+      .containsExactly("42");
+  }
+
   @Test
   void should_not_fail_when_error_during_create_program() throws Exception {
     eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
@@ -253,6 +410,20 @@ class EslintBridgeServerImplTest {
       .build();
     CssAnalysisRequest request = new CssAnalysisRequest(inputFile.absolutePath(), inputFile.type().toString(), Collections.emptyList());
     assertThat(eslintBridgeServer.analyzeCss(request).issues).isEmpty();
+    assertThat(eslintBridgeServer.analyzeCssAsync(request).get(5, TimeUnit.SECONDS).issues).isEmpty();
+  }
+
+  @Test
+  void should_fail_async_request_if_bad_json_response() throws Exception {
+    eslintBridgeServer = createEslintBridgeServer("badResponse.js");
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServerLazily(context);
+
+    CssAnalysisRequest request = new CssAnalysisRequest("/foo.css", null, Collections.emptyList());
+    assertThatThrownBy(() -> eslintBridgeServer.analyzeCssAsync(request).get(5, TimeUnit.SECONDS))
+      .isInstanceOf(ExecutionException.class)
+      .hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(logTester.logs(ERROR)).contains("Failed to parse response for file /foo.css");
   }
 
   @Test
@@ -263,7 +434,7 @@ class EslintBridgeServerImplTest {
 
     assertThatThrownBy(() -> eslintBridgeServer.startServer(context, deployedBundles))
       .isInstanceOf(NodeCommandException.class)
-      .hasMessage("Failed to start server (" + TEST_TIMEOUT_SECONDS + "s timeout)");
+      .hasMessage("Failed to start server, eslint-bridge Node.js process exited");
   }
 
   @Test
@@ -311,6 +482,51 @@ class EslintBridgeServerImplTest {
     assertThat(logTester.logs()).contains("allowTsParserJsFiles: true");
   }
 
+  @Test
+  void should_restart_when_heap_is_almost_full() throws Exception {
+    var settings = new MapSettings();
+    settings.setProperty(HeapWatcher.MAX_HEAP_USAGE_PROPERTY, "0.8");
+    context.setSettings(settings);
+    eslintBridgeServer = createEslintBridgeServer("heapFull.js");
+    eslintBridgeServer.startServerLazily(context);
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    var program = eslintBridgeServer.createProgram(new TsProgramRequest("/tsconfig.json"));
+    var request = new JsAnalysisRequest("/foo.ts", "MAIN", null, true, null, program.programId, DEFAULT_LINTER_ID);
+    eslintBridgeServer.analyzeWithProgram(request);
+    assertThat(logTester.logs(INFO)).noneMatch(log -> log.startsWith("Restarting"));
+
+    // the process reported 90% of its heap used
+    eslintBridgeServer.analyzeWithProgram(request);
+    assertThat(logTester.logs(INFO)).contains("Restarting eslint-bridge Node.js process, which uses 90% of its heap");
+    assertThat(logTester.logs(INFO).stream().filter(log -> log.startsWith("/init-linter"))).hasSize(2);
+    var programIds = logTester.logs(INFO).stream()
+      .filter(log -> log.startsWith("/analyze-with-program"))
+      .map(log -> new Gson().fromJson(log.substring(log.indexOf(' ')), JsAnalysisRequest.class).programId)
+      .collect(Collectors.toList());
+    // the program was created again in the new process
+    assertThat(programIds).hasSize(2);
+    assertThat(programIds.get(0)).isEqualTo(program.programId);
+    assertThat(programIds.get(1)).isNotEqualTo(program.programId);
+    assertThat(eslintBridgeServer.isAlive()).isTrue();
+
+    // programs created after the restart get an id which is distinct from those created before
+    assertThat(eslintBridgeServer.createProgram(new TsProgramRequest("/other/tsconfig.json")).programId).isEqualTo(programIds.get(1) + "@1");
+
+    // the process is full again right after the restart, so it is not restarted anymore
+    assertThat(logTester.logs(WARN)).contains("eslint-bridge Node.js process uses 90% of its heap shortly after being restarted. " +
+      "Consider setting sonar.javascript.node.maxspace to higher value (e.g. 4096).");
+    logTester.clear();
+    eslintBridgeServer.analyzeWithProgram(request);
+    assertThat(logTester.logs(INFO)).noneMatch(log -> log.startsWith("Restarting"));
+
+    // batches also use the id of the program in the new process
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.TYPESCRIPT, List.of(request), response -> {}).get(5, TimeUnit.SECONDS);
+    assertThat(logTester.logs(INFO)).anyMatch(log -> log.startsWith("/analyze-batch") && log.contains("\"programId\":\"" + programIds.get(1) + "\""));
+
+    assertThat(eslintBridgeServer.deleteProgram(program)).isTrue();
+    assertThat(logTester.logs(INFO)).contains("/delete-program {\"programId\":\"" + programIds.get(1) + "\"}");
+  }
+
   @Test
   void test_isAlive() throws Exception {
     eslintBridgeServer = createEslintBridgeServer(START_SERVER_SCRIPT);
@@ -338,7 +554,7 @@ class EslintBridgeServerImplTest {
   @Test
   void should_throw_special_exception_when_failed_start_server_before() {
     eslintBridgeServer = createEslintBridgeServer("throw.js");
-    String failedToStartExceptionMessage = "Failed to start server (" + TEST_TIMEOUT_SECONDS + "s timeout)";
+    String failedToStartExceptionMessage = "Failed to start server, eslint-bridge Node.js process exited";
     assertThatThrownBy(() -> eslintBridgeServer.startServerLazily(context))
       .isInstanceOf(NodeCommandException.class)
       .hasMessage(failedToStartExceptionMessage);
@@ -347,6 +563,31 @@ class EslintBridgeServerImplTest {
       .isInstanceOf(ServerAlreadyFailedException.class);
   }
 
+  @Test
+  void should_throw_when_failed_to_start_server_in_background() {
+    eslintBridgeServer = createEslintBridgeServer("throw.js");
+    eslintBridgeServer.startAsync(StartContext.of(context));
+    assertThatThrownBy(() -> eslintBridgeServer.startServerLazily(context))
+      .isInstanceOf(NodeCommandException.class)
+      .hasMessage("Failed to start server, eslint-bridge Node.js process exited");
+
+    assertThatThrownBy(() -> eslintBridgeServer.startServerLazily(context))
+      .isInstanceOf(ServerAlreadyFailedException.class);
+  }
+
+  @Test
+  void should_detect_when_server_is_ready() {
+    var readiness = new ReadinessConsumer();
+    readiness.accept("DEBUG starting eslint-bridge server at port 0");
+    assertThat(readiness.ready()).isNotDone();
+    readiness.accept("DEBUG eslint-bridge server is running at port 1234");
+    assertThat(readiness.ready()).isCompletedWithValue(1234);
+
+    readiness = new ReadinessConsumer();
+    readiness.accept("DEBUG eslint-bridge server is running on socket /tmp/eslint-bridge.sock");
+    assertThat(readiness.ready()).isCompletedWithValue(0);
+  }
+
   @Test
   void should_throw_special_exception_when_failed_start_process_before() {
     eslintBridgeServer = createEslintBridgeServer("invalid");
@@ -360,6 +601,7 @@ class EslintBridgeServerImplTest {
 
   @Test
   void should_throw_if_server_not_alive() throws Exception {
+    context.setSettings(new MapSettings().setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
     eslintBridgeServer = createEslintBridgeServer("startAndClose.js");
     eslintBridgeServer.startServerLazily(context);
 
@@ -369,6 +611,149 @@ class EslintBridgeServerImplTest {
       .isInstanceOf(ServerAlreadyFailedException.class);
   }
 
+  @Test
+  void should_not_be_alive_once_process_exited() throws Exception {
+    context.setSettings(new MapSettings().setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
+    eslintBridgeServer = createEslintBridgeServer("startAndClose.js");
+    eslintBridgeServer.startServerLazily(context);
+
+    eslintBridgeServer.waitFor();
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> !eslintBridgeServer.isAlive());
+    await().atMost(5, TimeUnit.SECONDS).until(() -> logTester.logs(ERROR).contains("eslint-bridge Node.js process exited with code 0"));
+  }
+
+  @Test
+  void should_not_be_alive_after_unresponsive_request() throws Exception {
+    context.setSettings(new MapSettings().setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
+    eslintBridgeServer = createEslintBridgeServer("timeout.js");
+    eslintBridgeServer.deploy();
+    eslintBridgeServer.startServerLazily(context);
+    assertThat(eslintBridgeServer.isAlive()).isTrue();
+
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    assertThatThrownBy(() -> eslintBridgeServer.analyzeJavaScript(request))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("eslint-bridge is unresponsive");
+    assertThat(eslintBridgeServer.isAlive()).isFalse();
+  }
+
+  @Test
+  void should_restart_after_crash() throws Exception {
+    eslintBridgeServer = createEslintBridgeServer("crash.js");
+    eslintBridgeServer.startServerLazily(context);
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+
+    var crashing = new JsAnalysisRequest("/crash.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    var response = eslintBridgeServer.analyzeJavaScript(crashing);
+    assertThat(response.parsingError.code).isEqualTo(ParsingErrorCode.GENERAL_ERROR);
+    assertThat(response.parsingError.message).isEqualTo("eslint-bridge Node.js process crashed or stopped responding while analyzing this file");
+    assertThat(eslintBridgeServer.isAlive()).isTrue();
+
+    // the process is replaced by the next request, its linters are initialized again
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    assertThat(eslintBridgeServer.analyzeJavaScript(request).parsingError).isNull();
+    assertThat(logTester.logs(WARN)).contains("Restarting eslint-bridge Node.js process, which crashed or stopped responding (2 restart(s) left)");
+    assertThat(logTester.logs(INFO).stream().filter(log -> log.startsWith("/init-linter"))).hasSize(2);
+
+    // the files following the one which crashed the process are sent again
+    var requests = List.of(request, crashing, new JsAnalysisRequest("/bar.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+    List<AnalysisResponse> responses = new ArrayList<>();
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add).get(5, TimeUnit.SECONDS);
+    assertThat(responses).extracting(r -> r.parsingError == null ? null : r.parsingError.code)
+      .containsExactly(null, ParsingErrorCode.GENERAL_ERROR, null);
+    assertThat(logTester.logs(WARN)).contains("Restarting eslint-bridge Node.js process, which crashed or stopped responding (1 restart(s) left)");
+    assertThat(logTester.logs(INFO)).contains("/analyze-batch {\"kind\":\"js\",\"inputs\":[" +
+      "{\"filePath\":\"/bar.js\",\"fileType\":\"MAIN\",\"ignoreHeaderComments\":true,\"linterId\":\"default\",\"encoding\":\"compact\"}]}");
+  }
+
+  @Test
+  void should_stop_restarting_after_too_many_crashes() throws Exception {
+    context.setSettings(new MapSettings().setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 1));
+    eslintBridgeServer = createEslintBridgeServer("crash.js");
+    eslintBridgeServer.startServerLazily(context);
+
+    var crashing = new JsAnalysisRequest("/crash.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    assertThat(eslintBridgeServer.analyzeJavaScript(crashing).parsingError).isNotNull();
+    assertThatThrownBy(() -> eslintBridgeServer.analyzeJavaScript(crashing))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("eslint-bridge is unresponsive");
+    assertThat(eslintBridgeServer.isAlive()).isFalse();
+  }
+
+  @Test
+  void should_skip_file_exceeding_deadline() throws Exception {
+    context.setSettings(new MapSettings()
+      .setProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY, 1)
+      .setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
+    eslintBridgeServer = createEslintBridgeServer("slow.js");
+    eslintBridgeServer.startServerLazily(context);
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+
+    var slow = new JsAnalysisRequest("/slow.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    var response = eslintBridgeServer.analyzeJavaScript(slow);
+    assertThat(response.parsingError.code).isEqualTo(ParsingErrorCode.TIMEOUT);
+    assertThat(response.parsingError.message).isEqualTo("skipped: exceeded 1 s");
+    assertThat(eslintBridgeServer.isAlive()).isTrue();
+
+    // the process is replaced by the next request, even when crashes are not restarted
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    assertThat(eslintBridgeServer.analyzeJavaScript(request).parsingError).isNull();
+    assertThat(logTester.logs(INFO)).contains("Restarting eslint-bridge Node.js process, which was stopped as the analysis of a file exceeded 1 s");
+
+    // the deadline applies to each file of a batch
+    var requests = List.of(request, slow, new JsAnalysisRequest("/bar.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+    List<AnalysisResponse> responses = new ArrayList<>();
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add).get(10, TimeUnit.SECONDS);
+    assertThat(responses).extracting(r -> r.parsingError == null ? null : r.parsingError.code)
+      .containsExactly(null, ParsingErrorCode.TIMEOUT, null);
+    assertThat(logTester.logs(ERROR)).isEmpty();
+  }
+
+  @Test
+  void should_start_executors_again_after_clean() throws Exception {
+    context.setSettings(new MapSettings()
+      .setProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY, 1)
+      .setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
+    eslintBridgeServer = createEslintBridgeServer("slow.js");
+    eslintBridgeServer.startServerLazily(context);
+    eslintBridgeServer.clean();
+
+    // the deadline would never expire with the services shut down by clean()
+    eslintBridgeServer.startServer(context, emptyList());
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    var slow = new JsAnalysisRequest("/slow.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID);
+    var requests = List.of(new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID), slow);
+    List<AnalysisResponse> responses = new ArrayList<>();
+    eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add).get(10, TimeUnit.SECONDS);
+    assertThat(responses).extracting(r -> r.parsingError == null ? null : r.parsingError.code)
+      .containsExactly(null, ParsingErrorCode.TIMEOUT);
+  }
+
+  @Test
+  void should_only_skip_slow_file_of_overlapping_requests() throws Exception {
+    context.setSettings(new MapSettings()
+      .setProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY, 1)
+      .setProperty(EslintBridgeServerImpl.MAX_CRASH_RESTARTS_PROPERTY, 0));
+    eslintBridgeServer = createEslintBridgeServer("slow.js");
+    eslintBridgeServer.startServerLazily(context);
+    eslintBridgeServer.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+
+    // the slow file is analyzed after a long one, the file of the other request must not be blamed while it waits for them
+    var requests = List.of(
+      new JsAnalysisRequest("/long.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID),
+      new JsAnalysisRequest("/slow.js", "MAIN", null, true, null, null, DEFAULT_LINTER_ID));
+    List<AnalysisResponse> responses = new ArrayList<>();
+    var batch = eslintBridgeServer.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, responses::add);
+    var other = eslintBridgeServer.analyzeCssAsync(new CssAnalysisRequest("/foo.css", null, emptyList()));
+
+    assertThat(other.get(10, TimeUnit.SECONDS).parsingError).isNull();
+    batch.get(10, TimeUnit.SECONDS);
+    assertThat(responses).extracting(r -> r.parsingError == null ? null : r.parsingError.code)
+      .containsExactly(null, ParsingErrorCode.TIMEOUT);
+    assertThat(logTester.logs(ERROR)).isEmpty();
+  }
+
   @Test
   void should_fail_if_bad_json_response() throws Exception {
     eslintBridgeServer = createEslintBridgeServer("badResponse.js");
@@ -526,6 +911,7 @@ class EslintBridgeServerImplTest {
   void enabled_monitoring() throws Exception {
     var settings = new MapSettings();
     settings.setProperty("sonar.javascript.monitoring", "true");
+    settings.setProperty("sonar.javascript.monitoring.path", workDir.toString());
     var monitoring = new Monitoring(settings.asConfig());
     monitoring.startSensor(context, new Sensor() {
       @Override
@@ -543,12 +929,35 @@ class EslintBridgeServerImplTest {
       new TestBundle(START_SERVER_SCRIPT), emptyRulesBundles, deprecationWarning, tempFolder, monitoring);
     eslintBridgeServer.deploy();
     eslintBridgeServer.startServerLazily(context);
+    DefaultInputFile inputFile = TestInputFileBuilder.create("foo", "foo.js")
+      .setContents("alert('Fly, you fools!')")
+      .build();
+    JsAnalysisRequest request = new JsAnalysisRequest(inputFile.absolutePath(), inputFile.type().toString(), null, true, null, null, DEFAULT_LINTER_ID);
+    var perf = eslintBridgeServer.analyzeJavaScript(request).perf;
     eslintBridgeServer.stop();
-    var rules = monitoring.metrics().stream()
-      .filter(m -> m.metricType == Monitoring.MetricType.RULE)
-      .map(m -> ((Monitoring.RuleMetric) m).ruleKey)
-      .collect(Collectors.toList());
-    assertThat(rules).containsExactly("no-commented-code", "arguments-order", "deprecation");
+    assertThat(perf.ruleTimes).containsOnly(entry("no-commented-code", 633), entry("arguments-order", 398));
+    assertThat(perf.receivedNanos).isPositive();
+    assertThat(perf.requestSize).isPositive();
+    assertThat(perf.responseSize).isPositive();
+    monitoring.stop();
+  }
+
+  @Test
+  void should_compute_utf8_length() {
+    assertThat(EslintBridgeServerImpl.utf8Length("")).isZero();
+    assertThat(EslintBridgeServerImpl.utf8Length("abc")).isEqualTo(3);
+    assertThat(EslintBridgeServerImpl.utf8Length("\u00E9\u20AC\uD83D\uDE00")).isEqualTo(2 + 3 + 4);
+    // a lone surrogate is replaced by '?'
+    assertThat(EslintBridgeServerImpl.utf8Length("\uD83D")).isEqualTo("\uD83D".getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  private void stopDaemons() throws IOException {
+    try (var files = Files.walk(userHome)) {
+      for (Path file : files.filter(path -> path.endsWith("daemon.json")).collect(Collectors.toList())) {
+        var handshake = new Gson().fromJson(Files.readString(file), EslintBridgeDaemon.Handshake.class);
+        ProcessHandle.of(handshake.pid).ifPresent(ProcessHandle::destroy);
+      }
+    }
   }
 
   private EslintBridgeServerImpl createEslintBridgeServer(String startServerScript) {
@@ -573,6 +982,16 @@ class EslintBridgeServerImplTest {
       return "src/test/resources/mock-eslint-bridge/" + startServerScript;
     }
 
+    @Override
+    public String hash() {
+      return startServerScript;
+    }
+
+    @Override
+    public void setDeployLocation(Path deployLocation) {
+      // no-op for unit test
+    }
+
     @Override
     public String resolve(String relativePath) {
       File file = new File("src/test/resources");
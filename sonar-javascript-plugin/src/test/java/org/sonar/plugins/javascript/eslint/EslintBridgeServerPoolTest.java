@@ -0,0 +1,365 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.impl.utils.DefaultTempFolder;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.Version;
+import org.sonar.api.utils.log.LogTesterJUnit5;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgram;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgramRequest;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerImpl.StartContext;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServerImplTest.TestBundle;
+import org.sonarsource.nodejs.NodeCommand;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.api.utils.log.LoggerLevel.DEBUG;
+import static org.sonar.api.utils.log.LoggerLevel.WARN;
+import static org.sonar.plugins.javascript.eslint.EslintBridgeServerPool.EAGER_START_PROPERTY;
+import static org.sonar.plugins.javascript.eslint.EslintBridgeServerPool.MIN_FILES_PER_WORKER;
+import static org.sonar.plugins.javascript.eslint.EslintBridgeServerPool.WORKERS_PROPERTY;
+
+class EslintBridgeServerPoolTest {
+
+  private static final int TEST_TIMEOUT_SECONDS = 1;
+
+  @RegisterExtension
+  public LogTesterJUnit5 logTester = new LogTesterJUnit5();
+
+  @TempDir
+  Path moduleBase;
+
+  @TempDir
+  Path workDir;
+
+  @TempDir
+  File tempDir;
+
+  private TempFolder tempFolder;
+  private SensorContextTester context;
+  private EslintBridgeServerPool pool;
+
+  private final Monitoring monitoring = new Monitoring(new MapSettings().asConfig());
+  private final NodeDeprecationWarning deprecationWarning = new NodeDeprecationWarning(new AnalysisWarningsWrapper());
+
+  @BeforeEach
+  void setUp() {
+    context = SensorContextTester.create(moduleBase);
+    context.fileSystem().setWorkDir(workDir);
+    context.setSettings(new MapSettings().setProperty(WORKERS_PROPERTY, 2));
+    tempFolder = new DefaultTempFolder(tempDir, true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (pool != null) {
+      pool.clean();
+    }
+  }
+
+  @Test
+  void should_start_workers_up_to_the_configured_maximum() throws Exception {
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("startServer.js"));
+    pool.startServerLazily(context);
+    pool.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+
+    assertThat(pool.startWorkers(10 * MIN_FILES_PER_WORKER)).isEqualTo(2);
+    assertThat(pool.workerCount()).isEqualTo(2);
+
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+    assertThat(pool.analyzeJavaScript(request).issues).isEmpty();
+
+    pool.clean();
+    assertThat(pool.workerCount()).isEqualTo(1);
+  }
+
+  @Test
+  void should_not_start_workers_for_few_files() throws Exception {
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("startServer.js"));
+    pool.startServerLazily(context);
+
+    assertThat(pool.startWorkers(MIN_FILES_PER_WORKER - 1)).isEqualTo(1);
+    assertThat(pool.workerCount()).isEqualTo(1);
+  }
+
+  @Test
+  void should_continue_when_worker_fails_to_start() throws Exception {
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("NOT_EXISTING.js"));
+    pool.startServerLazily(context);
+
+    assertThat(pool.startWorkers(10 * MIN_FILES_PER_WORKER)).isEqualTo(1);
+    assertThat(logTester.logs(WARN)).contains("Failed to start additional eslint-bridge process");
+  }
+
+  @Test
+  void should_start_server_in_background() throws Exception {
+    var config = new MapSettings().setProperty(EAGER_START_PROPERTY, true).asConfig();
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("startServer.js"),
+      new StartContext(config, workDir.toFile(), false));
+    pool.start();
+    assertThat(logTester.logs(DEBUG)).contains("Starting eslint-bridge server in the background");
+
+    pool.startServerLazily(context);
+    assertThat(pool.isAlive()).isTrue();
+    assertThat(logTester.logs(DEBUG)).contains("eslint-bridge server is up, no need to start.");
+  }
+
+  @Test
+  void should_not_start_server_in_background_by_default() throws Exception {
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("startServer.js"),
+      new StartContext(new MapSettings().asConfig(), workDir.toFile(), false));
+    pool.start();
+    assertThat(pool.isAlive()).isFalse();
+
+    var config = new MapSettings().setProperty(EAGER_START_PROPERTY, true).asConfig();
+    pool = new EslintBridgeServerPool(createServer("startServer.js"), () -> createServer("startServer.js"),
+      new StartContext(config, workDir.toFile(), true));
+    pool.start();
+    assertThat(pool.isAlive()).isFalse();
+    assertThat(logTester.logs(DEBUG)).doesNotContain("Starting eslint-bridge server in the background");
+  }
+
+  @Test
+  void should_compute_max_workers() {
+    assertThat(EslintBridgeServerPool.maxWorkers(context)).isEqualTo(2);
+
+    context.setSettings(new MapSettings().setProperty(WORKERS_PROPERTY, -1));
+    assertThat(EslintBridgeServerPool.maxWorkers(context)).isEqualTo(1);
+
+    context.setSettings(new MapSettings());
+    assertThat(EslintBridgeServerPool.maxWorkers(context)).isPositive();
+
+    context.setSettings(new MapSettings().setProperty(WORKERS_PROPERTY, 4));
+    context.setRuntime(SonarRuntimeImpl.forSonarLint(Version.create(7, 9)));
+    assertThat(EslintBridgeServerPool.maxWorkers(context)).isEqualTo(1);
+  }
+
+  @Test
+  void should_route_requests() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+
+    verify(primary).initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+    verify(worker).initLinter(emptyList(), emptyList(), emptyList(), AnalysisMode.DEFAULT);
+
+    var programRequest = new TsProgramRequest("/tsconfig.json");
+    when(primary.createProgram(programRequest)).thenReturn(new TsProgram("1", List.of(), List.of()));
+    when(primary.analyzeWithProgramAsync(any())).thenReturn(CompletableFuture.completedFuture(new AnalysisResponse()));
+    var request = new JsAnalysisRequest("/foo.ts", "MAIN", null, true, null, "1", AnalysisMode.DEFAULT_LINTER_ID);
+    var program = pool.createProgram(programRequest);
+    pool.analyzeWithProgram(request);
+    pool.analyzeWithProgramAsync(request);
+    pool.deleteProgram(program);
+    pool.loadTsConfig("/tsconfig.json");
+    pool.isAlive();
+    pool.newTsConfig();
+
+    verify(primary).createProgram(programRequest);
+    verify(primary).analyzeWithProgram(request);
+    verify(primary).analyzeWithProgramAsync(request);
+    verify(primary).deleteProgram(program);
+    verify(primary).loadTsConfig("/tsconfig.json");
+    verify(worker, never()).createProgram(any());
+    verify(worker, never()).analyzeWithProgram(any());
+    verify(worker, never()).analyzeWithProgramAsync(any());
+    verify(worker, never()).deleteProgram(any());
+    verify(worker, never()).loadTsConfig(any());
+    verify(primary).newTsConfig();
+    verify(worker).newTsConfig();
+  }
+
+  @Test
+  void should_spread_programs_over_workers() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+
+    var first = new TsProgramRequest("/first/tsconfig.json");
+    var second = new TsProgramRequest("/second/tsconfig.json");
+    when(primary.createProgram(first)).thenReturn(new TsProgram("1", List.of("/first/foo.ts"), List.of()));
+    when(worker.createProgram(second)).thenReturn(new TsProgram("1", List.of("/second/foo.ts"), List.of()));
+    when(worker.analyzeWithProgramAsync(any())).thenReturn(CompletableFuture.completedFuture(new AnalysisResponse()));
+    var firstProgram = pool.createProgram(first);
+    var secondProgram = pool.createProgram(second);
+    // each worker numbers its programs from the start
+    assertThat(firstProgram.programId).isEqualTo("1");
+    assertThat(secondProgram.programId).isEqualTo("1#1");
+    assertThat(secondProgram.files).containsExactly("/second/foo.ts");
+
+    var request = new JsAnalysisRequest("/second/foo.ts", "MAIN", null, true, null, secondProgram.programId, AnalysisMode.DEFAULT_LINTER_ID);
+    pool.analyzeWithProgramAsync(request).get();
+    var captor = ArgumentCaptor.forClass(JsAnalysisRequest.class);
+    verify(worker).analyzeWithProgramAsync(captor.capture());
+    assertThat(captor.getValue().programId).isEqualTo("1");
+    assertThat(captor.getValue().filePath).isEqualTo("/second/foo.ts");
+    verify(primary, never()).analyzeWithProgramAsync(any());
+
+    pool.deleteProgram(secondProgram);
+    var deleted = ArgumentCaptor.forClass(TsProgram.class);
+    verify(worker).deleteProgram(deleted.capture());
+    assertThat(deleted.getValue().programId).isEqualTo("1");
+    verify(primary, never()).deleteProgram(any());
+
+    // the worker does not own any program anymore
+    var third = new TsProgramRequest("/third/tsconfig.json");
+    when(worker.createProgram(third)).thenReturn(new TsProgram("2", List.of(), List.of()));
+    assertThat(pool.createProgram(third).programId).isEqualTo("2#1");
+  }
+
+  @Test
+  void should_send_request_to_least_busy_worker() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    var busy = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    when(primary.analyzeJavaScript(any())).thenAnswer(invocation -> {
+      busy.countDown();
+      release.await(5, TimeUnit.SECONDS);
+      return new AnalysisResponse();
+    });
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+
+    var first = new JsAnalysisRequest("/first.js", "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+    var second = new JsAnalysisRequest("/second.js", "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+    var firstResponse = CompletableFuture.supplyAsync(() -> {
+      try {
+        return pool.analyzeJavaScript(first);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+    pool.analyzeJavaScript(second);
+    release.countDown();
+    assertThat(firstResponse.get(5, TimeUnit.SECONDS)).isNotNull();
+
+    verify(primary).analyzeJavaScript(first);
+    verify(worker).analyzeJavaScript(second);
+  }
+
+  @Test
+  void should_count_async_requests_until_they_complete() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    var primaryResponse = new CompletableFuture<Void>();
+    when(primary.analyzeBatchAsync(any(), any(), any())).thenReturn(primaryResponse);
+    when(worker.analyzeBatchAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+
+    List<JsAnalysisRequest> requests = List.of();
+    pool.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, response -> {
+    });
+    // the first worker is busy until its response is received
+    pool.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, response -> {
+    });
+    pool.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, response -> {
+    });
+    primaryResponse.complete(null);
+    pool.analyzeBatchAsync(BatchKind.JAVASCRIPT, requests, response -> {
+    });
+
+    verify(primary, times(2)).analyzeBatchAsync(any(), any(), any());
+    verify(worker, times(2)).analyzeBatchAsync(any(), any(), any());
+  }
+
+  @Test
+  void should_remove_dead_workers_from_rotation() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+    assertThat(pool.workerCount()).isEqualTo(2);
+
+    when(worker.isAlive()).thenReturn(false);
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+    pool.analyzeJavaScript(request);
+    pool.analyzeJavaScript(request);
+    verify(primary, times(2)).analyzeJavaScript(request);
+    verify(worker, never()).analyzeJavaScript(any());
+    verify(worker).clean();
+    assertThat(pool.workerCount()).isEqualTo(1);
+    assertThat(logTester.logs(WARN)).contains("eslint-bridge process #1 is not answering, the analysis goes on with 1 process(es)");
+  }
+
+  @Test
+  void should_be_alive_while_a_worker_is() throws Exception {
+    var primary = alive(mock(EslintBridgeServerImpl.class));
+    var worker = alive(mock(EslintBridgeServerImpl.class));
+    pool = new EslintBridgeServerPool(primary, () -> worker);
+    pool.startServerLazily(context);
+    pool.startWorkers(10 * MIN_FILES_PER_WORKER);
+
+    when(primary.isAlive()).thenReturn(false);
+    assertThat(pool.isAlive()).isTrue();
+    var request = new JsAnalysisRequest("/foo.js", "MAIN", null, true, null, null, AnalysisMode.DEFAULT_LINTER_ID);
+    pool.analyzeJavaScript(request);
+    verify(worker).analyzeJavaScript(request);
+    verify(primary, never()).analyzeJavaScript(any());
+
+    when(worker.isAlive()).thenReturn(false);
+    assertThat(pool.isAlive()).isFalse();
+  }
+
+  private static EslintBridgeServerImpl alive(EslintBridgeServerImpl server) {
+    when(server.isAlive()).thenReturn(true);
+    return server;
+  }
+
+  private EslintBridgeServerImpl createServer(String startServerScript) {
+    return new EslintBridgeServerImpl(NodeCommand.builder(), TEST_TIMEOUT_SECONDS, new TestBundle(startServerScript), new RulesBundles(),
+      deprecationWarning, tempFolder, monitoring);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.batch.sensor.error.NewAnalysisError;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.api.utils.log.LogTesterJUnit5;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.plugins.javascript.eslint.FileQuarantine.Analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileQuarantineTest {
+
+  private static final String CACHE_KEY = "js:quarantine:eslint:src/slow.js";
+
+  @RegisterExtension
+  LogTesterJUnit5 logTester = new LogTesterJUnit5();
+
+  SensorContext context;
+  ReadCache previousCache;
+  WriteCache nextCache;
+  InputFile inputFile;
+  MapSettings settings;
+
+  @BeforeEach
+  void setUp() {
+    previousCache = mock(ReadCache.class);
+    nextCache = mock(WriteCache.class);
+    settings = new MapSettings();
+    context = mock(SensorContext.class);
+    when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarQube(Version.create(9, 6), SonarQubeSide.SCANNER, SonarEdition.ENTERPRISE));
+    when(context.isCacheEnabled()).thenReturn(true);
+    when(context.previousCache()).thenReturn(previousCache);
+    when(context.nextCache()).thenReturn(nextCache);
+    when(context.config()).thenAnswer(invocation -> settings.asConfig());
+    when(context.newAnalysisError()).thenReturn(mock(NewAnalysisError.class, RETURNS_SELF));
+
+    inputFile = mock(InputFile.class);
+    when(inputFile.key()).thenReturn("src/slow.js");
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+  }
+
+  @Test
+  void should_quarantine_skipped_file() {
+    var analysisWarnings = new TestAnalysisWarnings();
+    FileQuarantine.skipped(context, analysisWarnings, Analyzer.ESLINT, inputFile, "skipped: exceeded 60 s");
+
+    verify(context.newAnalysisError()).save();
+    verify(nextCache).write(CACHE_KEY, deadline(60));
+    assertThat(analysisWarnings.warnings).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Failed to analyze file [" + inputFile + "]: skipped: exceeded 60 s");
+  }
+
+  @Test
+  void should_not_fail_when_already_in_quarantine() {
+    doThrow(new IllegalArgumentException("already written")).when(nextCache).write(anyString(), any(byte[].class));
+    FileQuarantine.skipped(context, new AnalysisWarningsWrapper(), Analyzer.ESLINT, inputFile, "skipped: exceeded 60 s");
+    verify(context.newAnalysisError()).save();
+  }
+
+  @Test
+  void should_skip_quarantined_file() {
+    inPreviousCache(deadline(60));
+
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isTrue();
+    verify(nextCache).copyFromPrevious(CACHE_KEY);
+    assertThat(logTester.logs(LoggerLevel.WARN)).contains("Skipping file [" + inputFile + "] as its analysis exceeded 60 s during the previous analysis");
+  }
+
+  @Test
+  void should_skip_quarantined_file_checked_twice() {
+    inPreviousCache(deadline(60));
+    doThrow(new IllegalArgumentException("already copied")).when(nextCache).copyFromPrevious(CACHE_KEY);
+
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isTrue();
+  }
+
+  @Test
+  void should_quarantine_file_for_each_analyzer() {
+    FileQuarantine.skipped(context, new AnalysisWarningsWrapper(), Analyzer.STYLELINT, inputFile, "skipped: exceeded 60 s");
+    verify(nextCache).write("js:quarantine:stylelint:src/slow.js", deadline(60));
+
+    inPreviousCache(deadline(60));
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.STYLELINT, inputFile)).isFalse();
+  }
+
+  @Test
+  void should_analyze_file_again() {
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+
+    inPreviousCache(deadline(60));
+    settings.setProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY, 120);
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+
+    settings.setProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY, 0);
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+
+    settings.removeProperty(EslintBridgeServerImpl.FILE_TIMEOUT_PROPERTY);
+    when(inputFile.status()).thenReturn(InputFile.Status.CHANGED);
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+    inPreviousCache(new byte[0]);
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+
+    verify(nextCache, never()).copyFromPrevious(anyString());
+  }
+
+  @Test
+  void should_not_use_cache_in_sonarlint() {
+    when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarLint(Version.create(9, 6)));
+    inPreviousCache(deadline(60));
+
+    assertThat(FileQuarantine.isQuarantined(context, Analyzer.ESLINT, inputFile)).isFalse();
+    FileQuarantine.skipped(context, new AnalysisWarningsWrapper(), Analyzer.ESLINT, inputFile, "skipped: exceeded 60 s");
+    verify(context, never()).nextCache();
+  }
+
+  private void inPreviousCache(byte[] bytes) {
+    when(previousCache.contains(CACHE_KEY)).thenReturn(true);
+    when(previousCache.read(CACHE_KEY)).thenAnswer(invocation -> new ByteArrayInputStream(bytes));
+  }
+
+  private static byte[] deadline(int seconds) {
+    return ByteBuffer.allocate(Integer.BYTES).putInt(seconds).array();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.log.LogTesterJUnit5;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Perf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.plugins.javascript.eslint.HeapWatcher.MAX_HEAP_USAGE_PROPERTY;
+import static org.sonar.plugins.javascript.eslint.HeapWatcher.MIN_RESPONSES_BETWEEN_RESTARTS;
+
+class HeapWatcherTest {
+
+  @RegisterExtension
+  public LogTesterJUnit5 logTester = new LogTesterJUnit5();
+
+  @Test
+  void should_need_restart_above_max_heap_usage() {
+    var watcher = new HeapWatcher(new MapSettings().asConfig());
+    watcher.onResponse(perf(80, 100));
+    watcher.onResponse(null);
+    watcher.onResponse(new Perf());
+    assertThat(watcher.isRestartNeeded()).isFalse();
+    assertThat(watcher.usagePercent()).isEqualTo(80);
+
+    watcher.onResponse(perf(85, 100));
+    assertThat(watcher.isRestartNeeded()).isTrue();
+    assertThat(watcher.usagePercent()).isEqualTo(85);
+    watcher.restarted();
+    assertThat(watcher.isRestartNeeded()).isFalse();
+  }
+
+  @Test
+  void should_read_max_heap_usage() {
+    var watcher = new HeapWatcher(new MapSettings().setProperty(MAX_HEAP_USAGE_PROPERTY, "0.5").asConfig());
+    watcher.onResponse(perf(50, 100));
+    assertThat(watcher.isRestartNeeded()).isTrue();
+
+    watcher = new HeapWatcher(new MapSettings().setProperty(MAX_HEAP_USAGE_PROPERTY, "1").asConfig());
+    watcher.onResponse(perf(100, 100));
+    assertThat(watcher.isRestartNeeded()).isFalse();
+  }
+
+  @Test
+  void should_stop_restarting_when_heap_is_full_right_after_restart() {
+    var watcher = new HeapWatcher(0.8);
+    watcher.onResponse(perf(90, 100));
+    watcher.restarted();
+    for (int i = 0; i < MIN_RESPONSES_BETWEEN_RESTARTS; i++) {
+      watcher.onResponse(perf(50, 100));
+    }
+    watcher.onResponse(perf(90, 100));
+    assertThat(watcher.isRestartNeeded()).isTrue();
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+
+    watcher.restarted();
+    watcher.onResponse(perf(90, 100));
+    assertThat(watcher.isRestartNeeded()).isFalse();
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("eslint-bridge Node.js process uses 90% of its heap shortly after " +
+      "being restarted. Consider setting sonar.javascript.node.maxspace to higher value (e.g. 4096).");
+    for (int i = 0; i < MIN_RESPONSES_BETWEEN_RESTARTS; i++) {
+      watcher.onResponse(perf(90, 100));
+    }
+    assertThat(watcher.isRestartNeeded()).isFalse();
+  }
+
+  private static Perf perf(long heapUsed, long heapLimit) {
+    var perf = new Perf();
+    perf.heapUsed = heapUsed;
+    perf.heapLimit = heapLimit;
+    return perf;
+  }
+}
@@ -25,6 +25,7 @@ import org.sonar.javascript.checks.CheckList;
 import org.sonar.plugins.javascript.TestUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 class JavaScriptChecksTest {
 
@@ -36,4 +37,13 @@ class JavaScriptChecksTest {
     assertThat(checks.ruleKeyByEslintKey("unknown-rule-key")).isNull();
   }
 
+  @Test
+  void should_flag_context_dependent_rules() {
+    JavaScriptChecks checks = new JavaScriptChecks(TestUtils.checkFactory(CheckList.JS_REPOSITORY_KEY, "S3923", "S3317"));
+
+    assertThat(checks.eslintRules())
+      .extracting(rule -> rule.key, rule -> rule.contextDependent)
+      .containsExactlyInAnyOrder(tuple("no-all-duplicated-branches", false), tuple("file-name-differ-from-class", true));
+  }
+
 }
@@ -27,6 +27,8 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -67,12 +69,15 @@ import org.sonar.api.utils.log.LogTesterJUnit5;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.javascript.checks.CheckList;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
 import org.sonarsource.nodejs.NodeCommandException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -114,6 +119,18 @@ class JavaScriptEslintBasedSensorTest {
     MockitoAnnotations.initMocks(this);
     when(eslintBridgeServerMock.isAlive()).thenReturn(true);
     when(eslintBridgeServerMock.analyzeJavaScript(any())).thenReturn(new AnalysisResponse());
+    doAnswer(invocation -> {
+      List<JsAnalysisRequest> requests = invocation.getArgument(1);
+      Consumer<AnalysisResponse> consumer = invocation.getArgument(2);
+      try {
+        for (JsAnalysisRequest request : requests) {
+          consumer.accept(eslintBridgeServerMock.analyzeJavaScript(request));
+        }
+        return CompletableFuture.completedFuture(null);
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }).when(eslintBridgeServerMock).analyzeBatchAsync(eq(BatchKind.JAVASCRIPT), any(), any());
     when(eslintBridgeServerMock.getCommandInfo()).thenReturn("eslintBridgeServerMock command info");
     context = SensorContextTester.create(baseDir);
     context.fileSystem().setWorkDir(workDir);
@@ -122,7 +139,7 @@ class JavaScriptEslintBasedSensorTest {
 
     FileLinesContext fileLinesContext = mock(FileLinesContext.class);
     when(fileLinesContextFactory.createFor(any(InputFile.class))).thenReturn(fileLinesContext);
-    analysisProcessor = new AnalysisProcessor(new DefaultNoSonarFilter(), fileLinesContextFactory, monitoring);
+    analysisProcessor = new AnalysisProcessor(new DefaultNoSonarFilter(), fileLinesContextFactory, monitoring, new AnalysisWarningsWrapper());
   }
 
   @Test
@@ -167,6 +184,27 @@ class JavaScriptEslintBasedSensorTest {
     assertThat(logTester.logs(LoggerLevel.WARN)).doesNotContain("Custom JavaScript rules are deprecated and API will be removed in future version.");
   }
 
+  @Test
+  void should_analyze_identical_files_once() throws Exception {
+    AnalysisResponse responseIssues = response("{ issues: [{" +
+      "\"line\":1,\"column\":2,\"endLine\":3,\"endColumn\":4,\"ruleId\":\"no-all-duplicated-branches\",\"message\":\"Issue message\", \"secondaryLocations\": []}" +
+      "]}");
+    when(eslintBridgeServerMock.analyzeJavaScript(any())).thenReturn(responseIssues);
+
+    var sensor = createSensor();
+    DefaultInputFile inputFile = createInputFile(context);
+    DefaultInputFile copy = new TestInputFileBuilder("moduleKey", "other/file.js")
+      .setLanguage("js")
+      .setCharset(StandardCharsets.UTF_8)
+      .setContents(inputFile.contents())
+      .build();
+    context.fileSystem().add(copy);
+    sensor.execute(context);
+
+    verify(eslintBridgeServerMock, times(1)).analyzeJavaScript(any());
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent()).containsExactlyInAnyOrder(inputFile, copy);
+  }
+
   @Test
   void should_set_quickfixavailable() throws Exception {
     AnalysisResponse responseIssues = response("{ issues: [{" +
@@ -496,6 +534,17 @@ class JavaScriptEslintBasedSensorTest {
     assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Failed to parse file [dir/file.js] at line 3: Parse error message");
   }
 
+  @Test
+  void should_skip_file_exceeding_deadline() throws IOException {
+    when(eslintBridgeServerMock.analyzeJavaScript(any()))
+      .thenReturn(response("{ parsingError: { message: \"skipped: exceeded 60 s\", code: \"TIMEOUT\"} }"));
+    createInputFile(context);
+    createSensor().execute(context);
+    assertThat(context.allIssues()).isEmpty();
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Failed to analyze file [dir/file.js]: skipped: exceeded 60 s");
+  }
+
   @Test
   void should_send_content_on_sonarlint() throws Exception {
     SensorContextTester ctx = SensorContextTester.create(baseDir);
@@ -0,0 +1,91 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class JfrEventsTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void should_record_sensor_and_cache_events() throws Exception {
+    var monitoring = new Monitoring(new MapSettings().asConfig());
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.js").setLanguage("js").build();
+    List<RecordedEvent> events;
+    try (var recording = new Recording()) {
+      recording.enable(JfrEvents.SensorExecution.class);
+      recording.enable(JfrEvents.CacheAccess.class);
+      recording.start();
+      monitoring.startSensor(SensorContextTester.create(tempDir), new MonitoringTest.TestSensor());
+      monitoring.startFile(inputFile);
+      monitoring.cacheRead(Monitoring.CacheType.UCFG, inputFile, 10, 1_000);
+      monitoring.cacheExtraction(Monitoring.CacheType.UCFG, inputFile, 100, 2_000);
+      monitoring.cacheWrite(Monitoring.CacheType.RESPONSE, inputFile, 200, 3_000);
+      monitoring.stopSensor();
+      recording.stop();
+      events = events(recording);
+    }
+
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.CacheAccess"))
+      .extracting(e -> e.getString("cacheType"), e -> e.getString("operation"), e -> e.getString("file"), e -> e.getLong("size"),
+        e -> e.getDuration("accessTime").toNanos())
+      .containsExactly(
+        tuple("UCFG", "read", "file.js", 10L, 1_000L),
+        tuple("UCFG", "extraction", "file.js", 100L, 2_000L),
+        tuple("RESPONSE", "write", "file.js", 200L, 3_000L));
+    assertThat(events)
+      .filteredOn(e -> e.getEventType().getName().equals("org.sonarsource.javascript.SensorExecution"))
+      .extracting(e -> e.getString("sensor"), e -> e.getInt("files"))
+      .containsExactly(tuple(MonitoringTest.TestSensor.class.getCanonicalName(), 1));
+  }
+
+  @Test
+  void should_not_record_events_without_recording() {
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.js").build();
+    JfrEvents.cacheAccess(Monitoring.CacheType.UCFG, "read", inputFile, 10, 1_000);
+    var event = new JfrEvents.BridgeRequest();
+    event.begin();
+    event.end();
+    assertThat(event.shouldCommit()).isFalse();
+  }
+
+  private List<RecordedEvent> events(Recording recording) throws Exception {
+    var path = tempDir.resolve("recording.jfr");
+    recording.dump(path);
+    return RecordingFile.readAllEvents(path);
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.Perf;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveMetricsTest {
+
+  @TempDir
+  Path tempDir;
+
+  long nanoTime = TimeUnit.SECONDS.toNanos(100);
+
+  @Test
+  void should_compute_files_per_second_over_complete_seconds() {
+    var liveMetrics = new LiveMetrics(false, null, 1, () -> nanoTime);
+    for (int i = 0; i < 20; i++) {
+      liveMetrics.fileAnalyzed();
+    }
+    assertThat(liveMetrics.getFilesPerSecond()).isZero();
+    nanoTime += TimeUnit.SECONDS.toNanos(1);
+    liveMetrics.fileAnalyzed();
+    assertThat(liveMetrics.getFilesPerSecond()).isEqualTo(2.0);
+    nanoTime += TimeUnit.SECONDS.toNanos(LiveMetrics.RATE_WINDOW_SECONDS);
+    assertThat(liveMetrics.getFilesPerSecond()).isEqualTo(0.1);
+    nanoTime += TimeUnit.SECONDS.toNanos(1);
+    assertThat(liveMetrics.getFilesPerSecond()).isZero();
+    assertThat(liveMetrics.getFilesAnalyzed()).isEqualTo(21);
+    assertThat(liveMetrics.getLastFileAnalyzedTime()).isPositive();
+  }
+
+  @Test
+  void should_record_requests_heap_cache_and_programs() {
+    var liveMetrics = new LiveMetrics(false, null, 1, () -> nanoTime);
+    liveMetrics.requestStarted();
+    liveMetrics.requestStarted();
+    liveMetrics.requestCompleted(TimeUnit.MILLISECONDS.toNanos(10));
+    liveMetrics.requestCompleted(TimeUnit.MILLISECONDS.toNanos(30));
+    liveMetrics.requestEnded();
+    var perf = new Perf();
+    perf.heapUsed = 42;
+    perf.heapLimit = 100;
+    liveMetrics.heap(perf);
+    liveMetrics.heap(new Perf());
+    liveMetrics.cacheLookup(CacheType.UCFG, true);
+    liveMetrics.cacheLookup(CacheType.RESPONSE, false);
+    liveMetrics.programCreated(TimeUnit.SECONDS.toNanos(2));
+
+    assertThat(liveMetrics.getBridgeRequests()).isEqualTo(2);
+    assertThat(liveMetrics.getBridgeRequestLatencyMillis()).isEqualTo(20.0);
+    assertThat(liveMetrics.getLastBridgeRequestLatencyMillis()).isEqualTo(30.0);
+    assertThat(liveMetrics.getBridgeRequestsInFlight()).isEqualTo(1);
+    assertThat(liveMetrics.getBridgeHeapUsed()).isEqualTo(42);
+    assertThat(liveMetrics.getBridgeHeapLimit()).isEqualTo(100);
+    assertThat(liveMetrics.getUcfgCacheHits()).isEqualTo(1);
+    assertThat(liveMetrics.getUcfgCacheMisses()).isZero();
+    assertThat(liveMetrics.getResponseCacheHits()).isZero();
+    assertThat(liveMetrics.getResponseCacheMisses()).isEqualTo(1);
+    assertThat(liveMetrics.getProgramsCreated()).isEqualTo(1);
+    assertThat(liveMetrics.getProgramCreationMillis()).isEqualTo(2000.0);
+    assertThat(liveMetrics.getLastProgramCreationMillis()).isEqualTo(2000.0);
+  }
+
+  @Test
+  void should_format_prometheus_text() {
+    var liveMetrics = new LiveMetrics(false, null, 1, () -> nanoTime);
+    liveMetrics.fileAnalyzed();
+    liveMetrics.requestCompleted(TimeUnit.MILLISECONDS.toNanos(1500));
+    liveMetrics.cacheLookup(CacheType.RESPONSE, true);
+
+    assertThat(liveMetrics.prometheusText())
+      .contains("# TYPE sonarjs_files_analyzed_total counter\nsonarjs_files_analyzed_total 1\n")
+      .contains("sonarjs_bridge_request_duration_seconds_sum 1.5\n")
+      .contains("sonarjs_bridge_request_duration_seconds_count 1\n")
+      .contains("sonarjs_bridge_requests_in_flight 0\n")
+      .contains("sonarjs_cache_hits_total{cache=\"response\"} 1\n")
+      .contains("sonarjs_cache_misses_total{cache=\"ucfg\"} 0\n")
+      .contains("sonarjs_program_creation_seconds_count 0\n");
+  }
+
+  @Test
+  void should_write_prometheus_file() throws Exception {
+    var file = tempDir.resolve("metrics").resolve("sonarjs.prom");
+    var settings = new MapSettings();
+    settings.setProperty(LiveMetrics.PROMETHEUS_FILE_PROPERTY, file.toString());
+    settings.setProperty(LiveMetrics.PROMETHEUS_PERIOD_PROPERTY, 1);
+    var liveMetrics = new LiveMetrics(settings.asConfig());
+    liveMetrics.start();
+    liveMetrics.fileAnalyzed();
+    liveMetrics.stop();
+
+    assertThat(file).exists();
+    assertThat(Files.readString(file)).contains("sonarjs_files_analyzed_total 1\n");
+    // the temporary files are moved
+    assertThat(Files.list(file.getParent())).containsExactly(file);
+  }
+
+  @Test
+  void should_publish_through_jmx() throws Exception {
+    var settings = new MapSettings();
+    settings.setProperty(LiveMetrics.JMX_PROPERTY, true);
+    var liveMetrics = new LiveMetrics(settings.asConfig());
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var name = new ObjectName(LiveMetrics.OBJECT_NAME);
+    liveMetrics.start();
+    try {
+      liveMetrics.fileAnalyzed();
+      liveMetrics.requestStarted();
+      assertThat(server.getAttribute(name, "FilesAnalyzed")).isEqualTo(1L);
+      assertThat(server.getAttribute(name, "BridgeRequestsInFlight")).isEqualTo(1);
+    } finally {
+      liveMetrics.stop();
+    }
+    assertThat(server.isRegistered(name)).isFalse();
+  }
+
+  @Test
+  void should_not_publish_by_default() throws Exception {
+    var liveMetrics = new LiveMetrics(new MapSettings().asConfig());
+    liveMetrics.start();
+    assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(LiveMetrics.OBJECT_NAME))).isFalse();
+    liveMetrics.stop();
+  }
+}
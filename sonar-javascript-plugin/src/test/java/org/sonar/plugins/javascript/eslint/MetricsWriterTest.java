@@ -0,0 +1,74 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class MetricsWriterTest {
+
+  @TempDir
+  Path monitoringPath;
+
+  @Test
+  void should_write_metrics_before_close() throws Exception {
+    var path = monitoringPath.resolve("dir").resolve("metrics.json");
+    var writer = new MetricsWriter(path);
+    writer.write(fileMetric("file1"));
+    writer.write(fileMetric("file2"));
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> Files.readAllLines(path).size() == 2);
+    var metric = new Gson().fromJson(Files.readAllLines(path).get(1), Monitoring.FileMetric.class);
+    assertThat(metric.component).isEqualTo("file2");
+    assertThat(metric.timestamp).startsWith(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH")));
+
+    writer.write(fileMetric("file3"));
+    writer.close();
+    assertThat(Files.readAllLines(path)).hasSize(3);
+  }
+
+  @Test
+  void should_fail_to_write_after_close() throws Exception {
+    var writer = new MetricsWriter(monitoringPath.resolve("metrics.json"));
+    writer.close();
+    writer.close();
+    var metric = fileMetric("file");
+    assertThatThrownBy(() -> writer.write(metric))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessageStartingWith("Metrics are already written to ");
+  }
+
+  private static Monitoring.FileMetric fileMetric(String component) {
+    var metric = new Monitoring.FileMetric("executionId", "projectKey", false);
+    metric.component = component;
+    return metric;
+  }
+
+}
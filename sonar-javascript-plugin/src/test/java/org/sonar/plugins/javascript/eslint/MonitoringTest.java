@@ -20,11 +20,16 @@
 package org.sonar.plugins.javascript.eslint;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -42,6 +47,7 @@ import org.sonar.api.utils.Version;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 class MonitoringTest {
 
@@ -97,6 +103,22 @@ class MonitoringTest {
     assertThat(metricsPath).doesNotExist();
   }
 
+  @Test
+  void test_live_metrics_without_monitoring() throws Exception {
+    Monitoring monitoring = new Monitoring(new MapSettings().asConfig());
+    monitoring.startSensor(sensorContextTester, new TestSensor());
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "path").build();
+    monitoring.startFile(inputFile);
+    monitoring.cacheLookup(Monitoring.CacheType.RESPONSE, inputFile, false);
+    monitoring.stopFile(inputFile, 0, new EslintBridgeServer.Perf());
+    monitoring.programCreated(1_000_000);
+    monitoring.stopSensor();
+    monitoring.stop();
+    assertThat(monitoring.liveMetrics().getFilesAnalyzed()).isEqualTo(1);
+    assertThat(monitoring.liveMetrics().getResponseCacheMisses()).isEqualTo(1);
+    assertThat(monitoring.liveMetrics().getProgramsCreated()).isEqualTo(1);
+  }
+
   @Test
   void test_file() throws Exception {
     TestSensor sensor = new TestSensor();
@@ -106,6 +128,13 @@ class MonitoringTest {
     EslintBridgeServer.Perf perf = new EslintBridgeServer.Perf();
     perf.analysisTime = 2;
     perf.parseTime = 3;
+    perf.serializationTime = 5;
+    perf.waitTime = 6;
+    perf.responseParseTime = 7;
+    perf.requestSize = 8;
+    perf.responseSize = 9;
+    monitoring.fileSaved(inputFile, Monitoring.SavePhase.ISSUES, System.nanoTime() - 10_000);
+    monitoring.fileSaved(inputFile, Monitoring.SavePhase.ISSUES, System.nanoTime() - 10_000);
     monitoring.stopFile(inputFile, 4, perf);
     monitoring.stopSensor();
     monitoring.stop();
@@ -117,6 +146,13 @@ class MonitoringTest {
       assertThat(fileMetric.analysisTime).isEqualTo(2);
       assertThat(fileMetric.parseTime).isEqualTo(3);
       assertThat(fileMetric.ncloc).isEqualTo(4);
+      assertThat(fileMetric.serializationTime).isEqualTo(5);
+      assertThat(fileMetric.waitTime).isEqualTo(6);
+      assertThat(fileMetric.responseParseTime).isEqualTo(7);
+      assertThat(fileMetric.requestSize).isEqualTo(8);
+      assertThat(fileMetric.responseSize).isEqualTo(9);
+      assertThat(fileMetric.saveIssuesTime).isGreaterThanOrEqualTo(20);
+      assertThat(fileMetric.saveMetricsTime).isZero();
       assertThat(fileMetric.ordinal).isZero();
       assertThat(fileMetric.timestamp).startsWith(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH")));
       assertThat(fileMetric.executionId).isNotEmpty();
@@ -124,6 +160,74 @@ class MonitoringTest {
     }
   }
 
+  @Test
+  void test_rule_timings() throws Exception {
+    TestSensor sensor = new TestSensor();
+    monitoring.startSensor(sensorContextTester, sensor);
+    for (int i = 1; i <= 20; i++) {
+      DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file" + i).build();
+      monitoring.startFile(inputFile);
+      EslintBridgeServer.Perf perf = new EslintBridgeServer.Perf();
+      perf.ruleTimes = Map.of("slow-rule", i * 100, "fast-rule", 10);
+      monitoring.stopFile(inputFile, 1, perf);
+    }
+    monitoring.stopSensor();
+
+    var ruleMetrics = metrics().stream()
+      .filter(m -> m.metricType == Monitoring.MetricType.RULE)
+      .map(Monitoring.RuleMetric.class::cast)
+      .collect(Collectors.toMap(m -> m.ruleKey, m -> m));
+    assertThat(ruleMetrics).containsOnlyKeys("slow-rule", "fast-rule");
+    var slowRule = ruleMetrics.get("slow-rule");
+    assertThat(slowRule.fileCount).isEqualTo(20);
+    assertThat(slowRule.timeMs).isEqualTo(21.0);
+    assertThat(slowRule.timeRelative).isEqualTo(100.0 * 21_000 / 21_200);
+    // percentiles are at most 1/16 below the actual times, see Monitoring.TimeHistogram
+    assertThat(slowRule.fileTimeP50).isBetween(1000L - 1000 / 16, 1000L);
+    assertThat(slowRule.fileTimeP95).isBetween(1900L - 1900 / 16, 1900L);
+    assertThat(slowRule.fileTimeMax).isEqualTo(2000);
+    assertThat(slowRule.topFiles).extracting(f -> f.component, f -> f.time).containsExactly(
+      tuple("file20", 2000), tuple("file19", 1900), tuple("file18", 1800), tuple("file17", 1700), tuple("file16", 1600));
+    assertThat(slowRule.component).isEqualTo(TestSensor.class.getCanonicalName());
+    var fastRule = ruleMetrics.get("fast-rule");
+    assertThat(fastRule.fileTimeMax).isEqualTo(10);
+    assertThat(fastRule.topFiles).hasSize(Monitoring.RuleMetric.TOP_FILES);
+  }
+
+  @Test
+  void test_time_histogram() {
+    var histogram = new Monitoring.TimeHistogram();
+    assertThat(histogram.percentile(0.5)).isZero();
+    for (int time = 1; time <= 100_000; time++) {
+      histogram.add(time);
+    }
+    histogram.add(Integer.MAX_VALUE);
+    assertThat(histogram.max()).isEqualTo(Integer.MAX_VALUE);
+    assertThat(histogram.percentile(0.5)).isBetween(50_001 - 50_001 / Monitoring.TimeHistogram.SUB_BUCKETS, 50_001);
+    assertThat(histogram.percentile(0.95)).isBetween(95_001 - 95_001 / Monitoring.TimeHistogram.SUB_BUCKETS, 95_001);
+    assertThat(histogram.percentile(1)).isGreaterThan(Integer.MAX_VALUE - Integer.MAX_VALUE / Monitoring.TimeHistogram.SUB_BUCKETS);
+
+    var small = new Monitoring.TimeHistogram();
+    small.add(3);
+    small.add(7);
+    assertThat(small.percentile(0.5)).isEqualTo(3);
+    assertThat(small.percentile(0.95)).isEqualTo(7);
+  }
+
+  @Test
+  void test_skipped_file() throws Exception {
+    monitoring.startSensor(sensorContextTester, new TestSensor());
+    DefaultInputFile file = TestInputFileBuilder.create("module", "file1").build();
+    monitoring.startFile(file);
+    monitoring.skipFile(file);
+    EslintBridgeServer.Perf perf = new EslintBridgeServer.Perf();
+    assertThatThrownBy(() -> monitoring.stopFile(file, 0, perf))
+      .isInstanceOf(IllegalStateException.class);
+    monitoring.stopSensor();
+
+    assertThat(metrics()).extracting(m -> m.component).containsExactly(TestSensor.class.getCanonicalName());
+  }
+
   @Test
   void test_file_mismatch() throws Exception {
     TestSensor sensor = new TestSensor();
@@ -131,49 +235,145 @@ class MonitoringTest {
     DefaultInputFile file1 = TestInputFileBuilder.create("module", "file1").build();
     DefaultInputFile file2 = TestInputFileBuilder.create("module", "file2").build();
     monitoring.startFile(file1);
+    EslintBridgeServer.Perf perf = new EslintBridgeServer.Perf();
+    assertThatThrownBy(() -> monitoring.stopFile(file2, 0, perf))
+      .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void test_concurrent_files() throws Exception {
+    monitoring.startSensor(sensorContextTester, new TestSensor());
+    DefaultInputFile file1 = TestInputFileBuilder.create("module", "file1").build();
+    DefaultInputFile file2 = TestInputFileBuilder.create("module", "file2").build();
+    monitoring.startFile(file1);
     monitoring.startFile(file2);
     EslintBridgeServer.Perf perf = new EslintBridgeServer.Perf();
+    monitoring.stopFile(file2, 2, perf);
+    monitoring.stopFile(file1, 1, perf);
+    monitoring.stopSensor();
+
+    assertThat(metrics()).extracting(m -> m.component).containsExactly("file2", "file1", TestSensor.class.getCanonicalName());
     assertThatThrownBy(() -> monitoring.stopFile(file1, 0, perf))
       .isInstanceOf(IllegalStateException.class);
   }
 
   @Test
-  void test_program_metric() {
+  void test_program_metric() throws Exception {
     monitoring.startSensor(sensorContextTester, new TestSensor());
     monitoring.startProgram("tsconfig.json");
     monitoring.stopProgram();
     monitoring.startProgram("tsconfig2.json");
     monitoring.stopProgram();
-    assertThat(monitoring.metrics()).extracting(m -> ((Monitoring.ProgramMetric) m).tsConfig)
+    assertThat(metrics()).extracting(m -> ((Monitoring.ProgramMetric) m).tsConfig)
       .containsExactly("tsconfig.json", "tsconfig2.json");
-    var metric = monitoring.metrics().get(0);
+    var metric = metrics().get(0);
     assertThat(metric.timestamp).startsWith(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH")));
     assertThat(metric.executionId).isNotEmpty();
     assertThat(metric.canSkipUnchangedFiles).isFalse();
   }
 
   @Test
-  void test_can_skip_unchanged_files() {
+  void test_cache_metric() throws Exception {
+    monitoring.startSensor(sensorContextTester, new TestSensor());
+    var jsFile = TestInputFileBuilder.create("module", "file.js").setLanguage("js").build();
+    var tsFile = TestInputFileBuilder.create("module", "file.ts").setLanguage("ts").build();
+    monitoring.cacheRead(Monitoring.CacheType.UCFG, jsFile, 10, 1_000);
+    monitoring.cacheExtraction(Monitoring.CacheType.UCFG, jsFile, 100, 2_000);
+    monitoring.cacheLookup(Monitoring.CacheType.UCFG, jsFile, true);
+    monitoring.cacheLookup(Monitoring.CacheType.UCFG, jsFile, false);
+    monitoring.cacheLookup(Monitoring.CacheType.UCFG, jsFile, false);
+    monitoring.cacheWrite(Monitoring.CacheType.UCFG, jsFile, 300, 3_000);
+    monitoring.cacheWrite(Monitoring.CacheType.UCFG, jsFile, 200, 4_000);
+    monitoring.cacheLookup(Monitoring.CacheType.RESPONSE, tsFile, true);
+    monitoring.stopSensor();
+
+    assertThat(metrics()).hasSize(3);
+    var ucfgMetric = metrics().stream()
+      .filter(m -> m instanceof Monitoring.CacheMetric && ((Monitoring.CacheMetric) m).cacheType == Monitoring.CacheType.UCFG)
+      .map(Monitoring.CacheMetric.class::cast)
+      .findFirst().orElseThrow();
+    assertThat(ucfgMetric.metricType).isEqualTo(Monitoring.MetricType.CACHE);
+    assertThat(ucfgMetric.component).isEqualTo(TestSensor.class.getCanonicalName());
+    assertThat(ucfgMetric.language).isEqualTo("js");
+    assertThat(ucfgMetric.hits).isEqualTo(1);
+    assertThat(ucfgMetric.misses).isEqualTo(2);
+    assertThat(ucfgMetric.hitRatio).isEqualTo(1.0 / 3);
+    assertThat(ucfgMetric.bytesRead).isEqualTo(110);
+    assertThat(ucfgMetric.bytesWritten).isEqualTo(500);
+    assertThat(ucfgMetric.readTime).isEqualTo(1);
+    assertThat(ucfgMetric.extractionTime).isEqualTo(2);
+    assertThat(ucfgMetric.writeTime).isEqualTo(7);
+    assertThat(ucfgMetric.entryCount).isEqualTo(3);
+    assertThat(ucfgMetric.entrySizeMedian).isEqualTo(200);
+    assertThat(ucfgMetric.entrySizeP90).isEqualTo(300);
+    assertThat(ucfgMetric.entrySizeMax).isEqualTo(300);
+
+    var json = gson.toJson(metrics().get(2));
+    assertThat(json).contains("\"metricType\":\"CACHE\"").doesNotContain("entrySizes");
+  }
+
+  @Test
+  void test_can_skip_unchanged_files() throws Exception {
     SensorContextTester sensorContextTester = SensorContextTester.create(baseDir);
     sensorContextTester.setCanSkipUnchangedFiles(true);
     monitoring.startSensor(sensorContextTester, new TestSensor());
     monitoring.stopSensor();
-    var metric = monitoring.metrics().get(0);
+    var metric = metrics().get(0);
     assertThat(metric.canSkipUnchangedFiles).isTrue();
   }
 
   @Test
-  void test_can_not_skip_unchanged_files() {
+  void test_can_not_skip_unchanged_files() throws Exception {
     SensorContextTester sensorContextTester = SensorContextTester.create(baseDir);
     sensorContextTester.setRuntime(
       SonarRuntimeImpl.forSonarQube(Version.create(9, 3), SonarQubeSide.SCANNER, SonarEdition.COMMUNITY));
     sensorContextTester.setCanSkipUnchangedFiles(true);
     monitoring.startSensor(sensorContextTester, new TestSensor());
     monitoring.stopSensor();
-    var metric = monitoring.metrics().get(0);
+    var metric = metrics().get(0);
     assertThat(metric.canSkipUnchangedFiles).isFalse();
   }
 
+  @Test
+  void test_metrics_exceeding_writer_queue() throws Exception {
+    monitoring.startSensor(sensorContextTester, new TestSensor());
+    for (int i = 0; i < MetricsWriter.QUEUE_CAPACITY * 3; i++) {
+      DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file" + i).build();
+      monitoring.startFile(inputFile);
+      monitoring.stopFile(inputFile, 1, new EslintBridgeServer.Perf());
+    }
+    monitoring.stopSensor();
+    var metrics = metrics();
+    assertThat(metrics).hasSize(MetricsWriter.QUEUE_CAPACITY * 3 + 1);
+    assertThat(metrics.get(MetricsWriter.QUEUE_CAPACITY * 3 - 1).component).isEqualTo("file" + (MetricsWriter.QUEUE_CAPACITY * 3 - 1));
+  }
+
+  /**
+   * Stops the monitoring and reads the metrics written
+   */
+  private List<Monitoring.Metric> metrics() throws IOException {
+    monitoring.stop();
+    try (var lines = Files.lines(monitoringPath.resolve("metrics.json"))) {
+      return lines.map(this::metric).collect(Collectors.toList());
+    }
+  }
+
+  private Monitoring.Metric metric(String json) {
+    var metricType = Monitoring.MetricType.valueOf(JsonParser.parseString(json).getAsJsonObject().get("metricType").getAsString());
+    switch (metricType) {
+      case SENSOR:
+        return gson.fromJson(json, Monitoring.SensorMetric.class);
+      case FILE:
+        return gson.fromJson(json, Monitoring.FileMetric.class);
+      case RULE:
+        return gson.fromJson(json, Monitoring.RuleMetric.class);
+      case PROGRAM:
+        return gson.fromJson(json, Monitoring.ProgramMetric.class);
+      default:
+        return gson.fromJson(json, Monitoring.CacheMetric.class);
+    }
+  }
+
   static class TestSensor implements Sensor {
 
     @Override
@@ -66,7 +66,7 @@ class QuickFixSupportTest {
     var activeRule = new NewActiveRule.Builder().setRuleKey(RuleKey.of("javascript", "S1116")).build();
     activeRules = new ActiveRulesBuilder().addRule(activeRule).build();
     checks = new JavaScriptChecks(new CheckFactory(activeRules));
-    analysisProcessor = new AnalysisProcessor(mock(NoSonarFilter.class), mock(FileLinesContextFactory.class), mock(Monitoring.class));
+    analysisProcessor = new AnalysisProcessor(mock(NoSonarFilter.class), mock(FileLinesContextFactory.class), mock(Monitoring.class), new AnalysisWarningsWrapper());
   }
 
   DefaultSensorContext createContext(Version version) {
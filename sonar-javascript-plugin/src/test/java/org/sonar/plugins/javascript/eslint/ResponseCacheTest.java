@@ -0,0 +1,250 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.SonarEdition;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.impl.utils.DefaultTempFolder;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.Version;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
+import org.sonar.plugins.javascript.eslint.cache.CacheStrategies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResponseCacheTest {
+
+  private static final List<EslintRule> RULES = List.of(new EslintRule("no-extra-semi", List.of(), List.of(InputFile.Type.MAIN)));
+
+  SensorContext context;
+  Monitoring monitoring;
+  ReadCache previousCache;
+  WriteCache nextCache;
+  // entries written by the previous analysis
+  Map<String, byte[]> entries;
+  InputFile inputFile;
+  @TempDir
+  Path tempDir;
+
+  @BeforeEach
+  void setUp() {
+    CacheStrategies.reset();
+    entries = new HashMap<>();
+    previousCache = mock(ReadCache.class);
+    when(previousCache.contains(anyString())).thenAnswer(invocation -> entries.containsKey(invocation.<String>getArgument(0)));
+    when(previousCache.read(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(entries.get(invocation.<String>getArgument(0))));
+    nextCache = mock(WriteCache.class);
+    context = mock(SensorContext.class);
+    monitoring = mock(Monitoring.class);
+    when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarQube(Version.create(9, 6), SonarQubeSide.SCANNER, SonarEdition.ENTERPRISE));
+    when(context.isCacheEnabled()).thenReturn(true);
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+    when(context.previousCache()).thenReturn(previousCache);
+    when(context.nextCache()).thenReturn(nextCache);
+    when(context.config()).thenReturn(new MapSettings().asConfig());
+    inputFile = file("dir/file.js", "alert('Fly, you fools!');;");
+  }
+
+  @Test
+  void should_replay_saved_response() throws IOException {
+    var response = new Gson().fromJson("{ issues: [{ line: 1, column: 24, endLine: 1, endColumn: 25, message: \"Extra semicolon.\", ruleId: \"no-extra-semi\" }]," +
+      "highlights: [{ location: { startLine: 1, startCol: 6, endLine: 1, endCol: 25 }, textType: \"STRING\" }]," +
+      "metrics: { ncloc: [1], functions: 0 }," +
+      "perf: { parseTime: 12, analysisTime: 34 } }", AnalysisResponse.class);
+    var key = save(inputFile, response);
+
+    var replayed = ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of()).replay();
+    assertThat(replayed).isNotNull();
+    assertThat(replayed.issues).extracting(issue -> issue.ruleId, issue -> issue.message).containsExactly(tuple("no-extra-semi", "Extra semicolon."));
+    assertThat(replayed.highlights.size()).isEqualTo(1);
+    assertThat(replayed.highlights.textTypes[0]).isEqualTo(TypeOfText.STRING);
+    assertThat(replayed.metrics.ncloc).containsExactly(1);
+    assertThat(replayed.perf.parseTime).isZero();
+    verify(nextCache).copyFromPrevious(key);
+    verify(monitoring).cacheWrite(eq(CacheType.RESPONSE), eq(inputFile), longThat(size -> size > 0), anyLong());
+    verify(monitoring).cacheExtraction(eq(CacheType.RESPONSE), eq(inputFile), longThat(size -> size > 0), anyLong());
+    verify(monitoring).cacheLookup(CacheType.RESPONSE, inputFile, true);
+  }
+
+  @Test
+  void should_replay_response_of_identical_file() throws IOException {
+    save(inputFile, new AnalysisResponse());
+
+    var cache = ResponseCache.create(context, monitoring, RULES, List.of(), List.of());
+    assertThat(cache.forFile(file("moved/file.js", "alert('Fly, you fools!');;"), List.of()).replay()).isNotNull();
+    assertThat(cache.forFile(file("dir/renamed.js", "alert('Fly, you fools!');;"), List.of()).replay()).isNull();
+  }
+
+  @Test
+  void should_not_replay_response_of_moved_file_with_context_dependent_rules() throws IOException {
+    var rules = List.of(new EslintRule("no-extra-semi", List.of(), List.of(InputFile.Type.MAIN), true));
+    save(inputFile, rules, List.of(), new AnalysisResponse());
+
+    var cache = ResponseCache.create(context, monitoring, rules, List.of(), List.of());
+    assertThat(cache.forFile(file("moved/file.js", "alert('Fly, you fools!');;"), List.of()).replay()).isNull();
+    assertThat(cache.forFile(inputFile, List.of()).replay()).isNotNull();
+  }
+
+  @Test
+  void should_not_replay_outdated_response() throws IOException {
+    save(inputFile, new AnalysisResponse());
+
+    var changedFile = file("dir/file.js", "alert('Fly, you fools!');");
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(changedFile, List.of()).replay()).isNull();
+    assertThat(ResponseCache.create(context, monitoring, List.of(), List.of(), List.of()).forFile(inputFile, List.of()).replay()).isNull();
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of("browser"), List.of()).forFile(inputFile, List.of()).replay()).isNull();
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of("tsconfig.json")).replay()).isNull();
+    verify(nextCache, never()).copyFromPrevious(anyString());
+    verify(monitoring, times(4)).cacheLookup(eq(CacheType.RESPONSE), any(InputFile.class), eq(false));
+
+    // the content of the file is hashed once per analysis
+    CacheStrategies.reset();
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of()).replay()).isNotNull();
+  }
+
+  @Test
+  void should_replay_response_when_files_are_added_to_generated_tsconfig() throws IOException {
+    var tempFolder = new DefaultTempFolder(tempDir.toFile(), true);
+    var files = SensorContextTester.create(tempDir);
+    files.fileSystem().add(file("dir/file.ts", "alert('Fly, you fools!');;"));
+    var tsConfigProvider = new TsConfigProvider.DefaultTsConfigProvider(tempFolder, fileSystem -> fileSystem.predicates().all(),
+      Map.of("allowJs", true));
+    var tsConfigs = tsConfigProvider.tsconfigs(files);
+    save(inputFile, RULES, tsConfigs, new AnalysisResponse());
+
+    files.fileSystem().add(file("dir/added.ts", "alert('Run, you fools!');"));
+    var newTsConfigs = tsConfigProvider.tsconfigs(files);
+    assertThat(newTsConfigs).isNotEqualTo(tsConfigs);
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, newTsConfigs).replay()).isNotNull();
+
+    var otherTsConfigs = new TsConfigProvider.DefaultTsConfigProvider(tempFolder, fileSystem -> fileSystem.predicates().all(),
+      Map.of("allowJs", false)).tsconfigs(files);
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, otherTsConfigs).replay()).isNull();
+  }
+
+  @Test
+  void should_not_replay_when_all_files_must_be_analyzed() throws IOException {
+    when(context.canSkipUnchangedFiles()).thenReturn(false);
+    save(inputFile, new AnalysisResponse());
+
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of()).replay()).isNull();
+    verify(monitoring, never()).cacheLookup(any(), any(), anyBoolean());
+  }
+
+  @Test
+  void should_not_replay_corrupted_response() throws IOException {
+    var key = save(inputFile, new AnalysisResponse());
+    entries.put(key, new byte[] {1, 2, 3});
+    assertThat(ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of()).replay()).isNull();
+  }
+
+  @Test
+  void should_not_cache_failures_of_the_process() throws IOException {
+    var entry = ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of());
+    entry.save(new Gson().fromJson("{ parsingError: { message: \"crashed\", code: \"GENERAL_ERROR\"} }", AnalysisResponse.class));
+    entry.save(new Gson().fromJson("{ parsingError: { message: \"skipped: exceeded 60 s\", code: \"TIMEOUT\"} }", AnalysisResponse.class));
+    verify(nextCache, never()).write(anyString(), any(byte[].class));
+
+    entry.save(new Gson().fromJson("{ parsingError: { line: 1, message: \"Unexpected token\", code: \"PARSING\"} }", AnalysisResponse.class));
+    verify(nextCache).write(startsWith("js:response:"), any(byte[].class));
+  }
+
+  @Test
+  void should_not_cache_with_security_rules() throws IOException {
+    var rules = List.of(new EslintRule(EslintRule.UCFG_ESLINT_KEY, List.of(), List.of(InputFile.Type.MAIN)));
+    var entry = ResponseCache.create(context, monitoring, rules, List.of(), List.of()).forFile(inputFile, List.of());
+    entry.save(new AnalysisResponse());
+    assertThat(entry.replay()).isNull();
+    verify(context, never()).nextCache();
+    verify(context, never()).previousCache();
+  }
+
+  @Test
+  void should_not_cache_in_sonarlint() throws IOException {
+    when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarLint(Version.create(9, 6)));
+    var entry = ResponseCache.create(context, monitoring, RULES, List.of(), List.of()).forFile(inputFile, List.of());
+    entry.save(new AnalysisResponse());
+    assertThat(entry.replay()).isNull();
+    verify(context, never()).nextCache();
+  }
+
+  /**
+   * Saves the response as if by the previous analysis
+   */
+  private String save(InputFile file, AnalysisResponse response) throws IOException {
+    return save(file, RULES, List.of(), response);
+  }
+
+  private String save(InputFile file, List<EslintRule> rules, List<String> tsConfigs, AnalysisResponse response) throws IOException {
+    var previousNextCache = mock(WriteCache.class);
+    when(context.nextCache()).thenReturn(previousNextCache);
+    ResponseCache.create(context, monitoring, rules, List.of(), List.of()).forFile(file, tsConfigs).save(response);
+    when(context.nextCache()).thenReturn(nextCache);
+
+    var key = ArgumentCaptor.forClass(String.class);
+    var bytes = ArgumentCaptor.forClass(byte[].class);
+    verify(previousNextCache).write(key.capture(), bytes.capture());
+    entries.put(key.getValue(), bytes.getValue());
+    CacheStrategies.reset();
+    return key.getValue();
+  }
+
+  private static DefaultInputFile file(String path, String contents) {
+    return TestInputFileBuilder.create("module", path)
+      .setContents(contents)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sonar.api.batch.sensor.highlighting.TypeOfText.CONSTANT;
+import static org.sonar.api.batch.sensor.highlighting.TypeOfText.KEYWORD;
+
+class ResponseTypeAdaptersTest {
+
+  private static final Gson GSON = new Gson();
+
+  @Test
+  void should_read_highlights() {
+    var response = response("{ highlights: ["
+      + "{\"location\": { \"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"textType\":\"KEYWORD\"},"
+      + "{\"textType\":\"CONSTANT\",\"location\": { \"endCol\":5,\"endLine\":2,\"startCol\":1,\"startLine\":2}, \"unknown\": [1]}"
+      + "]}");
+    var highlights = response.highlights;
+    assertThat(highlights.size()).isEqualTo(2);
+    assertThat(highlights.textTypes).containsExactly(KEYWORD, CONSTANT);
+    assertLocation(highlights.locations, 0, 1, 0, 1, 4);
+    assertLocation(highlights.locations, 1, 2, 1, 2, 5);
+  }
+
+  @Test
+  void should_read_highlighted_symbols() {
+    var response = response("{ highlightedSymbols: ["
+      + "{\"declaration\": {\"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},"
+      + "\"references\": [{\"startLine\":2,\"startCol\":1,\"endLine\":2,\"endCol\":5},{\"startLine\":3,\"startCol\":1,\"endLine\":3,\"endCol\":5}]},"
+      + "{\"declaration\": {\"startLine\":4,\"startCol\":0,\"endLine\":4,\"endCol\":4}, \"references\": []},"
+      + "{\"declaration\": {\"startLine\":5,\"startCol\":0,\"endLine\":5,\"endCol\":4}, \"references\": [{\"startLine\":6,\"startCol\":1,\"endLine\":6,\"endCol\":5}]}"
+      + "]}");
+    var symbols = response.highlightedSymbols;
+    assertThat(symbols.size()).isEqualTo(3);
+    assertLocation(symbols.declarations, 2, 5, 0, 5, 4);
+    assertThat(symbols.referenceStarts).startsWith(0, 2, 2, 3);
+    assertLocation(symbols.references, 1, 3, 1, 3, 5);
+    assertLocation(symbols.references, 2, 6, 1, 6, 5);
+  }
+
+  @Test
+  void should_read_cpd_tokens() {
+    var response = response("{ cpdTokens: ["
+      + "{\"location\": { \"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"image\":\"LITERAL\"},"
+      + "{\"location\": { \"startLine\":2,\"startCol\":1,\"endLine\":2,\"endCol\":5},\"image\":\"if\"},"
+      + "{\"location\": { \"startLine\":3,\"startCol\":1,\"endLine\":3,\"endCol\":8},\"image\":\"LITERAL\"}"
+      + "]}");
+    var cpdTokens = response.cpdTokens;
+    assertThat(cpdTokens.size()).isEqualTo(3);
+    assertThat(cpdTokens.images).containsExactly("LITERAL", "if", "LITERAL");
+    assertThat(cpdTokens.images[2]).isSameAs(cpdTokens.images[0]);
+    assertLocation(cpdTokens.locations, 2, 3, 1, 3, 8);
+  }
+
+  @Test
+  void should_read_missing_and_null_values_as_empty() {
+    var response = response("{ highlights: null, highlightedSymbols: null, cpdTokens: [] }");
+    assertThat(response.highlights.size()).isZero();
+    assertThat(response.highlightedSymbols.size()).isZero();
+    assertThat(response.cpdTokens.size()).isZero();
+
+    response = response("{}");
+    assertThat(response.highlights.size()).isZero();
+    assertThat(response.highlightedSymbols.size()).isZero();
+    assertThat(response.cpdTokens.size()).isZero();
+  }
+
+  @Test
+  void should_grow_beyond_initial_capacity() {
+    var json = new StringBuilder("{ cpdTokens: [");
+    for (int i = 1; i <= 1000; i++) {
+      json.append(i > 1 ? "," : "").append("{\"location\": { \"startLine\":").append(i).append(",\"startCol\":0,\"endLine\":")
+        .append(i).append(",\"endCol\":1},\"image\":\"x\"}");
+    }
+    var cpdTokens = response(json.append("]}").toString()).cpdTokens;
+    assertThat(cpdTokens.size()).isEqualTo(1000);
+    assertLocation(cpdTokens.locations, 999, 1000, 0, 1000, 1);
+  }
+
+  @Test
+  void should_fail_on_incomplete_element() {
+    assertThatThrownBy(() -> response("{ highlights: [{\"textType\":\"KEYWORD\"}] }"))
+      .isInstanceOf(JsonSyntaxException.class)
+      .hasMessageStartingWith("Incomplete highlight");
+  }
+
+  @Test
+  void should_write_what_is_read() {
+    var json = GSON.toJson(response("{ highlights: [{\"location\": { \"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"textType\":\"KEYWORD\"}],"
+      + "highlightedSymbols: [{\"declaration\": {\"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},"
+      + "\"references\": [{\"startLine\":2,\"startCol\":1,\"endLine\":2,\"endCol\":5}]}],"
+      + "cpdTokens: [{\"location\": { \"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"image\":\"if\"}] }"));
+    assertThat(json).contains(
+      "\"highlights\":[{\"location\":{\"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"textType\":\"KEYWORD\"}]",
+      "\"highlightedSymbols\":[{\"declaration\":{\"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},"
+        + "\"references\":[{\"startLine\":2,\"startCol\":1,\"endLine\":2,\"endCol\":5}]}]",
+      "\"cpdTokens\":[{\"location\":{\"startLine\":1,\"startCol\":0,\"endLine\":1,\"endCol\":4},\"image\":\"if\"}]");
+    assertThat(GSON.toJson(GSON.fromJson(json, AnalysisResponse.class))).isEqualTo(json);
+  }
+
+  private static void assertLocation(EslintBridgeServer.Locations locations, int index, int startLine, int startCol, int endLine, int endCol) {
+    assertThat(new int[] {locations.startLine(index), locations.startCol(index), locations.endLine(index), locations.endCol(index)})
+      .containsExactly(startLine, startCol, endLine, endCol);
+  }
+
+  private static AnalysisResponse response(String json) {
+    return GSON.fromJson(json, AnalysisResponse.class);
+  }
+}
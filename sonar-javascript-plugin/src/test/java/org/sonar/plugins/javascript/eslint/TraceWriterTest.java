@@ -0,0 +1,170 @@
+/*
+ * SonarQube JavaScript Plugin
+ * Copyright (C) 2011-2022 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.javascript.eslint;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+class TraceWriterTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void should_write_spans() throws Exception {
+    var path = tempDir.resolve("dir").resolve("trace.json");
+    var settings = new MapSettings().setProperty(TraceWriter.TRACE_FILE_PROPERTY, path.toString());
+    var traceWriter = new TraceWriter(settings.asConfig());
+    assertThat(traceWriter.isEnabled()).isTrue();
+    traceWriter.start();
+
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.ts").build();
+    traceWriter.sensorStarted("TypeScriptSensor");
+    traceWriter.programStarted("tsconfig.json");
+    traceWriter.programStopped();
+    traceWriter.fileStarted(inputFile);
+    var start = System.nanoTime();
+    traceWriter.request("analyze-ts", start);
+    traceWriter.fileSaved(inputFile, Monitoring.SavePhase.ISSUES, start);
+    var perf = new EslintBridgeServer.Perf();
+    perf.parseTime = 100;
+    perf.analysisTime = 300;
+    perf.ruleTimes = Map.of("rule1", 100, "rule2", 200);
+    perf.receivedNanos = System.nanoTime();
+    traceWriter.fileStopped(inputFile, perf);
+    traceWriter.sensorStopped();
+    traceWriter.stop();
+
+    var events = events(path);
+    assertThat(events).extracting(e -> e.get("ph").getAsString(), e -> e.get("name").getAsString()).containsExactly(
+      tuple("M", "thread_name"),
+      tuple("X", "program"),
+      tuple("b", "analyze-ts"),
+      tuple("e", "analyze-ts"),
+      tuple("b", "issues"),
+      tuple("e", "issues"),
+      tuple("b", "file.ts"),
+      tuple("e", "file.ts"),
+      tuple("b", "parse"),
+      tuple("e", "parse"),
+      tuple("b", "lint"),
+      tuple("e", "lint"),
+      tuple("b", "rule2"),
+      tuple("e", "rule2"),
+      tuple("b", "rule1"),
+      tuple("e", "rule1"),
+      tuple("X", "TypeScriptSensor"));
+    assertThat(events.get(0).getAsJsonObject("args").get("name").getAsString()).isEqualTo(Thread.currentThread().getName());
+    assertThat(events.get(1).getAsJsonObject("args").get("detail").getAsString()).isEqualTo("tsconfig.json");
+    assertThat(events.get(2).get("cat").getAsString()).isEqualTo("request");
+
+    var fileEvents = events.subList(4, 16);
+    assertThat(fileEvents).extracting(e -> e.get("cat").getAsString()).containsOnly("file");
+    assertThat(fileEvents).extracting(e -> e.get("id").getAsString()).containsOnly(events.get(6).get("id").getAsString());
+    assertThat(events.get(4).getAsJsonObject("args").get("detail").getAsString()).isEqualTo("save");
+    // parse and lint end when the response is received
+    var parseStart = events.get(8).get("ts").getAsDouble();
+    var lintStart = events.get(10).get("ts").getAsDouble();
+    var lintEnd = events.get(11).get("ts").getAsDouble();
+    assertThat(lintStart - parseStart).isCloseTo(100.0, within(0.01));
+    assertThat(lintEnd - lintStart).isCloseTo(300.0, within(0.01));
+    assertThat(events.get(12).get("ts").getAsDouble()).isEqualTo(lintStart);
+    assertThat(events.get(13).get("ts").getAsDouble() - lintStart).isCloseTo(200.0, within(0.01));
+  }
+
+  @Test
+  void should_limit_rules_per_file() throws Exception {
+    var path = tempDir.resolve("trace.json");
+    var traceWriter = new TraceWriter(path);
+    traceWriter.start();
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.js").build();
+    traceWriter.fileStarted(inputFile);
+    var perf = new EslintBridgeServer.Perf();
+    perf.ruleTimes = IntStream.range(0, TraceWriter.RULES_PER_FILE * 2).boxed().collect(Collectors.toMap(i -> "rule" + i, i -> i));
+    perf.receivedNanos = System.nanoTime();
+    traceWriter.fileStopped(inputFile, perf);
+    traceWriter.stop();
+
+    var rules = events(path).stream()
+      // metadata events, e.g. thread names, have arguments but no detail
+      .filter(e -> e.has("args") && e.getAsJsonObject("args").has("detail"))
+      .filter(e -> "rule".equals(e.getAsJsonObject("args").get("detail").getAsString()))
+      .map(e -> e.get("name").getAsString())
+      .distinct()
+      .collect(Collectors.toList());
+    assertThat(rules).hasSize(TraceWriter.RULES_PER_FILE).startsWith("rule" + (TraceWriter.RULES_PER_FILE * 2 - 1));
+  }
+
+  @Test
+  void should_skip_bridge_phases_of_cached_responses() throws Exception {
+    var path = tempDir.resolve("trace.json");
+    var traceWriter = new TraceWriter(path);
+    traceWriter.start();
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.js").build();
+    traceWriter.fileStarted(inputFile);
+    traceWriter.fileStopped(inputFile, new EslintBridgeServer.Perf());
+    // not started
+    traceWriter.fileStopped(inputFile, new EslintBridgeServer.Perf());
+    traceWriter.fileSaved(inputFile, Monitoring.SavePhase.ISSUES, System.nanoTime());
+    traceWriter.stop();
+    traceWriter.stop();
+
+    assertThat(events(path)).extracting(e -> e.get("name").getAsString()).containsExactly("thread_name", "file.js", "file.js");
+  }
+
+  @Test
+  void should_not_write_when_disabled() {
+    var traceWriter = new TraceWriter(new MapSettings().asConfig());
+    assertThat(traceWriter.isEnabled()).isFalse();
+    traceWriter.start();
+    DefaultInputFile inputFile = TestInputFileBuilder.create("module", "file.js").build();
+    traceWriter.sensorStarted("sensor");
+    traceWriter.fileStarted(inputFile);
+    traceWriter.fileStopped(inputFile, new EslintBridgeServer.Perf());
+    traceWriter.request("analyze-js", System.nanoTime());
+    traceWriter.sensorStopped();
+    traceWriter.stop();
+    assertThat(tempDir).isEmptyDirectory();
+  }
+
+  private static List<JsonObject> events(Path path) throws Exception {
+    JsonArray array = JsonParser.parseString(Files.readString(path)).getAsJsonArray();
+    return StreamSupport.stream(array.spliterator(), false).map(JsonElement::getAsJsonObject).collect(Collectors.toList());
+  }
+
+}
@@ -53,6 +53,13 @@ class TypeScriptChecksTest {
     assertThat(checks.ruleKeyByEslintKey("key")).isEqualTo(RuleKey.parse("repo:customcheck"));
   }
 
+  @Test
+  void should_consider_custom_checks_context_dependent() {
+    TypeScriptChecks checks = new TypeScriptChecks(checkFactory("repo", "customcheck"),
+      new CustomRuleRepository[]{new TsRepository()});
+    assertThat(checks.eslintRules()).extracting(rule -> rule.contextDependent).containsExactly(true);
+  }
+
   public static class TsRepository implements CustomRuleRepository {
 
     @Override
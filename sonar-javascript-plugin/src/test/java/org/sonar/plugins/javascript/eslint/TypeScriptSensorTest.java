@@ -31,6 +31,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.junit.jupiter.api.BeforeEach;
@@ -72,6 +74,7 @@ import org.sonar.api.utils.log.LogTesterJUnit5;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.javascript.checks.CheckList;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.AnalysisResponse;
+import org.sonar.plugins.javascript.eslint.EslintBridgeServer.BatchKind;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.JsAnalysisRequest;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.ParsingErrorCode;
 import org.sonar.plugins.javascript.eslint.EslintBridgeServer.TsProgram;
@@ -83,6 +86,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -125,6 +130,25 @@ class TypeScriptSensorTest {
 
     when(eslintBridgeServerMock.isAlive()).thenReturn(true);
     when(eslintBridgeServerMock.analyzeTypeScript(any())).thenReturn(new AnalysisResponse());
+    doAnswer(invocation -> {
+      List<JsAnalysisRequest> requests = invocation.getArgument(1);
+      Consumer<AnalysisResponse> consumer = invocation.getArgument(2);
+      try {
+        for (JsAnalysisRequest request : requests) {
+          consumer.accept(eslintBridgeServerMock.analyzeTypeScript(request));
+        }
+        return CompletableFuture.completedFuture(null);
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }).when(eslintBridgeServerMock).analyzeBatchAsync(eq(BatchKind.TYPESCRIPT), any(), any());
+    when(eslintBridgeServerMock.analyzeWithProgramAsync(any())).thenAnswer(invocation -> {
+      try {
+        return CompletableFuture.completedFuture(eslintBridgeServerMock.analyzeWithProgram(invocation.getArgument(0)));
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    });
     when(eslintBridgeServerMock.getCommandInfo()).thenReturn("eslintBridgeServerMock command info");
     when(eslintBridgeServerMock.loadTsConfig(any())).thenAnswer(
       invocationOnMock -> {
@@ -145,7 +169,7 @@ class TypeScriptSensorTest {
     when(fileLinesContextFactory.createFor(any(InputFile.class))).thenReturn(fileLinesContext);
     tempFolder = new DefaultTempFolder(tempDir.toFile(), true);
     monitoring = new Monitoring(new MapSettings().asConfig());
-    processAnalysis = new AnalysisProcessor(new DefaultNoSonarFilter(), fileLinesContextFactory, monitoring);
+    processAnalysis = new AnalysisProcessor(new DefaultNoSonarFilter(), fileLinesContextFactory, monitoring, new AnalysisWarningsWrapper());
   }
 
   @Test
@@ -458,6 +482,7 @@ class TypeScriptSensorTest {
     DefaultInputFile inputFile = new TestInputFileBuilder("projectKey", baseDir.toFile(), filePath.toFile())
       .setContents(Files.readString(filePath))
       .setLanguage("ts")
+      .setCharset(StandardCharsets.UTF_8)
       .build();
     context.fileSystem().add(inputFile);
     return inputFile;
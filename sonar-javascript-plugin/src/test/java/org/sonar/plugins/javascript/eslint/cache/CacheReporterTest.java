@@ -27,6 +27,7 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.LogTesterJUnit5;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.plugins.javascript.eslint.Monitoring;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -42,12 +43,14 @@ class CacheReporterTest {
   InputFile inputFile;
   CacheReporter cacheReporter;
   SensorContext context;
+  Monitoring monitoring;
 
   @BeforeEach
   void setUp() {
     cacheReporter = new CacheReporter();
     inputFile = mock(InputFile.class);
     context = mock(SensorContext.class);
+    monitoring = mock(Monitoring.class);
   }
 
   @Test
@@ -85,7 +88,7 @@ class CacheReporterTest {
   }
 
   private UCFGFilesSerialization createSerialization() {
-    return new UCFGFilesSerialization(context, CacheKey.forFile(inputFile));
+    return new UCFGFilesSerialization(context, inputFile, monitoring);
   }
 
 }
@@ -20,22 +20,24 @@
 package org.sonar.plugins.javascript.eslint.cache;
 
 import com.google.gson.Gson;
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
-import org.apache.commons.compress.utils.CountingInputStream;
-import org.apache.commons.io.input.InfiniteCircularInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -47,18 +49,24 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.cache.ReadCache;
 import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.internal.SonarRuntimeImpl;
 import org.sonar.api.utils.Version;
+import org.sonar.plugins.javascript.eslint.Monitoring;
+import org.sonar.plugins.javascript.eslint.Monitoring.CacheType;
 
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.readAndWrite;
@@ -68,21 +76,24 @@ import static org.sonar.plugins.javascript.eslint.cache.CacheStrategy.writeOnly;
 class CacheStrategyTest {
 
   UCFGFilesSerialization serialization;
-  String jsonCacheKey;
-  String seqCacheKey;
+  String cacheKey;
+  byte[] cacheEntry;
   @TempDir
   Path baseDir;
   @TempDir
   Path tempDir;
   InputFile inputFile;
+  Path testFile;
   SensorContext context;
+  Monitoring monitoring;
   ReadCache previousCache;
   WriteCache nextCache;
   FileSystem fileSystem;
   Path workDir;
 
   @BeforeEach
-  void setUp() {
+  void setUp() throws IOException {
+    CacheStrategies.reset();
     workDir = baseDir.resolve(".scannerwork");
 
     fileSystem = mock(FileSystem.class);
@@ -90,29 +101,30 @@ class CacheStrategyTest {
     when(fileSystem.workDir()).thenReturn(workDir.toFile());
 
     inputFile = mock(InputFile.class);
-    var testFile = createFile(baseDir.resolve("src/test.js"));
+    testFile = createFile(baseDir.resolve("src/test.js"));
     when(inputFile.uri()).thenReturn(testFile.toUri());
     when(inputFile.key()).thenReturn(baseDir.relativize(testFile).toString().replace(File.separator, "/"));
+    when(inputFile.inputStream()).thenAnswer(invocation -> Files.newInputStream(testFile));
 
     previousCache = mock(ReadCache.class);
     nextCache = mock(WriteCache.class);
     context = mock(SensorContext.class);
-    serialization = new UCFGFilesSerialization(context, CacheKey.forFile(inputFile));
+    monitoring = mock(Monitoring.class);
+    serialization = new UCFGFilesSerialization(context, inputFile, monitoring);
 
-    jsonCacheKey = CacheKey.forFile(inputFile).withPrefix(UCFGFilesSerialization.JSON_PREFIX).toString();
-    seqCacheKey = CacheKey.forFile(inputFile).withPrefix(UCFGFilesSerialization.SEQ_PREFIX).toString();
+    cacheKey = CacheKey.forFile(inputFile).withPrefix(UCFGFilesSerialization.PACK_PREFIX).toString();
 
     when(context.getSonarQubeVersion()).thenReturn(Version.create(9, 6));
     when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarQube(Version.create(9, 6), SonarQubeSide.SCANNER, SonarEdition.ENTERPRISE));
     when(context.previousCache()).thenReturn(previousCache);
     when(context.nextCache()).thenReturn(nextCache);
     when(context.fileSystem()).thenReturn(fileSystem);
+    setDeferredExtraction(false);
   }
 
   @Test
   void should_generate_cache_keys() {
-    assertThat(jsonCacheKey).isEqualTo("jssecurity:ucfgs:JSON:src/test.js");
-    assertThat(seqCacheKey).isEqualTo("jssecurity:ucfgs:SEQ:src/test.js");
+    assertThat(cacheKey).isEqualTo("jssecurity:ucfgs:PACK:src/test.js");
   }
 
   @Test
@@ -120,7 +132,7 @@ class CacheStrategyTest {
     when(context.getSonarQubeVersion()).thenReturn(Version.create(9, 3));
     when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarQube(Version.create(9, 3), SonarQubeSide.SCANNER, SonarEdition.ENTERPRISE));
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.NO_CACHE);
     assertThat(strategy.isAnalysisRequired()).isTrue();
     verify(context, never()).nextCache();
@@ -131,7 +143,7 @@ class CacheStrategyTest {
   void should_not_fail_in_sonarlint() {
     when(context.runtime()).thenReturn(SonarRuntimeImpl.forSonarLint(Version.create(9, 6)));
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.NO_CACHE);
     assertThat(strategy.isAnalysisRequired()).isTrue();
     verify(context, never()).nextCache();
@@ -146,42 +158,34 @@ class CacheStrategyTest {
       .map(Path::toAbsolutePath)
       .map(Path::toString)
       .collect(toList());
-    long[] bytesRead = {0L};
 
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
 
     when(previousCache.contains(anyString())).thenReturn(false);
 
     doAnswer(invocation -> {
-      var inputStream = invocation.getArgument(1, InputStream.class);
-      try (var counting = new CountingInputStream(inputStream)) {
-        counting.transferTo(OutputStream.nullOutputStream());
-        bytesRead[0] = counting.getBytesRead();
-      }
-      return null;
-    }).when(nextCache).write(eq(seqCacheKey), any(InputStream.class));
-
-    doAnswer(invocation -> {
-      var bytes = invocation.getArgument(1, byte[].class);
-      var manifest = new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), FilesManifest.class);
+      var manifest = readHeader(invocation.getArgument(1, byte[].class));
       var totalSize = manifest.getFileSizes().stream().reduce(0L, (n, size) -> n + size.getSize(), Long::sum);
-      assertThat(totalSize).isEqualTo(bytesRead[0]);
+      var expectedSize = ucfgFiles.stream().map(Path::of).mapToLong(file -> file.toFile().length()).sum();
+      assertThat(totalSize).isEqualTo(expectedSize);
       assertThat(manifest.getFileSizes())
         .hasSize(3)
         .extracting(FilesManifest.FileSize::getName)
         .containsExactly("ucfg/file_js_1.ucfg", "ucfg/file_js_2.ucfg", "ucfg/d/file_js_3.ucfg");
       return null;
-    }).when(nextCache).write(eq(jsonCacheKey), any(byte[].class));
+    }).when(nextCache).write(eq(cacheKey), any(byte[].class));
 
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
     strategy.writeGeneratedFilesToCache(ucfgFiles);
-    verify(nextCache).write(eq(jsonCacheKey), any(byte[].class));
-    verify(nextCache).write(eq(seqCacheKey), any(InputStream.class));
+    verify(nextCache).write(eq(cacheKey), any(byte[].class));
+    verify(nextCache, never()).write(anyString(), any(InputStream.class));
+    verify(monitoring).cacheLookup(CacheType.UCFG, inputFile, false);
+    verify(monitoring).cacheWrite(eq(CacheType.UCFG), eq(inputFile), longThat(size -> size > 0), anyLong());
   }
 
   @Test
@@ -191,15 +195,14 @@ class CacheStrategyTest {
     when(previousCache.contains(anyString())).thenReturn(false);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
     var generatedFiles = List.of("inexistent.ucfg");
     assertThatThrownBy(() -> strategy.writeGeneratedFilesToCache(generatedFiles))
       .isInstanceOf(UncheckedIOException.class);
-    verify(nextCache, never()).write(eq(jsonCacheKey), any(byte[].class));
-    verify(nextCache, never()).write(eq(seqCacheKey), any(InputStream.class));
+    verify(nextCache, never()).write(eq(cacheKey), any(byte[].class));
   }
 
   @Test
@@ -209,28 +212,21 @@ class CacheStrategyTest {
     when(previousCache.contains(anyString())).thenReturn(false);
 
     doAnswer(invocation -> {
-      var inputStream = invocation.getArgument(1, InputStream.class);
-      try (var counting = new CountingInputStream(inputStream)) {
-        counting.transferTo(OutputStream.nullOutputStream());
-        assertThat(counting.getBytesRead()).isZero();
-      }
+      var manifest = readHeader(invocation.getArgument(1, byte[].class));
+      assertThat(manifest.getFileSizes()).isEmpty();
+      assertThat(manifest.getContentHash()).isEqualTo(CacheStrategies.contentHash(inputFile));
+      assertThat(manifest.getCrc()).isZero();
       return null;
-    }).when(nextCache).write(eq(seqCacheKey), any(InputStream.class));
-    doAnswer(invocation -> {
-      var bytes = invocation.getArgument(1, byte[].class);
-      assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo("{\"fileSizes\":[]}");
-      return null;
-    }).when(nextCache).write(eq(jsonCacheKey), any(byte[].class));
+    }).when(nextCache).write(eq(cacheKey), any(byte[].class));
 
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
     strategy.writeGeneratedFilesToCache(null);
-    verify(nextCache).write(eq(jsonCacheKey), any(byte[].class));
-    verify(nextCache).write(eq(seqCacheKey), any(InputStream.class));
+    verify(nextCache).write(eq(cacheKey), any(byte[].class));
   }
 
   @Test
@@ -240,14 +236,16 @@ class CacheStrategyTest {
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.READ_AND_WRITE);
     assertThat(strategy.isAnalysisRequired()).isFalse();
 
-    verify(previousCache).read(jsonCacheKey);
-    verify(nextCache).copyFromPrevious(jsonCacheKey);
-    verify(previousCache).read(seqCacheKey);
-    verify(nextCache).copyFromPrevious(seqCacheKey);
+    // the header is read first, then the whole entry
+    verify(previousCache, times(2)).read(cacheKey);
+    verify(nextCache).copyFromPrevious(cacheKey);
+    verify(monitoring).cacheRead(eq(CacheType.UCFG), eq(inputFile), longThat(size -> size > 0), anyLong());
+    verify(monitoring).cacheExtraction(eq(CacheType.UCFG), eq(inputFile), eq((long) cacheEntry.length), anyLong());
+    verify(monitoring).cacheLookup(CacheType.UCFG, inputFile, true);
 
     for (var ucfgFileRelativePath : ucfgFileRelativePaths) {
       assertThat(workDir.resolve(ucfgFileRelativePath))
@@ -258,82 +256,207 @@ class CacheStrategyTest {
 
     strategy.writeGeneratedFilesToCache(ucfgFileRelativePaths.stream().map(workDir::resolve).map(Path::toString).collect(toList()));
     verify(nextCache).write(anyString(), any(byte[].class));
-    verify(nextCache).write(anyString(), any(InputStream.class));
   }
 
   @Test
-  void should_handle_null_json() throws IOException {
+  void should_handle_empty_entry() throws IOException {
     createUcfgFilesInCache();
 
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
-    when(previousCache.read(jsonCacheKey)).thenReturn(InputStream.nullInputStream());
+    when(previousCache.read(cacheKey)).thenReturn(InputStream.nullInputStream());
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
-    verify(previousCache).read(jsonCacheKey);
-    verify(nextCache, never()).copyFromPrevious(jsonCacheKey);
-    verify(previousCache, never()).read(seqCacheKey);
-    verify(nextCache, never()).copyFromPrevious(seqCacheKey);
+    verify(previousCache).read(cacheKey);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
   }
 
   @Test
-  void should_handle_invalid_json() throws IOException {
+  void should_handle_unknown_format() throws IOException {
     createUcfgFilesInCache();
 
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
-    when(previousCache.read(jsonCacheKey)).thenReturn(new ByteArrayInputStream("invalid-json".getBytes(StandardCharsets.UTF_8)));
+    when(previousCache.read(cacheKey)).thenReturn(new ByteArrayInputStream("{\"fileSizes\":[]}".getBytes(StandardCharsets.UTF_8)));
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
-    verify(previousCache).read(jsonCacheKey);
-    verify(nextCache, never()).copyFromPrevious(jsonCacheKey);
-    verify(previousCache, never()).read(seqCacheKey);
-    verify(nextCache, never()).copyFromPrevious(seqCacheKey);
+    verify(previousCache).read(cacheKey);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
   }
 
   @Test
-  void should_handle_empty_files() throws IOException {
+  void should_handle_invalid_header() throws IOException {
     createUcfgFilesInCache();
 
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+    var header = "invalid-json".getBytes(StandardCharsets.UTF_8);
+    when(previousCache.read(cacheKey)).thenReturn(new ByteArrayInputStream(entry(header, new byte[0])));
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
+    assertThat(strategy.isAnalysisRequired()).isTrue();
+
+    verify(previousCache).read(cacheKey);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
+  }
+
+  @Test
+  void should_handle_truncated_entry() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+    var truncated = Arrays.copyOf(cacheEntry, cacheEntry.length - 10);
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(truncated));
 
-    when(previousCache.read(seqCacheKey)).thenReturn(InputStream.nullInputStream());
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
+    assertThat(workDir.resolve(ucfgFileRelativePaths.get(0))).doesNotExist();
   }
 
   @Test
-  void should_handle_infinite_files() throws IOException {
-    createUcfgFilesInCache();
+  void should_handle_missing_content() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+    var header = new Gson().toJson(readHeader(cacheEntry)).getBytes(StandardCharsets.UTF_8);
+    var entry = entry(header, gzip(new byte[0]));
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(entry));
 
     when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
+    assertThat(strategy.isAnalysisRequired()).isTrue();
+    assertThat(workDir.resolve(ucfgFileRelativePaths.get(0))).doesNotExist();
+  }
+
+  @Test
+  void should_handle_extra_content() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+    var header = new Gson().toJson(readHeader(cacheEntry)).getBytes(StandardCharsets.UTF_8);
+    var entry = entry(header, gzip(new byte[10_000]));
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(entry));
 
-    when(previousCache.read(seqCacheKey)).thenReturn(new InfiniteCircularInputStream(new byte[] { 32 }));
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
+    assertThat(workDir.resolve(ucfgFileRelativePaths.get(0))).doesNotExist();
   }
 
   @Test
-  void should_check_file_status() throws IOException {
+  void should_check_crc() throws IOException {
     var ucfgFileRelativePaths = createUcfgFilesInCache();
+    var entry = withInvalidCrc(cacheEntry);
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(entry));
 
-    when(inputFile.status()).thenReturn(InputFile.Status.CHANGED);
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
+    assertThat(strategy.isAnalysisRequired()).isTrue();
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
+    assertThat(workDir.resolve(ucfgFileRelativePaths.get(0))).doesNotExist();
+  }
+
+  @Test
+  void should_extract_files_in_background() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+    setDeferredExtraction(true);
+
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.READ_AND_WRITE);
+    assertThat(strategy.isAnalysisRequired()).isFalse();
+
+    assertThat(CacheStrategies.awaitDeferredExtraction()).isEmpty();
+    verify(nextCache).copyFromPrevious(cacheKey);
+    verify(monitoring).cacheLookup(CacheType.UCFG, inputFile, true);
+    for (var ucfgFileRelativePath : ucfgFileRelativePaths) {
+      assertThat(workDir.resolve(ucfgFileRelativePath))
+        .isRegularFile()
+        .extracting(this::readFile)
+        .isEqualTo(tempDir.resolve(ucfgFileRelativePath).toAbsolutePath().toString());
+    }
+    assertThat(CacheStrategies.awaitDeferredExtraction()).isEmpty();
+  }
+
+  @Test
+  void should_return_files_not_extracted_in_background() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+    var entry = withInvalidCrc(cacheEntry);
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(entry));
+    setDeferredExtraction(true);
 
     when(context.canSkipUnchangedFiles()).thenReturn(true);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.READ_AND_WRITE);
+
+    assertThat(CacheStrategies.awaitDeferredExtraction()).containsExactly(inputFile);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
+    assertThat(workDir.resolve(ucfgFileRelativePaths.get(0))).doesNotExist();
+
+    strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
+    assertThat(strategy.isAnalysisRequired()).isTrue();
+  }
+
+  @Test
+  void should_return_pending_files_when_interrupted() throws Exception {
+    createUcfgFilesInCache();
+    var extractionStarted = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    // the manifest is read on the sensor thread, the extraction blocks in the background
+    when(previousCache.read(cacheKey))
+      .thenAnswer(invocation -> new ByteArrayInputStream(cacheEntry))
+      .thenAnswer(invocation -> {
+        extractionStarted.countDown();
+        release.await();
+        return new ByteArrayInputStream(cacheEntry);
+      });
+    setDeferredExtraction(true);
+
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.isAnalysisRequired()).isFalse();
+    assertThat(extractionStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    Thread.currentThread().interrupt();
+    try {
+      assertThat(CacheStrategies.awaitDeferredExtraction()).containsExactly(inputFile);
+      assertThat(Thread.currentThread().isInterrupted()).isTrue();
+    } finally {
+      Thread.interrupted();
+      release.countDown();
+    }
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
+  }
+
+  @Test
+  void should_check_file_content() throws IOException {
+    var ucfgFileRelativePaths = createUcfgFilesInCache();
+
+    when(inputFile.status()).thenReturn(InputFile.Status.SAME);
+    Files.writeString(testFile, "changed", StandardCharsets.UTF_8);
+
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
@@ -341,14 +464,35 @@ class CacheStrategyTest {
       createFile(workDir.resolve(ucfgFileRelativePath));
     }
 
-    verify(previousCache, never()).read(jsonCacheKey);
-    verify(nextCache, never()).copyFromPrevious(jsonCacheKey);
-    verify(previousCache, never()).read(seqCacheKey);
-    verify(nextCache, never()).copyFromPrevious(seqCacheKey);
+    verify(previousCache).read(cacheKey);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
 
     strategy.writeGeneratedFilesToCache(ucfgFileRelativePaths.stream().map(workDir::resolve).map(Path::toString).collect(toList()));
-    verify(nextCache).write(eq(jsonCacheKey), any(byte[].class));
-    verify(nextCache).write(eq(seqCacheKey), any(InputStream.class));
+    verify(nextCache).write(eq(cacheKey), any(byte[].class));
+  }
+
+  @Test
+  void should_not_depend_on_file_status() throws IOException {
+    createUcfgFilesInCache();
+
+    when(inputFile.status()).thenReturn(InputFile.Status.CHANGED);
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.READ_AND_WRITE);
+    assertThat(strategy.isAnalysisRequired()).isFalse();
+  }
+
+  @Test
+  void should_not_read_from_cache_without_content_hash() throws IOException {
+    createUcfgFilesInCache();
+    when(inputFile.inputStream()).thenThrow(new IOException("unreadable"));
+
+    when(context.canSkipUnchangedFiles()).thenReturn(true);
+
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
+    assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
   }
 
   @Test
@@ -359,7 +503,7 @@ class CacheStrategyTest {
 
     when(context.canSkipUnchangedFiles()).thenReturn(false);
 
-    var strategy = CacheStrategies.getStrategyFor(context, inputFile);
+    var strategy = CacheStrategies.getStrategyFor(context, inputFile, monitoring);
     assertThat(strategy.getName()).isEqualTo(CacheStrategy.WRITE_ONLY);
     assertThat(strategy.isAnalysisRequired()).isTrue();
 
@@ -367,14 +511,11 @@ class CacheStrategyTest {
       createFile(workDir.resolve(ucfgFileRelativePath));
     }
 
-    verify(previousCache, never()).read(jsonCacheKey);
-    verify(nextCache, never()).copyFromPrevious(jsonCacheKey);
-    verify(previousCache, never()).read(seqCacheKey);
-    verify(nextCache, never()).copyFromPrevious(seqCacheKey);
+    verify(previousCache, never()).read(cacheKey);
+    verify(nextCache, never()).copyFromPrevious(cacheKey);
 
     strategy.writeGeneratedFilesToCache(ucfgFileRelativePaths.stream().map(workDir::resolve).map(Path::toString).collect(toList()));
-    verify(nextCache).write(eq(jsonCacheKey), any(byte[].class));
-    verify(nextCache).write(eq(seqCacheKey), any(InputStream.class));
+    verify(nextCache).write(eq(cacheKey), any(byte[].class));
   }
 
   @Test
@@ -412,19 +553,10 @@ class CacheStrategyTest {
       .map(this::createFile)
       .map(Path::toString)
       .collect(toList());
-    var binFile = Files.createTempFile("ucfgs", ".bin");
-    var jsonFile = Files.createTempFile("ucfgs", ".json");
 
     var tempCache = mock(WriteCache.class);
     doAnswer(invocation -> {
-      var input = invocation.getArgument(1, InputStream.class);
-      Files.copy(input, binFile, StandardCopyOption.REPLACE_EXISTING);
-      return null;
-    }).when(tempCache).write(anyString(), any(InputStream.class));
-    doAnswer(invocation -> {
-      var bytes = invocation.getArgument(1, byte[].class);
-      Files.deleteIfExists(jsonFile);
-      Files.write(jsonFile, bytes);
+      cacheEntry = invocation.getArgument(1, byte[].class);
       return null;
     }).when(tempCache).write(anyString(), any(byte[].class));
 
@@ -434,14 +566,58 @@ class CacheStrategyTest {
     when(fileSystem.workDir()).thenReturn(workDir.toFile());
     when(context.nextCache()).thenReturn(nextCache);
 
-    when(previousCache.read(jsonCacheKey)).thenReturn(new BufferedInputStream(Files.newInputStream(jsonFile)));
-    when(previousCache.read(seqCacheKey)).thenReturn(new BufferedInputStream(Files.newInputStream(binFile)));
-    when(previousCache.contains(jsonCacheKey)).thenReturn(true);
-    when(previousCache.contains(seqCacheKey)).thenReturn(true);
+    when(previousCache.read(cacheKey)).thenAnswer(invocation -> new ByteArrayInputStream(cacheEntry));
+    when(previousCache.contains(cacheKey)).thenReturn(true);
 
+    // the entry was written by a previous analysis
+    CacheStrategies.reset();
     return ucfgFileRelativePaths;
   }
 
+  private void setDeferredExtraction(boolean enabled) {
+    var settings = new MapSettings().setProperty(CacheStrategies.DEFERRED_EXTRACTION_PROPERTY, enabled);
+    when(context.config()).thenReturn(settings.asConfig());
+  }
+
+  private static byte[] withInvalidCrc(byte[] entry) throws IOException {
+    var manifest = readHeader(entry);
+    var header = new Gson().toJson(new FilesManifest(manifest.getFileSizes(), manifest.getContentHash(), manifest.getCrc() + 1))
+      .getBytes(StandardCharsets.UTF_8);
+    return entry(header, Arrays.copyOfRange(entry, 2 * Integer.BYTES + headerLength(entry), entry.length));
+  }
+
+  private static FilesManifest readHeader(byte[] entry) throws IOException {
+    var input = new DataInputStream(new ByteArrayInputStream(entry));
+    assertThat(input.readInt()).isEqualTo(UCFGFilesSerialization.FORMAT);
+    var header = input.readNBytes(input.readInt());
+    return new Gson().fromJson(new String(header, StandardCharsets.UTF_8), FilesManifest.class);
+  }
+
+  private static int headerLength(byte[] entry) throws IOException {
+    var input = new DataInputStream(new ByteArrayInputStream(entry));
+    input.readInt();
+    return input.readInt();
+  }
+
+  private static byte[] entry(byte[] header, byte[] payload) throws IOException {
+    var entry = new ByteArrayOutputStream();
+    try (var output = new DataOutputStream(entry)) {
+      output.writeInt(UCFGFilesSerialization.FORMAT);
+      output.writeInt(header.length);
+      output.write(header);
+      output.write(payload);
+    }
+    return entry.toByteArray();
+  }
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    try (var output = new GZIPOutputStream(bytes)) {
+      output.write(content);
+    }
+    return bytes.toByteArray();
+  }
+
   @NotNull
   private List<String> createUcfgFiles(Path dir) {
     var ucfgFileRelativePaths = List.of("ucfg/file_js_1.ucfg", "ucfg/file_js_2.ucfg", "ucfg/d/file_js_3.ucfg");
@@ -24,5 +24,5 @@ server.listen(port, host, (err) => {
     return console.log('something bad happened', err)
   }
 
-  console.log(`server is listening on ${host} ${port}`);
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
 })
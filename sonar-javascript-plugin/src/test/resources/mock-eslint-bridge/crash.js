@@ -0,0 +1,46 @@
+#!/usr/bin/env node
+
+const http = require("http");
+const port = process.argv[2];
+const host = process.argv[3];
+
+// exits, like when running out of memory, when analyzing a file whose name contains "crash"
+const crashes = (input) => input.filePath.includes("crash");
+// once the responses already written are sent
+const crash = () => setTimeout(() => process.exit(1), 100);
+
+const requestHandler = (request, response) => {
+  let data = "";
+  request.on("data", (chunk) => (data += chunk));
+  request.on("end", () => {
+    console.log(`${request.url} ${data}`);
+    if (request.url === "/status" || request.url === "/init-linter") {
+      response.end("OK!");
+    } else if (request.url === "/close") {
+      response.end();
+      server.close();
+    } else if (request.url === "/analyze-batch") {
+      // one line per input, streamed until the crash
+      const { inputs } = JSON.parse(data);
+      for (const input of inputs) {
+        if (crashes(input)) {
+          crash();
+          return;
+        }
+        response.write("{ issues: [] }\n");
+      }
+      response.end();
+    } else if (crashes(JSON.parse(data))) {
+      crash();
+    } else {
+      response.end("{ issues: [] }");
+    }
+  });
+};
+
+const server = http.createServer(requestHandler);
+server.keepAliveTimeout = 100; // this is used so server disconnects faster
+
+server.listen(port, host, () => {
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
+});
@@ -0,0 +1,33 @@
+#!/usr/bin/env node
+
+const http = require("http");
+const port = process.argv[2];
+const host = process.argv[3];
+
+// reports 90% of the heap used with each analysis, program ids are unique per process
+const perf = { parseTime: 1, analysisTime: 1, heapUsed: 90, heapLimit: 100 };
+
+const requestHandler = (request, response) => {
+  let data = "";
+  request.on("data", (chunk) => (data += chunk));
+  request.on("end", () => {
+    console.log(`${request.url} ${data}`);
+    if (request.url === "/status" || request.url === "/init-linter" || request.url === "/delete-program") {
+      response.end("OK!");
+    } else if (request.url === "/create-program") {
+      response.end(JSON.stringify({ programId: `${process.pid}`, projectReferences: [], files: [] }));
+    } else if (request.url === "/close") {
+      response.end();
+      server.close();
+    } else {
+      response.end(JSON.stringify({ issues: [], perf }));
+    }
+  });
+};
+
+const server = http.createServer(requestHandler);
+server.keepAliveTimeout = 100; // this is used so server disconnects faster
+
+server.listen(port, host, () => {
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
+});
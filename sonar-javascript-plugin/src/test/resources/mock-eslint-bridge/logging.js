@@ -25,5 +25,5 @@ const server = http.createServer((req, res) => {
 server.keepAliveTimeout = 100  // this is used so server disconnects faster
 
 server.listen(port, host, () => {
-  console.log(`server is listening on ${host} ${port}`);
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
 })
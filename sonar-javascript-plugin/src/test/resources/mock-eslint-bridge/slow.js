@@ -0,0 +1,57 @@
+#!/usr/bin/env node
+
+const http = require("http");
+const port = process.argv[2];
+const host = process.argv[3];
+
+// never answers when analyzing a file whose name contains "slow", like when stuck in an endless loop, which also blocks the
+// other requests until the process is stopped
+const isSlow = (input) => input.filePath.includes("slow");
+// the analysis of a file whose name contains "long" takes half a second
+const isLong = (input) => input.filePath.includes("long");
+
+const analyze = (input) => {
+  if (isSlow(input)) {
+    for (;;) {}
+  }
+  if (isLong(input)) {
+    const end = Date.now() + 500;
+    while (Date.now() < end) {}
+  }
+  return "{ issues: [] }";
+};
+
+const requestHandler = (request, response) => {
+  let data = "";
+  request.on("data", (chunk) => (data += chunk));
+  request.on("end", () => {
+    console.log(`${request.url} ${data}`);
+    if (request.url === "/status" || request.url === "/init-linter") {
+      response.end("OK!");
+    } else if (request.url === "/close") {
+      response.end();
+      server.close();
+    } else if (request.url === "/analyze-batch") {
+      // one line per input, streamed until the slow one, the other requests are handled between two inputs like in eslint-bridge
+      const { inputs } = JSON.parse(data);
+      const analyzeNext = (index) => {
+        if (index === inputs.length) {
+          response.end();
+          return;
+        }
+        response.write(analyze(inputs[index]) + "\n");
+        setImmediate(() => analyzeNext(index + 1));
+      };
+      analyzeNext(0);
+    } else {
+      response.end(analyze(JSON.parse(data)));
+    }
+  });
+};
+
+const server = http.createServer(requestHandler);
+server.keepAliveTimeout = 100; // this is used so server disconnects faster
+
+server.listen(port, host, () => {
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
+});
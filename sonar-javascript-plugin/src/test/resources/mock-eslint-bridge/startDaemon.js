@@ -0,0 +1,46 @@
+#!/usr/bin/env node
+
+const childProcess = require("child_process");
+const fs = require("fs");
+const http = require("http");
+const path = require("path");
+const port = process.argv[2];
+const host = process.argv[3];
+const timeout = Number(process.argv[8]);
+const daemonFile = process.argv[9];
+
+if (!process.env.ESLINT_BRIDGE_DAEMON) {
+  const log = fs.openSync(path.join(path.dirname(daemonFile), "daemon.log"), "a");
+  const daemon = childProcess.spawn(process.execPath, process.argv.slice(1), {
+    detached: true,
+    stdio: ["ignore", log, log],
+    env: { ...process.env, ESLINT_BRIDGE_DAEMON: "true" },
+  });
+  daemon.unref();
+  console.log(`started daemon ${daemon.pid}`);
+  return;
+}
+
+let idle;
+const requestHandler = (request, response) => {
+  clearTimeout(idle);
+  idle = setTimeout(() => server.close(), timeout);
+  let data = "";
+  request.on("data", (chunk) => (data += chunk));
+  request.on("end", () => {
+    console.log(`${request.url} ${data}`);
+    if (request.url === "/analyze-js") {
+      response.end("{ issues: [] }");
+    } else {
+      response.end("OK!");
+    }
+  });
+};
+
+const server = http.createServer(requestHandler);
+server.keepAliveTimeout = 100;
+
+server.listen(port, host, () => {
+  fs.writeFileSync(daemonFile, JSON.stringify({ pid: process.pid, port: server.address().port }));
+  idle = setTimeout(() => server.close(), timeout);
+});
@@ -0,0 +1,59 @@
+#!/usr/bin/env node
+
+// serves requests with the length-prefixed framing used over a Unix domain socket
+const net = require("net");
+const socketPath = process.argv[2];
+
+console.log(`allowTsParserJsFiles: ${process.argv[5]}`);
+console.log(`sonarlint: ${process.argv[6]}`);
+console.log(`additional rules: [${process.argv[7]}]`);
+
+function frame(payload) {
+  const header = Buffer.alloc(4);
+  header.writeUInt32BE(payload.length);
+  return Buffer.concat([header, payload]);
+}
+
+function respond(socket, body) {
+  socket.write(frame(Buffer.from(body)));
+  socket.write(frame(Buffer.alloc(0)));
+}
+
+function handle(socket, endpoint, data) {
+  console.log(data);
+
+  if (endpoint === "/status" || endpoint === "/new-tsconfig" || endpoint === "/init-linter") {
+    respond(socket, "OK!");
+  } else if (endpoint === "/close") {
+    respond(socket, "");
+    server.close();
+  } else if (endpoint === "/analyze-batch") {
+    // one line per input, sent in separate frames
+    const { inputs } = JSON.parse(data);
+    inputs.forEach(() => socket.write(frame(Buffer.from("{ issues: [] }\n"))));
+    socket.write(frame(Buffer.alloc(0)));
+  } else {
+    // /analyze-js
+    // /analyze-ts
+    // /analyze-css
+    respond(socket, "{ issues: [] }");
+  }
+}
+
+const server = net.createServer(socket => {
+  let received = Buffer.alloc(0);
+  socket.on("data", chunk => {
+    received = Buffer.concat([received, chunk]);
+    while (received.length >= 4 && received.length >= 4 + received.readUInt32BE(0)) {
+      const payload = received.subarray(4, 4 + received.readUInt32BE(0));
+      received = received.subarray(4 + payload.length);
+      const endpointLength = payload.readUInt32BE(0);
+      const endpoint = payload.subarray(4, 4 + endpointLength).toString();
+      handle(socket, endpoint, payload.subarray(4 + endpointLength).toString());
+    }
+  });
+});
+
+server.listen(socketPath, () => {
+  console.log(`DEBUG eslint-bridge server is running on socket ${socketPath}`);
+});
@@ -34,12 +34,20 @@ const requestHandler = (request, response) => {
         response.end("{programId: '42', projectReferences: [], files: ['abs/path/file1', 'abs/path/file2', 'abs/path/file3']}");
       } else if (request.url === "/delete-program") {
         response.end("OK!");
+      } else if (request.url === "/analyze-batch") {
+        // one line per input
+        const { inputs } = JSON.parse(data);
+        response.end(inputs.map(() => "{ issues: [] }\n").join(""));
       } else {
         // /analyze-with-program
         // /analyze-js
         // /analyze-ts
         // /analyze-css
-        response.end("{ issues: [] }");
+        if (process.env.SONARJS_RULE_TIMING === "true") {
+          response.end("{ issues: [], perf: { parseTime: 1, analysisTime: 2, ruleTimes: { 'no-commented-code': 633, 'arguments-order': 398 } } }");
+        } else {
+          response.end("{ issues: [] }");
+        }
       }
   });
 
@@ -53,15 +61,5 @@ server.listen(port, host, (err) => {
     return console.log("something bad happened", err);
   }
 
-  console.log(`server is listening on ${host} ${port}`);
-});
-
-process.on("exit", () => {
-  console.log(`
-Rule                                 | Time (ms) | Relative
-:------------------------------------|----------:|--------:
-no-commented-code                    |   633.226 |    16.8%
-arguments-order                      |   398.175 |    10.6%
-deprecation                          |   335.577 |     8.9%
-  `);
+  console.log(`DEBUG eslint-bridge server is running at port ${server.address().port}`);
 });